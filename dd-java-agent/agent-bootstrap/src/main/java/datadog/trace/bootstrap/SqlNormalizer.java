@@ -0,0 +1,315 @@
+package datadog.trace.bootstrap;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Replaces the literals of SQL statements with "?", so that statements only differing by their
+ * values are reported the same way and the values don't end up in the spans. Lists of values in
+ * "IN (...)" are collapsed to a single "?".
+ *
+ * <p>The statement is tokenized in a single pass which copies nothing until the first literal.
+ * Quoted identifiers, comments and bind parameters are kept as they are. Normalized statements are
+ * cached by statement: applications run the same few statements over and over.
+ *
+ * <p>In string literals a quote is escaped by doubling it, and for the databases which do so by
+ * default, such as MySQL, by a backslash. Otherwise a quote right after a backslash may or may not
+ * end the string: everything from the string on is replaced then, as it is for a string that isn't
+ * closed, so that no part of a value is left in the statement.
+ */
+public final class SqlNormalizer {
+  private static final int CACHE_SIZE = 1000;
+  /** Longer statements are unlikely to be run again as is, and would take up the cache */
+  private static final int MAX_CACHED_LENGTH = 4096;
+
+  /**
+   * Normalized statements by statement. Lookups don't lock, and the cache is just cleared when
+   * full: with a cache large enough for the statements of the application, that rarely happens.
+   */
+  private static final ConcurrentHashMap<String, String> CACHE = new ConcurrentHashMap<>();
+
+  private static final ConcurrentHashMap<String, String> BACKSLASH_ESCAPES_CACHE =
+      new ConcurrentHashMap<>();
+
+  private final String sql;
+  private final boolean backslashEscapes;
+  private final int length;
+  /** The statement normalized so far, null as long as nothing had to be replaced */
+  private StringBuilder normalized;
+  /** End of the part of the statement already copied to the normalized statement */
+  private int copied = 0;
+
+  private SqlNormalizer(final String sql, final boolean backslashEscapes) {
+    this.sql = sql;
+    this.backslashEscapes = backslashEscapes;
+    length = sql.length();
+  }
+
+  /** @return the statement with its literals replaced, or null for a null statement */
+  public static String normalize(final String sql) {
+    return normalize(sql, false);
+  }
+
+  /**
+   * @param backslashEscapes whether a backslash escapes the next character in string literals
+   * @return the statement with its literals replaced, or null for a null statement
+   */
+  public static String normalize(final String sql, final boolean backslashEscapes) {
+    if (sql == null) {
+      return null;
+    }
+    if (sql.length() > MAX_CACHED_LENGTH) {
+      return new SqlNormalizer(sql, backslashEscapes).normalize();
+    }
+    final ConcurrentHashMap<String, String> cache =
+        backslashEscapes ? BACKSLASH_ESCAPES_CACHE : CACHE;
+    String normalized = cache.get(sql);
+    if (normalized == null) {
+      normalized = new SqlNormalizer(sql, backslashEscapes).normalize();
+      if (cache.size() >= CACHE_SIZE) {
+        cache.clear();
+      }
+      cache.put(sql, normalized);
+    }
+    return normalized;
+  }
+
+  /** @return true for the databases whose string literals escape with backslashes by default */
+  public static boolean usesBackslashEscapes(final String dbType) {
+    return "mysql".equals(dbType) || "mariadb".equals(dbType);
+  }
+
+  private String normalize() {
+    int index = 0;
+    while (index < length) {
+      final char c = sql.charAt(index);
+      if (c == '\'') {
+        index = replace(index, skipString(index));
+      } else if (c == '"' || c == '`') {
+        index = skipQuotedIdentifier(index, c);
+      } else if (c == '-' && next(index) == '-') {
+        index = skipLineComment(index);
+      } else if (c == '/' && next(index) == '*') {
+        index = skipBlockComment(index);
+      } else if (isDigit(c) || (c == '.' && isDigit(next(index)) && !afterIdentifier(index))) {
+        final int end = skipNumber(index);
+        if (end < length && isIdentifierPart(sql.charAt(end))) {
+          // Not a number but a name starting with digits
+          index = skipIdentifier(end);
+        } else {
+          index = replace(index, end);
+        }
+      } else if (isIdentifierStart(c)) {
+        final int end = skipIdentifier(index);
+        if (isWord(index, end, "IN")) {
+          index = collapseList(end);
+        } else if (isWord(index, end, "TRUE") || isWord(index, end, "FALSE")) {
+          index = replace(index, end);
+        } else {
+          index = end;
+        }
+      } else if (c == '$' || c == ':' || c == '@') {
+        // Bind parameters, variables and casts
+        index = skipIdentifier(index + 1);
+      } else {
+        index++;
+      }
+    }
+
+    if (normalized == null) {
+      return sql;
+    }
+    return normalized.append(sql, copied, length).toString();
+  }
+
+  /** Replaces the characters from {@code from} to {@code to} by "?". */
+  private int replace(final int from, final int to) {
+    if (normalized == null) {
+      normalized = new StringBuilder(length);
+    }
+    normalized.append(sql, copied, from).append('?');
+    copied = to;
+    return to;
+  }
+
+  /**
+   * Collapses the list of values following an "IN" ending at {@code index}, if that's what follows.
+   *
+   * @return where to go on from
+   */
+  private int collapseList(final int index) {
+    final int open = skipWhitespace(index);
+    if (open >= length || sql.charAt(open) != '(') {
+      return index;
+    }
+    int position = open + 1;
+    while (true) {
+      position = skipValue(skipWhitespace(position));
+      if (position < 0) {
+        // Not only values, a sub query for instance
+        return index;
+      }
+      position = skipWhitespace(position);
+      if (position >= length) {
+        return index;
+      }
+      final char c = sql.charAt(position);
+      if (c == ')') {
+        break;
+      }
+      if (c != ',') {
+        return index;
+      }
+      position++;
+    }
+    if (position - open == 2 && sql.charAt(open + 1) == '?') {
+      // Already "(?)"
+      return position + 1;
+    }
+    replace(open + 1, position);
+    return position + 1;
+  }
+
+  /** @return the end of the literal or bind parameter at {@code index}, -1 if there is none */
+  private int skipValue(final int index) {
+    if (index >= length) {
+      return -1;
+    }
+    final char c = sql.charAt(index);
+    if (c == '\'') {
+      return skipString(index);
+    }
+    if (c == '?') {
+      return index + 1;
+    }
+    if (c == '$' || c == ':' || c == '@') {
+      return skipIdentifier(index + 1);
+    }
+    if (c == '-' || c == '+') {
+      final int number = index + 1;
+      return number < length && (isDigit(sql.charAt(number)) || sql.charAt(number) == '.')
+          ? skipNumber(number)
+          : -1;
+    }
+    if (isDigit(c) || c == '.') {
+      return skipNumber(index);
+    }
+    if (isIdentifierStart(c)) {
+      final int end = skipIdentifier(index);
+      return isWord(index, end, "NULL") || isWord(index, end, "TRUE") || isWord(index, end, "FALSE")
+          ? end
+          : -1;
+    }
+    return -1;
+  }
+
+  private int skipString(final int index) {
+    int position = index + 1;
+    while (position < length) {
+      final char c = sql.charAt(position);
+      if (c == '\\' && backslashEscapes) {
+        position += 2;
+      } else if (c == '\'') {
+        if (sql.charAt(position - 1) == '\\' && !backslashEscapes) {
+          // Either an escaped quote or the end of a string ending with a backslash
+          return length;
+        }
+        if (next(position) != '\'') {
+          return position + 1;
+        }
+        // Escaped quote
+        position += 2;
+      } else {
+        position++;
+      }
+    }
+    return length;
+  }
+
+  private int skipQuotedIdentifier(final int index, final char quote) {
+    final int end = sql.indexOf(quote, index + 1);
+    return end < 0 ? length : end + 1;
+  }
+
+  private int skipLineComment(final int index) {
+    final int end = sql.indexOf('\n', index + 2);
+    return end < 0 ? length : end + 1;
+  }
+
+  private int skipBlockComment(final int index) {
+    final int end = sql.indexOf("*/", index + 2);
+    return end < 0 ? length : end + 2;
+  }
+
+  private int skipNumber(final int index) {
+    int position = index;
+    if (sql.charAt(position) == '0' && (next(position) == 'x' || next(position) == 'X')) {
+      position += 2;
+      while (position < length && Character.digit(sql.charAt(position), 16) >= 0) {
+        position++;
+      }
+      return position;
+    }
+    position = skipDigits(position);
+    if (position < length && sql.charAt(position) == '.') {
+      position = skipDigits(position + 1);
+    }
+    if (position < length && (sql.charAt(position) == 'e' || sql.charAt(position) == 'E')) {
+      int exponent = position + 1;
+      if (exponent < length && (sql.charAt(exponent) == '-' || sql.charAt(exponent) == '+')) {
+        exponent++;
+      }
+      if (exponent < length && isDigit(sql.charAt(exponent))) {
+        position = skipDigits(exponent);
+      }
+    }
+    return position;
+  }
+
+  private int skipDigits(final int index) {
+    int position = index;
+    while (position < length && isDigit(sql.charAt(position))) {
+      position++;
+    }
+    return position;
+  }
+
+  private int skipIdentifier(final int index) {
+    int position = index;
+    while (position < length && isIdentifierPart(sql.charAt(position))) {
+      position++;
+    }
+    return position;
+  }
+
+  private int skipWhitespace(final int index) {
+    int position = index;
+    while (position < length && Character.isWhitespace(sql.charAt(position))) {
+      position++;
+    }
+    return position;
+  }
+
+  private boolean isWord(final int from, final int to, final String word) {
+    return to - from == word.length() && sql.regionMatches(true, from, word, 0, word.length());
+  }
+
+  private boolean afterIdentifier(final int index) {
+    return index > 0 && isIdentifierPart(sql.charAt(index - 1));
+  }
+
+  private char next(final int index) {
+    return index + 1 < length ? sql.charAt(index + 1) : 0;
+  }
+
+  private static boolean isDigit(final char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static boolean isIdentifierStart(final char c) {
+    return Character.isLetter(c) || c == '_';
+  }
+
+  private static boolean isIdentifierPart(final char c) {
+    return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '#';
+  }
+}
@@ -19,4 +19,10 @@ public interface AgentPropagation {
 
     String get(C carrier, String key);
   }
+
+  /**
+   * A getter finding headers whatever the case of their name, so that the headers extraction reads
+   * can be looked up directly rather than going over all of them.
+   */
+  interface CaseInsensitiveGetter<C> extends Getter<C> {}
 }
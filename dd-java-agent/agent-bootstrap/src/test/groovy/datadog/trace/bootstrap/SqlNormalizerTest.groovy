@@ -0,0 +1,72 @@
+package datadog.trace.bootstrap
+
+import spock.lang.Specification
+
+class SqlNormalizerTest extends Specification {
+
+  def "normalize #sql"() {
+    expect:
+    SqlNormalizer.normalize(sql) == normalized
+    SqlNormalizer.normalize(normalized) == normalized
+
+    where:
+    sql                                                           | normalized
+    null                                                          | null
+    ""                                                            | ""
+    "SELECT * FROM users"                                         | "SELECT * FROM users"
+    "SELECT * FROM users WHERE id = 42"                           | "SELECT * FROM users WHERE id = ?"
+    "SELECT * FROM users WHERE name = 'O''Brien' AND age > 3.5"   | "SELECT * FROM users WHERE name = ? AND age > ?"
+    "SELECT * FROM t WHERE a = 'x' OR b = -1e10"                  | "SELECT * FROM t WHERE a = ? OR b = -?"
+    "UPDATE t SET flag = TRUE, mask = 0xFF WHERE id = ?"          | "UPDATE t SET flag = ?, mask = ? WHERE id = ?"
+    "SELECT * FROM t WHERE id IN (1, 2, 3)"                       | "SELECT * FROM t WHERE id IN (?)"
+    "SELECT * FROM t WHERE id in ('a','b', ?, NULL)"              | "SELECT * FROM t WHERE id in (?)"
+    "SELECT * FROM t WHERE id IN (SELECT id FROM u WHERE x = 1)"  | "SELECT * FROM t WHERE id IN (SELECT id FROM u WHERE x = ?)"
+    "SELECT t1.col2 FROM table1 t1"                               | "SELECT t1.col2 FROM table1 t1"
+    "SELECT \"col 1\", `2nd` FROM t"                              | "SELECT \"col 1\", `2nd` FROM t"
+    "SELECT 1 -- the 2 of us\nFROM dual"                          | "SELECT ? -- the 2 of us\nFROM dual"
+    "SELECT /* 42 */ a FROM t WHERE b = :b1 AND c = \$2"          | "SELECT /* 42 */ a FROM t WHERE b = :b1 AND c = \$2"
+    "SELECT a::int4 FROM t WHERE d > '2019-01-01'"                | "SELECT a::int4 FROM t WHERE d > ?"
+  }
+
+  def "normalize #sql with backslash escapes #backslashEscapes"() {
+    when:
+    def result = SqlNormalizer.normalize(sql, backslashEscapes)
+
+    then:
+    result == normalized
+    !result.contains("secret")
+    SqlNormalizer.normalize(result, backslashEscapes) == result
+
+    where:
+    sql                                                     | backslashEscapes | normalized
+    "SELECT * FROM t WHERE a = 'it\\'s secret' AND b = 'x'" | true             | "SELECT * FROM t WHERE a = ? AND b = ?"
+    "SELECT * FROM t WHERE a = 'it\\'s secret' AND b = 'x'" | false            | "SELECT * FROM t WHERE a = ?"
+    "SELECT * FROM t WHERE a = 'it''s secret' AND b = 1"    | true             | "SELECT * FROM t WHERE a = ? AND b = ?"
+    "SELECT * FROM t WHERE a = 'C:\\secret\\\\' AND b = 1"  | true             | "SELECT * FROM t WHERE a = ? AND b = ?"
+    "SELECT * FROM t WHERE a = 'C:\\secret\\' AND b = 1"    | false            | "SELECT * FROM t WHERE a = ?"
+    "SELECT * FROM t WHERE id IN ('a', 'secret\\')"         | false            | "SELECT * FROM t WHERE id IN (?, ?"
+    "SELECT * FROM t WHERE a = 'unclosed secret"            | true             | "SELECT * FROM t WHERE a = ?"
+    "SELECT * FROM t WHERE a = 'unclosed secret"            | false            | "SELECT * FROM t WHERE a = ?"
+  }
+
+  def "backslash escapes are used by mysql and mariadb"() {
+    expect:
+    SqlNormalizer.usesBackslashEscapes(dbType) == backslashEscapes
+
+    where:
+    dbType       | backslashEscapes
+    "mysql"      | true
+    "mariadb"    | true
+    "postgresql" | false
+    "h2"         | false
+    null         | false
+  }
+
+  def "same statements are normalized once"() {
+    setup:
+    def sql = "SELECT * FROM cached WHERE id = 1"
+
+    expect:
+    SqlNormalizer.normalize(sql).is(SqlNormalizer.normalize(new String(sql)))
+  }
+}
@@ -3,6 +3,7 @@ package datadog.trace.agent.decorator;
 
 import datadog.trace.api.Config;
 import datadog.trace.api.DDTags;
+import datadog.trace.bootstrap.SqlNormalizer;
 import datadog.trace.instrumentation.api.AgentSpan;
 import io.opentracing.tag.Tags;
 
@@ -14,6 +15,11 @@ public abstract class DatabaseClientDecorator<CONNECTION> extends ClientDecorato
 
   protected abstract String dbInstance(CONNECTION connection);
 
+  /** @return true when the statements are SQL, to be normalized if configured */
+  protected boolean sqlStatements() {
+    return false;
+  }
+
   @Override
   public AgentSpan afterStart(final AgentSpan span) {
     assert span != null;
@@ -43,6 +49,30 @@ public abstract class DatabaseClientDecorator<CONNECTION> extends ClientDecorato
   }
 
   public AgentSpan onStatement(final AgentSpan span, final String statement) {
+    return onNormalizedStatement(span, normalizeStatement(statement));
+  }
+
+  /**
+   * @return the statement with its literals replaced if it is SQL and {@link
+   *     Config#DB_STATEMENT_NORMALIZE} is enabled, otherwise the statement itself
+   */
+  public String normalizeStatement(final String statement) {
+    return normalizeStatement(statement, false);
+  }
+
+  /**
+   * @param backslashEscapes whether the database escapes quotes in strings with a backslash
+   * @see SqlNormalizer#normalize(String, boolean)
+   */
+  public String normalizeStatement(final String statement, final boolean backslashEscapes) {
+    if (sqlStatements() && Config.get().isDbStatementNormalize()) {
+      return SqlNormalizer.normalize(statement, backslashEscapes);
+    }
+    return statement;
+  }
+
+  /** Tags a statement already gone through {@link #normalizeStatement(String)}. */
+  public AgentSpan onNormalizedStatement(final AgentSpan span, final String statement) {
     assert span != null;
     int dbStatMaxLength = Config.get().getDbStatementMaxLength();
     String outStatement = statement;
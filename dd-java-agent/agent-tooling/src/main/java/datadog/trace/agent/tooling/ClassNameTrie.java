@@ -0,0 +1,148 @@
+package datadog.trace.agent.tooling;
+
+import java.util.Arrays;
+
+/**
+ * Matches class names against a set of prefix and exact name rules in a single pass over the name.
+ *
+ * <p>Rules either match (ignore) or make an exception (allow) for the names they cover. The longest
+ * rule covering a name decides, so exceptions can be made within a matched prefix, and exceptions
+ * to those exceptions within them. Prefixes added with {@link Builder#matchAll(String)} match
+ * whatever the longer rules say.
+ */
+public final class ClassNameTrie {
+  private static final byte NONE = 0;
+  private static final byte ALLOW = 1;
+  private static final byte MATCH = 2;
+  /** Matches without looking any further */
+  private static final byte MATCH_ALL = 3;
+
+  private final Node root;
+
+  private ClassNameTrie(final Node root) {
+    this.root = root;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /** @return true if the longest rule covering the name matches it */
+  public boolean matches(final String name) {
+    boolean matches = false;
+    Node node = root;
+    int index = 0;
+    while (true) {
+      if (node.prefix == MATCH_ALL) {
+        return true;
+      }
+      if (node.prefix != NONE) {
+        matches = node.prefix == MATCH;
+      }
+      if (index == name.length()) {
+        break;
+      }
+      node = node.child(name.charAt(index++));
+      if (node == null) {
+        // No longer rule
+        return matches;
+      }
+    }
+    if (node.exact != NONE) {
+      matches = node.exact == MATCH;
+    }
+    return matches;
+  }
+
+  public static final class Builder {
+    private final Node root = new Node();
+
+    private Builder() {}
+
+    /** Matches the names starting with the prefix, unless a longer rule allows them. */
+    public Builder matchPrefix(final String prefix) {
+      node(prefix).setPrefix(MATCH);
+      return this;
+    }
+
+    /** Matches the names starting with the prefix, whatever the longer rules. */
+    public Builder matchAll(final String prefix) {
+      node(prefix).setPrefix(MATCH_ALL);
+      return this;
+    }
+
+    /** Matches the name, unless it starts with a {@link #matchAll(String)} prefix. */
+    public Builder match(final String name) {
+      node(name).setExact(MATCH);
+      return this;
+    }
+
+    /** Allows the names starting with the prefix, unless a longer rule matches them. */
+    public Builder allowPrefix(final String prefix) {
+      node(prefix).setPrefix(ALLOW);
+      return this;
+    }
+
+    /** Allows the name, unless a rule matches it as well. */
+    public Builder allow(final String name) {
+      node(name).setExact(ALLOW);
+      return this;
+    }
+
+    public ClassNameTrie build() {
+      return new ClassNameTrie(root);
+    }
+
+    private Node node(final String key) {
+      Node node = root;
+      for (int i = 0; i < key.length(); i++) {
+        node = node.getOrAddChild(key.charAt(i));
+      }
+      return node;
+    }
+  }
+
+  private static final class Node {
+    private static final char[] NO_KEYS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    /** Children by character, in parallel arrays: nodes have very few children */
+    private char[] keys = NO_KEYS;
+
+    private Node[] children = NO_CHILDREN;
+    /** Decision for the names starting with the key of this node */
+    private byte prefix = NONE;
+    /** Decision for the name equal to the key of this node */
+    private byte exact = NONE;
+
+    Node child(final char c) {
+      for (int i = 0; i < keys.length; i++) {
+        if (keys[i] == c) {
+          return children[i];
+        }
+      }
+      return null;
+    }
+
+    Node getOrAddChild(final char c) {
+      Node child = child(c);
+      if (child == null) {
+        child = new Node();
+        keys = Arrays.copyOf(keys, keys.length + 1);
+        keys[keys.length - 1] = c;
+        children = Arrays.copyOf(children, children.length + 1);
+        children[children.length - 1] = child;
+      }
+      return child;
+    }
+
+    /** A match wins over an exception for the same key, as does matching everything. */
+    void setPrefix(final byte decision) {
+      prefix = (byte) Math.max(prefix, decision);
+    }
+
+    void setExact(final byte decision) {
+      exact = (byte) Math.max(exact, decision);
+    }
+  }
+}
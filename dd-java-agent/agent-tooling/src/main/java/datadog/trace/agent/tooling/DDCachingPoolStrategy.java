@@ -7,8 +7,7 @@ import static net.bytebuddy.agent.builder.AgentBuilder.PoolStrategy;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import datadog.trace.bootstrap.WeakMap;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
+import java.lang.ref.WeakReference;
 import java.util.concurrent.TimeUnit;
 import net.bytebuddy.description.type.TypeDescription;
 import net.bytebuddy.dynamic.ClassFileLocator;
@@ -17,11 +16,16 @@ import net.bytebuddy.pool.TypePool;
 /**
  * Custom Pool strategy.
  *
- * <p>Here we are using WeakMap.Provider as the backing ClassLoader -> CacheProvider lookup.
+ * <p>The resolutions of all the ClassLoaders are kept in one cache, keyed by the loader and the
+ * name of the type. The cache uses guava's cache to expire and limit size, and is cleaned by a
+ * single task of the cleaner.
  *
- * <p>We also use our bootstrap proxy when matching against the bootstrap loader.
+ * <p>Keys only hold a weak reference to their loader, shared by all the keys of the loader and
+ * looked up in a WeakMap. Creating that reference takes no lock: threads racing on a new loader may
+ * each create one, and keys compare the loaders themselves. In particular, the loader is never
+ * synchronized on, as it may be on its own class loading.
  *
- * <p>The CacheProvider is a custom implementation that uses guava's cache to expire and limit size.
+ * <p>We also use our bootstrap proxy when matching against the bootstrap loader.
  *
  * <p>By evicting from the cache we are able to reduce the memory overhead of the agent for apps
  * that have many classes.
@@ -29,114 +33,155 @@ import net.bytebuddy.pool.TypePool;
  * <p>See eviction policy below.
  */
 public class DDCachingPoolStrategy implements PoolStrategy {
-  private final WeakMap<ClassLoader, TypePool.CacheProvider> typePoolCache =
+  // Many threads may load classes in parallel at startup
+  static final int CONCURRENCY_LEVEL = 8;
+  static final int TYPE_CAPACITY = 10000;
+
+  private static final TypePool.Resolution OBJECT_RESOLUTION =
+      new TypePool.Resolution.Simple(TypeDescription.OBJECT);
+
+  private final WeakMap<ClassLoader, WeakReference<ClassLoader>> loaderRefs =
       WeakMap.Provider.newWeakMap();
-  private final Cleaner cleaner;
+
+  private final Cache<TypeCacheKey, TypePool.Resolution> sharedResolutionCache;
 
   public DDCachingPoolStrategy(final Cleaner cleaner) {
-    this.cleaner = cleaner;
+    this(cleaner, TYPE_CAPACITY, 1, TimeUnit.MINUTES);
+  }
+
+  DDCachingPoolStrategy(
+      final Cleaner cleaner, final long capacity, final long expireDuration, final TimeUnit unit) {
+    sharedResolutionCache =
+        CacheBuilder.newBuilder()
+            .concurrencyLevel(CONCURRENCY_LEVEL)
+            .initialCapacity(100)
+            .maximumSize(capacity)
+            .softValues()
+            .expireAfterAccess(expireDuration, unit)
+            .build();
+
+    /*
+     * The cache only does cleanup on occasional reads and writes.
+     * We want to ensure this happens more regularly, so we schedule a thread to do run cleanup manually.
+     */
+    cleaner.scheduleCleaning(sharedResolutionCache, CacheCleaner.CLEANER, expireDuration, unit);
   }
 
   @Override
   public TypePool typePool(final ClassFileLocator classFileLocator, final ClassLoader classLoader) {
+    return new TypePool.Default.WithLazyResolution(
+        cacheProvider(classLoader), classFileLocator, TypePool.Default.ReaderMode.FAST);
+  }
+
+  TypePool.CacheProvider cacheProvider(final ClassLoader classLoader) {
     final ClassLoader key =
         BOOTSTRAP_CLASSLOADER == classLoader ? Utils.getBootstrapProxy() : classLoader;
-    TypePool.CacheProvider cache = typePoolCache.get(key);
-    if (null == cache) {
-      synchronized (key) {
-        cache = typePoolCache.get(key);
-        if (null == cache) {
-          if (skipClassLoader().matches(classLoader)) {
-            // Don't bother creating a cache for a classloader that won't match.
-            // (avoiding a lot of DelegatingClassLoader instances)
-            // This is primarily an optimization.
-            cache = TypePool.CacheProvider.NoOp.INSTANCE;
-          } else {
-            cache = EvictingCacheProvider.withObjectType(cleaner, 1, TimeUnit.MINUTES);
-          }
-          typePoolCache.put(key, cache);
-        }
+    WeakReference<ClassLoader> loaderRef = loaderRefs.get(key);
+    if (null == loaderRef) {
+      if (skipClassLoader().matches(classLoader)) {
+        // Don't bother caching for a classloader that won't match.
+        // (avoiding a lot of DelegatingClassLoader instances)
+        // This is primarily an optimization.
+        return TypePool.CacheProvider.NoOp.INSTANCE;
       }
+      loaderRef = new WeakReference<>(key);
+      loaderRefs.putIfAbsent(key, loaderRef);
     }
-    return new TypePool.Default.WithLazyResolution(
-        cache, classFileLocator, TypePool.Default.ReaderMode.FAST);
+    return new SharedResolutionCacheAdapter(
+        System.identityHashCode(key), loaderRef, sharedResolutionCache);
   }
 
-  private static class EvictingCacheProvider implements TypePool.CacheProvider {
-
-    /** A map containing all cached resolutions by their names. */
-    private final Cache<String, TypePool.Resolution> cache;
-
-    /** Creates a new simple cache. */
-    private EvictingCacheProvider(
-        final Cleaner cleaner, final long expireDuration, final TimeUnit unit) {
-      cache =
-          CacheBuilder.newBuilder()
-              .initialCapacity(100) // Per classloader, so we want a small default.
-              .maximumSize(5000)
-              .softValues()
-              .expireAfterAccess(expireDuration, unit)
-              .build();
-
-      /*
-       * The cache only does cleanup on occasional reads and writes.
-       * We want to ensure this happens more regularly, so we schedule a thread to do run cleanup manually.
-       */
-      cleaner.scheduleCleaning(cache, CacheCleaner.CLEANER, expireDuration, unit);
-    }
+  long approximateSize() {
+    return sharedResolutionCache.size();
+  }
 
-    private static EvictingCacheProvider withObjectType(
-        final Cleaner cleaner, final long expireDuration, final TimeUnit unit) {
-      final EvictingCacheProvider cacheProvider =
-          new EvictingCacheProvider(cleaner, expireDuration, unit);
-      cacheProvider.register(
-          Object.class.getName(), new TypePool.Resolution.Simple(TypeDescription.OBJECT));
-      return cacheProvider;
+  /** The name of a type, and the loader it is resolved from. */
+  static final class TypeCacheKey {
+    private final int loaderHash;
+    private final WeakReference<ClassLoader> loaderRef;
+    private final String className;
+    private final int hashCode;
+
+    TypeCacheKey(
+        final int loaderHash, final WeakReference<ClassLoader> loaderRef, final String className) {
+      this.loaderHash = loaderHash;
+      this.loaderRef = loaderRef;
+      this.className = className;
+      hashCode = 31 * loaderHash + className.hashCode();
     }
 
     @Override
-    public TypePool.Resolution find(final String name) {
-      return cache.getIfPresent(name);
+    public int hashCode() {
+      return hashCode;
     }
 
     @Override
-    public TypePool.Resolution register(final String name, final TypePool.Resolution resolution) {
-      try {
-        return cache.get(name, new ResolutionProvider(resolution));
-      } catch (final ExecutionException e) {
-        return resolution;
+    public boolean equals(final Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof TypeCacheKey)) {
+        return false;
       }
+      final TypeCacheKey that = (TypeCacheKey) obj;
+      if (loaderHash != that.loaderHash || !className.equals(that.className)) {
+        return false;
+      }
+      if (loaderRef == that.loaderRef) {
+        return true;
+      }
+      // Keys of a collected loader only equal themselves
+      final ClassLoader loader = loaderRef.get();
+      return loader != null && loader == that.loaderRef.get();
     }
+  }
 
-    @Override
-    public void clear() {
-      cache.invalidateAll();
+  /** The view of a loader on the shared cache. */
+  static final class SharedResolutionCacheAdapter implements TypePool.CacheProvider {
+    private final int loaderHash;
+    private final WeakReference<ClassLoader> loaderRef;
+    private final Cache<TypeCacheKey, TypePool.Resolution> sharedResolutionCache;
+
+    SharedResolutionCacheAdapter(
+        final int loaderHash,
+        final WeakReference<ClassLoader> loaderRef,
+        final Cache<TypeCacheKey, TypePool.Resolution> sharedResolutionCache) {
+      this.loaderHash = loaderHash;
+      this.loaderRef = loaderRef;
+      this.sharedResolutionCache = sharedResolutionCache;
     }
 
-    public long size() {
-      return cache.size();
+    @Override
+    public TypePool.Resolution find(final String className) {
+      final TypePool.Resolution resolution =
+          sharedResolutionCache.getIfPresent(new TypeCacheKey(loaderHash, loaderRef, className));
+      if (resolution == null && Object.class.getName().equals(className)) {
+        return OBJECT_RESOLUTION;
+      }
+      return resolution;
     }
 
-    private static class CacheCleaner implements Cleaner.Adapter<Cache> {
-      private static final CacheCleaner CLEANER = new CacheCleaner();
-
-      @Override
-      public void clean(final Cache target) {
-        target.cleanUp();
-      }
+    @Override
+    public TypePool.Resolution register(
+        final String className, final TypePool.Resolution resolution) {
+      final TypePool.Resolution previous =
+          sharedResolutionCache
+              .asMap()
+              .putIfAbsent(new TypeCacheKey(loaderHash, loaderRef, className), resolution);
+      return previous == null ? resolution : previous;
     }
 
-    private static class ResolutionProvider implements Callable<TypePool.Resolution> {
-      private final TypePool.Resolution value;
+    /** The resolutions of the loader are left to expire, with those of the other loaders. */
+    @Override
+    public void clear() {}
+  }
 
-      private ResolutionProvider(final TypePool.Resolution value) {
-        this.value = value;
-      }
+  private static class CacheCleaner implements Cleaner.Adapter<Cache> {
+    private static final CacheCleaner CLEANER = new CacheCleaner();
 
-      @Override
-      public TypePool.Resolution call() {
-        return value;
-      }
+    @Override
+    public void clean(final Cache target) {
+      target.cleanUp();
     }
   }
 }
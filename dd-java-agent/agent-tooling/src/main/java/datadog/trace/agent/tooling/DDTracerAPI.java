@@ -0,0 +1,389 @@
+package datadog.trace.agent.tooling;
+
+import static io.opentracing.propagation.Format.Builtin.TEXT_MAP_EXTRACT;
+import static io.opentracing.propagation.Format.Builtin.TEXT_MAP_INJECT;
+import static java.util.Collections.singletonMap;
+
+import datadog.opentracing.DDSpan;
+import datadog.opentracing.DDTracer;
+import datadog.opentracing.DDTracer.DDSpanBuilder;
+import datadog.opentracing.propagation.HeaderNames;
+import datadog.trace.api.interceptor.MutableSpan;
+import datadog.trace.context.TraceScope;
+import datadog.trace.instrumentation.api.AgentPropagation;
+import datadog.trace.instrumentation.api.AgentPropagation.CaseInsensitiveGetter;
+import datadog.trace.instrumentation.api.AgentPropagation.Getter;
+import datadog.trace.instrumentation.api.AgentScope;
+import datadog.trace.instrumentation.api.AgentSpan;
+import datadog.trace.instrumentation.api.AgentTracer.TracerAPI;
+import io.opentracing.Scope;
+import io.opentracing.ScopeManager;
+import io.opentracing.Span;
+import io.opentracing.SpanContext;
+import io.opentracing.log.Fields;
+import io.opentracing.propagation.TextMapExtract;
+import io.opentracing.propagation.TextMapInject;
+import io.opentracing.tag.Tags;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * {@link TracerAPI} creating {@link DDSpan}s directly with the {@link DDTracer}, rather than going
+ * through the OpenTracing API like {@link OpenTracing32}.
+ *
+ * <p>A span is wrapped once, and the wrapper is also its context and, when first activated, its
+ * scope. Spans and contexts coming from elsewhere, like the noop span, are handed to {@link
+ * OpenTracing32}.
+ */
+public final class DDTracerAPI implements TracerAPI {
+
+  private final DDTracer tracer;
+  private final ScopeManager scopeManager;
+  private final DDAgentPropagation propagation = new DDAgentPropagation();
+  /** For the spans and contexts not created here */
+  private final OpenTracing32 fallback = new OpenTracing32();
+
+  public DDTracerAPI(final DDTracer tracer) {
+    this.tracer = tracer;
+    scopeManager = tracer.scopeManager();
+  }
+
+  @Override
+  public AgentSpan startSpan(final String spanName) {
+    return new DDAgentSpan(tracer.buildSpan(spanName).start());
+  }
+
+  @Override
+  public AgentSpan startSpan(final String spanName, final long startTimeMicros) {
+    return new DDAgentSpan(tracer.buildSpan(spanName).withStartTimestamp(startTimeMicros).start());
+  }
+
+  @Override
+  public AgentSpan startSpan(final String spanName, final AgentSpan.Context parent) {
+    final DDSpanBuilder builder = childOf(spanName, parent);
+    if (builder == null) {
+      return fallback.startSpan(spanName, parent);
+    }
+    return new DDAgentSpan(builder.start());
+  }
+
+  @Override
+  public AgentSpan startSpan(
+      final String spanName, final AgentSpan.Context parent, final long startTimeMicros) {
+    final DDSpanBuilder builder = childOf(spanName, parent);
+    if (builder == null) {
+      return fallback.startSpan(spanName, parent, startTimeMicros);
+    }
+    return new DDAgentSpan(builder.withStartTimestamp(startTimeMicros).start());
+  }
+
+  /** @return a builder for a child of the parent, null if the parent doesn't come from here */
+  private DDSpanBuilder childOf(final String spanName, final AgentSpan.Context parent) {
+    final SpanContext context;
+    if (parent instanceof DDAgentSpan) {
+      context = ((DDAgentSpan) parent).span.context();
+    } else if (parent instanceof DDAgentContext) {
+      context = ((DDAgentContext) parent).context;
+    } else {
+      return null;
+    }
+    return tracer.buildSpan(spanName).ignoreActiveSpan().asChildOf(context);
+  }
+
+  @Override
+  public AgentScope activateSpan(final AgentSpan span, final boolean finishSpanOnClose) {
+    if (!(span instanceof DDAgentSpan)) {
+      return fallback.activateSpan(span, finishSpanOnClose);
+    }
+    final DDAgentSpan agentSpan = (DDAgentSpan) span;
+    return agentSpan.activated(scopeManager.activate(agentSpan.span, finishSpanOnClose));
+  }
+
+  @Override
+  public AgentSpan activeSpan() {
+    final Span span = scopeManager.activeSpan();
+    if (span == null) {
+      return null;
+    }
+    if (span instanceof DDSpan) {
+      return new DDAgentSpan((DDSpan) span);
+    }
+    return fallback.activeSpan();
+  }
+
+  @Override
+  public TraceScope activeScope() {
+    final Scope scope = scopeManager.active();
+    if (scope instanceof TraceScope) {
+      return (TraceScope) scope;
+    } else {
+      return null;
+    }
+  }
+
+  @Override
+  public AgentPropagation propagate() {
+    return propagation;
+  }
+
+  @Override
+  public AgentSpan noopSpan() {
+    return fallback.noopSpan();
+  }
+
+  /** A span, which is its own context, and its own scope while activated. */
+  private static final class DDAgentSpan implements AgentSpan, AgentSpan.Context, AgentScope {
+    private static final AtomicReferenceFieldUpdater<DDAgentSpan, Scope> SCOPE =
+        AtomicReferenceFieldUpdater.newUpdater(DDAgentSpan.class, Scope.class, "scope");
+
+    private final DDSpan span;
+    /** The scope of the activation this is returned for, null when not activated that way */
+    private volatile Scope scope;
+
+    private DDAgentSpan(final DDSpan span) {
+      this.span = span;
+    }
+
+    /** @return this as the scope, unless it is already the scope of another activation */
+    private AgentScope activated(final Scope scope) {
+      if (SCOPE.compareAndSet(this, null, scope)) {
+        return this;
+      }
+      return new DDAgentScope(this, scope);
+    }
+
+    @Override
+    public AgentSpan setTag(final String key, final boolean value) {
+      span.setTag(key, value);
+      return this;
+    }
+
+    @Override
+    public AgentSpan setTag(final String key, final int value) {
+      span.setTag(key, value);
+      return this;
+    }
+
+    @Override
+    public AgentSpan setTag(final String key, final long value) {
+      span.setTag(key, value);
+      return this;
+    }
+
+    @Override
+    public AgentSpan setTag(final String key, final double value) {
+      span.setTag(key, value);
+      return this;
+    }
+
+    @Override
+    public AgentSpan setTag(final String key, final String value) {
+      span.setTag(key, value);
+      return this;
+    }
+
+    @Override
+    public AgentSpan setError(final boolean error) {
+      span.setTag(Tags.ERROR.getKey(), error);
+      return this;
+    }
+
+    @Override
+    public AgentSpan setErrorMessage(final String errorMessage) {
+      span.log(singletonMap(Fields.MESSAGE, errorMessage));
+      return this;
+    }
+
+    @Override
+    public AgentSpan addThrowable(final Throwable throwable) {
+      span.setErrorMeta(throwable);
+      return this;
+    }
+
+    @Override
+    public AgentSpan getLocalRootSpan() {
+      final MutableSpan root = span.getLocalRootSpan();
+      if (root == span || !(root instanceof DDSpan)) {
+        return this;
+      }
+      return new DDAgentSpan((DDSpan) root);
+    }
+
+    @Override
+    public AgentSpan.Context context() {
+      return this;
+    }
+
+    @Override
+    public void finish() {
+      span.finish();
+    }
+
+    @Override
+    public String getSpanName() {
+      return span.getOperationName();
+    }
+
+    @Override
+    public void setSpanName(final String spanName) {
+      span.setOperationName(spanName);
+    }
+
+    @Override
+    public AgentSpan span() {
+      return this;
+    }
+
+    @Override
+    public AgentScope setAsyncPropagation(final boolean value) {
+      final Scope scope = this.scope;
+      if (scope instanceof TraceScope) {
+        ((TraceScope) scope).setAsyncPropagation(value);
+      }
+      return this;
+    }
+
+    @Override
+    public void close() {
+      final Scope scope = SCOPE.getAndSet(this, null);
+      if (scope != null) {
+        scope.close();
+      }
+    }
+  }
+
+  private static final class DDAgentScope implements AgentScope {
+    private final DDAgentSpan span;
+    private final Scope scope;
+
+    private DDAgentScope(final DDAgentSpan span, final Scope scope) {
+      this.span = span;
+      this.scope = scope;
+    }
+
+    @Override
+    public void close() {
+      scope.close();
+    }
+
+    @Override
+    public AgentScope setAsyncPropagation(final boolean value) {
+      if (scope instanceof TraceScope) {
+        ((TraceScope) scope).setAsyncPropagation(value);
+      }
+      return this;
+    }
+
+    @Override
+    public AgentSpan span() {
+      return span;
+    }
+  }
+
+  /** A context extracted from a carrier, null when there was nothing to extract */
+  private static final class DDAgentContext implements AgentSpan.Context {
+    private final SpanContext context;
+
+    private DDAgentContext(final SpanContext context) {
+      this.context = context;
+    }
+  }
+
+  private final class DDAgentPropagation implements AgentPropagation {
+
+    @Override
+    public TraceScope.Continuation capture() {
+      final Scope active = scopeManager.active();
+      if (active instanceof TraceScope) {
+        return ((TraceScope) active).capture();
+      } else {
+        return null;
+      }
+    }
+
+    @Override
+    public <C> void inject(final AgentSpan span, final C carrier, final Setter<C> setter) {
+      if (!(span instanceof DDAgentSpan)) {
+        fallback.propagate().inject(span, carrier, setter);
+        return;
+      }
+      tracer.inject(
+          ((DDAgentSpan) span).span.context(), TEXT_MAP_INJECT, new Injector<>(carrier, setter));
+    }
+
+    @Override
+    public <C> AgentSpan.Context extract(final C carrier, final Getter<C> getter) {
+      return new DDAgentContext(
+          tracer.extract(TEXT_MAP_EXTRACT, new Extractor(extracted(carrier, getter))));
+    }
+
+    /**
+     * @return the headers the tracer extracts, looked up by name when the getter allows it rather
+     *     than going over all the headers
+     */
+    private <C> Map<String, String> extracted(final C carrier, final Getter<C> getter) {
+      final HeaderNames headers = tracer.getExtractedHeaders();
+      Map<String, String> extracted = Collections.emptyMap();
+      if (getter instanceof CaseInsensitiveGetter && !headers.hasPrefixes()) {
+        for (final String name : headers.names()) {
+          final String value = getter.get(carrier, name);
+          if (value != null) {
+            extracted = put(extracted, name, value);
+          }
+        }
+      } else {
+        for (final String key : getter.keys(carrier)) {
+          if (headers.matches(key)) {
+            final String value = getter.get(carrier, key);
+            if (value != null) {
+              extracted = put(extracted, key, value);
+            }
+          }
+        }
+      }
+      return extracted;
+    }
+
+    private Map<String, String> put(
+        Map<String, String> extracted, final String key, final String value) {
+      if (extracted.isEmpty()) {
+        extracted = new HashMap<>();
+      }
+      extracted.put(key, value);
+      return extracted;
+    }
+  }
+
+  private static final class Injector<C> implements TextMapInject {
+    private final C carrier;
+    private final AgentPropagation.Setter<C> setter;
+
+    private Injector(final C carrier, final AgentPropagation.Setter<C> setter) {
+      this.carrier = carrier;
+      this.setter = setter;
+    }
+
+    @Override
+    public void put(final String key, final String value) {
+      setter.set(carrier, key, value);
+    }
+  }
+
+  /** The headers read from the carrier, read once as every codec goes over them */
+  private static final class Extractor implements TextMapExtract {
+    private final Map<String, String> extracted;
+
+    private Extractor(final Map<String, String> extracted) {
+      this.extracted = extracted;
+    }
+
+    @Override
+    public Iterator<Entry<String, String>> iterator() {
+      return extracted.entrySet().iterator();
+    }
+  }
+}
@@ -0,0 +1,109 @@
+package datadog.trace.agent.tooling;
+
+import java.util.List;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.matcher.ElementMatcher;
+
+/**
+ * Matches the names of the classes never to instrument: the built-in ones and those of {@link
+ * datadog.trace.api.Config#getExcludedClasses()}.
+ *
+ * <p>This is evaluated for every class loaded, so the prefix rules are compiled into a single
+ * {@link ClassNameTrie} rather than chained matchers each going over the name again.
+ */
+public final class IgnoredClassNameMatcher
+    extends ElementMatcher.Junction.AbstractBase<TypeDescription> {
+  /** Names containing any of these are ignored, wherever in the name */
+  private static final String[] IGNORED_PARTS = {"$JaxbAccessor", "CGLIB$$", "javassist", ".asm."};
+
+  private static final String C3P0_PACKAGE = "com.mchange.v2.c3p0.";
+  private static final String C3P0_PROXY_SUFFIX = "Proxy";
+
+  private final ClassNameTrie trie;
+
+  private IgnoredClassNameMatcher(final ClassNameTrie trie) {
+    this.trie = trie;
+  }
+
+  /** @param excludedClasses class names to ignore, ending with "*" to ignore names by prefix */
+  public static IgnoredClassNameMatcher withExcludedClasses(final List<String> excludedClasses) {
+    final ClassNameTrie.Builder builder = ClassNameTrie.builder();
+    builder
+        .matchPrefix("datadog.trace.")
+        // FIXME: We should remove this once
+        // https://github.com/raphw/byte-buddy/issues/558 is fixed
+        .allow("datadog.trace.bootstrap.instrumentation.java.concurrent.RunnableWrapper")
+        .allow("datadog.trace.bootstrap.instrumentation.java.concurrent.CallableWrapper")
+        .matchAll("datadog.opentracing.")
+        .matchAll("datadog.slf4j.")
+        .matchAll("net.bytebuddy.")
+        .matchPrefix("java.")
+        .allow("java.net.URL")
+        .allow("java.net.HttpURLConnection")
+        .allowPrefix("java.util.concurrent.")
+        .allowPrefix("java.util.logging.")
+        // Concurrent instrumentation modifies the strucutre of
+        // Cleaner class incompaibly with java9+ modules.
+        // Working around until a long-term fix for modules can be
+        // put in place.
+        .match("java.util.logging.LogManager$Cleaner")
+        .matchPrefix("com.sun.")
+        .allowPrefix("com.sun.messaging.")
+        .allowPrefix("com.sun.jersey.api.client")
+        .matchPrefix("sun.")
+        .allowPrefix("sun.net.www.protocol.")
+        .allow("sun.net.www.http.HttpClient")
+        .matchAll("jdk.")
+        .matchAll("org.aspectj.")
+        .matchAll("org.groovy.")
+        .matchAll("org.codehaus.groovy.macro.")
+        .matchAll("com.intellij.rt.debugger.")
+        .matchAll("com.p6spy.")
+        .matchAll("com.newrelic.")
+        .matchAll("com.dynatrace.")
+        .matchAll("com.jloadtrace.")
+        .matchAll("com.appdynamics.")
+        .matchAll("com.singularity.")
+        .matchAll("com.jinspired.")
+        .matchAll("org.jinspired.")
+        .matchPrefix("org.apache.log4j.")
+        .allow("org.apache.log4j.MDC")
+        .matchPrefix("org.slf4j.")
+        .allow("org.slf4j.MDC");
+
+    // Excluded classes are ignored whatever the built-in exceptions
+    for (String excludedClass : excludedClasses) {
+      excludedClass = excludedClass.trim();
+      if (excludedClass.endsWith("*")) {
+        // remove the trailing *
+        builder.matchAll(excludedClass.substring(0, excludedClass.length() - 1));
+      } else {
+        builder.match(excludedClass);
+      }
+    }
+    return new IgnoredClassNameMatcher(builder.build());
+  }
+
+  @Override
+  public boolean matches(final TypeDescription target) {
+    return isIgnored(target.getActualName());
+  }
+
+  public boolean isIgnored(final String name) {
+    if (trie.matches(name)) {
+      return true;
+    }
+    for (final String part : IGNORED_PARTS) {
+      if (name.contains(part)) {
+        return true;
+      }
+    }
+    // com\.mchange\.v2\.c3p0\..*Proxy
+    return name.startsWith(C3P0_PACKAGE) && name.endsWith(C3P0_PROXY_SUFFIX);
+  }
+
+  @Override
+  public String toString() {
+    return "ignoredClassNames()";
+  }
+}
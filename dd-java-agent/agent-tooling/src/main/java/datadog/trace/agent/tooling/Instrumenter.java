@@ -5,6 +5,7 @@ import static net.bytebuddy.matcher.ElementMatchers.any;
 
 import datadog.trace.agent.tooling.context.FieldBackedProvider;
 import datadog.trace.agent.tooling.context.InstrumentationContextProvider;
+import datadog.trace.agent.tooling.muzzle.MuzzleCache;
 import datadog.trace.agent.tooling.muzzle.Reference;
 import datadog.trace.agent.tooling.muzzle.ReferenceMatcher;
 import datadog.trace.api.Config;
@@ -114,6 +115,18 @@ public interface Instrumenter {
           final JavaModule module,
           final Class<?> classBeingRedefined,
           final ProtectionDomain protectionDomain) {
+        final String instrumentation = Instrumenter.Default.this.getClass().getName();
+        // Known from a previous run of the application
+        final Boolean cached = MuzzleCache.get().matches(instrumentation, classLoader);
+        if (cached != null) {
+          log.debug(
+              "Instrumentation {}: {} -- {} on {}",
+              cached ? "applied from muzzle cache" : "muzzled from muzzle cache",
+              instrumentationPrimaryName,
+              instrumentation,
+              classLoader);
+          return cached;
+        }
         /* Optimization: calling getInstrumentationMuzzle() inside this method
          * prevents unnecessary loading of muzzle references during agentBuilder
          * setup.
@@ -122,6 +135,7 @@ public interface Instrumenter {
         if (null != muzzle) {
           final List<Reference.Mismatch> mismatches =
               muzzle.getMismatchedReferenceSources(classLoader);
+          MuzzleCache.get().record(instrumentation, classLoader, mismatches.size() == 0);
           if (mismatches.size() > 0) {
             if (log.isDebugEnabled()) {
               log.debug(
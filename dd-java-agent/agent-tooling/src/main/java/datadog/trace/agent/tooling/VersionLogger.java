@@ -20,8 +20,7 @@ public class VersionLogger {
         getVersionString(Utils.getAgentClassLoader().getResourceAsStream("dd-trace-api.version")));
     log.info(
         "signalfx-java-agent - version: {}",
-        getVersionString(
-            ClassLoader.getSystemClassLoader().getResourceAsStream("dd-java-agent.version")));
+        getAgentVersion());
     log.debug(
         "Running on Java {}. JVM {} - {} - {}",
         System.getProperty("java.version"),
@@ -30,6 +29,12 @@ public class VersionLogger {
         System.getProperty("java.vm.version"));
   }
 
+  /** @return the version of the agent, "unknown" if it can't be read */
+  public static String getAgentVersion() {
+    return getVersionString(
+        ClassLoader.getSystemClassLoader().getResourceAsStream("dd-java-agent.version"));
+  }
+
   private static String getVersionString(InputStream stream) {
     String v;
     try {
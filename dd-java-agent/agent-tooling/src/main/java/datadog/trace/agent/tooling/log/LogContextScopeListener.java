@@ -1,47 +1,94 @@
 package datadog.trace.agent.tooling.log;
 
 import datadog.trace.api.CorrelationIdentifier;
+import datadog.trace.api.GlobalTracer;
+import datadog.trace.api.Tracer;
 import datadog.trace.context.ScopeListener;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * A scope listener that receives the MDC/ThreadContext put and receive methods and update the trace
  * and span reference anytime a new scope is activated or closed.
+ *
+ * <p>The ids written on each thread are remembered, so that activating a scope of the span already
+ * in the log context doesn't write it again. They are forgotten when a scope is closed, as the ids
+ * are removed then, so the ids of a scope active again are always written back.
  */
 @Slf4j
 public class LogContextScopeListener implements ScopeListener {
+  private static final MethodType PUT_TYPE =
+      MethodType.methodType(void.class, String.class, String.class);
+  private static final MethodType REMOVE_TYPE = MethodType.methodType(void.class, String.class);
 
-  /** A reference to the log context method that sets a new attribute in the log context */
-  private final Method putMethod;
+  /** A handle on the log context method that sets a new attribute in the log context */
+  private final MethodHandle putMethod;
 
-  /** A reference to the log context method that removes an attribute from the log context */
-  private final Method removeMethod;
+  /** A handle on the log context method that removes an attribute from the log context */
+  private final MethodHandle removeMethod;
+
+  /** The ids last written to the log context of each thread */
+  private final ThreadLocal<WrittenIds> writtenIds = new ThreadLocal<>();
 
   public LogContextScopeListener(final Method putMethod, final Method removeMethod) {
-    this.putMethod = putMethod;
-    this.removeMethod = removeMethod;
+    try {
+      final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+      this.putMethod = lookup.unreflect(putMethod).asType(PUT_TYPE);
+      this.removeMethod = lookup.unreflect(removeMethod).asType(REMOVE_TYPE);
+    } catch (final IllegalAccessException e) {
+      throw new IllegalArgumentException(e);
+    }
   }
 
   @Override
   public void afterScopeActivated() {
+    final Tracer tracer = GlobalTracer.get();
+    final String traceId = tracer.getTraceId();
+    final String spanId = tracer.getSpanId();
+    WrittenIds written = writtenIds.get();
+    if (written == null) {
+      written = new WrittenIds();
+      writtenIds.set(written);
+    }
+    // Ids are kept as strings by the span, so the same span gives the same instances
+    if (spanId == written.spanId && traceId == written.traceId) {
+      return;
+    }
     try {
-      putMethod.invoke(
-          null, CorrelationIdentifier.getTraceIdKey(), CorrelationIdentifier.getTraceId());
-      putMethod.invoke(
-          null, CorrelationIdentifier.getSpanIdKey(), CorrelationIdentifier.getSpanId());
-    } catch (final Exception e) {
+      putMethod.invokeExact(CorrelationIdentifier.getTraceIdKey(), traceId);
+      putMethod.invokeExact(CorrelationIdentifier.getSpanIdKey(), spanId);
+      written.traceId = traceId;
+      written.spanId = spanId;
+    } catch (final Throwable e) {
+      written.clear();
       log.debug("Exception setting log context context", e);
     }
   }
 
   @Override
   public void afterScopeClosed() {
+    final WrittenIds written = writtenIds.get();
+    if (written != null) {
+      written.clear();
+    }
     try {
-      removeMethod.invoke(null, CorrelationIdentifier.getTraceIdKey());
-      removeMethod.invoke(null, CorrelationIdentifier.getSpanIdKey());
-    } catch (final Exception e) {
+      removeMethod.invokeExact(CorrelationIdentifier.getTraceIdKey());
+      removeMethod.invokeExact(CorrelationIdentifier.getSpanIdKey());
+    } catch (final Throwable e) {
       log.debug("Exception removing log context context", e);
     }
   }
+
+  private static final class WrittenIds {
+    private String traceId;
+    private String spanId;
+
+    private void clear() {
+      traceId = null;
+      spanId = null;
+    }
+  }
 }
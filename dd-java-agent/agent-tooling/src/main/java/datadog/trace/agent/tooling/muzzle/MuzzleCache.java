@@ -0,0 +1,274 @@
+package datadog.trace.agent.tooling.muzzle;
+
+import static datadog.trace.bootstrap.WeakMap.Provider.newWeakMap;
+
+import datadog.trace.agent.tooling.VersionLogger;
+import datadog.trace.api.Config;
+import datadog.trace.bootstrap.WeakMap;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps which instrumentations passed muzzle on which class loaders across restarts, so that the
+ * references of the instrumentations don't have to be resolved again on each start.
+ *
+ * <p>Class loaders are identified by a fingerprint of the jars they and their parents load from:
+ * their paths, sizes and modification times. Class loaders that can't be fingerprinted, loading
+ * from directories or from other than files for instance, aren't cached. Results are kept in a
+ * file per agent version in {@link Config#getMuzzleCacheDirectory()}, written when the JVM shuts
+ * down.
+ */
+@Slf4j
+public final class MuzzleCache {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  /** Fingerprint of the class loaders that can't be cached */
+  private static final String NONE = "";
+
+  private static final MuzzleCache INSTANCE = create(Config.get().getMuzzleCacheDirectory());
+
+  /** The file the results are kept in, null when not kept */
+  private final File file;
+  /** Whether instrumentations matched, by instrumentation by class loader fingerprint */
+  private final ConcurrentMap<String, ConcurrentMap<String, Boolean>> results =
+      new ConcurrentHashMap<>();
+
+  private final WeakMap<ClassLoader, String> fingerprints = newWeakMap();
+  private final String bootstrapFingerprint =
+      digest(
+          "bootstrap "
+              + System.getProperty("java.home")
+              + " "
+              + System.getProperty("java.vm.version"));
+
+  private volatile boolean modified = false;
+
+  public static MuzzleCache get() {
+    return INSTANCE;
+  }
+
+  static MuzzleCache create(final String directory) {
+    if (directory == null) {
+      return new MuzzleCache(null);
+    }
+    final String version = VersionLogger.getAgentVersion();
+    final MuzzleCache cache =
+        new MuzzleCache(new File(directory, "muzzle-" + digest(version) + ".properties"));
+    cache.load();
+    try {
+      Runtime.getRuntime().addShutdownHook(new ShutdownHook(cache));
+    } catch (final IllegalStateException ex) {
+      // The JVM is already shutting down.
+    }
+    return cache;
+  }
+
+  MuzzleCache(final File file) {
+    this.file = file;
+  }
+
+  /**
+   * @param instrumentation Name of the instrumentation
+   * @param loader Classloader to look up (or null for bootstrap)
+   * @return whether the instrumentation passed muzzle on the class loader, null when not known
+   */
+  public Boolean matches(final String instrumentation, final ClassLoader loader) {
+    if (file == null) {
+      return null;
+    }
+    final String fingerprint = fingerprint(loader);
+    if (NONE.equals(fingerprint)) {
+      return null;
+    }
+    final Map<String, Boolean> matches = results.get(fingerprint);
+    return matches == null ? null : matches.get(instrumentation);
+  }
+
+  /** Records whether the instrumentation passed muzzle on the class loader. */
+  public void record(final String instrumentation, final ClassLoader loader, final boolean match) {
+    if (file == null) {
+      return;
+    }
+    final String fingerprint = fingerprint(loader);
+    if (NONE.equals(fingerprint)) {
+      return;
+    }
+    matchesFor(fingerprint).put(instrumentation, match);
+    modified = true;
+  }
+
+  private ConcurrentMap<String, Boolean> matchesFor(final String fingerprint) {
+    ConcurrentMap<String, Boolean> matches = results.get(fingerprint);
+    if (matches == null) {
+      matches = new ConcurrentHashMap<>();
+      final ConcurrentMap<String, Boolean> existing = results.putIfAbsent(fingerprint, matches);
+      if (existing != null) {
+        matches = existing;
+      }
+    }
+    return matches;
+  }
+
+  /** @return the fingerprint of the class loader, {@link #NONE} if it can't be cached */
+  String fingerprint(final ClassLoader loader) {
+    if (loader == null) {
+      return bootstrapFingerprint;
+    }
+    String fingerprint = fingerprints.get(loader);
+    if (fingerprint == null) {
+      fingerprint = computeFingerprint(loader);
+      fingerprints.put(loader, fingerprint);
+    }
+    return fingerprint;
+  }
+
+  private String computeFingerprint(final ClassLoader loader) {
+    final String parent = fingerprint(loader.getParent());
+    if (NONE.equals(parent)) {
+      return NONE;
+    }
+    final StringBuilder identity = new StringBuilder(loader.getClass().getName());
+    identity.append(' ').append(parent);
+
+    final ClassLoader system = ClassLoader.getSystemClassLoader();
+    if (loader instanceof URLClassLoader) {
+      for (final URL url : ((URLClassLoader) loader).getURLs()) {
+        if (!"file".equals(url.getProtocol())) {
+          return NONE;
+        }
+        try {
+          if (!appendJar(identity, new File(url.toURI()))) {
+            return NONE;
+          }
+        } catch (final URISyntaxException | IllegalArgumentException e) {
+          return NONE;
+        }
+      }
+    } else if (loader == system) {
+      // Not a URLClassLoader since Java 9
+      for (final String path : System.getProperty("java.class.path").split(File.pathSeparator)) {
+        if (!path.isEmpty() && !appendJar(identity, new File(path))) {
+          return NONE;
+        }
+      }
+    } else if (loader != system.getParent()) {
+      // The platform class loader only loads from the JDK, any other could load from anywhere
+      return NONE;
+    }
+    return digest(identity.toString());
+  }
+
+  private static boolean appendJar(final StringBuilder identity, final File jar) {
+    if (!jar.isFile()) {
+      // Classes of directories could change without the directory changing
+      return false;
+    }
+    identity
+        .append(' ')
+        .append(jar.getAbsolutePath())
+        .append(':')
+        .append(jar.length())
+        .append(':')
+        .append(jar.lastModified());
+    return true;
+  }
+
+  private static String digest(final String value) {
+    try {
+      final byte[] digest = MessageDigest.getInstance("SHA-1").digest(value.getBytes(UTF_8));
+      final StringBuilder hex = new StringBuilder(digest.length * 2);
+      for (final byte b : digest) {
+        hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+      }
+      return hex.toString();
+    } catch (final NoSuchAlgorithmException e) {
+      // Every JVM has SHA-1
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /** Entries are "fingerprint instrumentation=true|false". */
+  void load() {
+    if (!file.isFile()) {
+      return;
+    }
+    final Properties properties = new Properties();
+    try (final InputStream in = new FileInputStream(file)) {
+      properties.load(in);
+    } catch (final IOException e) {
+      log.debug("Failed to read muzzle cache {}", file, e);
+      return;
+    }
+    for (final String key : properties.stringPropertyNames()) {
+      final int separator = key.indexOf(' ');
+      if (separator > 0) {
+        matchesFor(key.substring(0, separator))
+            .put(key.substring(separator + 1), Boolean.valueOf(properties.getProperty(key)));
+      }
+    }
+    log.debug("Loaded muzzle cache {}", file);
+  }
+
+  void save() {
+    if (file == null || !modified) {
+      return;
+    }
+    final Properties properties = new Properties();
+    for (final Map.Entry<String, ConcurrentMap<String, Boolean>> loader : results.entrySet()) {
+      for (final Map.Entry<String, Boolean> match : loader.getValue().entrySet()) {
+        properties.setProperty(
+            loader.getKey() + " " + match.getKey(), String.valueOf(match.getValue()));
+      }
+    }
+    // Written aside first so that concurrent starts never read half a file
+    File temp = null;
+    try {
+      file.getParentFile().mkdirs();
+      temp = File.createTempFile("muzzle", ".tmp", file.getParentFile());
+      try (final OutputStream out = new FileOutputStream(temp)) {
+        properties.store(out, null);
+      }
+      Files.move(
+          temp.toPath(),
+          file.toPath(),
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+      modified = false;
+    } catch (final IOException e) {
+      log.debug("Failed to write muzzle cache {}", file, e);
+      if (temp != null) {
+        temp.delete();
+      }
+    }
+  }
+
+  private static class ShutdownHook extends Thread {
+    private final MuzzleCache cache;
+
+    private ShutdownHook(final MuzzleCache cache) {
+      super("dd-muzzle-cache-shutdown-hook");
+      this.cache = cache;
+    }
+
+    @Override
+    public void run() {
+      cache.save();
+    }
+  }
+}
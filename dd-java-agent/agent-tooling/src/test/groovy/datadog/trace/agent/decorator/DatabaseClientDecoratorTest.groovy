@@ -78,6 +78,26 @@ class DatabaseClientDecoratorTest extends ClientDecoratorTest {
     "db-statement" | _
   }
 
+  def "test onStatement normalizes sql statements"() {
+    setup:
+    def decorator = newDecorator("test-service", sqlStatements)
+
+    when:
+    withConfigOverride(Config.DB_STATEMENT_NORMALIZE, "$normalize") {
+      decorator.onStatement(span, "SELECT * FROM t WHERE id IN (1, 2) AND name = 'x'")
+    }
+
+    then:
+    1 * span.setTag(Tags.DB_STATEMENT.key, expected)
+    0 * _
+
+    where:
+    normalize | sqlStatements | expected
+    false     | true          | "SELECT * FROM t WHERE id IN (1, 2) AND name = 'x'"
+    true      | false         | "SELECT * FROM t WHERE id IN (1, 2) AND name = 'x'"
+    true      | true          | "SELECT * FROM t WHERE id IN (?) AND name = ?"
+  }
+
   def "test assert null span"() {
     setup:
     def decorator = newDecorator()
@@ -102,7 +122,7 @@ class DatabaseClientDecoratorTest extends ClientDecoratorTest {
   }
 
   @Override
-  def newDecorator(String serviceName = "test-service") {
+  def newDecorator(String serviceName = "test-service", boolean sqlStatements = false) {
     return new DatabaseClientDecorator<Map>() {
       @Override
       protected String[] instrumentationNames() {
@@ -129,6 +149,11 @@ class DatabaseClientDecoratorTest extends ClientDecoratorTest {
         return "test-db"
       }
 
+      @Override
+      protected boolean sqlStatements() {
+        return sqlStatements
+      }
+
       @Override
       protected String dbUser(Map map) {
         return map.user
@@ -0,0 +1,49 @@
+package datadog.trace.agent.tooling
+
+import datadog.trace.util.test.DDSpecification
+
+class ClassNameTrieTest extends DDSpecification {
+
+  def trie = ClassNameTrie.builder()
+    .matchPrefix("com.example.")
+    .allowPrefix("com.example.api.")
+    .match("com.example.api.Internal")
+    .allow("com.example.Public")
+    .matchAll("com.example.generated.")
+    .allow("com.example.generated.Kept")
+    .build()
+
+  def "longest rule decides for #name"() {
+    expect:
+    trie.matches(name) == matches
+
+    where:
+    name                          | matches
+    ""                            | false
+    "com"                         | false
+    "com.example"                 | false
+    "com.example."                | true
+    "com.example.Service"         | true
+    "com.example.Public"          | false
+    "com.example.PublicService"   | true
+    "com.example.api.Client"      | false
+    "com.example.api.Internal"    | true
+    "com.example.api.Internals"   | false
+    "com.example.generated.Kept"  | true
+    "com.other.Service"           | false
+  }
+
+  def "matches win over exceptions for the same rule"() {
+    setup:
+    def trie = ClassNameTrie.builder()
+      .allowPrefix("com.example.")
+      .matchPrefix("com.example.")
+      .allow("com.example.Name")
+      .match("com.example.Name")
+      .build()
+
+    expect:
+    trie.matches("com.example.Other")
+    trie.matches("com.example.Name")
+  }
+}
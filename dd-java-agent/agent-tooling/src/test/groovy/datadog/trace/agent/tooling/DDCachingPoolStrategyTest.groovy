@@ -0,0 +1,174 @@
+package datadog.trace.agent.tooling
+
+import datadog.trace.util.gc.GCUtils
+import datadog.trace.util.test.DDSpecification
+import net.bytebuddy.agent.builder.AgentBuilder.PoolStrategy
+import net.bytebuddy.description.type.TypeDescription
+import net.bytebuddy.dynamic.ClassFileLocator
+import net.bytebuddy.pool.TypePool
+import spock.lang.Timeout
+
+import java.lang.ref.WeakReference
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicReference
+
+import static datadog.trace.agent.tooling.AgentTooling.CLEANER
+
+@Timeout(5)
+class DDCachingPoolStrategyTest extends DDSpecification {
+
+  def "test provider"() {
+    setup:
+    def strategy = new DDCachingPoolStrategy(CLEANER, 5000, 2, TimeUnit.MINUTES)
+    def provider = strategy.cacheProvider(loader)
+
+    expect:
+    strategy.approximateSize() == 0
+    provider.find(className) == null
+    provider.find(Object.name) == new TypePool.Resolution.Simple(TypeDescription.OBJECT)
+
+    when:
+    provider.register(className, new TypePool.Resolution.Simple(TypeDescription.VOID))
+
+    then:
+    strategy.approximateSize() == 1
+    provider.find(className) == new TypePool.Resolution.Simple(TypeDescription.VOID)
+    strategy.cacheProvider(loader).find(className) == new TypePool.Resolution.Simple(TypeDescription.VOID)
+
+    where:
+    className = "SomeClass"
+    loader = new URLClassLoader([] as URL[], (ClassLoader) null)
+  }
+
+  def "test loaders are kept apart"() {
+    setup:
+    def strategy = new DDCachingPoolStrategy(CLEANER, 5000, 2, TimeUnit.MINUTES)
+    def loader = new URLClassLoader([] as URL[], (ClassLoader) null)
+    def otherLoader = new URLClassLoader([] as URL[], (ClassLoader) null)
+
+    when:
+    strategy.cacheProvider(loader).register(className, new TypePool.Resolution.Simple(TypeDescription.VOID))
+    strategy.cacheProvider(otherLoader).register(className, new TypePool.Resolution.Simple(TypeDescription.OBJECT))
+
+    then:
+    strategy.approximateSize() == 2
+    strategy.cacheProvider(loader).find(className) == new TypePool.Resolution.Simple(TypeDescription.VOID)
+    strategy.cacheProvider(otherLoader).find(className) == new TypePool.Resolution.Simple(TypeDescription.OBJECT)
+    strategy.cacheProvider(ClassLoader.systemClassLoader).find(className) == null
+
+    where:
+    className = "SomeClass"
+  }
+
+  def "test racing loader references"() {
+    setup:
+    def strategy = new DDCachingPoolStrategy(CLEANER, 5000, 2, TimeUnit.MINUTES)
+    def loader = new URLClassLoader([] as URL[], (ClassLoader) null)
+    def loaderHash = System.identityHashCode(loader)
+    def cache = strategy.sharedResolutionCache
+    // As created by two threads both missing the reference of a new loader
+    def provider = new DDCachingPoolStrategy.SharedResolutionCacheAdapter(loaderHash, new WeakReference<ClassLoader>(loader), cache)
+    def otherProvider = new DDCachingPoolStrategy.SharedResolutionCacheAdapter(loaderHash, new WeakReference<ClassLoader>(loader), cache)
+
+    when:
+    provider.register(className, new TypePool.Resolution.Simple(TypeDescription.VOID))
+
+    then:
+    otherProvider.find(className) == new TypePool.Resolution.Simple(TypeDescription.VOID)
+    otherProvider.register(className, new TypePool.Resolution.Simple(TypeDescription.OBJECT)) == new TypePool.Resolution.Simple(TypeDescription.VOID)
+    strategy.approximateSize() == 1
+
+    where:
+    className = "SomeClass"
+  }
+
+  def "test timeout eviction"() {
+    setup:
+    def strategy = new DDCachingPoolStrategy(CLEANER, 5000, timeout, TimeUnit.MILLISECONDS)
+    def provider = strategy.cacheProvider(loader)
+    def resolutionRef = new AtomicReference<TypePool.Resolution>(new TypePool.Resolution.Simple(TypeDescription.VOID))
+    def weakRef = new WeakReference(resolutionRef.get())
+
+    when:
+    def lastAccess = System.nanoTime()
+    provider.register(className, resolutionRef.get())
+
+    then:
+    // Ensure continued access prevents expiration.
+    for (int i = 0; i < timeout + 10; i++) {
+      assert TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastAccess) < timeout: "test took too long on " + i
+      assert provider.find(className) != null
+      assert strategy.approximateSize() == 1
+      lastAccess = System.nanoTime()
+      Thread.sleep(1)
+    }
+
+    when:
+    Thread.sleep(timeout)
+
+    then:
+    provider.find(className) == null
+
+    when:
+    provider.register(className, resolutionRef.get())
+    resolutionRef.set(null)
+    GCUtils.awaitGC(weakRef)
+
+    then:
+    // Verify properly GC'd
+    provider.find(className) == null
+    weakRef.get() == null
+
+    where:
+    className = "SomeClass"
+    loader = new URLClassLoader([] as URL[], (ClassLoader) null)
+    timeout = 500 // Takes about 50 ms locally, adding an order of magnitude for CI.
+  }
+
+  def "test size limit"() {
+    setup:
+    def strategy = new DDCachingPoolStrategy(CLEANER, 5000, 2, TimeUnit.MINUTES)
+    def provider = strategy.cacheProvider(new URLClassLoader([] as URL[], (ClassLoader) null))
+    def typeDef = new TypePool.Resolution.Simple(TypeDescription.VOID)
+    for (int i = 0; i < 10000; i++) {
+      provider.register("ClassName$i", typeDef)
+    }
+
+    expect:
+    // Evicted by segment, so possibly a little below the limit
+    strategy.approximateSize() <= 5000
+    strategy.approximateSize() > 4000
+  }
+
+  def "test loaders are not retained"() {
+    setup:
+    def strategy = new DDCachingPoolStrategy(CLEANER, 5000, 2, TimeUnit.MINUTES)
+    def loader = new URLClassLoader([] as URL[], (ClassLoader) null)
+    def loaderRef = new WeakReference(loader)
+    strategy.cacheProvider(loader).register(className, new TypePool.Resolution.Simple(TypeDescription.VOID))
+
+    when:
+    loader = null
+    GCUtils.awaitGC(loaderRef)
+
+    then:
+    loaderRef.get() == null
+    strategy.approximateSize() == 1
+
+    where:
+    className = "SomeClass"
+  }
+
+  def "test type pool"() {
+    setup:
+    def strategy = new DDCachingPoolStrategy(CLEANER, 5000, 2, TimeUnit.MINUTES)
+    def loader = DDCachingPoolStrategyTest.classLoader
+
+    when:
+    def typePool = strategy.typePool(ClassFileLocator.ForClassLoader.of(loader), loader)
+
+    then:
+    typePool.describe(DDCachingPoolStrategy.name).resolve().interfaces*.asErasure()*.name == [PoolStrategy.name]
+    strategy.cacheProvider(loader).find(DDCachingPoolStrategy.name) != null
+  }
+}
@@ -0,0 +1,216 @@
+package datadog.trace.agent.tooling
+
+import datadog.opentracing.DDTracer
+import datadog.trace.api.Config
+import datadog.trace.common.writer.ListWriter
+import datadog.trace.instrumentation.api.AgentPropagation
+import datadog.trace.util.test.DDSpecification
+import spock.lang.Shared
+
+class DDTracerAPITest extends DDSpecification {
+
+  @Shared
+  def writer = new ListWriter()
+  @Shared
+  def tracer = new DDTracer(Config.get(), writer)
+  @Shared
+  def api = new DDTracerAPI(tracer)
+
+  def setup() {
+    writer.start()
+  }
+
+  def "span is its own context and scope"() {
+    when:
+    def span = api.startSpan("test")
+    def scope = api.activateSpan(span, false)
+
+    then:
+    span.context().is(span)
+    scope.is(span)
+    scope.span().is(span)
+    api.activeSpan().getSpanName() == "test"
+    tracer.activeSpan().operationName == "test"
+
+    when:
+    scope.close()
+    span.finish()
+    writer.waitForTraces(1)
+
+    then:
+    api.activeSpan() == null
+    writer.firstTrace().size() == 1
+  }
+
+  def "activating an activated span gives another scope"() {
+    setup:
+    def span = api.startSpan("test")
+    def first = api.activateSpan(span, false)
+
+    when:
+    def second = api.activateSpan(span, false)
+
+    then:
+    !second.is(first)
+    second.span().is(span)
+
+    when:
+    second.close()
+
+    then:
+    api.activeSpan().getSpanName() == "test"
+
+    when:
+    first.close()
+
+    then:
+    api.activeSpan() == null
+
+    when:
+    def third = api.activateSpan(span, true)
+
+    then:
+    third.is(span)
+
+    when:
+    third.close()
+    writer.waitForTraces(1)
+
+    then:
+    writer.firstTrace().size() == 1
+  }
+
+  def "child spans and error tags"() {
+    setup:
+    def parent = api.startSpan("parent")
+    def scope = api.activateSpan(parent, false)
+
+    when:
+    def child = api.startSpan("child", parent.context())
+    child.setTag("int", 1).setTag("string", "value").setError(true)
+    child.addThrowable(new IllegalStateException("failed"))
+    child.finish()
+    scope.close()
+    parent.finish()
+    writer.waitForTraces(1)
+
+    then:
+    def trace = writer.firstTrace()
+    def parentSpan = trace.find { it.operationName == "parent" }
+    def childSpan = trace.find { it.operationName == "child" }
+    childSpan.parentId == parentSpan.spanId
+    childSpan.traceId == parentSpan.traceId
+    childSpan.tags["int"] == 1
+    childSpan.tags["string"] == "value"
+    childSpan.tags["error.type"] == IllegalStateException.name
+    childSpan.isError()
+    child.getLocalRootSpan().getSpanName() == "parent"
+    parent.getLocalRootSpan().is(parent)
+  }
+
+  def "inject and extract"() {
+    setup:
+    def parent = api.startSpan("parent")
+    def headers = [:]
+
+    when:
+    api.propagate().inject(parent, headers, MapSetter.INSTANCE)
+    def child = api.startSpan("child", api.propagate().extract(headers, MapGetter.INSTANCE))
+    child.finish()
+    parent.finish()
+    writer.waitForTraces(2)
+
+    then:
+    !headers.isEmpty()
+    def parentSpan = writer.find { it[0].operationName == "parent" }[0]
+    def childSpan = writer.find { it[0].operationName == "child" }[0]
+    childSpan.parentId == parentSpan.spanId
+    childSpan.traceId == parentSpan.traceId
+  }
+
+  def "extract looks headers up by name with a case insensitive getter"() {
+    setup:
+    def parent = api.startSpan("parent")
+    def injected = [:]
+    api.propagate().inject(parent, injected, MapSetter.INSTANCE)
+    def headers = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER)
+    injected.each { key, value -> headers.put(key.toUpperCase(), value) }
+    headers.put("Host", "localhost")
+
+    when:
+    def child = api.startSpan("child", api.propagate().extract(headers, CaseInsensitiveMapGetter.INSTANCE))
+    child.finish()
+    parent.finish()
+    writer.waitForTraces(2)
+
+    then:
+    !tracer.extractedHeaders.hasPrefixes()
+    def parentSpan = writer.find { it[0].operationName == "parent" }[0]
+    def childSpan = writer.find { it[0].operationName == "child" }[0]
+    childSpan.parentId == parentSpan.spanId
+    childSpan.traceId == parentSpan.traceId
+  }
+
+  def "extracting nothing starts a new trace"() {
+    when:
+    def span = api.startSpan("test", api.propagate().extract([:], MapGetter.INSTANCE))
+    span.finish()
+    writer.waitForTraces(1)
+
+    then:
+    writer.firstTrace()[0].isRootSpan()
+  }
+
+  def "noop span is handled"() {
+    setup:
+    def noop = api.noopSpan()
+
+    when:
+    def span = api.startSpan("test", noop.context())
+    def scope = api.activateSpan(noop, false)
+    scope.close()
+    span.finish()
+
+    then:
+    span != null
+    scope.span().is(noop)
+    noThrown(Exception)
+  }
+
+  enum MapSetter implements AgentPropagation.Setter<Map<String, String>> {
+    INSTANCE
+
+    @Override
+    void set(Map<String, String> carrier, String key, String value) {
+      carrier.put(key, value)
+    }
+  }
+
+  enum CaseInsensitiveMapGetter implements AgentPropagation.CaseInsensitiveGetter<Map<String, String>> {
+    INSTANCE
+
+    @Override
+    Iterable<String> keys(Map<String, String> carrier) {
+      throw new UnsupportedOperationException("headers should be looked up by name")
+    }
+
+    @Override
+    String get(Map<String, String> carrier, String key) {
+      return carrier.get(key)
+    }
+  }
+
+  enum MapGetter implements AgentPropagation.Getter<Map<String, String>> {
+    INSTANCE
+
+    @Override
+    Iterable<String> keys(Map<String, String> carrier) {
+      return carrier.keySet()
+    }
+
+    @Override
+    String get(Map<String, String> carrier, String key) {
+      return carrier.get(key)
+    }
+  }
+}
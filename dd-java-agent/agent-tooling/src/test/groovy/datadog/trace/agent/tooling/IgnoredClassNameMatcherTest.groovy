@@ -0,0 +1,41 @@
+package datadog.trace.agent.tooling
+
+import datadog.trace.util.test.DDSpecification
+
+class IgnoredClassNameMatcherTest extends DDSpecification {
+
+  def "#name is ignored: #ignored"() {
+    setup:
+    def matcher = IgnoredClassNameMatcher.withExcludedClasses(["com.excluded.*", " com.example.Excluded ", "java.util.concurrent.Excluded*"])
+
+    expect:
+    matcher.isIgnored(name) == ignored
+
+    where:
+    name                                                                      | ignored
+    "com.example.App"                                                         | false
+    "com.example.Excluded"                                                    | true
+    "com.example.ExcludedNot"                                                 | false
+    "com.excluded.Anything"                                                   | true
+    "datadog.trace.api.Trace"                                                 | true
+    "datadog.trace.bootstrap.instrumentation.java.concurrent.RunnableWrapper" | false
+    "datadog.opentracing.DDTracer"                                            | true
+    "java.lang.String"                                                        | true
+    "java.net.URL"                                                            | false
+    "java.util.concurrent.ThreadPoolExecutor"                                 | false
+    "java.util.concurrent.ExcludedExecutor"                                   | true
+    "java.util.logging.Logger"                                                | false
+    "java.util.logging.LogManager\$Cleaner"                                   | true
+    "com.sun.jersey.api.client.Client"                                        | false
+    "com.sun.proxy.\$Proxy1"                                                  | true
+    "sun.net.www.protocol.http.HttpURLConnection"                             | false
+    "sun.net.www.http.HttpClient"                                             | false
+    "sun.misc.Unsafe"                                                         | true
+    "org.slf4j.MDC"                                                           | false
+    "org.slf4j.LoggerFactory"                                                 | true
+    "com.example.App\$\$EnhancerByCGLIB\$\$1234"                              | true
+    "org.objectweb.asm.ClassReader"                                           | true
+    "com.mchange.v2.c3p0.impl.NewProxyConnection"                             | false
+    "com.mchange.v2.c3p0.impl.C3P0PooledConnectionProxy"                      | true
+  }
+}
@@ -0,0 +1,88 @@
+package datadog.trace.agent.tooling.muzzle
+
+import datadog.trace.util.test.DDSpecification
+import spock.lang.Shared
+
+import java.nio.file.Files
+
+class MuzzleCacheTest extends DDSpecification {
+
+  @Shared
+  def directory = Files.createTempDirectory("muzzle-cache-test").toFile()
+
+  def cleanupSpec() {
+    directory.deleteDir()
+  }
+
+  def jar(String name, String content) {
+    def jar = new File(directory, name)
+    jar.text = content
+    return jar
+  }
+
+  def "disabled cache knows nothing"() {
+    setup:
+    def cache = new MuzzleCache(null)
+
+    when:
+    cache.record("some.Instrumentation", null, true)
+
+    then:
+    cache.matches("some.Instrumentation", null) == null
+  }
+
+  def "results are kept across restarts"() {
+    setup:
+    def file = new File(directory, "restarts.properties")
+    def loader = new URLClassLoader([jar("app.jar", "app").toURI().toURL()] as URL[], (ClassLoader) null)
+    def cache = new MuzzleCache(file)
+
+    when:
+    cache.record("matching.Instrumentation", loader, true)
+    cache.record("muzzled.Instrumentation", loader, false)
+    cache.record("bootstrap.Instrumentation", null, true)
+    cache.save()
+    def restarted = new MuzzleCache(file)
+    restarted.load()
+    def otherLoader = new URLClassLoader(loader.getURLs(), (ClassLoader) null)
+
+    then:
+    restarted.matches("matching.Instrumentation", otherLoader) == true
+    restarted.matches("muzzled.Instrumentation", otherLoader) == false
+    restarted.matches("bootstrap.Instrumentation", null) == true
+    restarted.matches("other.Instrumentation", otherLoader) == null
+  }
+
+  def "class loaders are identified by their jars"() {
+    setup:
+    def cache = new MuzzleCache(new File(directory, "identity.properties"))
+    def jar = jar("lib.jar", "lib")
+    def loader = new URLClassLoader([jar.toURI().toURL()] as URL[], (ClassLoader) null)
+    cache.record("some.Instrumentation", loader, true)
+
+    when:
+    jar.text = "lib upgraded"
+    def upgraded = new URLClassLoader([jar.toURI().toURL()] as URL[], (ClassLoader) null)
+    def child = new URLClassLoader([] as URL[], loader)
+
+    then:
+    cache.matches("some.Instrumentation", upgraded) == null
+    cache.matches("some.Instrumentation", child) == null
+    cache.fingerprint(child) != cache.fingerprint(loader)
+  }
+
+  def "class loaders of directories are not cached"() {
+    setup:
+    def cache = new MuzzleCache(new File(directory, "directories.properties"))
+    def loader = new URLClassLoader([directory.toURI().toURL()] as URL[], (ClassLoader) null)
+    def child = new URLClassLoader([jar("child.jar", "child").toURI().toURL()] as URL[], loader)
+
+    when:
+    cache.record("some.Instrumentation", loader, true)
+    cache.record("some.Instrumentation", child, true)
+
+    then:
+    cache.matches("some.Instrumentation", loader) == null
+    cache.matches("some.Instrumentation", child) == null
+  }
+}
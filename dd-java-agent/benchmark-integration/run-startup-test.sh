@@ -0,0 +1,97 @@
+#!/usr/bin/env bash
+
+# A script for measuring a server's time to first request with or without a java agent,
+# and with or without the agent's muzzle cache.
+test_csv_file=/tmp/startup_results.csv
+server_output=/tmp/server_output.txt
+server_package=$1
+agent_jars="${@:2}"
+test_runs=${test_runs:-5}
+test_url=${test_url:-http://localhost:8080/work}
+server_pid=""
+if [[ "$server_package" = "" ]]; then
+    echo "usage: ./run-startup-test.sh path-to-server-jar path-to-agent1 path-to-agent2..."
+    echo ""
+    echo "path-to-server-jar : Must be a jar which creates an http server on local port 8080 when started."
+    echo "path-to-agent*     : Each must be a javaagent jar, or NoAgent."
+    echo ""
+    echo "Each agent is measured without, then with, a muzzle cache (dd.muzzle.cache.directory)."
+    echo "The cache is populated by a first unmeasured start."
+    echo ""
+    echo "Example: This will measure the startup of myserver.jar without an agent as a baseline, then with myagent-1.0.jar."
+    echo "  ./run-startup-test.sh /tmp/myserver.jar NoAgent /tmp/myagent-1.0.jar"
+    echo ""
+    echo "Test results are saved to $test_csv_file"
+    exit 1
+fi
+
+function now_ms {
+    perl -MTime::HiRes=time -e 'printf "%d\n", time * 1000'
+}
+
+# Start up the server, block until it answers its first request
+# and echo out how long that took in milliseconds
+function time_to_first_request {
+    java_args="$1"
+    start=$(now_ms)
+    java $java_args -Xms256m -Xmx256m -jar $server_package > $server_output 2>&1 &
+    server_pid=$!
+    until curl -s -o /dev/null $test_url; do
+        sleep 0.05
+    done
+    echo $(( $(now_ms) - start ))
+    stop_server
+}
+
+# Send a kill signal to the running server
+# and block until the server is stopped
+function stop_server {
+    kill $server_pid
+    wait $server_pid 2>/dev/null
+    server_pid=""
+    rm -f $server_output
+}
+
+# Echo out the average time to first request over the runs
+function measure {
+    java_args="$1"
+    total=0
+    for run in $(seq $test_runs); do
+        time_ms=$(time_to_first_request "$java_args")
+        echo "  run $run: ${time_ms}ms" >&2
+        total=$(( total + time_ms ))
+    done
+    echo $(( total / test_runs ))
+}
+
+trap '[ "$server_pid" != "" ] && stop_server; exit' SIGINT SIGTERM
+echo "Client Version,No Cache (ms),Muzzle Cache (ms)" > $test_csv_file
+
+for agent_jar in $agent_jars; do
+    echo "----Testing agent $agent_jar----"
+    if [ "$agent_jar" == "NoAgent" ]; then
+        no_cache=$(measure "")
+        echo "NoAgent,$no_cache,$no_cache" >> $test_csv_file
+    else
+        agent_version=$(java -jar $agent_jar 2>/dev/null)
+        javaagent_arg="-javaagent:$agent_jar -Ddatadog.slf4j.simpleLogger.defaultLogLevel=off -Ddd.writer.type=LoggingWriter -Ddd.service.name=perf-test-app"
+
+        echo "--Without muzzle cache--"
+        no_cache=$(measure "$javaagent_arg")
+
+        cache_dir=$(mktemp -d)
+        echo "--Populating muzzle cache in $cache_dir--"
+        time_to_first_request "$javaagent_arg -Ddd.muzzle.cache.directory=$cache_dir" > /dev/null
+        echo "--With muzzle cache--"
+        cached=$(measure "$javaagent_arg -Ddd.muzzle.cache.directory=$cache_dir")
+        rm -rf $cache_dir
+
+        echo "$agent_version,$no_cache,$cached" >> $test_csv_file
+    fi
+    echo "----/Testing agent $agent_jar----"
+    echo ""
+done
+
+echo ""
+cat $test_csv_file
+echo "DONE. Test results saved to $test_csv_file"
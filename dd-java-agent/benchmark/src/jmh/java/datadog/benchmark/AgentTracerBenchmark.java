@@ -0,0 +1,129 @@
+package datadog.benchmark;
+
+import datadog.opentracing.DDSpan;
+import datadog.opentracing.DDTracer;
+import datadog.trace.agent.tooling.DDTracerAPI;
+import datadog.trace.agent.tooling.OpenTracing32;
+import datadog.trace.api.Config;
+import datadog.trace.common.writer.Writer;
+import datadog.trace.instrumentation.api.AgentPropagation;
+import datadog.trace.instrumentation.api.AgentScope;
+import datadog.trace.instrumentation.api.AgentSpan;
+import datadog.trace.instrumentation.api.AgentTracer.TracerAPI;
+import io.opentracing.util.GlobalTracer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares the {@link TracerAPI} implementations on the span lifecycle of the instrumentations.
+ * Allocations per operation are reported with {@code -prof gc}, as gc.alloc.rate.norm.
+ */
+public class AgentTracerBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class BenchmarkState {
+    @Param({"opentracing32", "native"})
+    String api;
+
+    TracerAPI tracer;
+    final Map<String, String> headers = new HashMap<>();
+
+    @Setup
+    public void setup() {
+      final DDTracer ddTracer = new DDTracer(Config.get(), new NoopWriter());
+      if (!GlobalTracer.isRegistered()) {
+        GlobalTracer.register(ddTracer);
+      }
+      tracer = "native".equals(api) ? new DDTracerAPI(ddTracer) : new OpenTracing32();
+
+      headers.put("host", "localhost:8080");
+      headers.put("user-agent", "benchmark");
+      headers.put("accept", "*/*");
+      final AgentSpan upstream = tracer.startSpan("upstream");
+      tracer.propagate().inject(upstream, headers, MapSetter.INSTANCE);
+      upstream.finish();
+    }
+  }
+
+  /** A request continuing an upstream trace, as servlet instrumentation would. */
+  @Benchmark
+  public AgentSpan serverRequest(final BenchmarkState state) {
+    final TracerAPI tracer = state.tracer;
+    final AgentSpan.Context parent = tracer.propagate().extract(state.headers, MapGetter.INSTANCE);
+    final AgentSpan span = tracer.startSpan("servlet.request", parent);
+    span.setTag("span.kind", "server");
+    span.setTag("component", "java-web-servlet");
+    span.setTag("http.method", "GET");
+    span.setTag("http.url", "http://localhost:8080/users/?");
+    final AgentScope scope = tracer.activateSpan(span, false);
+    scope.setAsyncPropagation(true);
+    span.setTag("http.status_code", 200);
+    scope.close();
+    span.finish();
+    return span;
+  }
+
+  /** A query within a request, as JDBC instrumentation would. */
+  @Benchmark
+  public AgentSpan clientQuery(final BenchmarkState state) {
+    final TracerAPI tracer = state.tracer;
+    final AgentSpan request = tracer.startSpan("servlet.request");
+    final AgentScope requestScope = tracer.activateSpan(request, false);
+
+    final AgentSpan span = tracer.startSpan("database.query", tracer.activeSpan().context());
+    span.setTag("span.kind", "client");
+    span.setTag("component", "java-jdbc-prepared_statement");
+    span.setTag("db.type", "postgresql");
+    span.setTag("db.statement", "SELECT * FROM users WHERE id = ?");
+    span.setTag("peer.port", 5432);
+    final AgentScope scope = tracer.activateSpan(span, true);
+    scope.close();
+
+    requestScope.close();
+    request.finish();
+    return span;
+  }
+
+  private static final class NoopWriter implements Writer {
+    @Override
+    public void write(final List<DDSpan> trace) {}
+
+    @Override
+    public void start() {}
+
+    @Override
+    public void close() {}
+
+    @Override
+    public void incrementTraceCount() {}
+  }
+
+  private enum MapSetter implements AgentPropagation.Setter<Map<String, String>> {
+    INSTANCE;
+
+    @Override
+    public void set(final Map<String, String> carrier, final String key, final String value) {
+      carrier.put(key, value);
+    }
+  }
+
+  private enum MapGetter implements AgentPropagation.Getter<Map<String, String>> {
+    INSTANCE;
+
+    @Override
+    public Iterable<String> keys(final Map<String, String> carrier) {
+      return carrier.keySet();
+    }
+
+    @Override
+    public String get(final Map<String, String> carrier, final String key) {
+      return carrier.get(key);
+    }
+  }
+}
@@ -0,0 +1,138 @@
+package datadog.benchmark;
+
+import static net.bytebuddy.matcher.ElementMatchers.nameContains;
+import static net.bytebuddy.matcher.ElementMatchers.nameMatches;
+import static net.bytebuddy.matcher.ElementMatchers.nameStartsWith;
+import static net.bytebuddy.matcher.ElementMatchers.named;
+import static net.bytebuddy.matcher.ElementMatchers.not;
+
+import datadog.trace.agent.tooling.IgnoredClassNameMatcher;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.matcher.ElementMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+public class IgnoredClassNameBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class BenchmarkState {
+    /** The classes of the benchmark class path and of the JDK, as loaded by an application */
+    private TypeDescription[] types;
+
+    private final ElementMatcher<TypeDescription> trie =
+        IgnoredClassNameMatcher.withExcludedClasses(Collections.<String>emptyList());
+
+    private final ElementMatcher<TypeDescription> chain = chainedMatchers();
+
+    private int next = 0;
+
+    @Setup
+    public void setup() throws IOException {
+      final List<TypeDescription> types = new ArrayList<>();
+      String classPath = System.getProperty("java.class.path");
+      if (System.getProperty("sun.boot.class.path") != null) {
+        classPath += File.pathSeparator + System.getProperty("sun.boot.class.path");
+      }
+      for (final String path : classPath.split(File.pathSeparator)) {
+        if (path.endsWith(".jar") && new File(path).isFile()) {
+          try (final ZipFile jar = new ZipFile(path)) {
+            final Enumeration<? extends ZipEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+              final String entry = entries.nextElement().getName();
+              if (entry.endsWith(".class")) {
+                final String name = entry.substring(0, entry.length() - 6).replace('/', '.');
+                types.add(new TypeDescription.Latent(name, 0, TypeDescription.Generic.OBJECT));
+              }
+            }
+          }
+        }
+      }
+      Collections.shuffle(types, new Random(42));
+      this.types = types.toArray(new TypeDescription[0]);
+    }
+
+    TypeDescription nextType() {
+      if (++next == types.length) {
+        next = 0;
+      }
+      return types[next];
+    }
+  }
+
+  @Benchmark
+  public boolean testTrie(final BenchmarkState state) {
+    return state.trie.matches(state.nextType());
+  }
+
+  /** The chain of name matchers the trie replaces */
+  @Benchmark
+  public boolean testChainedMatchers(final BenchmarkState state) {
+    return state.chain.matches(state.nextType());
+  }
+
+  private static ElementMatcher<TypeDescription> chainedMatchers() {
+    return nameStartsWith("datadog.trace.")
+        .and(
+            not(
+                named("datadog.trace.bootstrap.instrumentation.java.concurrent.RunnableWrapper")
+                    .or(
+                        named(
+                            "datadog.trace.bootstrap.instrumentation.java.concurrent.CallableWrapper"))))
+        .or(nameStartsWith("datadog.opentracing."))
+        .or(nameStartsWith("datadog.slf4j."))
+        .or(nameStartsWith("net.bytebuddy."))
+        .or(
+            nameStartsWith("java.")
+                .and(
+                    not(
+                        named("java.net.URL")
+                            .or(named("java.net.HttpURLConnection"))
+                            .or(nameStartsWith("java.util.concurrent."))
+                            .or(
+                                nameStartsWith("java.util.logging.")
+                                    .and(not(named("java.util.logging.LogManager$Cleaner")))))))
+        .or(
+            nameStartsWith("com.sun.")
+                .and(
+                    not(
+                        nameStartsWith("com.sun.messaging.")
+                            .or(nameStartsWith("com.sun.jersey.api.client")))))
+        .or(
+            nameStartsWith("sun.")
+                .and(
+                    not(
+                        nameStartsWith("sun.net.www.protocol.")
+                            .or(named("sun.net.www.http.HttpClient")))))
+        .or(nameStartsWith("jdk."))
+        .or(nameStartsWith("org.aspectj."))
+        .or(nameStartsWith("org.groovy."))
+        .or(nameStartsWith("org.codehaus.groovy.macro."))
+        .or(nameStartsWith("com.intellij.rt.debugger."))
+        .or(nameStartsWith("com.p6spy."))
+        .or(nameStartsWith("com.newrelic."))
+        .or(nameStartsWith("com.dynatrace."))
+        .or(nameStartsWith("com.jloadtrace."))
+        .or(nameStartsWith("com.appdynamics."))
+        .or(nameStartsWith("com.singularity."))
+        .or(nameStartsWith("com.jinspired."))
+        .or(nameStartsWith("org.jinspired."))
+        .or(nameStartsWith("org.apache.log4j.").and(not(named("org.apache.log4j.MDC"))))
+        .or(nameStartsWith("org.slf4j.").and(not(named("org.slf4j.MDC"))))
+        .or(nameContains("$JaxbAccessor"))
+        .or(nameContains("CGLIB$$"))
+        .or(nameContains("javassist"))
+        .or(nameContains(".asm."))
+        .or(nameMatches("com\\.mchange\\.v2\\.c3p0\\..*Proxy"));
+  }
+}
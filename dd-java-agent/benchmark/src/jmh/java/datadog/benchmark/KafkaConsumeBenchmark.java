@@ -0,0 +1,131 @@
+package datadog.benchmark;
+
+import static datadog.trace.instrumentation.kafka_clients.KafkaDecorator.CONSUMER_DECORATE;
+
+import datadog.opentracing.DDSpan;
+import datadog.opentracing.DDTracer;
+import datadog.trace.agent.tooling.DDTracerAPI;
+import datadog.trace.api.Config;
+import datadog.trace.common.writer.Writer;
+import datadog.trace.instrumentation.api.AgentPropagation;
+import datadog.trace.instrumentation.api.AgentSpan;
+import datadog.trace.instrumentation.api.AgentTracer;
+import datadog.trace.instrumentation.kafka_clients.TracingIterator;
+import io.opentracing.util.GlobalTracer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Iterates a poll of 500 records from 4 partitions, each with the B3 headers of its producer, as
+ * the consumer instrumentation traces it: a span per record, one record in 10, or one span for the
+ * poll. The mode is read from the config, so each of them runs in its own fork. Run with {@code
+ * -prof gc} for the allocations.
+ */
+public class KafkaConsumeBenchmark {
+  private static final String TOPIC = "benchmark";
+  private static final int PARTITIONS = 4;
+  private static final int RECORDS = 500;
+
+  @State(Scope.Benchmark)
+  public static class BenchmarkState {
+    @Param({"record", "sampled", "batch"})
+    String mode;
+
+    ConsumerRecords<String, String> records;
+
+    @Setup
+    public void setup() {
+      // Before the config is first read
+      if ("sampled".equals(mode)) {
+        System.setProperty("signalfx." + Config.KAFKA_CONSUME_SAMPLE_INTERVAL, "10");
+      } else if ("batch".equals(mode)) {
+        System.setProperty("signalfx." + Config.KAFKA_CONSUME_BATCH, "true");
+      }
+      final DDTracer ddTracer = new DDTracer(Config.get(), new NoopWriter());
+      if (!GlobalTracer.isRegistered()) {
+        GlobalTracer.register(ddTracer);
+      }
+      AgentTracer.registerIfAbsent(new DDTracerAPI(ddTracer));
+
+      final Map<TopicPartition, List<ConsumerRecord<String, String>>> partitions = new HashMap<>();
+      for (int partition = 0; partition < PARTITIONS; partition++) {
+        final List<ConsumerRecord<String, String>> list = new ArrayList<>();
+        for (int offset = 0; offset < RECORDS / PARTITIONS; offset++) {
+          list.add(
+              new ConsumerRecord<>(
+                  TOPIC,
+                  partition,
+                  offset,
+                  0L,
+                  TimestampType.CREATE_TIME,
+                  0L,
+                  0,
+                  5,
+                  null,
+                  "value",
+                  producerHeaders()));
+        }
+        partitions.put(new TopicPartition(TOPIC, partition), list);
+      }
+      records = new ConsumerRecords<>(partitions);
+    }
+
+    private static Headers producerHeaders() {
+      final Headers headers = new RecordHeaders();
+      final AgentSpan producer = AgentTracer.startSpan("kafka.produce");
+      AgentTracer.propagate().inject(producer, headers, HeaderSetter.INSTANCE);
+      producer.finish();
+      return headers;
+    }
+  }
+
+  @Benchmark
+  public int poll(final BenchmarkState state) {
+    int consumed = 0;
+    final Iterator<ConsumerRecord> iterator =
+        new TracingIterator(
+            (Iterator) state.records.iterator(), "kafka.consume", CONSUMER_DECORATE);
+    while (iterator.hasNext()) {
+      consumed += iterator.next().serializedValueSize();
+    }
+    return consumed;
+  }
+
+  private enum HeaderSetter implements AgentPropagation.Setter<Headers> {
+    INSTANCE;
+
+    @Override
+    public void set(final Headers headers, final String key, final String value) {
+      headers.add(key, value.getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  private static final class NoopWriter implements Writer {
+    @Override
+    public void write(final List<DDSpan> trace) {}
+
+    @Override
+    public void start() {}
+
+    @Override
+    public void close() {}
+
+    @Override
+    public void incrementTraceCount() {}
+  }
+}
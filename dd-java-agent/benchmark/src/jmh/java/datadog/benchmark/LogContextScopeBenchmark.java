@@ -0,0 +1,88 @@
+package datadog.benchmark;
+
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import datadog.opentracing.DDSpan;
+import datadog.opentracing.DDTracer;
+import datadog.trace.agent.tooling.log.LogContextScopeListener;
+import datadog.trace.api.Config;
+import datadog.trace.api.GlobalTracer;
+import datadog.trace.common.writer.Writer;
+import io.opentracing.Scope;
+import io.opentracing.Span;
+import java.util.List;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Scope activations of an asynchronous request, which activates and closes the scopes of its spans
+ * many times, with and without log injection. Run with {@code -prof gc} for the allocations.
+ */
+public class LogContextScopeBenchmark {
+
+  /** The MDC of logback, which copies its map when written to after having been read */
+  private static final LogbackMDCAdapter MDC = new LogbackMDCAdapter();
+
+  public static void put(final String key, final String value) {
+    MDC.put(key, value);
+  }
+
+  public static void remove(final String key) {
+    MDC.remove(key);
+  }
+
+  @State(org.openjdk.jmh.annotations.Scope.Benchmark)
+  public static class BenchmarkState {
+    @Param({"false", "true"})
+    boolean logsInjection;
+
+    DDTracer tracer;
+
+    @Setup
+    public void setup() throws NoSuchMethodException {
+      tracer = new DDTracer(Config.get(), new NoopWriter());
+      GlobalTracer.registerIfAbsent(tracer);
+      if (logsInjection) {
+        tracer.addScopeListener(
+            new LogContextScopeListener(
+                LogContextScopeBenchmark.class.getMethod("put", String.class, String.class),
+                LogContextScopeBenchmark.class.getMethod("remove", String.class)));
+      }
+    }
+  }
+
+  @Benchmark
+  public Object scopeChurn(final BenchmarkState state) {
+    final DDTracer tracer = state.tracer;
+    final Span request = tracer.buildSpan("request").start();
+    final Scope requestScope = tracer.activateSpan(request);
+    // Callbacks of the request, each activating it again
+    for (int i = 0; i < 8; i++) {
+      final Scope callbackScope = tracer.activateSpan(request);
+      final Span child = tracer.buildSpan("callback").start();
+      final Scope childScope = tracer.activateSpan(child);
+      MDC.get("signalfx.span_id");
+      childScope.close();
+      child.finish();
+      callbackScope.close();
+    }
+    requestScope.close();
+    request.finish();
+    return MDC.get("signalfx.trace_id");
+  }
+
+  private static final class NoopWriter implements Writer {
+    @Override
+    public void write(final List<DDSpan> trace) {}
+
+    @Override
+    public void start() {}
+
+    @Override
+    public void close() {}
+
+    @Override
+    public void incrementTraceCount() {}
+  }
+}
@@ -0,0 +1,65 @@
+package datadog.benchmark;
+
+import datadog.trace.bootstrap.SqlNormalizer;
+import java.util.Random;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+public class SqlNormalizerBenchmark {
+  /** Statement shapes of an application, the values being filled in at random */
+  private static final String[] STATEMENTS = {
+    "SELECT * FROM users WHERE id = %d",
+    "SELECT u.name, o.total FROM users u JOIN orders o ON o.user_id = u.id WHERE o.id = %d",
+    "SELECT * FROM products WHERE id IN (%d, %d, %d) AND price > %d.99",
+    "UPDATE accounts SET balance = balance - %d, updated = 'now' WHERE id = %d",
+    "INSERT INTO events (type, payload, created) VALUES ('click', '{\"x\": %d}', %d)",
+    "DELETE FROM sessions WHERE expires < %d",
+    "SELECT * FROM users WHERE email = ? AND active = TRUE",
+    "SELECT count(*) FROM orders /* dashboard */ WHERE status = 'open'",
+  };
+
+  @State(Scope.Benchmark)
+  public static class BenchmarkState {
+    /** Statements run over and over, as prepared statements or with few distinct values */
+    private final String[] repeated = new String[4096];
+    /** Statements with values all different, never found in the cache */
+    private final String[] distinct = new String[4096];
+
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+      final Random random = new Random(42);
+      for (int i = 0; i < repeated.length; i++) {
+        repeated[i] = statement(random, 10);
+        distinct[i] = statement(random, Integer.MAX_VALUE);
+      }
+    }
+
+    private static String statement(final Random random, final int bound) {
+      return String.format(
+          STATEMENTS[random.nextInt(STATEMENTS.length)],
+          random.nextInt(bound),
+          random.nextInt(bound),
+          random.nextInt(bound),
+          random.nextInt(bound));
+    }
+
+    int next() {
+      next = (next + 1) & (repeated.length - 1);
+      return next;
+    }
+  }
+
+  @Benchmark
+  public String testRepeated(final BenchmarkState state) {
+    return SqlNormalizer.normalize(state.repeated[state.next()]);
+  }
+
+  @Benchmark
+  public String testDistinct(final BenchmarkState state) {
+    return SqlNormalizer.normalize(state.distinct[state.next()]);
+  }
+}
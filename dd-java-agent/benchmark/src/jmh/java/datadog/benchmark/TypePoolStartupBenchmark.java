@@ -0,0 +1,117 @@
+package datadog.benchmark;
+
+import com.google.common.collect.ImmutableList;
+import datadog.trace.agent.tooling.AgentTooling;
+import datadog.trace.agent.tooling.DDCachingPoolStrategy;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import net.bytebuddy.dynamic.ClassFileLocator;
+import net.bytebuddy.pool.TypePool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Startup of an app loading classes from 8 threads, on 4 new parallel capable loaders each
+ * iteration: each thread describes the classes of a jar through the pool strategy, as matching
+ * does, and loads them, the loaders being shared by 2 threads.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@Threads(8)
+public class TypePoolStartupBenchmark {
+  private static final int LOADERS = 4;
+  private static final int CLASSES = 500;
+
+  @State(Scope.Benchmark)
+  public static class BenchmarkState {
+    final DDCachingPoolStrategy poolStrategy = AgentTooling.poolStrategy();
+    final AtomicInteger threads = new AtomicInteger();
+
+    URL[] classpath;
+    List<String> classNames;
+    URLClassLoader[] loaders;
+
+    @Setup
+    public void setup() throws IOException {
+      // Guava, which has no dependencies to load its classes
+      final File jar =
+          new File(
+              ImmutableList.class.getProtectionDomain().getCodeSource().getLocation().getPath());
+      classpath = new URL[] {jar.toURI().toURL()};
+      classNames = new ArrayList<>();
+      try (final JarFile jarFile = new JarFile(jar)) {
+        final Enumeration<JarEntry> entries = jarFile.entries();
+        while (entries.hasMoreElements() && classNames.size() < CLASSES) {
+          final String name = entries.nextElement().getName();
+          if (name.endsWith(".class") && !name.contains("$")) {
+            classNames.add(name.substring(0, name.lastIndexOf('.')).replace('/', '.'));
+          }
+        }
+      }
+    }
+
+    @Setup(Level.Iteration)
+    public void newLoaders() {
+      loaders = new URLClassLoader[LOADERS];
+      for (int i = 0; i < LOADERS; i++) {
+        loaders[i] = new URLClassLoader(classpath, null);
+      }
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeLoaders() throws IOException {
+      for (final URLClassLoader loader : loaders) {
+        loader.close();
+      }
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+    int index;
+
+    @Setup
+    public void setup(final BenchmarkState state) {
+      index = state.threads.getAndIncrement();
+    }
+  }
+
+  @Benchmark
+  public void loadClasses(
+      final BenchmarkState state, final ThreadState thread, final Blackhole blackhole) {
+    final ClassLoader loader = state.loaders[thread.index % LOADERS];
+    final TypePool typePool =
+        state.poolStrategy.typePool(ClassFileLocator.ForClassLoader.of(loader), loader);
+    // Each of the two threads of a loader in its own order, to race on the same classes
+    final int size = state.classNames.size();
+    for (int i = 0; i < size; i++) {
+      final int next = thread.index / LOADERS % 2 == 0 ? i : size - 1 - i;
+      final String className = state.classNames.get(next);
+      blackhole.consume(typePool.describe(className).resolve().getModifiers());
+      try {
+        blackhole.consume(Class.forName(className, false, loader));
+      } catch (final ClassNotFoundException | LinkageError e) {
+        blackhole.consume(e);
+      }
+    }
+  }
+}
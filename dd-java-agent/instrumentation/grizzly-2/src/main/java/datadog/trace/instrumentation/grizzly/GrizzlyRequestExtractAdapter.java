@@ -3,7 +3,8 @@ package datadog.trace.instrumentation.grizzly;
 import datadog.trace.instrumentation.api.AgentPropagation;
 import org.glassfish.grizzly.http.server.Request;
 
-public class GrizzlyRequestExtractAdapter implements AgentPropagation.Getter<Request> {
+public class GrizzlyRequestExtractAdapter
+    implements AgentPropagation.CaseInsensitiveGetter<Request> {
 
   public static final GrizzlyRequestExtractAdapter GETTER = new GrizzlyRequestExtractAdapter();
 
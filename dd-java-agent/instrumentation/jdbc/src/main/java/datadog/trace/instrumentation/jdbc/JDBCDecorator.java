@@ -4,6 +4,7 @@ package datadog.trace.instrumentation.jdbc;
 import datadog.trace.agent.decorator.DatabaseClientDecorator;
 import datadog.trace.api.DDSpanTypes;
 import datadog.trace.api.DDTags;
+import datadog.trace.bootstrap.SqlNormalizer;
 import datadog.trace.instrumentation.api.AgentSpan;
 import datadog.trace.instrumentation.api.Tags;
 import java.sql.Connection;
@@ -41,6 +42,11 @@ public class JDBCDecorator extends DatabaseClientDecorator<DBInfo> {
     return "jdbc";
   }
 
+  @Override
+  protected boolean sqlStatements() {
+    return true;
+  }
+
   @Override
   protected String dbUser(final DBInfo info) {
     return info.getUser();
@@ -94,9 +100,30 @@ public class JDBCDecorator extends DatabaseClientDecorator<DBInfo> {
     return super.onStatement(span, statement);
   }
 
+  /** Tags the statement, normalized as strings are escaped in the database of the connection. */
+  public AgentSpan onStatement(
+      final AgentSpan span, final Connection connection, final String statement) {
+    span.setTag(Tags.COMPONENT, "java-jdbc-statement");
+    return super.onNormalizedStatement(
+        span, normalizeStatement(statement, backslashEscapes(connection)));
+  }
+
   public AgentSpan onPreparedStatement(final AgentSpan span, final PreparedStatement statement) {
     final String sql = JDBCMaps.preparedStatements.get(statement);
     span.setTag(Tags.COMPONENT, "java-jdbc-prepared_statement");
     return super.onStatement(span, sql);
   }
+
+  /** @see #onStatement(AgentSpan, Connection, String) */
+  public AgentSpan onPreparedStatement(
+      final AgentSpan span, final Connection connection, final PreparedStatement statement) {
+    final String sql = JDBCMaps.preparedStatements.get(statement);
+    span.setTag(Tags.COMPONENT, "java-jdbc-prepared_statement");
+    return super.onNormalizedStatement(span, normalizeStatement(sql, backslashEscapes(connection)));
+  }
+
+  private static boolean backslashEscapes(final Connection connection) {
+    final DBInfo dbInfo = JDBCMaps.connectionInfo.get(connection);
+    return dbInfo != null && SqlNormalizer.usesBackslashEscapes(dbInfo.getType());
+  }
 }
@@ -85,7 +85,7 @@ public final class PreparedStatementInstrumentation extends Instrumenter.Default
       final AgentSpan span = startSpan("database.query");
       DECORATE.afterStart(span);
       DECORATE.onConnection(span, connection);
-      DECORATE.onPreparedStatement(span, statement);
+      DECORATE.onPreparedStatement(span, connection, statement);
       span.setTag("span.origin.type", statement.getClass().getName());
       return activateSpan(span, true);
     }
@@ -86,7 +86,7 @@ public final class StatementInstrumentation extends Instrumenter.Default {
       final AgentSpan span = startSpan("database.query");
       DECORATE.afterStart(span);
       DECORATE.onConnection(span, connection);
-      DECORATE.onStatement(span, sql);
+      DECORATE.onStatement(span, connection, sql);
       span.setTag("span.origin.type", statement.getClass().getName());
       return activateSpan(span, true);
     }
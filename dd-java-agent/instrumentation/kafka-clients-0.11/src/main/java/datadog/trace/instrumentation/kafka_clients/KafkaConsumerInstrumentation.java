@@ -41,6 +41,8 @@ public final class KafkaConsumerInstrumentation extends Instrumenter.Default {
       packageName + ".KafkaDecorator$1",
       packageName + ".KafkaDecorator$2",
       packageName + ".TextMapExtractAdapter",
+      packageName + ".TextMapExtractAdapter$HeaderKeys",
+      packageName + ".TextMapExtractAdapter$KeyIterator",
       packageName + ".TracingIterable",
       packageName + ".TracingIterator",
       packageName + ".TracingList",
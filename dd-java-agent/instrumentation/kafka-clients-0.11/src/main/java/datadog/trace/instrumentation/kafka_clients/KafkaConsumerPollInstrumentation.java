@@ -0,0 +1,63 @@
+package datadog.trace.instrumentation.kafka_clients;
+
+import static net.bytebuddy.matcher.ElementMatchers.isMethod;
+import static net.bytebuddy.matcher.ElementMatchers.isPublic;
+import static net.bytebuddy.matcher.ElementMatchers.named;
+
+import com.google.auto.service.AutoService;
+import datadog.trace.agent.tooling.Instrumenter;
+import java.util.HashMap;
+import java.util.Map;
+import net.bytebuddy.asm.Advice;
+import net.bytebuddy.description.method.MethodDescription;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.matcher.ElementMatcher;
+
+/**
+ * Finishes the batch span of the records of the previous poll when the consumer polls again or is
+ * closed, in case their iteration was left early.
+ */
+@AutoService(Instrumenter.class)
+public final class KafkaConsumerPollInstrumentation extends Instrumenter.Default {
+
+  public KafkaConsumerPollInstrumentation() {
+    super("kafka");
+  }
+
+  @Override
+  public ElementMatcher<TypeDescription> typeMatcher() {
+    return named("org.apache.kafka.clients.consumer.KafkaConsumer");
+  }
+
+  @Override
+  public String[] helperClassNames() {
+    return new String[] {
+      "datadog.trace.agent.decorator.BaseDecorator",
+      "datadog.trace.agent.decorator.ClientDecorator",
+      packageName + ".KafkaDecorator",
+      packageName + ".KafkaDecorator$1",
+      packageName + ".KafkaDecorator$2",
+      packageName + ".TextMapExtractAdapter",
+      packageName + ".TextMapExtractAdapter$HeaderKeys",
+      packageName + ".TextMapExtractAdapter$KeyIterator",
+      packageName + ".TracingIterator",
+    };
+  }
+
+  @Override
+  public Map<? extends ElementMatcher<? super MethodDescription>, String> transformers() {
+    final Map<ElementMatcher<? super MethodDescription>, String> transformers = new HashMap<>();
+    transformers.put(
+        isMethod().and(isPublic()).and(named("poll").or(named("close"))),
+        FinishOpenBatchAdvice.class.getName());
+    return transformers;
+  }
+
+  public static class FinishOpenBatchAdvice {
+
+    @Advice.OnMethodEnter(suppress = Throwable.class)
+    public static void finishOpenBatch() {
+      TracingIterator.finishOpenBatch();
+    }
+  }
+}
@@ -64,6 +64,35 @@ public abstract class KafkaDecorator extends ClientDecorator {
     }
   }
 
+  /** Tags the span of a poll by its first record: the counts are only known once it is read. */
+  public void onConsumeBatch(final AgentSpan span, final ConsumerRecord first) {
+    if (first != null) {
+      final String topic = first.topic() == null ? "kafka" : first.topic();
+      span.setTag(DDTags.RESOURCE_NAME, "Consume Topic " + topic);
+      span.setTag(Tags.MESSAGE_BUS_DESTINATION, topic);
+    }
+  }
+
+  /**
+   * Tags the counts of a poll, and the range of its offsets when its records all come from one
+   * partition: the offsets of different partitions have nothing to do with each other.
+   */
+  public void onConsumeBatchEnd(
+      final AgentSpan span,
+      final int recordCount,
+      final int partitionCount,
+      final int partition,
+      final long minOffset,
+      final long maxOffset) {
+    span.setTag("kafka.record_count", recordCount);
+    span.setTag("kafka.partition_count", partitionCount);
+    if (partitionCount == 1) {
+      span.setTag("kafka.partition", partition);
+      span.setTag("kafka.offset_min", minOffset);
+      span.setTag("kafka.offset_max", maxOffset);
+    }
+  }
+
   public void onProduce(final AgentSpan span, final ProducerRecord record) {
     if (record != null) {
 
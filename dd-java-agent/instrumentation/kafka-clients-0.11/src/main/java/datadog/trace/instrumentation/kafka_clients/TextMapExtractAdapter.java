@@ -2,8 +2,7 @@ package datadog.trace.instrumentation.kafka_clients;
 
 import datadog.trace.instrumentation.api.AgentPropagation;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Iterator;
 import org.apache.kafka.common.header.Header;
 import org.apache.kafka.common.header.Headers;
 
@@ -13,11 +12,7 @@ public class TextMapExtractAdapter implements AgentPropagation.Getter<Headers> {
 
   @Override
   public Iterable<String> keys(final Headers headers) {
-    final List<String> keys = new ArrayList<>();
-    for (final Header header : headers) {
-      keys.add(header.key());
-    }
-    return keys;
+    return new HeaderKeys(headers);
   }
 
   @Override
@@ -28,4 +23,41 @@ public class TextMapExtractAdapter implements AgentPropagation.Getter<Headers> {
     }
     return new String(header.value(), StandardCharsets.UTF_8);
   }
+
+  /** The keys of the headers, read as they are iterated rather than copied to a list. */
+  static final class HeaderKeys implements Iterable<String> {
+    private final Headers headers;
+
+    HeaderKeys(final Headers headers) {
+      this.headers = headers;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+      return new KeyIterator(headers.iterator());
+    }
+  }
+
+  static final class KeyIterator implements Iterator<String> {
+    private final Iterator<Header> headers;
+
+    KeyIterator(final Iterator<Header> headers) {
+      this.headers = headers;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return headers.hasNext();
+    }
+
+    @Override
+    public String next() {
+      return headers.next().key();
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
 }
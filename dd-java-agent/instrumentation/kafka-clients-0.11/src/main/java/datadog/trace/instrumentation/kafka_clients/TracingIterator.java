@@ -14,18 +14,50 @@ import java.util.Iterator;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 
+/**
+ * Traces the records of a poll as they are iterated: each record has its span by default, one
+ * record in {@link Config#getKafkaConsumeSampleInterval()} when sampled, starting with the first
+ * one, and the whole poll one span in batch mode.
+ *
+ * <p>The span of a batch is a child of the context of its first record, and is active while the
+ * records are handled. It is finished once the iteration is over, tagged with the counts of records
+ * and partitions, and with the range of offsets when all the records come from one partition. An
+ * iteration left early, by a break or an exception, is over when the consumer polls again or is
+ * closed on the thread, see {@link #finishOpenBatch()}, when the next batch of the thread starts
+ * or when {@link #next()} fails.
+ */
 @Slf4j
 public class TracingIterator implements Iterator<ConsumerRecord> {
+  /** The iterator of the batch still open on the thread, if any */
+  private static final ThreadLocal<TracingIterator> OPEN_BATCH = new ThreadLocal<>();
+
   private final Iterator<ConsumerRecord> delegateIterator;
   private final String operationName;
   private final KafkaDecorator decorator;
 
+  private final boolean attemptPropagation;
+  private final boolean batch;
+  private final int sampleInterval;
+
   /**
    * Note: this may potentially create problems if this iterator is used from different threads. But
    * at the moment we cannot do much about this.
    */
   private AgentScope currentScope;
 
+  /** The span of the batch, once its first record is read */
+  private AgentSpan batchSpan;
+
+  /** Records left to skip before the next one sampled */
+  private int recordsToSkip = 0;
+
+  private int recordCount;
+  private int partitionCount;
+  private long minOffset;
+  private long maxOffset;
+  private String lastTopic;
+  private int lastPartition;
+
   public TracingIterator(
       final Iterator<ConsumerRecord> delegateIterator,
       final String operationName,
@@ -33,39 +65,58 @@ public class TracingIterator implements Iterator<ConsumerRecord> {
     this.delegateIterator = delegateIterator;
     this.operationName = operationName;
     this.decorator = decorator;
+
+    final Config config = Config.get();
+    attemptPropagation = config.isKafkaAttemptPropagation();
+    batch = config.isKafkaConsumeBatch();
+    sampleInterval = Math.max(1, config.getKafkaConsumeSampleInterval());
   }
 
   @Override
   public boolean hasNext() {
-    if (currentScope != null) {
+    if (currentScope != null && !batch) {
       currentScope.close();
       currentScope = null;
     }
-    return delegateIterator.hasNext();
+    final boolean hasNext = delegateIterator.hasNext();
+    if (!hasNext && batchSpan != null) {
+      finishBatch();
+    }
+    return hasNext;
   }
 
   @Override
   public ConsumerRecord next() {
-    if (currentScope != null) {
+    if (currentScope != null && !batch) {
       // in case they didn't call hasNext()...
       currentScope.close();
       currentScope = null;
     }
 
-    final ConsumerRecord next = delegateIterator.next();
+    final ConsumerRecord next;
+    try {
+      next = delegateIterator.next();
+    } catch (final RuntimeException e) {
+      // Called past the end without hasNext()
+      if (batchSpan != null) {
+        finishBatch();
+      }
+      throw e;
+    }
 
     try {
       if (next != null) {
-        AgentSpan span = null;
-        if (Config.get().isKafkaAttemptPropagation()) {
-          final Context spanContext = propagate().extract(next.headers(), GETTER);
-          span = startSpan(operationName, spanContext);
+        if (batch) {
+          onBatchRecord(next);
+        } else if (recordsToSkip > 0) {
+          recordsToSkip--;
         } else {
-          span = startSpan(operationName);
+          recordsToSkip = sampleInterval - 1;
+          final AgentSpan span = startConsumeSpan(next);
+          decorator.afterStart(span);
+          decorator.onConsume(span, next);
+          currentScope = activateSpan(span, true);
         }
-        decorator.afterStart(span);
-        decorator.onConsume(span, next);
-        currentScope = activateSpan(span, true);
       }
     } catch (final Exception e) {
       log.debug("Error during decoration", e);
@@ -77,4 +128,63 @@ public class TracingIterator implements Iterator<ConsumerRecord> {
   public void remove() {
     delegateIterator.remove();
   }
+
+  /** Finishes the batch left early on the thread, if any. */
+  public static void finishOpenBatch() {
+    final TracingIterator open = OPEN_BATCH.get();
+    if (open != null && open.batchSpan != null) {
+      open.finishBatch();
+    }
+  }
+
+  private AgentSpan startConsumeSpan(final ConsumerRecord record) {
+    if (attemptPropagation) {
+      final Context spanContext = propagate().extract(record.headers(), GETTER);
+      return startSpan(operationName, spanContext);
+    }
+    return startSpan(operationName);
+  }
+
+  private void onBatchRecord(final ConsumerRecord record) {
+    if (batchSpan == null) {
+      // Left early, its scope would be the parent of this batch
+      finishOpenBatch();
+      OPEN_BATCH.set(this);
+      batchSpan = startConsumeSpan(record);
+      decorator.afterStart(batchSpan);
+      decorator.onConsumeBatch(batchSpan, record);
+      currentScope = activateSpan(batchSpan, true);
+      minOffset = record.offset();
+      maxOffset = record.offset();
+    }
+    recordCount++;
+    minOffset = Math.min(minOffset, record.offset());
+    maxOffset = Math.max(maxOffset, record.offset());
+    // The records of a poll come partition after partition
+    if (record.partition() != lastPartition || !record.topic().equals(lastTopic)) {
+      partitionCount++;
+      lastTopic = record.topic();
+      lastPartition = record.partition();
+    }
+  }
+
+  private void finishBatch() {
+    try {
+      decorator.onConsumeBatchEnd(
+          batchSpan, recordCount, partitionCount, lastPartition, minOffset, maxOffset);
+      if (currentScope != null) {
+        currentScope.close();
+        currentScope = null;
+      }
+    } catch (final Exception e) {
+      log.debug("Error during decoration", e);
+    }
+    batchSpan = null;
+    recordCount = 0;
+    partitionCount = 0;
+    lastTopic = null;
+    if (OPEN_BATCH.get() == this) {
+      OPEN_BATCH.remove();
+    }
+  }
 }
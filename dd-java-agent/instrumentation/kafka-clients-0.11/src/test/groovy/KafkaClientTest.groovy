@@ -24,6 +24,7 @@ class KafkaClientTest extends AgentTestRunner {
   static final SHARED_TOPIC = "shared.topic"
 
   static final PROPAGATION = Config.get().isKafkaAttemptPropagation()
+  static final BATCH = Config.get().isKafkaConsumeBatch()
 
   @Rule
   KafkaEmbedded embeddedKafka = new KafkaEmbedded(1, true, SHARED_TOPIC)
@@ -115,8 +116,16 @@ class KafkaClientTest extends AgentTestRunner {
             "component" "java-kafka"
             "span.kind" "consumer"
             "message_bus.destination" "$SHARED_TOPIC"
-            "partition" { it >= 0 }
-            "offset" 0
+            if (BATCH) {
+              "kafka.record_count" 1
+              "kafka.partition_count" 1
+              "kafka.partition" { it >= 0 }
+              "kafka.offset_min" 0
+              "kafka.offset_max" 0
+            } else {
+              "partition" { it >= 0 }
+              "offset" 0
+            }
             defaultTags(true)
           }
         }
@@ -208,9 +217,17 @@ class KafkaClientTest extends AgentTestRunner {
           tags {
             "component" "java-kafka"
             "span.kind" "consumer"
-            "partition" { it >= 0 }
             "message_bus.destination" "$SHARED_TOPIC"
-            "offset" 0
+            if (BATCH) {
+              "kafka.record_count" 1
+              "kafka.partition_count" 1
+              "kafka.partition" { it >= 0 }
+              "kafka.offset_min" 0
+              "kafka.offset_max" 0
+            } else {
+              "partition" { it >= 0 }
+              "offset" 0
+            }
             defaultTags(true)
           }
         }
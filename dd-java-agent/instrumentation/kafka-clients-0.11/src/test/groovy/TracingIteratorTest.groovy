@@ -0,0 +1,195 @@
+import datadog.trace.agent.test.AgentTestRunner
+import datadog.trace.agent.test.asserts.TraceAssert
+import datadog.trace.api.Config
+import org.apache.kafka.clients.consumer.ConsumerRecord
+import org.apache.kafka.clients.consumer.ConsumerRecords
+import org.apache.kafka.clients.consumer.KafkaConsumer
+import org.apache.kafka.common.TopicPartition
+import org.apache.kafka.common.serialization.StringDeserializer
+
+import static datadog.trace.agent.test.utils.ConfigUtils.withConfigOverride
+import static datadog.trace.instrumentation.api.AgentTracer.activeSpan
+
+class TracingIteratorTest extends AgentTestRunner {
+  static final TOPIC = "iterated.topic"
+
+  def "batch span counts the records of a poll"() {
+    setup:
+    def records = poll([0: [0, 1, 2], 1: [0, 1, 2]])
+
+    when:
+    def iterator = batchIterator(records)
+    def consumed = 0
+    while (iterator.hasNext()) {
+      iterator.next()
+      consumed++
+    }
+
+    then:
+    consumed == 6
+    activeSpan() == null
+    assertTraces(1) {
+      trace(0, 1) {
+        // The offsets of different partitions have nothing to do with each other
+        batchSpan(it, 6, 2)
+      }
+    }
+  }
+
+  def "batch left early is finished when the consumer polls again or is closed"() {
+    setup:
+    def records = poll([0: [0, 1, 2]])
+    def consumer = new KafkaConsumer<String, String>(
+      ["bootstrap.servers": "localhost:9092"],
+      new StringDeserializer(),
+      new StringDeserializer())
+
+    when:
+    def iterator = batchIterator(records)
+    while (iterator.hasNext()) {
+      iterator.next()
+      break
+    }
+    consumer.close()
+
+    then:
+    activeSpan() == null
+    assertTraces(1) {
+      trace(0, 1) {
+        batchSpan(it, 1, 1, 0, 0)
+      }
+    }
+  }
+
+  def "batch left early is finished before the next one starts"() {
+    setup:
+    def first = poll([0: [0, 1, 2]])
+    def second = poll([1: [3, 4]])
+
+    when:
+    def iterator = batchIterator(first)
+    while (iterator.hasNext()) {
+      iterator.next()
+      break
+    }
+    iterator = batchIterator(second)
+    while (iterator.hasNext()) {
+      iterator.next()
+    }
+
+    then:
+    activeSpan() == null
+    assertTraces(2) {
+      trace(0, 1) {
+        batchSpan(it, 1, 1, 0, 0)
+      }
+      trace(1, 1) {
+        batchSpan(it, 2, 1, 3, 4, 1)
+      }
+    }
+  }
+
+  def "batch iterated past its end with next() only is finished"() {
+    setup:
+    def records = poll([0: [0, 1]])
+
+    when:
+    def iterator = batchIterator(records)
+    iterator.next()
+    iterator.next()
+    iterator.next()
+
+    then:
+    thrown(NoSuchElementException)
+    activeSpan() == null
+    assertTraces(1) {
+      trace(0, 1) {
+        batchSpan(it, 2, 1, 0, 1)
+      }
+    }
+  }
+
+  def "sampled records are counted by poll, not by offset"() {
+    setup:
+    def records = poll([0: [1, 3, 5, 7]])
+
+    when:
+    def iterator = withConfigOverride(Config.KAFKA_CONSUME_BATCH, "false") {
+      withConfigOverride(Config.KAFKA_CONSUME_SAMPLE_INTERVAL, "2") {
+        records.iterator()
+      }
+    }
+    while (iterator.hasNext()) {
+      iterator.next()
+    }
+
+    then:
+    assertTraces(2) {
+      trace(0, 1) {
+        recordSpan(it, 1)
+      }
+      trace(1, 1) {
+        recordSpan(it, 5)
+      }
+    }
+  }
+
+  def poll(Map<Integer, List<Integer>> offsetsByPartition) {
+    def partitions = [:]
+    offsetsByPartition.each { partition, offsets ->
+      partitions.put(new TopicPartition(TOPIC, partition), offsets.collect {
+        new ConsumerRecord<String, String>(TOPIC, partition, it, null, "value")
+      })
+    }
+    return new ConsumerRecords<String, String>(partitions)
+  }
+
+  def batchIterator(ConsumerRecords records) {
+    return withConfigOverride(Config.KAFKA_CONSUME_BATCH, "true") {
+      records.iterator()
+    }
+  }
+
+  def batchSpan(TraceAssert trace, int recordCount, int partitionCount, long minOffset = 0, long maxOffset = 0, int partition = 0) {
+    trace.span(0) {
+      serviceName "kafka"
+      operationName "kafka.consume"
+      resourceName "Consume Topic $TOPIC"
+      spanType "queue"
+      errored false
+      parent()
+      tags {
+        "component" "java-kafka"
+        "span.kind" "consumer"
+        "message_bus.destination" TOPIC
+        "kafka.record_count" recordCount
+        "kafka.partition_count" partitionCount
+        if (partitionCount == 1) {
+          "kafka.partition" partition
+          "kafka.offset_min" minOffset
+          "kafka.offset_max" maxOffset
+        }
+        defaultTags()
+      }
+    }
+  }
+
+  def recordSpan(TraceAssert trace, long offset) {
+    trace.span(0) {
+      serviceName "kafka"
+      operationName "kafka.consume"
+      resourceName "Consume Topic $TOPIC"
+      spanType "queue"
+      errored false
+      parent()
+      tags {
+        "component" "java-kafka"
+        "span.kind" "consumer"
+        "message_bus.destination" TOPIC
+        "partition" 0
+        "offset" offset
+        defaultTags()
+      }
+    }
+  }
+}
@@ -55,7 +55,9 @@ public class KafkaStreamsProcessorInstrumentation {
         "datadog.trace.agent.decorator.BaseDecorator",
         "datadog.trace.agent.decorator.ClientDecorator",
         packageName + ".KafkaStreamsDecorator",
-        packageName + ".TextMapExtractAdapter"
+        packageName + ".TextMapExtractAdapter",
+        packageName + ".TextMapExtractAdapter$HeaderKeys",
+        packageName + ".TextMapExtractAdapter$KeyIterator"
       };
     }
 
@@ -111,7 +113,9 @@ public class KafkaStreamsProcessorInstrumentation {
         "datadog.trace.agent.decorator.BaseDecorator",
         "datadog.trace.agent.decorator.ClientDecorator",
         packageName + ".KafkaStreamsDecorator",
-        packageName + ".TextMapExtractAdapter"
+        packageName + ".TextMapExtractAdapter",
+        packageName + ".TextMapExtractAdapter$HeaderKeys",
+        packageName + ".TextMapExtractAdapter$KeyIterator"
       };
     }
 
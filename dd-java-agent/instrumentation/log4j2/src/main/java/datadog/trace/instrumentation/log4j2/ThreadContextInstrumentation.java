@@ -41,7 +41,10 @@ public class ThreadContextInstrumentation extends Instrumenter.Default {
 
   @Override
   public String[] helperClassNames() {
-    return new String[] {LogContextScopeListener.class.getName()};
+    return new String[] {
+      LogContextScopeListener.class.getName(),
+      LogContextScopeListener.class.getName() + "$WrittenIds"
+    };
   }
 
   public static class ThreadContextAdvice {
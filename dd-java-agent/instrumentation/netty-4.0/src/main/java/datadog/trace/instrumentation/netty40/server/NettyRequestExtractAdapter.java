@@ -3,7 +3,8 @@ package datadog.trace.instrumentation.netty40.server;
 import datadog.trace.instrumentation.api.AgentPropagation;
 import io.netty.handler.codec.http.HttpHeaders;
 
-public class NettyRequestExtractAdapter implements AgentPropagation.Getter<HttpHeaders> {
+public class NettyRequestExtractAdapter
+    implements AgentPropagation.CaseInsensitiveGetter<HttpHeaders> {
 
   public static final NettyRequestExtractAdapter GETTER = new NettyRequestExtractAdapter();
 
@@ -70,6 +70,53 @@ abstract class LogContextInjectionTestBase extends AgentTestRunner {
     get("foo") == "bar"
   }
 
+  def "Log context keeps the ids of a span activated again"() {
+    when:
+    AgentSpan rootSpan = startSpan("root")
+    AgentScope rootScope = activateSpan(rootSpan, true)
+    def traceId = CorrelationIdentifier.getTraceId()
+    def spanId = CorrelationIdentifier.getSpanId()
+    AgentScope nestedScope = activateSpan(rootSpan, false)
+
+    then:
+    get(CorrelationIdentifier.getTraceIdKey()) == traceId
+    get(CorrelationIdentifier.getSpanIdKey()) == spanId
+
+    when:
+    nestedScope.close()
+
+    then:
+    get(CorrelationIdentifier.getTraceIdKey()) == traceId
+    get(CorrelationIdentifier.getSpanIdKey()) == spanId
+
+    when:
+    // The log context changed behind the listener's back
+    AgentScope overwrittenScope = activateSpan(rootSpan, false)
+    put(CorrelationIdentifier.getSpanIdKey(), "overwritten")
+    overwrittenScope.close()
+
+    then:
+    get(CorrelationIdentifier.getTraceIdKey()) == traceId
+    get(CorrelationIdentifier.getSpanIdKey()) == spanId
+
+    when:
+    rootScope.close()
+    AgentSpan nextSpan = startSpan("next")
+    AgentScope nextScope = activateSpan(nextSpan, true)
+
+    then:
+    get(CorrelationIdentifier.getTraceIdKey()) == CorrelationIdentifier.getTraceId()
+    get(CorrelationIdentifier.getSpanIdKey()) == CorrelationIdentifier.getSpanId()
+    get(CorrelationIdentifier.getSpanIdKey()) != spanId
+
+    when:
+    nextScope.close()
+
+    then:
+    get(CorrelationIdentifier.getTraceIdKey()) == null
+    get(CorrelationIdentifier.getSpanIdKey()) == null
+  }
+
   def "Log context is scoped by thread"() {
     setup:
     ConfigUtils.updateConfig {
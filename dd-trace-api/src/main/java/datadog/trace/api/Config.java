@@ -53,15 +53,25 @@ public class Config {
   public static final String INTEGRATIONS_ENABLED = "integrations.enabled";
   public static final String WRITER_TYPE = "writer.type";
   public static final String API_TYPE = "api.type";
+  public static final String WRITER_SERIALIZATION_WORKERS = "writer.serialization.workers";
+  public static final String WRITER_WAIT_STRATEGY = "writer.wait.strategy";
+  public static final String WRITER_MEMORY_BUDGET = "writer.memory.budget";
+  public static final String WRITER_MEMORY_BUDGET_POLICY = "writer.memory.budget.policy";
+  public static final String WRITER_SPILL_DIRECTORY = "writer.spill.directory";
+  public static final String WRITER_SPILL_MAX_BYTES = "writer.spill.max.bytes";
+  public static final String WRITER_SEND_RETRIES = "writer.send.retries";
+  public static final String WRITER_CIRCUIT_BREAKER_THRESHOLD = "writer.circuit.breaker.threshold";
   public static final String USE_B3_PROPAGATION = "b3.propagation";
   public static final String AGENT_HOST = "agent.host";
   public static final String TRACE_AGENT_PORT = "trace.agent.port";
   public static final String AGENT_PORT_LEGACY = "agent.port";
   public static final String AGENT_PATH = "agent.path";
   public static final String AGENT_USE_HTTPS = "agent.https";
+  public static final String AGENT_USE_GZIP = "agent.gzip";
   public static final String ENDPOINT_URL = "endpoint.url";
   public static final String AGENT_UNIX_DOMAIN_SOCKET = "trace.agent.unix.domain.socket";
   public static final String PRIORITY_SAMPLING = "priority.sampling";
+  public static final String PRIORITY_SAMPLING_HEAD = "priority.sampling.head";
   public static final String TRACE_RESOLVER_ENABLED = "trace.resolver.enabled";
   public static final String SERVICE_MAPPING = "service.mapping";
   public static final String GLOBAL_TAGS = "trace.global.tags";
@@ -83,6 +93,12 @@ public class Config {
   public static final String DB_CLIENT_HOST_SPLIT_BY_INSTANCE = "trace.db.client.split-by-instance";
   public static final String SPLIT_BY_TAGS = "trace.split-by-tags";
   public static final String PARTIAL_FLUSH_MIN_SPANS = "trace.partial.flush.min.spans";
+  public static final String PARTIAL_FLUSH_MAX_BYTES = "trace.partial.flush.max.bytes";
+  public static final String PARTIAL_FLUSH_MAX_AGE = "trace.partial.flush.max.age";
+  public static final String PARTIAL_FLUSH_HEAP_USAGE = "trace.partial.flush.heap.usage";
+  public static final String SPAN_COUNTING_ENABLED = "trace.span.counting.enabled";
+  public static final String SPAN_COUNTING_LEAK_DETECTION_AGE =
+      "trace.span.counting.leak.detection.age";
   public static final String RUNTIME_CONTEXT_FIELD_INJECTION =
       "trace.runtime.context.field.injection";
   public static final String PROPAGATION_STYLE_EXTRACT = "propagation.style.extract";
@@ -90,6 +106,9 @@ public class Config {
 
   public static final String KAFKA_ATTEMPT_PROPAGATION =
       "instrumentation.kafka.attempt-propagation";
+  public static final String KAFKA_CONSUME_BATCH = "instrumentation.kafka.consume-batch";
+  public static final String KAFKA_CONSUME_SAMPLE_INTERVAL =
+      "instrumentation.kafka.consume-sample-interval";
   public static final String REDIS_CAPTURE_COMMAND_ARGUMENTS =
       "instrumentation.redis.capture-command-arguments";
 
@@ -108,6 +127,9 @@ public class Config {
 
   public static final String LOGS_INJECTION_ENABLED = "logs.injection";
   public static final String DB_STATEMENT_MAX_LENGTH = "db.statement.max.length";
+  public static final String DB_STATEMENT_NORMALIZE = "db.statement.normalize";
+
+  public static final String MUZZLE_CACHE_DIRECTORY = "muzzle.cache.directory";
 
   public static final String SERVICE_TAG = "service";
   @Deprecated public static final String SERVICE = SERVICE_TAG; // To be removed in 0.34.0
@@ -134,14 +156,24 @@ public class Config {
   public static final String LOGGING_WRITER_TYPE = "LoggingWriter";
   private static final String DEFAULT_AGENT_WRITER_TYPE = DD_AGENT_WRITER_TYPE;
   public static final String DEFAULT_API_TYPE = ZIPKIN_V2_API_TYPE;
+  private static final int DEFAULT_WRITER_SERIALIZATION_WORKERS = 1;
+  private static final String DEFAULT_WRITER_WAIT_STRATEGY = "sleeping";
+  private static final int DEFAULT_WRITER_MEMORY_BUDGET = 0; // disabled
+  private static final String DEFAULT_WRITER_MEMORY_BUDGET_POLICY = "drop-newest";
+  private static final int DEFAULT_WRITER_SPILL_MAX_BYTES = 100 * 1024 * 1024; // 100 MB
+  private static final int DEFAULT_WRITER_SEND_RETRIES = 0;
+  private static final int DEFAULT_WRITER_CIRCUIT_BREAKER_THRESHOLD = 0; // disabled
 
   public static final String DEFAULT_AGENT_ENDPOINT = "http://localhost:9080/v1/trace";
 
   public static final String DEFAULT_AGENT_UNIX_DOMAIN_SOCKET = null;
 
+  private static final boolean DEFAULT_AGENT_USE_GZIP = false;
+
   private static final boolean DEFAULT_RUNTIME_CONTEXT_FIELD_INJECTION = true;
 
   private static final boolean DEFAULT_PRIORITY_SAMPLING_ENABLED = false;
+  private static final boolean DEFAULT_PRIORITY_SAMPLING_HEAD_ENABLED = false;
   private static final boolean DEFAULT_TRACE_RESOLVER_ENABLED = true;
   private static final Set<Integer> DEFAULT_HTTP_SERVER_ERROR_STATUSES =
       parseIntegerRangeSet("500-599", "default");
@@ -153,11 +185,18 @@ public class Config {
   private static final boolean DEFAULT_DB_CLIENT_HOST_SPLIT_BY_INSTANCE = false;
   private static final String DEFAULT_SPLIT_BY_TAGS = "";
   private static final int DEFAULT_PARTIAL_FLUSH_MIN_SPANS = 1000;
+  private static final int DEFAULT_PARTIAL_FLUSH_MAX_BYTES = 0; // disabled
+  private static final int DEFAULT_PARTIAL_FLUSH_MAX_AGE = 0; // seconds, disabled
+  private static final int DEFAULT_PARTIAL_FLUSH_HEAP_USAGE = 0; // percent, disabled
+  private static final boolean DEFAULT_SPAN_COUNTING_ENABLED = false;
+  private static final int DEFAULT_SPAN_COUNTING_LEAK_DETECTION_AGE = 60; // seconds
   private static final String DEFAULT_PROPAGATION_STYLE_EXTRACT = PropagationStyle.B3.name();
   private static final String DEFAULT_PROPAGATION_STYLE_INJECT = PropagationStyle.B3.name();
   private static final boolean DEFAULT_JMX_FETCH_ENABLED = false;
 
   public static final boolean DEFAULT_KAFKA_ATTEMPT_PROPAGATION = true;
+  public static final boolean DEFAULT_KAFKA_CONSUME_BATCH = false;
+  public static final int DEFAULT_KAFKA_CONSUME_SAMPLE_INTERVAL = 1;
   public static final boolean DEFAULT_REDIS_CAPTURE_COMMAND_ARGUMENTS = true;
 
   public static final int DEFAULT_JMX_FETCH_STATSD_PORT = 8125;
@@ -184,6 +223,7 @@ public class Config {
   }
 
   public static final int DEFAULT_DB_STATEMENT_MAX_LENGTH = 1024;
+  public static final boolean DEFAULT_DB_STATEMENT_NORMALIZE = false;
   /** A tag intended for internal use only, hence not added to the public api DDTags class. */
   private static final String INTERNAL_HOST_NAME = "_dd.hostname";
 
@@ -198,14 +238,25 @@ public class Config {
   @Getter private final boolean integrationsEnabled;
   @Getter private final String writerType;
   @Getter private final String apiType;
+  @Getter private final Integer writerSerializationWorkers;
+  @Getter private final String writerWaitStrategy;
+  @Getter private final Integer writerMemoryBudget;
+  @Getter private final String writerMemoryBudgetPolicy;
+  @Getter private final String writerSpillDirectory;
+  @Getter private final Integer writerSpillMaxBytes;
+  @Getter private final Integer writerSendRetries;
+  @Getter private final Integer writerCircuitBreakerThreshold;
   @Getter private final boolean useB3Propagation;
   private final String agentHost;
   private final Integer agentPort;
   private final String agentPath;
   private final Boolean agentUseHTTPS;
+  @Getter private final boolean agentUseGzip;
   @Getter private final URL endpointUrl;
   @Getter private final String agentUnixDomainSocket;
   @Getter private final boolean prioritySamplingEnabled;
+  /** Drop unsampled traces when they start instead of recording them and marking them dropped */
+  @Getter private final boolean prioritySamplingHeadEnabled;
   @Getter private final boolean traceResolverEnabled;
   @Getter private final Map<String, String> serviceMapping;
   private final Map<String, String> globalTags;
@@ -221,11 +272,20 @@ public class Config {
   @Getter private final boolean dbClientSplitByInstance;
   @Getter private final Set<String> splitByTags;
   @Getter private final Integer partialFlushMinSpans;
+  @Getter private final Integer partialFlushMaxBytes;
+  @Getter private final Integer partialFlushMaxAge;
+  @Getter private final Integer partialFlushHeapUsage;
+  @Getter private final boolean spanCountingEnabled;
+  @Getter private final Integer spanCountingLeakDetectionAge;
   @Getter private final boolean runtimeContextFieldInjection;
   @Getter private final Set<PropagationStyle> propagationStylesToExtract;
   @Getter private final Set<PropagationStyle> propagationStylesToInject;
 
   @Getter private final boolean kafkaAttemptPropagation;
+  /** One span per poll of the consumer rather than one per record */
+  @Getter private final boolean kafkaConsumeBatch;
+  /** One record in that many of each poll has a span, starting with the first one */
+  @Getter private final Integer kafkaConsumeSampleInterval;
   @Getter private final boolean redisCaptureCommandArguments;
 
   @Getter private final boolean jmxFetchEnabled;
@@ -247,6 +307,11 @@ public class Config {
   @Getter private final boolean reportHostName;
 
   @Getter private final Integer dbStatementMaxLength;
+  /** Replace the literals of SQL statements with "?" */
+  @Getter private final boolean dbStatementNormalize;
+
+  /** Where to keep the muzzle results across restarts, not kept when null */
+  @Getter private final String muzzleCacheDirectory;
 
   // Read order: System Properties -> Env Variables, [-> default value]
   @Getter private final String traceAnnotations;
@@ -275,6 +340,24 @@ public class Config {
         getBooleanSettingFromEnvironment(INTEGRATIONS_ENABLED, DEFAULT_INTEGRATIONS_ENABLED);
     writerType = getSettingFromEnvironment(WRITER_TYPE, DEFAULT_AGENT_WRITER_TYPE);
     apiType = getSettingFromEnvironment(API_TYPE, DEFAULT_API_TYPE);
+    writerSerializationWorkers =
+        getIntegerSettingFromEnvironment(
+            WRITER_SERIALIZATION_WORKERS, DEFAULT_WRITER_SERIALIZATION_WORKERS);
+    writerWaitStrategy =
+        getSettingFromEnvironment(WRITER_WAIT_STRATEGY, DEFAULT_WRITER_WAIT_STRATEGY);
+    writerMemoryBudget =
+        getIntegerSettingFromEnvironment(WRITER_MEMORY_BUDGET, DEFAULT_WRITER_MEMORY_BUDGET);
+    writerMemoryBudgetPolicy =
+        getSettingFromEnvironment(
+            WRITER_MEMORY_BUDGET_POLICY, DEFAULT_WRITER_MEMORY_BUDGET_POLICY);
+    writerSpillDirectory = getSettingFromEnvironment(WRITER_SPILL_DIRECTORY, null);
+    writerSpillMaxBytes =
+        getIntegerSettingFromEnvironment(WRITER_SPILL_MAX_BYTES, DEFAULT_WRITER_SPILL_MAX_BYTES);
+    writerSendRetries =
+        getIntegerSettingFromEnvironment(WRITER_SEND_RETRIES, DEFAULT_WRITER_SEND_RETRIES);
+    writerCircuitBreakerThreshold =
+        getIntegerSettingFromEnvironment(
+            WRITER_CIRCUIT_BREAKER_THRESHOLD, DEFAULT_WRITER_CIRCUIT_BREAKER_THRESHOLD);
     useB3Propagation = getBooleanSettingFromEnvironment(USE_B3_PROPAGATION, true);
     agentHost = getSettingFromEnvironment(AGENT_HOST, null);
     agentPort =
@@ -282,11 +365,15 @@ public class Config {
             TRACE_AGENT_PORT, getIntegerSettingFromEnvironment(AGENT_PORT_LEGACY, null));
     agentPath = getSettingFromEnvironment(AGENT_PATH, null);
     agentUseHTTPS = getBooleanSettingFromEnvironment(AGENT_USE_HTTPS, null);
+    agentUseGzip = getBooleanSettingFromEnvironment(AGENT_USE_GZIP, DEFAULT_AGENT_USE_GZIP);
     endpointUrl = getURLSettingFromEnvironment(ENDPOINT_URL, DEFAULT_AGENT_ENDPOINT);
     agentUnixDomainSocket =
         getSettingFromEnvironment(AGENT_UNIX_DOMAIN_SOCKET, DEFAULT_AGENT_UNIX_DOMAIN_SOCKET);
     prioritySamplingEnabled =
         getBooleanSettingFromEnvironment(PRIORITY_SAMPLING, DEFAULT_PRIORITY_SAMPLING_ENABLED);
+    prioritySamplingHeadEnabled =
+        getBooleanSettingFromEnvironment(
+            PRIORITY_SAMPLING_HEAD, DEFAULT_PRIORITY_SAMPLING_HEAD_ENABLED);
     traceResolverEnabled =
         getBooleanSettingFromEnvironment(TRACE_RESOLVER_ENABLED, DEFAULT_TRACE_RESOLVER_ENABLED);
     serviceMapping = getMapSettingFromEnvironment(SERVICE_MAPPING, null);
@@ -329,6 +416,18 @@ public class Config {
 
     partialFlushMinSpans =
         getIntegerSettingFromEnvironment(PARTIAL_FLUSH_MIN_SPANS, DEFAULT_PARTIAL_FLUSH_MIN_SPANS);
+    partialFlushMaxBytes =
+        getIntegerSettingFromEnvironment(PARTIAL_FLUSH_MAX_BYTES, DEFAULT_PARTIAL_FLUSH_MAX_BYTES);
+    partialFlushMaxAge =
+        getIntegerSettingFromEnvironment(PARTIAL_FLUSH_MAX_AGE, DEFAULT_PARTIAL_FLUSH_MAX_AGE);
+    partialFlushHeapUsage =
+        getIntegerSettingFromEnvironment(
+            PARTIAL_FLUSH_HEAP_USAGE, DEFAULT_PARTIAL_FLUSH_HEAP_USAGE);
+    spanCountingEnabled =
+        getBooleanSettingFromEnvironment(SPAN_COUNTING_ENABLED, DEFAULT_SPAN_COUNTING_ENABLED);
+    spanCountingLeakDetectionAge =
+        getIntegerSettingFromEnvironment(
+            SPAN_COUNTING_LEAK_DETECTION_AGE, DEFAULT_SPAN_COUNTING_LEAK_DETECTION_AGE);
 
     runtimeContextFieldInjection =
         getBooleanSettingFromEnvironment(
@@ -350,6 +449,11 @@ public class Config {
     kafkaAttemptPropagation =
         getBooleanSettingFromEnvironment(
             KAFKA_ATTEMPT_PROPAGATION, DEFAULT_KAFKA_ATTEMPT_PROPAGATION);
+    kafkaConsumeBatch =
+        getBooleanSettingFromEnvironment(KAFKA_CONSUME_BATCH, DEFAULT_KAFKA_CONSUME_BATCH);
+    kafkaConsumeSampleInterval =
+        getIntegerSettingFromEnvironment(
+            KAFKA_CONSUME_SAMPLE_INTERVAL, DEFAULT_KAFKA_CONSUME_SAMPLE_INTERVAL);
     redisCaptureCommandArguments =
         getBooleanSettingFromEnvironment(
             REDIS_CAPTURE_COMMAND_ARGUMENTS, DEFAULT_REDIS_CAPTURE_COMMAND_ARGUMENTS);
@@ -380,6 +484,10 @@ public class Config {
 
     dbStatementMaxLength =
         getIntegerSettingFromEnvironment(DB_STATEMENT_MAX_LENGTH, DEFAULT_DB_STATEMENT_MAX_LENGTH);
+    dbStatementNormalize =
+        getBooleanSettingFromEnvironment(DB_STATEMENT_NORMALIZE, DEFAULT_DB_STATEMENT_NORMALIZE);
+
+    muzzleCacheDirectory = getSettingFromEnvironment(MUZZLE_CACHE_DIRECTORY, null);
 
     traceAnnotations = getSettingFromEnvironment(TRACE_ANNOTATIONS, DEFAULT_TRACE_ANNOTATIONS);
 
@@ -407,6 +515,23 @@ public class Config {
         getPropertyBooleanValue(properties, INTEGRATIONS_ENABLED, parent.integrationsEnabled);
     writerType = properties.getProperty(WRITER_TYPE, parent.writerType);
     apiType = properties.getProperty(API_TYPE, parent.apiType);
+    writerSerializationWorkers =
+        getPropertyIntegerValue(
+            properties, WRITER_SERIALIZATION_WORKERS, parent.writerSerializationWorkers);
+    writerWaitStrategy = properties.getProperty(WRITER_WAIT_STRATEGY, parent.writerWaitStrategy);
+    writerMemoryBudget =
+        getPropertyIntegerValue(properties, WRITER_MEMORY_BUDGET, parent.writerMemoryBudget);
+    writerMemoryBudgetPolicy =
+        properties.getProperty(WRITER_MEMORY_BUDGET_POLICY, parent.writerMemoryBudgetPolicy);
+    writerSpillDirectory =
+        properties.getProperty(WRITER_SPILL_DIRECTORY, parent.writerSpillDirectory);
+    writerSpillMaxBytes =
+        getPropertyIntegerValue(properties, WRITER_SPILL_MAX_BYTES, parent.writerSpillMaxBytes);
+    writerSendRetries =
+        getPropertyIntegerValue(properties, WRITER_SEND_RETRIES, parent.writerSendRetries);
+    writerCircuitBreakerThreshold =
+        getPropertyIntegerValue(
+            properties, WRITER_CIRCUIT_BREAKER_THRESHOLD, parent.writerCircuitBreakerThreshold);
     useB3Propagation =
         getPropertyBooleanValue(properties, USE_B3_PROPAGATION, parent.useB3Propagation);
     agentHost = properties.getProperty(AGENT_HOST, parent.agentHost);
@@ -417,11 +542,15 @@ public class Config {
             getPropertyIntegerValue(properties, AGENT_PORT_LEGACY, parent.agentPort));
     agentPath = properties.getProperty(AGENT_PATH, parent.agentPath);
     agentUseHTTPS = getPropertyBooleanValue(properties, AGENT_USE_HTTPS, parent.agentUseHTTPS);
+    agentUseGzip = getPropertyBooleanValue(properties, AGENT_USE_GZIP, parent.agentUseGzip);
     endpointUrl = getPropertyURLValue(properties, ENDPOINT_URL, parent.endpointUrl);
     agentUnixDomainSocket =
         properties.getProperty(AGENT_UNIX_DOMAIN_SOCKET, parent.agentUnixDomainSocket);
     prioritySamplingEnabled =
         getPropertyBooleanValue(properties, PRIORITY_SAMPLING, parent.prioritySamplingEnabled);
+    prioritySamplingHeadEnabled =
+        getPropertyBooleanValue(
+            properties, PRIORITY_SAMPLING_HEAD, parent.prioritySamplingHeadEnabled);
     traceResolverEnabled =
         getPropertyBooleanValue(properties, TRACE_RESOLVER_ENABLED, parent.traceResolverEnabled);
     serviceMapping = getPropertyMapValue(properties, SERVICE_MAPPING, parent.serviceMapping);
@@ -465,6 +594,17 @@ public class Config {
 
     partialFlushMinSpans =
         getPropertyIntegerValue(properties, PARTIAL_FLUSH_MIN_SPANS, parent.partialFlushMinSpans);
+    partialFlushMaxBytes =
+        getPropertyIntegerValue(properties, PARTIAL_FLUSH_MAX_BYTES, parent.partialFlushMaxBytes);
+    partialFlushMaxAge =
+        getPropertyIntegerValue(properties, PARTIAL_FLUSH_MAX_AGE, parent.partialFlushMaxAge);
+    partialFlushHeapUsage =
+        getPropertyIntegerValue(properties, PARTIAL_FLUSH_HEAP_USAGE, parent.partialFlushHeapUsage);
+    spanCountingEnabled =
+        getPropertyBooleanValue(properties, SPAN_COUNTING_ENABLED, parent.spanCountingEnabled);
+    spanCountingLeakDetectionAge =
+        getPropertyIntegerValue(
+            properties, SPAN_COUNTING_LEAK_DETECTION_AGE, parent.spanCountingLeakDetectionAge);
 
     runtimeContextFieldInjection =
         getPropertyBooleanValue(
@@ -486,6 +626,11 @@ public class Config {
     kafkaAttemptPropagation =
         getPropertyBooleanValue(
             properties, KAFKA_ATTEMPT_PROPAGATION, parent.kafkaAttemptPropagation);
+    kafkaConsumeBatch =
+        getPropertyBooleanValue(properties, KAFKA_CONSUME_BATCH, parent.kafkaConsumeBatch);
+    kafkaConsumeSampleInterval =
+        getPropertyIntegerValue(
+            properties, KAFKA_CONSUME_SAMPLE_INTERVAL, parent.kafkaConsumeSampleInterval);
 
     redisCaptureCommandArguments =
         getPropertyBooleanValue(
@@ -522,6 +667,11 @@ public class Config {
 
     dbStatementMaxLength =
         getPropertyIntegerValue(properties, DB_STATEMENT_MAX_LENGTH, parent.dbStatementMaxLength);
+    dbStatementNormalize =
+        getPropertyBooleanValue(properties, DB_STATEMENT_NORMALIZE, parent.dbStatementNormalize);
+
+    muzzleCacheDirectory =
+        properties.getProperty(MUZZLE_CACHE_DIRECTORY, parent.muzzleCacheDirectory);
 
     traceAnnotations = properties.getProperty(TRACE_ANNOTATIONS, parent.traceAnnotations);
 
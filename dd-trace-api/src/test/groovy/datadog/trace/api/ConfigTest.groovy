@@ -14,10 +14,13 @@ import static datadog.trace.api.Config.AGENT_PORT_LEGACY
 import static datadog.trace.api.Config.AGENT_UNIX_DOMAIN_SOCKET
 import static datadog.trace.api.Config.DB_STATEMENT_MAX_LENGTH
 import static datadog.trace.api.Config.DEFAULT_DB_STATEMENT_MAX_LENGTH
+import static datadog.trace.api.Config.DEFAULT_DB_STATEMENT_NORMALIZE
 import static datadog.trace.api.Config.CONFIGURATION_FILE
 import static datadog.trace.api.Config.DB_CLIENT_HOST_SPLIT_BY_INSTANCE
 import static datadog.trace.api.Config.DEFAULT_JMX_FETCH_STATSD_PORT
 import static datadog.trace.api.Config.DEFAULT_KAFKA_ATTEMPT_PROPAGATION
+import static datadog.trace.api.Config.DEFAULT_KAFKA_CONSUME_BATCH
+import static datadog.trace.api.Config.DEFAULT_KAFKA_CONSUME_SAMPLE_INTERVAL
 import static datadog.trace.api.Config.GLOBAL_TAGS
 import static datadog.trace.api.Config.HEADER_TAGS
 import static datadog.trace.api.Config.HTTP_CLIENT_ERROR_STATUSES
@@ -31,6 +34,8 @@ import static datadog.trace.api.Config.JMX_FETCH_STATSD_HOST
 import static datadog.trace.api.Config.JMX_FETCH_STATSD_PORT
 import static datadog.trace.api.Config.JMX_TAGS
 import static datadog.trace.api.Config.KAFKA_ATTEMPT_PROPAGATION
+import static datadog.trace.api.Config.KAFKA_CONSUME_BATCH
+import static datadog.trace.api.Config.KAFKA_CONSUME_SAMPLE_INTERVAL
 import static datadog.trace.api.Config.REDIS_CAPTURE_COMMAND_ARGUMENTS
 import static datadog.trace.api.Config.TRACING_LIBRARY_KEY
 import static datadog.trace.api.Config.TRACING_LIBRARY_VALUE
@@ -89,14 +94,29 @@ class ConfigTest extends DDSpecification {
     config.traceEnabled == true
     config.writerType == "DDAgentWriter"
     config.apiType == "ZipkinV2"
+    config.writerSerializationWorkers == 1
+    config.writerWaitStrategy == "sleeping"
+    config.writerMemoryBudget == 0
+    config.writerMemoryBudgetPolicy == "drop-newest"
+    config.writerSpillDirectory == null
+    config.writerSpillMaxBytes == 100 * 1024 * 1024
+    config.writerSendRetries == 0
+    config.writerCircuitBreakerThreshold == 0
+    config.partialFlushMaxBytes == 0
+    config.partialFlushMaxAge == 0
+    config.partialFlushHeapUsage == 0
+    config.spanCountingEnabled == false
+    config.spanCountingLeakDetectionAge == 60
     config.useB3Propagation == true
     config.getAgentHost() == "localhost"
     config.getAgentPort() == 9080
     config.getAgentPath() == "/v1/trace"
     config.getAgentUseHTTPS() == false
+    config.agentUseGzip == false
     config.endpointUrl.toString() == "http://localhost:9080/v1/trace"
     config.agentUnixDomainSocket == null
     config.prioritySamplingEnabled == false
+    config.prioritySamplingHeadEnabled == false
     config.traceResolverEnabled == true
     config.serviceMapping == [:]
     config.mergedSpanTags == [(TRACING_LIBRARY_KEY):TRACING_LIBRARY_VALUE, (TRACING_VERSION_KEY):TRACING_VERSION_VALUE]
@@ -124,7 +144,11 @@ class ConfigTest extends DDSpecification {
     config.healthMetricsStatsdPort == null
     config.toString().contains("unnamed-java-app")
     config.dbStatementMaxLength == DEFAULT_DB_STATEMENT_MAX_LENGTH
+    config.dbStatementNormalize == DEFAULT_DB_STATEMENT_NORMALIZE
+    config.muzzleCacheDirectory == null
     config.kafkaAttemptPropagation == DEFAULT_KAFKA_ATTEMPT_PROPAGATION
+    config.kafkaConsumeBatch == DEFAULT_KAFKA_CONSUME_BATCH
+    config.kafkaConsumeSampleInterval == DEFAULT_KAFKA_CONSUME_SAMPLE_INTERVAL
     config.redisCaptureCommandArguments == DEFAULT_REDIS_CAPTURE_COMMAND_ARGUMENTS
 
     where:
@@ -170,6 +194,8 @@ class ConfigTest extends DDSpecification {
     prop.setProperty(JMX_FETCH_STATSD_PORT, "321")
     prop.setProperty(DB_STATEMENT_MAX_LENGTH, "100")
     prop.setProperty(KAFKA_ATTEMPT_PROPAGATION, "false")
+    prop.setProperty(KAFKA_CONSUME_BATCH, "true")
+    prop.setProperty(KAFKA_CONSUME_SAMPLE_INTERVAL, "10")
     prop.setProperty(REDIS_CAPTURE_COMMAND_ARGUMENTS, "false")
     prop.setProperty(HEALTH_METRICS_ENABLED, "false")
     prop.setProperty(HEALTH_METRICS_STATSD_HOST, "metrics statsd host")
@@ -209,6 +235,8 @@ class ConfigTest extends DDSpecification {
     config.jmxFetchStatsdPort == 321
     config.dbStatementMaxLength == 100
     config.kafkaAttemptPropagation == false
+    config.kafkaConsumeBatch == true
+    config.kafkaConsumeSampleInterval == 10
     config.redisCaptureCommandArguments == false
     config.healthMetricsEnabled == false
     config.healthMetricsStatsdHost == "metrics statsd host"
@@ -426,6 +454,8 @@ class ConfigTest extends DDSpecification {
     config.propagationStylesToInject.toList() == [Config.PropagationStyle.B3]
     config.dbStatementMaxLength == DEFAULT_DB_STATEMENT_MAX_LENGTH
     config.kafkaAttemptPropagation == DEFAULT_KAFKA_ATTEMPT_PROPAGATION
+    config.kafkaConsumeBatch == DEFAULT_KAFKA_CONSUME_BATCH
+    config.kafkaConsumeSampleInterval == DEFAULT_KAFKA_CONSUME_SAMPLE_INTERVAL
     config.redisCaptureCommandArguments == DEFAULT_REDIS_CAPTURE_COMMAND_ARGUMENTS
     config.dbClientSplitByInstance == false
     config.splitByTags == [].toSet()
@@ -503,6 +533,8 @@ class ConfigTest extends DDSpecification {
     properties.setProperty(JMX_FETCH_STATSD_PORT, "321")
     properties.setProperty(DB_STATEMENT_MAX_LENGTH, "100")
     properties.setProperty(KAFKA_ATTEMPT_PROPAGATION, "false")
+    properties.setProperty(KAFKA_CONSUME_BATCH, "true")
+    properties.setProperty(KAFKA_CONSUME_SAMPLE_INTERVAL, "10")
     properties.setProperty(REDIS_CAPTURE_COMMAND_ARGUMENTS, "false")
 
     when:
@@ -536,6 +568,8 @@ class ConfigTest extends DDSpecification {
     config.jmxFetchStatsdPort == 321
     config.dbStatementMaxLength == 100
     config.kafkaAttemptPropagation == false
+    config.kafkaConsumeBatch == true
+    config.kafkaConsumeSampleInterval == 10
     config.redisCaptureCommandArguments == false
   }
 
@@ -0,0 +1,86 @@
+package datadog.opentracing;
+
+import datadog.trace.api.DDTags;
+import datadog.trace.common.writer.ListWriter;
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Span creation and tagging with the default {@code DDDecoratorsFactory} decorators or with none.
+ * The tags set are a mix of tags with decorators and without, as set by a typical http server
+ * integration.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DecoratorDispatchBenchmark {
+
+  @State(org.openjdk.jmh.annotations.Scope.Benchmark)
+  public static class Tracer {
+    @Param({"default", "none"})
+    public String decorators;
+
+    public DDTracer tracer;
+
+    @Setup(Level.Trial)
+    public void setup() throws ReflectiveOperationException {
+      tracer =
+          new DDTracer(
+              new ListWriter() {
+                @Override
+                public void write(final List<DDSpan> trace) {
+                  // Keep the heap flat
+                }
+              });
+      if ("none".equals(decorators)) {
+        final Field table = DDTracer.class.getDeclaredField("spanContextDecorators");
+        table.setAccessible(true);
+        table.set(tracer, DecoratorTable.EMPTY);
+      }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      tracer.close();
+    }
+  }
+
+  @Benchmark
+  public DDSpan buildSpan(final Tracer state) {
+    final DDSpan span =
+        (DDSpan)
+            state
+                .tracer
+                .buildSpan("servlet.request")
+                .withTag("span.kind", "server")
+                .withTag("component", "java-web-servlet")
+                .withTag("http.method", "GET")
+                .withTag("http.url", "http://localhost:8080/benchmark/123")
+                .withTag("peer.hostname", "127.0.0.1")
+                .withTag("peer.port", 54321)
+                .start();
+    span.finish();
+    return span;
+  }
+
+  @Benchmark
+  public DDSpan setTags(final Tracer state) {
+    final DDSpan span = (DDSpan) state.tracer.buildSpan("servlet.request").start();
+    span.setTag("http.status_code", 200);
+    span.setTag(DDTags.RESOURCE_NAME, "GET /benchmark/?");
+    span.setTag("servlet.context", "/benchmark");
+    span.setTag("servlet.path", "/benchmark/123");
+    span.setTag("user.id", "benchmark");
+    span.finish();
+    return span;
+  }
+}
@@ -0,0 +1,79 @@
+package datadog.opentracing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import datadog.trace.common.sampling.RateByServiceSampler;
+import datadog.trace.common.writer.ListWriter;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Cost of a request trace, a server span with a few tagged children, when the service is sampled
+ * at 1%. With {@code headSampling} off the dropped traces are built, recorded and sent like the
+ * kept ones, only marked dropped.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HeadSamplingBenchmark {
+
+  @State(org.openjdk.jmh.annotations.Scope.Benchmark)
+  public static class Tracer {
+    @Param({"false", "true"})
+    public boolean headSampling;
+
+    public DDTracer tracer;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+      final RateByServiceSampler sampler = new RateByServiceSampler(headSampling);
+      sampler.onResponse(
+          "traces", new ObjectMapper().readTree("{\"rate_by_service\": {\"service:,env:\":0.01}}"));
+      tracer =
+          new DDTracer(
+              "benchmark",
+              new ListWriter() {
+                @Override
+                public void write(final List<DDSpan> trace) {
+                  // Keep the heap flat
+                }
+              },
+              sampler);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      tracer.close();
+    }
+  }
+
+  @Benchmark
+  public DDSpan requestTrace(final Tracer state) {
+    final DDSpan root =
+        (DDSpan)
+            state
+                .tracer
+                .buildSpan("servlet.request")
+                .withTag("http.method", "GET")
+                .withTag("http.url", "http://localhost/benchmark")
+                .start();
+    for (int i = 0; i < 4; i++) {
+      final DDSpan child =
+          (DDSpan)
+              state.tracer.buildSpan("db.query").asChildOf(root).withTag("db.type", "sql").start();
+      child.setTag("db.statement", "select * from benchmark");
+      child.finish();
+    }
+    root.setTag("http.status_code", 200);
+    root.finish();
+    return root;
+  }
+}
@@ -0,0 +1,99 @@
+package datadog.opentracing;
+
+import datadog.trace.common.writer.ListWriter;
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Span cleaner cost with many long lived async traces in flight.
+ *
+ * <p>{@code cleanerRun} is one run of the span cleaner and {@code legacySweep} replays the
+ * previous cleaner, which polled a reference queue per pending trace on every run. {@code
+ * leakDetection} measures how long it takes from a span being garbage collected unfinished to its
+ * trace being expired.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SpanCleanerBenchmark {
+
+  @State(org.openjdk.jmh.annotations.Scope.Benchmark)
+  public static class PendingTraces {
+    @Param({"1000", "200000"})
+    public int traces;
+
+    public final AtomicInteger droppedTraces = new AtomicInteger();
+    public DDTracer tracer;
+    public List<DDSpan> openSpans;
+    public List<ReferenceQueue<Object>> legacyQueues;
+
+    @Setup(Level.Trial)
+    public void setup() {
+      tracer =
+          new DDTracer(
+              new ListWriter() {
+                @Override
+                public void incrementTraceCount() {
+                  droppedTraces.incrementAndGet();
+                }
+              });
+      openSpans = new ArrayList<>(traces);
+      legacyQueues = new ArrayList<>(traces);
+      for (int i = 0; i < traces; i++) {
+        // Started but never finished: the trace stays pending for the whole run
+        openSpans.add((DDSpan) tracer.buildSpan("async.operation").start());
+        legacyQueues.add(new ReferenceQueue<>());
+      }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      tracer.close();
+    }
+  }
+
+  @Benchmark
+  public boolean cleanerRun(final PendingTraces state) {
+    return state.openSpans.get(0).context().getTrace().clean();
+  }
+
+  @Benchmark
+  public int legacySweep(final PendingTraces state) {
+    int collected = 0;
+    for (final ReferenceQueue<Object> queue : state.legacyQueues) {
+      if (queue.poll() != null) {
+        collected++;
+      }
+    }
+    return collected;
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public int leakDetection(final PendingTraces state) throws InterruptedException {
+    final int dropped = state.droppedTraces.get();
+    DDSpan leaked = (DDSpan) state.tracer.buildSpan("leaked").start();
+    final PendingTrace trace = leaked.context().getTrace();
+    leaked = null;
+    int runs = 0;
+    while (state.droppedTraces.get() == dropped) {
+      System.gc();
+      trace.clean();
+      runs++;
+      Thread.sleep(1);
+    }
+    return runs;
+  }
+}
@@ -0,0 +1,77 @@
+package datadog.opentracing;
+
+import datadog.trace.common.util.Ids;
+import datadog.trace.common.writer.ListWriter;
+import java.util.concurrent.ThreadLocalRandom;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares String span ids, as DDSpanContext used to hold them, against primitive long ids. The
+ * string variants replay what span creation and Zipkin encoding did per span before: format a
+ * random id to decimal, compare trace ids with equals, then parse the ids back to encode them as
+ * hex. Run with the gc profiler to see the allocation difference.
+ */
+public class SpanIdBenchmark {
+
+  @State(org.openjdk.jmh.annotations.Scope.Thread)
+  public static class IdState {
+    public String traceIdString;
+    public long traceId;
+    public DDTracer tracer;
+    public DDSpan span;
+
+    @Setup
+    public void setup() {
+      traceId = ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+      traceIdString = String.valueOf(traceId);
+      tracer = new DDTracer(new ListWriter());
+      span = (DDSpan) tracer.buildSpan("benchmark").start();
+    }
+  }
+
+  @Benchmark
+  public boolean newSpanStringIds(final IdState state) {
+    final String spanId = String.valueOf(ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE));
+    final String traceId = state.traceIdString;
+    // PendingTrace.registerSpan
+    return traceId.equals(new String(state.traceIdString)) && !spanId.isEmpty();
+  }
+
+  @Benchmark
+  public boolean newSpanLongIds(final IdState state) {
+    final long spanId = ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+    final long traceId = state.traceId;
+    // PendingTrace.registerSpan
+    return traceId == state.traceId && spanId != 0;
+  }
+
+  @Benchmark
+  public int zipkinStringIds(final IdState state) {
+    final DDSpanContext context = state.span.context();
+    return Ids.idToHex(context.getTraceId()).length()
+        + Ids.idToHex(context.getSpanId()).length()
+        + Ids.idToHex(context.getParentId()).length();
+  }
+
+  @Benchmark
+  public int zipkinLongIds(final IdState state) {
+    final DDSpanContext context = state.span.context();
+    return context.getTraceIdHex().length()
+        + context.getSpanIdHex().length()
+        + context.getParentIdHex().length();
+  }
+
+  @Benchmark
+  public Object createAndEncodeSpan(final IdState state) {
+    final DDSpan span = (DDSpan) state.tracer.buildSpan("benchmark").start();
+    final DDSpanContext context = span.context();
+    final int length =
+        context.getTraceIdHex().length()
+            + context.getSpanIdHex().length()
+            + context.getParentIdHex().length();
+    span.finish();
+    return length;
+  }
+}
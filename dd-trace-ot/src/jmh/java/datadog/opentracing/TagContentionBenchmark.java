@@ -0,0 +1,98 @@
+package datadog.opentracing;
+
+import datadog.trace.common.writer.ListWriter;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Several threads tagging and reading a shared span, as happens with async instrumentation. The
+ * {@code legacy} variants replay the previous tag storage: a ConcurrentHashMap guarded by the span
+ * context monitor, wrapped in a new unmodifiable view on every read.
+ */
+@Threads(4)
+public class TagContentionBenchmark {
+  private static final String[] KEYS = {
+    "http.method", "http.url", "http.status_code", "component", "span.kind", "peer.hostname",
+    "peer.port", "db.type", "db.instance", "error", "thread.name", "thread.id"
+  };
+
+  @State(org.openjdk.jmh.annotations.Scope.Benchmark)
+  public static class SharedSpan {
+    public DDSpan span;
+    public LegacyTags legacy;
+
+    @Setup
+    public void setup() {
+      span = (DDSpan) new DDTracer(new ListWriter()).buildSpan("benchmark").start();
+      legacy = new LegacyTags();
+      for (final String key : KEYS) {
+        span.setTag(key, key);
+        legacy.setTag(key, key);
+      }
+    }
+  }
+
+  public static class LegacyTags {
+    private final Map<String, Object> tags = new ConcurrentHashMap<>();
+
+    public synchronized void setTag(final String tag, final Object value) {
+      tags.put(tag, value);
+    }
+
+    public synchronized Map<String, Object> getTags() {
+      return Collections.unmodifiableMap(tags);
+    }
+  }
+
+  private static String randomKey() {
+    return KEYS[ThreadLocalRandom.current().nextInt(KEYS.length)];
+  }
+
+  @Benchmark
+  public DDSpan setTag(final SharedSpan state) {
+    return state.span.setTag(randomKey(), "value");
+  }
+
+  @Benchmark
+  public Object getTag(final SharedSpan state) {
+    return state.span.context().getTag(randomKey());
+  }
+
+  @Benchmark
+  public Object getTagsView(final SharedSpan state) {
+    return state.span.getTags().get(randomKey());
+  }
+
+  @Benchmark
+  public Object mixedReadWrite(final SharedSpan state) {
+    if (ThreadLocalRandom.current().nextInt(4) == 0) {
+      return state.span.setTag(randomKey(), "value");
+    }
+    return state.span.context().getTag(randomKey());
+  }
+
+  @Benchmark
+  public void legacySetTag(final SharedSpan state) {
+    state.legacy.setTag(randomKey(), "value");
+  }
+
+  @Benchmark
+  public Object legacyGetTags(final SharedSpan state) {
+    return state.legacy.getTags().get(randomKey());
+  }
+
+  @Benchmark
+  public Object legacyMixedReadWrite(final SharedSpan state) {
+    if (ThreadLocalRandom.current().nextInt(4) == 0) {
+      state.legacy.setTag(randomKey(), "value");
+      return null;
+    }
+    return state.legacy.getTags().get(randomKey());
+  }
+}
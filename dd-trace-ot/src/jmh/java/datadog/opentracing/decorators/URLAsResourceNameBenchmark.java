@@ -4,8 +4,10 @@ import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
 import datadog.opentracing.DDSpanContext;
 import datadog.opentracing.SpanFactory;
+import java.util.Random;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
 import org.slf4j.LoggerFactory;
 
@@ -14,11 +16,47 @@ public class URLAsResourceNameBenchmark {
     ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
   }
 
+  /** Route shapes of a REST service, the ids being filled in at random */
+  private static final String[] ROUTES = {
+    "http://api.example.com/v1/users/%d",
+    "http://api.example.com/v1/users/%d/orders",
+    "http://api.example.com/v1/users/%d/orders/%d?expand=items",
+    "http://api.example.com/v2/products/%d/reviews?page=%d",
+    "http://api.example.com/v2/carts/%x-%x/items/%d",
+    "/health",
+    "/static/js/app.%x.js",
+    "/search?q=shoes&size=%d",
+  };
+
   @State(Scope.Benchmark)
   public static class BenchmarkState {
     private final AbstractDecorator base = new URLAsResourceName();
 
     private final DDSpanContext ctx = SpanFactory.newSpanOf(0).context();
+
+    /** A few popular ids, and a long tail of others */
+    private final String[] corpus = new String[4096];
+
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+      final Random random = new Random(42);
+      for (int i = 0; i < corpus.length; i++) {
+        final int bound = random.nextInt(4) == 0 ? 1000000 : 20;
+        corpus[i] =
+            String.format(
+                ROUTES[random.nextInt(ROUTES.length)],
+                random.nextInt(bound),
+                random.nextInt(bound),
+                random.nextInt(bound));
+      }
+    }
+
+    String nextUrl() {
+      next = (next + 1) & (corpus.length - 1);
+      return corpus[next];
+    }
   }
 
   @Benchmark
@@ -31,4 +69,20 @@ public class URLAsResourceNameBenchmark {
     return state.base.shouldSetTag(
         state.ctx, null, "http://localhost:8080/somepath/123/?query=123#fragment");
   }
+
+  @Benchmark
+  public Object testCorpus(final BenchmarkState state) {
+    return state.base.shouldSetTag(state.ctx, null, state.nextUrl());
+  }
+
+  /** The path regex normalization used before, on the same corpus */
+  @Benchmark
+  public Object testCorpusRegex(final BenchmarkState state) {
+    final String url = state.nextUrl();
+    final int protocol = url.indexOf("://");
+    final int path = protocol < 0 ? 0 : url.indexOf('/', protocol + 3);
+    final int query = url.indexOf('?');
+    final String rawPath = url.substring(path, query < 0 ? url.length() : query);
+    return URLAsResourceName.PATH_MIXED_ALPHANUMERICS.matcher(rawPath).replaceAll("?");
+  }
 }
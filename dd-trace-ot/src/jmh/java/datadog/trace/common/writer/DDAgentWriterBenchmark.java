@@ -0,0 +1,94 @@
+package datadog.trace.common.writer;
+
+import ch.qos.logback.classic.Logger;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import datadog.opentracing.DDSpan;
+import datadog.opentracing.DDTracer;
+import io.opentracing.Scope;
+import io.opentracing.Span;
+import java.util.List;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.slf4j.LoggerFactory;
+
+/** Measures end to end writer throughput (publish, serialize, flush) by serialization workers. */
+public class DDAgentWriterBenchmark {
+  private static final int TRACES_PER_INVOCATION = 1000;
+
+  static {
+    ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME))
+        .setLevel(ch.qos.logback.classic.Level.WARN);
+  }
+
+  @State(org.openjdk.jmh.annotations.Scope.Benchmark)
+  public static class WriterState {
+    @Param({"1", "2", "4", "8"})
+    public int serializationWorkers;
+
+    public DDAgentWriter writer;
+    public List<DDSpan> trace;
+
+    @Setup
+    public void setup() throws Exception {
+      writer =
+          DDAgentWriter.builder()
+              .api(new DiscardingApi())
+              .serializationWorkers(serializationWorkers)
+              .build();
+      writer.start();
+
+      final ListWriter listWriter = new ListWriter();
+      final DDTracer tracer = new DDTracer(listWriter);
+      try (final Scope root = tracer.buildSpan("servlet.request").startActive(true)) {
+        root.span().setTag("http.url", "http://localhost:8080/users/123/orders");
+        for (int i = 0; i < 20; i++) {
+          final Span child = tracer.buildSpan("jdbc.query").start();
+          child.setTag("db.statement", "SELECT * FROM orders WHERE user_id = ?");
+          child.finish();
+        }
+      }
+      listWriter.waitForTraces(1);
+      trace = listWriter.firstTrace();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      writer.close();
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(TRACES_PER_INVOCATION)
+  public boolean writeAndFlush(final WriterState state) {
+    for (int i = 0; i < TRACES_PER_INVOCATION; i++) {
+      state.writer.write(state.trace);
+    }
+    return state.writer.flush();
+  }
+
+  /** Real msgpack serialization, but nothing is sent. */
+  static class DiscardingApi implements Api {
+    private final DDApi delegate = new DDApi("localhost", 8126, true, null);
+
+    @Override
+    public Response sendTraces(final List<List<DDSpan>> traces) {
+      return Response.success(200);
+    }
+
+    @Override
+    public byte[] serializeTrace(final List<DDSpan> trace) throws JsonProcessingException {
+      return delegate.serializeTrace(trace);
+    }
+
+    @Override
+    public Response sendSerializedTraces(
+        final int representativeCount, final Integer sizeInBytes, final List<byte[]> traces) {
+      return Response.success(200);
+    }
+  }
+}
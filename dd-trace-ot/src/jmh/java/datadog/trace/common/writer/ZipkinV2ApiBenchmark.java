@@ -0,0 +1,130 @@
+package datadog.trace.common.writer;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import datadog.opentracing.DDSpan;
+import datadog.opentracing.DDTracer;
+import datadog.trace.api.DDTags;
+import datadog.trace.common.util.Ids;
+import io.opentracing.Scope;
+import io.opentracing.Span;
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the streaming Zipkin V2 encoder against the previous tree model based encoding. Run
+ * with the gc profiler to see the allocation difference.
+ */
+public class ZipkinV2ApiBenchmark {
+  static {
+    ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+  }
+
+  @State(org.openjdk.jmh.annotations.Scope.Benchmark)
+  public static class TraceState {
+    @Param({"1", "10", "100"})
+    public int spansPerTrace;
+
+    public ZipkinV2Api api = new ZipkinV2Api("localhost", 9080, "/v1/trace", false);
+    public List<DDSpan> trace;
+
+    @Setup
+    public void setup() throws Exception {
+      final ListWriter writer = new ListWriter();
+      final DDTracer tracer = new DDTracer(writer);
+      try (final Scope root = tracer.buildSpan("servlet.request").startActive(true)) {
+        root.span().setTag(DDTags.SPAN_KIND, DDTags.SPAN_KIND_SERVER);
+        root.span().setTag("http.url", "http://localhost:8080/users/123/orders");
+        root.span().setTag("http.method", "GET");
+        root.span().setTag("http.status_code", 200);
+        for (int i = 1; i < spansPerTrace; i++) {
+          final Span child = tracer.buildSpan("jdbc.query").start();
+          child.setTag("db.type", "postgresql");
+          child.setTag("db.statement", "SELECT * FROM orders WHERE user_id = ?");
+          child.log(Collections.singletonMap("event", "fetched rows"));
+          child.finish();
+        }
+      }
+      writer.waitForTraces(1);
+      trace = writer.firstTrace();
+    }
+  }
+
+  @Benchmark
+  public byte[] streamingEncoder(final TraceState state) throws JsonProcessingException {
+    return state.api.serializeTrace(state.trace);
+  }
+
+  @Benchmark
+  public byte[] treeModelEncoder(final TraceState state) throws JsonProcessingException {
+    return TreeModelEncoder.serializeTrace(state.trace);
+  }
+
+  /** The ObjectNode based encoding ZipkinV2Api used before switching to a JsonGenerator. */
+  static class TreeModelEncoder {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    static byte[] serializeTrace(final List<DDSpan> trace) throws JsonProcessingException {
+      final ArrayNode spanArr = OBJECT_MAPPER.createArrayNode();
+      for (final DDSpan span : trace) {
+        spanArr.add(encodeSpan(span));
+      }
+      return OBJECT_MAPPER.writeValueAsBytes(spanArr);
+    }
+
+    private static ObjectNode encodeSpan(final DDSpan span) throws JsonProcessingException {
+      final ObjectNode spanNode = OBJECT_MAPPER.createObjectNode();
+      spanNode.put("id", Ids.idToHex(span.getSpanId()));
+      spanNode.put("name", span.getOperationName());
+      spanNode.put("traceId", Ids.idToHex(span.getTraceId()));
+      spanNode.put("parentId", Ids.idToHex(span.getParentId()));
+      final Object kind = span.getTags().get(DDTags.SPAN_KIND);
+      spanNode.put("kind", kind instanceof String ? (String) kind : null);
+
+      final ObjectNode localEndpointNode = spanNode.putObject("localEndpoint");
+      localEndpointNode.put("serviceName", span.getServiceName());
+
+      spanNode.put("timestamp", span.getStartTime() / 1000);
+      spanNode.put("duration", span.getDurationNano() / 1000);
+
+      final ObjectNode tagNode = spanNode.putObject("tags");
+      for (final Map.Entry<String, Object> tag : span.getTags().entrySet()) {
+        if (DDTags.SPAN_KIND.equals(tag.getKey())) {
+          continue;
+        }
+        tagNode.put(tag.getKey(), tag.getValue().toString());
+      }
+
+      final String resourceName = span.getResourceName();
+      if (resourceName != null) {
+        if (DDTags.SPAN_KIND_SERVER.equalsIgnoreCase(spanNode.get("kind").textValue())) {
+          spanNode.put("name", resourceName);
+        }
+        if (!spanNode.get("name").textValue().equals(resourceName)) {
+          tagNode.put(DDTags.RESOURCE_NAME, resourceName);
+        }
+      }
+
+      final ArrayNode annotations = spanNode.putArray("annotations");
+      for (final AbstractMap.SimpleEntry<Long, Map<String, ?>> item : span.getLogs()) {
+        final ObjectNode annotation = OBJECT_MAPPER.createObjectNode();
+        annotation.put("timestamp", item.getKey());
+        annotation.put(
+            "value", OBJECT_MAPPER.writeValueAsString(OBJECT_MAPPER.valueToTree(item.getValue())));
+        annotations.add(annotation);
+      }
+      return spanNode;
+    }
+  }
+}
@@ -133,7 +133,7 @@ public class DDSpan implements Span, MutableSpan {
    */
   @JsonIgnore
   public final boolean isRootSpan() {
-    return "0".equals(context.getParentId());
+    return context.getParentIdAsLong() == 0;
   }
 
   @Override
@@ -146,11 +146,18 @@ public class DDSpan implements Span, MutableSpan {
   @Override
   @JsonIgnore
   public MutableSpan getLocalRootSpan() {
+    if (!context.isRecording()) {
+      // Spans not recorded don't keep track of their local root
+      return this;
+    }
     return context().getTrace().getRootSpan();
   }
 
   public void setErrorMeta(final Throwable error) {
     setError(true);
+    if (!context.isRecording()) {
+      return;
+    }
 
     setTag(DDTags.ERROR_MSG, error.getMessage());
     setTag(DDTags.ERROR_TYPE, error.getClass().getName());
@@ -5,6 +5,7 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import datadog.opentracing.decorators.AbstractDecorator;
 import datadog.trace.api.DDTags;
 import datadog.trace.api.sampling.PrioritySampling;
+import datadog.trace.common.util.Ids;
 import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -30,6 +31,8 @@ public class DDSpanContext implements io.opentracing.SpanContext {
   public static final String ORIGIN_KEY = "_dd.origin";
 
   private static final Map<String, Number> EMPTY_METRICS = Collections.emptyMap();
+  /** Tags of the contexts not recorded, always empty */
+  private static final TagMap NO_TAGS = new TagMap();
 
   // Shared with other span contexts
   /** For technical reasons, the ref to the original tracer */
@@ -42,12 +45,24 @@ public class DDSpanContext implements io.opentracing.SpanContext {
   private final Map<String, String> baggageItems;
 
   // Not Shared with other span contexts
-  private final String traceId;
-  private final String spanId;
-  private final String parentId;
+  /** High 64 bits of a 128 bit trace id, 0 for 64 bit trace ids */
+  private final long traceIdHigh;
+
+  private final long traceIdLow;
+  private final long spanId;
+  private final long parentId;
+
+  // String encodings of the ids, only created when asked for. Racy caching is fine since the
+  // computed values are immutable and always the same.
+  private String traceIdString;
+  private String spanIdString;
+  private String parentIdString;
+  private String traceIdHex;
+  private String spanIdHex;
+  private String parentIdHex;
 
   /** Tags are associated to the current span, they will not propagate to the children span */
-  private final Map<String, Object> tags = new ConcurrentHashMap<>();
+  private final TagMap tags;
 
   /** Logs are associated to the current span, they will not propagate to the children span */
   private final List<AbstractMap.SimpleEntry<Long, Map<String, ?>>> logs = new ArrayList<>();
@@ -73,11 +88,23 @@ public class DDSpanContext implements io.opentracing.SpanContext {
   private final String origin;
   /** Metrics on the span */
   private final AtomicReference<Map<String, Number>> metrics = new AtomicReference<>();
+  /**
+   * False for the contexts of traces dropped by head sampling, which only keep what propagates:
+   * tags and logs are ignored, and the sampling priority is locked since the spans before a change
+   * are lost already.
+   */
+  private final boolean recording;
 
   // Additional Metadata
   private final String threadName = Thread.currentThread().getName();
   private final long threadId = Thread.currentThread().getId();
 
+  /**
+   * @param traceId unsigned decimal trace id of up to 128 bits
+   * @param spanId unsigned decimal span id of up to 64 bits
+   * @param parentId unsigned decimal span id of the parent, "0" for root spans
+   * @throws NumberFormatException if an id is not a number or does not fit in its bits
+   */
   public DDSpanContext(
       final String traceId,
       final String spanId,
@@ -90,19 +117,95 @@ public class DDSpanContext implements io.opentracing.SpanContext {
       final Map<String, String> baggageItems,
       final boolean errorFlag,
       final String spanType,
-      final Map<String, Object> tags,
+      final Map<String, ?> tags,
       final PendingTrace trace,
       final DDTracer tracer) {
+    this(
+        Ids.parseHigh(traceId),
+        Ids.parseLow(traceId),
+        Ids.parseUnsignedLong(spanId),
+        Ids.parseUnsignedLong(parentId),
+        serviceName,
+        operationName,
+        resourceName,
+        samplingPriority,
+        origin,
+        baggageItems,
+        errorFlag,
+        spanType,
+        tags,
+        trace,
+        tracer);
+  }
+
+  /**
+   * @param traceIdHigh high 64 bits of a 128 bit trace id, 0 for 64 bit trace ids
+   * @param traceIdLow low 64 bits of the trace id, as an unsigned value
+   * @param spanId unsigned 64 bit span id
+   * @param parentId unsigned 64 bit span id of the parent, 0 for root spans
+   */
+  public DDSpanContext(
+      final long traceIdHigh,
+      final long traceIdLow,
+      final long spanId,
+      final long parentId,
+      final String serviceName,
+      final String operationName,
+      final String resourceName,
+      final int samplingPriority,
+      final String origin,
+      final Map<String, String> baggageItems,
+      final boolean errorFlag,
+      final String spanType,
+      final Map<String, ?> tags,
+      final PendingTrace trace,
+      final DDTracer tracer) {
+    this(
+        traceIdHigh,
+        traceIdLow,
+        spanId,
+        parentId,
+        serviceName,
+        operationName,
+        resourceName,
+        samplingPriority,
+        origin,
+        baggageItems,
+        errorFlag,
+        spanType,
+        tags,
+        trace,
+        tracer,
+        true);
+  }
+
+  private DDSpanContext(
+      final long traceIdHigh,
+      final long traceIdLow,
+      final long spanId,
+      final long parentId,
+      final String serviceName,
+      final String operationName,
+      final String resourceName,
+      final int samplingPriority,
+      final String origin,
+      final Map<String, String> baggageItems,
+      final boolean errorFlag,
+      final String spanType,
+      final Map<String, ?> tags,
+      final PendingTrace trace,
+      final DDTracer tracer,
+      final boolean recording) {
 
     assert tracer != null;
     assert trace != null;
     this.tracer = tracer;
     this.trace = trace;
+    this.recording = recording;
+    this.tags = recording ? new TagMap() : NO_TAGS;
 
-    assert traceId != null;
-    assert spanId != null;
-    assert parentId != null;
-    this.traceId = traceId;
+    this.traceIdHigh = traceIdHigh;
+    this.traceIdLow = traceIdLow;
     this.spanId = spanId;
     this.parentId = parentId;
 
@@ -112,7 +215,7 @@ public class DDSpanContext implements io.opentracing.SpanContext {
       this.baggageItems = new ConcurrentHashMap<>(baggageItems);
     }
 
-    if (tags != null) {
+    if (recording && tags != null) {
       this.tags.putAll(tags);
     }
 
@@ -126,36 +229,147 @@ public class DDSpanContext implements io.opentracing.SpanContext {
     if (samplingPriority != PrioritySampling.UNSET) {
       setSamplingPriority(samplingPriority);
     }
+    if (!recording) {
+      samplingPriorityLocked = true;
+    }
 
-    if (origin != null) {
-      this.tags.put(ORIGIN_KEY, origin);
+    if (recording) {
+      if (origin != null) {
+        this.tags.put(ORIGIN_KEY, origin);
+      }
+      this.tags.put(DDTags.THREAD_NAME, threadName);
+      this.tags.put(DDTags.THREAD_ID, threadId);
     }
-    this.tags.put(DDTags.THREAD_NAME, threadName);
-    this.tags.put(DDTags.THREAD_ID, threadId);
   }
 
+  /**
+   * @return the context of a span that isn't recorded, with no tags, in the trace shared by the
+   *     spans not recorded
+   */
+  static DDSpanContext nonRecording(
+      final long traceIdHigh,
+      final long traceIdLow,
+      final long spanId,
+      final long parentId,
+      final String serviceName,
+      final String operationName,
+      final int samplingPriority,
+      final String origin,
+      final Map<String, String> baggageItems,
+      final PendingTrace trace,
+      final DDTracer tracer) {
+    return new DDSpanContext(
+        traceIdHigh,
+        traceIdLow,
+        spanId,
+        parentId,
+        serviceName,
+        operationName,
+        null,
+        samplingPriority,
+        origin,
+        baggageItems,
+        false,
+        null,
+        null,
+        trace,
+        tracer,
+        false);
+  }
+
+  /** @return false when the span is dropped by head sampling and none of its data is kept */
+  public boolean isRecording() {
+    return recording;
+  }
+
+  /** @return the trace id as an unsigned decimal string */
   public String getTraceId() {
+    String traceId = traceIdString;
+    if (traceId == null) {
+      traceId = Ids.toDecimal(traceIdHigh, traceIdLow);
+      traceIdString = traceId;
+    }
     return traceId;
   }
 
   @Override
   public String toTraceId() {
-    return traceId;
+    return getTraceId();
   }
 
+  /** @return the parent span id as an unsigned decimal string, "0" for root spans */
   public String getParentId() {
+    String parentId = parentIdString;
+    if (parentId == null) {
+      parentId = Ids.toDecimal(0, this.parentId);
+      parentIdString = parentId;
+    }
     return parentId;
   }
 
+  /** @return the span id as an unsigned decimal string */
   public String getSpanId() {
+    String spanId = spanIdString;
+    if (spanId == null) {
+      spanId = Ids.toDecimal(0, this.spanId);
+      spanIdString = spanId;
+    }
     return spanId;
   }
 
   @Override
   public String toSpanId() {
+    return getSpanId();
+  }
+
+  /** @return the high 64 bits of a 128 bit trace id, 0 for 64 bit trace ids */
+  public long getTraceIdHigh() {
+    return traceIdHigh;
+  }
+
+  /** @return the low 64 bits of the trace id, as an unsigned value */
+  public long getTraceIdLow() {
+    return traceIdLow;
+  }
+
+  public long getSpanIdAsLong() {
     return spanId;
   }
 
+  public long getParentIdAsLong() {
+    return parentId;
+  }
+
+  /** @return the trace id as lowercase hex, 16 characters or 32 for 128 bit trace ids */
+  public String getTraceIdHex() {
+    String traceId = traceIdHex;
+    if (traceId == null) {
+      traceId = Ids.toHex(traceIdHigh, traceIdLow);
+      traceIdHex = traceId;
+    }
+    return traceId;
+  }
+
+  /** @return the span id as 16 characters of lowercase hex */
+  public String getSpanIdHex() {
+    String spanId = spanIdHex;
+    if (spanId == null) {
+      spanId = Ids.toHex(this.spanId);
+      spanIdHex = spanId;
+    }
+    return spanId;
+  }
+
+  /** @return the parent span id as 16 characters of lowercase hex */
+  public String getParentIdHex() {
+    String parentId = parentIdHex;
+    if (parentId == null) {
+      parentId = Ids.toHex(this.parentId);
+      parentIdHex = parentId;
+    }
+    return parentId;
+  }
+
   public String getServiceName() {
     return serviceName;
   }
@@ -324,6 +538,12 @@ public class DDSpanContext implements io.opentracing.SpanContext {
    * @param value the value of the tag. tags with null values are ignored.
    */
   public synchronized void setTag(final String tag, final Object value) {
+    if (!recording) {
+      if (DDTags.MANUAL_KEEP.equals(tag)) {
+        log.debug("{}: dropped by head sampling. Refusing to keep it", this);
+      }
+      return;
+    }
     if (value == null || (value instanceof String && ((String) value).isEmpty())) {
       tags.remove(tag);
       return;
@@ -332,7 +552,7 @@ public class DDSpanContext implements io.opentracing.SpanContext {
     boolean addTag = true;
 
     // Call decorators
-    final List<AbstractDecorator> decorators = tracer.getSpanContextDecorators(tag);
+    final AbstractDecorator[] decorators = tracer.decoratorsFor(tag);
     if (decorators != null) {
       for (final AbstractDecorator decorator : decorators) {
         try {
@@ -351,8 +571,18 @@ public class DDSpanContext implements io.opentracing.SpanContext {
     }
   }
 
-  public synchronized Map<String, Object> getTags() {
-    return Collections.unmodifiableMap(tags);
+  /** @return a read-only view of the tags, neither copied nor allocated */
+  public Map<String, Object> getTags() {
+    return tags.view();
+  }
+
+  /** @return the value of the tag or null, without locking or allocating */
+  public Object getTag(final String tag) {
+    return tags.get(tag);
+  }
+
+  int getTagCount() {
+    return tags.size();
   }
 
   /**
@@ -362,6 +592,9 @@ public class DDSpanContext implements io.opentracing.SpanContext {
    * @param map the event map for the tag.
    */
   public synchronized void log(final long timestamp, final Map<String, ?> map) {
+    if (!recording) {
+      return;
+    }
     // explicit generic type seems to be required
     AbstractMap.SimpleEntry<Long, Map<String, ?>> logged =
         new AbstractMap.SimpleEntry<Long, Map<String, ?>>(timestamp, map);
@@ -377,11 +610,11 @@ public class DDSpanContext implements io.opentracing.SpanContext {
     final StringBuilder s =
         new StringBuilder()
             .append("DDSpan [ t_id=")
-            .append(traceId)
+            .append(getTraceId())
             .append(", s_id=")
-            .append(spanId)
+            .append(getSpanId())
             .append(", p_id=")
-            .append(parentId)
+            .append(getParentId())
             .append("] trace=")
             .append(getServiceName())
             .append("/")
@@ -4,14 +4,17 @@ package datadog.opentracing;
 import datadog.opentracing.decorators.AbstractDecorator;
 import datadog.opentracing.decorators.DDDecoratorsFactory;
 import datadog.opentracing.propagation.ExtractedContext;
+import datadog.opentracing.propagation.HeaderNames;
 import datadog.opentracing.propagation.HttpCodec;
 import datadog.opentracing.propagation.TagContext;
 import datadog.opentracing.scopemanager.ContextualScopeManager;
 import datadog.opentracing.scopemanager.ScopeContext;
 import datadog.trace.api.Config;
+import datadog.trace.api.DDTags;
 import datadog.trace.api.interceptor.MutableSpan;
 import datadog.trace.api.interceptor.TraceInterceptor;
 import datadog.trace.api.sampling.PrioritySampling;
+import datadog.trace.common.flush.PartialFlushPolicy;
 import datadog.trace.common.sampling.AllSampler;
 import datadog.trace.common.sampling.RateByServiceSampler;
 import datadog.trace.common.sampling.Sampler;
@@ -29,9 +32,11 @@ import io.opentracing.propagation.Format;
 import io.opentracing.propagation.TextMapExtract;
 import io.opentracing.propagation.TextMapInject;
 import io.opentracing.tag.Tag;
+import io.opentracing.tag.Tags;
 import java.io.Closeable;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -42,9 +47,9 @@ import java.util.Properties;
 import java.util.ServiceConfigurationError;
 import java.util.ServiceLoader;
 import java.util.SortedSet;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
@@ -68,8 +73,20 @@ public class DDTracer implements io.opentracing.Tracer, Closeable, datadog.trace
   /** A configured mapping of service names to update with new values */
   private final Map<String, String> serviceNameMappings;
 
-  /** number of spans in a pending trace before they get flushed */
-  @Getter private final int partialFlushMinSpans;
+  /** when the finished spans of a pending trace get flushed */
+  @Getter private final PartialFlushPolicy partialFlushPolicy;
+  /** number of partial traces written, and of spans in them */
+  private final AtomicLong partialFlushCount = new AtomicLong(0);
+
+  private final AtomicLong partialFlushSpanCount = new AtomicLong(0);
+
+  /** track pending spans with counters instead of a weak reference per span */
+  @Getter private final boolean spanCountingEnabled;
+  /** seconds before a trace tracked with counters falls back to weak reference leak detection */
+  @Getter private final int spanCountingLeakDetectionAge;
+
+  /** Shared by the spans of the traces dropped by head sampling */
+  private final PendingTrace nonRecordingTrace;
 
   /**
    * JVM shutdown callback, keeping a reference to it to remove this if DDTracer gets destroyed
@@ -77,9 +94,8 @@ public class DDTracer implements io.opentracing.Tracer, Closeable, datadog.trace
    */
   private final Thread shutdownCallback;
 
-  /** Span context decorators */
-  private final Map<String, List<AbstractDecorator>> spanContextDecorators =
-      new ConcurrentHashMap<>();
+  /** Span context decorators, replaced by a new table when a decorator is added */
+  private volatile DecoratorTable spanContextDecorators = DecoratorTable.EMPTY;
 
   private final SortedSet<TraceInterceptor> interceptors =
       new ConcurrentSkipListSet<>(
@@ -92,6 +108,8 @@ public class DDTracer implements io.opentracing.Tracer, Closeable, datadog.trace
 
   private final HttpCodec.Injector injector;
   private final HttpCodec.Extractor extractor;
+  /** The headers {@link #extractor} reads */
+  private final HeaderNames extractedHeaders;
 
   /** By default, report to local agent and collect all traces. */
   public DDTracer() {
@@ -124,7 +142,9 @@ public class DDTracer implements io.opentracing.Tracer, Closeable, datadog.trace
         config.getMergedSpanTags(),
         config.getServiceMapping(),
         config.getHeaderTags(),
-        config.getPartialFlushMinSpans());
+        PartialFlushPolicy.Builder.forConfig(config),
+        config.isSpanCountingEnabled(),
+        config.getSpanCountingLeakDetectionAge());
     log.debug("Using config: {}", config);
   }
 
@@ -158,7 +178,9 @@ public class DDTracer implements io.opentracing.Tracer, Closeable, datadog.trace
         config.getMergedSpanTags(),
         config.getServiceMapping(),
         config.getHeaderTags(),
-        config.getPartialFlushMinSpans());
+        PartialFlushPolicy.Builder.forConfig(config),
+        config.isSpanCountingEnabled(),
+        config.getSpanCountingLeakDetectionAge());
   }
 
   /**
@@ -217,6 +239,54 @@ public class DDTracer implements io.opentracing.Tracer, Closeable, datadog.trace
       final Map<String, String> serviceNameMappings,
       final Map<String, String> taggedHeaders,
       final int partialFlushMinSpans) {
+    this(
+        serviceName,
+        writer,
+        sampler,
+        localRootSpanTags,
+        defaultSpanTags,
+        serviceNameMappings,
+        taggedHeaders,
+        partialFlushMinSpans,
+        Config.get().isSpanCountingEnabled(),
+        Config.get().getSpanCountingLeakDetectionAge());
+  }
+
+  public DDTracer(
+      final String serviceName,
+      final Writer writer,
+      final Sampler sampler,
+      final Map<String, String> localRootSpanTags,
+      final Map<String, String> defaultSpanTags,
+      final Map<String, String> serviceNameMappings,
+      final Map<String, String> taggedHeaders,
+      final int partialFlushMinSpans,
+      final boolean spanCountingEnabled,
+      final int spanCountingLeakDetectionAge) {
+    this(
+        serviceName,
+        writer,
+        sampler,
+        localRootSpanTags,
+        defaultSpanTags,
+        serviceNameMappings,
+        taggedHeaders,
+        PartialFlushPolicy.Builder.forConfig(Config.get(), partialFlushMinSpans),
+        spanCountingEnabled,
+        spanCountingLeakDetectionAge);
+  }
+
+  public DDTracer(
+      final String serviceName,
+      final Writer writer,
+      final Sampler sampler,
+      final Map<String, String> localRootSpanTags,
+      final Map<String, String> defaultSpanTags,
+      final Map<String, String> serviceNameMappings,
+      final Map<String, String> taggedHeaders,
+      final PartialFlushPolicy partialFlushPolicy,
+      final boolean spanCountingEnabled,
+      final int spanCountingLeakDetectionAge) {
     assert localRootSpanTags != null;
     assert defaultSpanTags != null;
     assert serviceNameMappings != null;
@@ -229,7 +299,10 @@ public class DDTracer implements io.opentracing.Tracer, Closeable, datadog.trace
     this.localRootSpanTags = localRootSpanTags;
     this.defaultSpanTags = defaultSpanTags;
     this.serviceNameMappings = serviceNameMappings;
-    this.partialFlushMinSpans = partialFlushMinSpans;
+    this.partialFlushPolicy = partialFlushPolicy;
+    this.spanCountingEnabled = spanCountingEnabled;
+    this.spanCountingLeakDetectionAge = spanCountingLeakDetectionAge;
+    nonRecordingTrace = PendingTrace.nonRecording(this);
 
     shutdownCallback = new ShutdownHook(this);
     try {
@@ -241,6 +314,7 @@ public class DDTracer implements io.opentracing.Tracer, Closeable, datadog.trace
     // TODO: we have too many constructors, we should move to some sort of builder approach
     injector = HttpCodec.createInjector(Config.get());
     extractor = HttpCodec.createExtractor(Config.get(), taggedHeaders);
+    extractedHeaders = HttpCodec.extractedHeaders(Config.get(), taggedHeaders);
 
     if (this.writer instanceof DDAgentWriter
         && ((DDAgentWriter) this.writer).getApi() instanceof DDApi) {
@@ -280,6 +354,12 @@ public class DDTracer implements io.opentracing.Tracer, Closeable, datadog.trace
    * @return the list of span context decorators
    */
   public List<AbstractDecorator> getSpanContextDecorators(final String tag) {
+    final AbstractDecorator[] decorators = spanContextDecorators.get(tag);
+    return decorators == null ? null : Collections.unmodifiableList(Arrays.asList(decorators));
+  }
+
+  /** @return the span context decorators of the tag, null when there are none */
+  AbstractDecorator[] decoratorsFor(final String tag) {
     return spanContextDecorators.get(tag);
   }
 
@@ -288,15 +368,8 @@ public class DDTracer implements io.opentracing.Tracer, Closeable, datadog.trace
    *
    * @param decorator The decorator in the list
    */
-  public void addDecorator(final AbstractDecorator decorator) {
-
-    List<AbstractDecorator> list = spanContextDecorators.get(decorator.getMatchingTag());
-    if (list == null) {
-      list = new ArrayList<>();
-    }
-    list.add(decorator);
-
-    spanContextDecorators.put(decorator.getMatchingTag(), list);
+  public synchronized void addDecorator(final AbstractDecorator decorator) {
+    spanContextDecorators = spanContextDecorators.with(decorator);
     log.debug(
         "Decorator added: '{}' -> {}", decorator.getMatchingTag(), decorator.getClass().getName());
   }
@@ -352,6 +425,14 @@ public class DDTracer implements io.opentracing.Tracer, Closeable, datadog.trace
     }
   }
 
+  /**
+   * @return the headers {@link #extract(Format, Object)} reads from text maps, the others being
+   *     ignored
+   */
+  public HeaderNames getExtractedHeaders() {
+    return extractedHeaders;
+  }
+
   @Override
   public <T> SpanContext extract(final Format<T> format, final T carrier) {
     if (carrier instanceof TextMapExtract) {
@@ -368,13 +449,14 @@ public class DDTracer implements io.opentracing.Tracer, Closeable, datadog.trace
    *
    * @param trace a list of the spans related to the same trace
    */
-  void write(final Collection<DDSpan> trace) {
+  void write(final List<DDSpan> trace) {
     if (trace.isEmpty()) {
       return;
     }
-    final ArrayList<DDSpan> writtenTrace;
+    final List<DDSpan> writtenTrace;
     if (interceptors.isEmpty()) {
-      writtenTrace = new ArrayList<>(trace);
+      // The pending trace hands over spans it no longer touches, no need for a copy
+      writtenTrace = trace;
     } else {
       Collection<? extends MutableSpan> interceptedTrace = new ArrayList<>(trace);
       for (final TraceInterceptor interceptor : interceptors) {
@@ -395,6 +477,22 @@ public class DDTracer implements io.opentracing.Tracer, Closeable, datadog.trace
     }
   }
 
+  /** Count a partial trace about to be written. */
+  void onPartialFlush(final int spanCount) {
+    partialFlushCount.incrementAndGet();
+    partialFlushSpanCount.addAndGet(spanCount);
+  }
+
+  /** @return the number of partial traces written so far */
+  public long getPartialFlushCount() {
+    return partialFlushCount.get();
+  }
+
+  /** @return the number of spans written in partial traces so far */
+  public long getPartialFlushSpanCount() {
+    return partialFlushSpanCount.get();
+  }
+
   /** Increment the reported trace count, but do not write a trace. */
   void incrementTraceCount() {
     writer.incrementTraceCount();
@@ -444,6 +542,8 @@ public class DDTracer implements io.opentracing.Tracer, Closeable, datadog.trace
         + writer
         + ", sampler="
         + sampler
+        + ", partialFlushPolicy="
+        + partialFlushPolicy
         + ", defaultSpanTags="
         + defaultSpanTags
         + '}';
@@ -465,7 +565,8 @@ public class DDTracer implements io.opentracing.Tracer, Closeable, datadog.trace
     private final String operationName;
 
     // Builder attributes
-    private final Map<String, Object> tags = new HashMap<String, Object>(defaultSpanTags);
+    /** Null until a tag is added: the default tags are only copied when there are others */
+    private Map<String, Object> tags;
     private long timestampMicro;
     private SpanContext parent;
     private String serviceName;
@@ -480,13 +581,16 @@ public class DDTracer implements io.opentracing.Tracer, Closeable, datadog.trace
     }
 
     @Override
-    public SpanBuilder ignoreActiveSpan() {
+    public DDSpanBuilder ignoreActiveSpan() {
       ignoreScope = true;
       return this;
     }
 
     private DDSpan startSpan() {
       final DDSpan span = new DDSpan(timestampMicro, buildSpanContext());
+      if (!span.context().isRecording()) {
+        return span;
+      }
       if (sampler instanceof RateByServiceSampler) {
         ((RateByServiceSampler) sampler).initializeSamplingPriority(span);
       } else if (sampler instanceof AllSampler) {
@@ -603,17 +707,41 @@ public class DDTracer implements io.opentracing.Tracer, Closeable, datadog.trace
     // Private methods
     private DDSpanBuilder withTag(final String tag, final Object value) {
       if (value == null || (value instanceof String && ((String) value).isEmpty())) {
-        tags.remove(tag);
+        if (tags != null || defaultSpanTags.containsKey(tag)) {
+          ownTags().remove(tag);
+        }
       } else {
-        tags.put(tag, value);
+        ownTags().put(tag, value);
       }
       return this;
     }
 
-    private String generateNewId() {
+    private Map<String, Object> ownTags() {
+      if (tags == null) {
+        tags = new HashMap<String, Object>(defaultSpanTags);
+      }
+      return tags;
+    }
+
+    /**
+     * @return the service of the span once decorated and mapped, which the sampler knows the
+     *     traces by, as there is no context to decorate yet when head sampling
+     */
+    private String sampledServiceName() {
+      String service = serviceName;
+      // Taken by the PeerServiceDecorator, while the ServiceNameDecorator drops service.name
+      final Object peerService = tags.get(Tags.PEER_SERVICE.getKey());
+      if (peerService != null) {
+        service = String.valueOf(peerService);
+      }
+      final String mapped = serviceNameMappings.get(service);
+      return mapped != null ? mapped : service;
+    }
+
+    private long generateNewId() {
       // TODO: expand the range of numbers generated to be from 1 to uint 64 MAX
       // Ensure the generated ID is in a valid range:
-      return String.valueOf(ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE));
+      return ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
     }
 
     /**
@@ -623,12 +751,13 @@ public class DDTracer implements io.opentracing.Tracer, Closeable, datadog.trace
      * @return the context
      */
     private DDSpanContext buildSpanContext() {
-      final String traceId;
-      final String spanId = generateNewId();
-      final String parentSpanId;
+      final long traceIdHigh;
+      final long traceIdLow;
+      final long spanId = generateNewId();
+      final long parentSpanId;
       final Map<String, String> baggage;
       final PendingTrace parentTrace;
-      final int samplingPriority;
+      int samplingPriority;
       final String origin;
 
       final DDSpanContext context;
@@ -646,8 +775,24 @@ public class DDTracer implements io.opentracing.Tracer, Closeable, datadog.trace
       // root span, parentContext will be null at this point.
       if (parentContext instanceof DDSpanContext) {
         final DDSpanContext ddsc = (DDSpanContext) parentContext;
-        traceId = ddsc.getTraceId();
-        parentSpanId = ddsc.getSpanId();
+        if (!ddsc.isRecording()) {
+          // Nothing gets recorded for the trace, the span only gets what propagates
+          return DDSpanContext.nonRecording(
+              ddsc.getTraceIdHigh(),
+              ddsc.getTraceIdLow(),
+              spanId,
+              ddsc.getSpanIdAsLong(),
+              serviceName != null ? serviceName : ddsc.getServiceName(),
+              operationName != null ? operationName : resourceName,
+              ddsc.getSamplingPriority(),
+              ddsc.getOrigin(),
+              ddsc.getBaggageItems(),
+              nonRecordingTrace,
+              DDTracer.this);
+        }
+        traceIdHigh = ddsc.getTraceIdHigh();
+        traceIdLow = ddsc.getTraceIdLow();
+        parentSpanId = ddsc.getSpanIdAsLong();
         baggage = ddsc.getBaggageItems();
         parentTrace = ddsc.getTrace();
         samplingPriority = PrioritySampling.UNSET;
@@ -660,29 +805,63 @@ public class DDTracer implements io.opentracing.Tracer, Closeable, datadog.trace
         if (parentContext instanceof ExtractedContext) {
           // Propagate external trace
           final ExtractedContext extractedContext = (ExtractedContext) parentContext;
-          traceId = extractedContext.getTraceId();
-          parentSpanId = extractedContext.getSpanId();
+          traceIdHigh = extractedContext.getTraceIdHigh();
+          traceIdLow = extractedContext.getTraceIdLow();
+          parentSpanId = extractedContext.getSpanIdAsLong();
           samplingPriority = extractedContext.getSamplingPriority();
           baggage = extractedContext.getBaggage();
         } else {
           // Start a new trace
-          traceId = generateNewId();
-          parentSpanId = "0";
+          traceIdHigh = 0;
+          traceIdLow = generateNewId();
+          parentSpanId = 0;
           samplingPriority = PrioritySampling.UNSET;
           baggage = null;
         }
 
         // Get header tags and set origin whether propagating or not.
         if (parentContext instanceof TagContext) {
-          tags.putAll(((TagContext) parentContext).getTags());
+          ownTags().putAll(((TagContext) parentContext).getTags());
           origin = ((TagContext) parentContext).getOrigin();
         } else {
           origin = null;
         }
 
-        tags.putAll(localRootSpanTags);
+        ownTags().putAll(localRootSpanTags);
 
-        parentTrace = new PendingTrace(DDTracer.this, traceId, serviceNameMappings);
+        if (isHeadSampling()) {
+          if (serviceName == null) {
+            serviceName = DDTracer.this.serviceName;
+          }
+          // The tags are set: the local root span tags were just added
+          if (samplingPriority == PrioritySampling.UNSET && !tags.containsKey(DDTags.MANUAL_KEEP)) {
+            final Object env = tags.get("env");
+            final boolean keep =
+                ((RateByServiceSampler) sampler)
+                    .sample(sampledServiceName(), env == null ? "" : String.valueOf(env));
+            samplingPriority = keep ? PrioritySampling.SAMPLER_KEEP : PrioritySampling.SAMPLER_DROP;
+          }
+          if (samplingPriority != PrioritySampling.UNSET
+              && samplingPriority <= PrioritySampling.SAMPLER_DROP) {
+            // Dropped: only keep what propagates, and count the trace as it won't be written
+            incrementTraceCount();
+            return DDSpanContext.nonRecording(
+                traceIdHigh,
+                traceIdLow,
+                spanId,
+                parentSpanId,
+                serviceName,
+                operationName != null ? operationName : resourceName,
+                samplingPriority,
+                origin,
+                baggage,
+                nonRecordingTrace,
+                DDTracer.this);
+          }
+        }
+
+        parentTrace =
+            new PendingTrace(DDTracer.this, traceIdHigh, traceIdLow, serviceNameMappings);
       }
 
       if (serviceName == null) {
@@ -690,11 +869,13 @@ public class DDTracer implements io.opentracing.Tracer, Closeable, datadog.trace
       }
 
       final String operationName = this.operationName != null ? this.operationName : resourceName;
+      final Map<String, ?> tags = this.tags != null ? this.tags : defaultSpanTags;
 
       // some attributes are inherited from the parent
       context =
           new DDSpanContext(
-              traceId,
+              traceIdHigh,
+              traceIdLow,
               spanId,
               parentSpanId,
               serviceName,
@@ -710,7 +891,7 @@ public class DDTracer implements io.opentracing.Tracer, Closeable, datadog.trace
               DDTracer.this);
 
       // Apply Decorators to handle any tags that may have been set via the builder.
-      for (final Map.Entry<String, Object> tag : tags.entrySet()) {
+      for (final Map.Entry<String, ?> tag : tags.entrySet()) {
         if (tag.getValue() == null) {
           context.setTag(tag.getKey(), null);
           continue;
@@ -719,17 +900,18 @@ public class DDTracer implements io.opentracing.Tracer, Closeable, datadog.trace
         boolean addTag = true;
 
         // Call decorators
-        final List<AbstractDecorator> decorators = getSpanContextDecorators(tag.getKey());
-        if (decorators != null) {
-          for (final AbstractDecorator decorator : decorators) {
-            try {
-              addTag &= decorator.shouldSetTag(context, tag.getKey(), tag.getValue());
-            } catch (final Throwable ex) {
-              log.debug(
-                  "Could not decorate the span decorator={}: {}",
-                  decorator.getClass().getSimpleName(),
-                  ex.getMessage());
-            }
+        final AbstractDecorator[] decorators = spanContextDecorators.get(tag.getKey());
+        if (decorators == null) {
+          continue;
+        }
+        for (final AbstractDecorator decorator : decorators) {
+          try {
+            addTag &= decorator.shouldSetTag(context, tag.getKey(), tag.getValue());
+          } catch (final Throwable ex) {
+            log.debug(
+                "Could not decorate the span decorator={}: {}",
+                decorator.getClass().getSimpleName(),
+                ex.getMessage());
           }
         }
 
@@ -740,6 +922,11 @@ public class DDTracer implements io.opentracing.Tracer, Closeable, datadog.trace
 
       return context;
     }
+
+    private boolean isHeadSampling() {
+      return sampler instanceof RateByServiceSampler
+          && ((RateByServiceSampler) sampler).isHeadSampling();
+    }
   }
 
   private static class ShutdownHook extends Thread {
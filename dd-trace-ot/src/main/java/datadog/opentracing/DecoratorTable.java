@@ -0,0 +1,91 @@
+package datadog.opentracing;
+
+import datadog.opentracing.decorators.AbstractDecorator;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Span context decorators by matching tag, for the lookup done on every tag set.
+ *
+ * <p>The table is immutable: adding a decorator builds a new one, which only happens while setting
+ * up the tracer. The tag names are interned so looking up a tag name constant usually compares
+ * references only, and tags with no decorator, which is most of them, are mostly ruled out by a
+ * single bit test on their hash code.
+ */
+final class DecoratorTable {
+  static final DecoratorTable EMPTY =
+      new DecoratorTable(new LinkedHashMap<String, List<AbstractDecorator>>());
+
+  private final String[] tags;
+  private final AbstractDecorator[][] decorators;
+  private final int mask;
+  /** One bit set for each tag, picked by the top bits of its hash code */
+  private final long filter;
+
+  private final Map<String, List<AbstractDecorator>> byTag;
+
+  private DecoratorTable(final Map<String, List<AbstractDecorator>> byTag) {
+    this.byTag = byTag;
+    int capacity = 4;
+    while (capacity < byTag.size() * 4) {
+      capacity <<= 1;
+    }
+    tags = new String[capacity];
+    decorators = new AbstractDecorator[capacity][];
+    mask = capacity - 1;
+
+    long filter = 0;
+    for (final Map.Entry<String, List<AbstractDecorator>> entry : byTag.entrySet()) {
+      final String tag = entry.getKey();
+      final int hash = tag.hashCode();
+      filter |= 1L << (hash >>> 26);
+      int index = hash & mask;
+      while (tags[index] != null) {
+        index = (index + 1) & mask;
+      }
+      tags[index] = tag;
+      decorators[index] = entry.getValue().toArray(new AbstractDecorator[0]);
+    }
+    this.filter = filter;
+  }
+
+  /** @return the decorators of the tag, null when there are none */
+  AbstractDecorator[] get(final String tag) {
+    final int hash = tag.hashCode();
+    if ((filter & (1L << (hash >>> 26))) == 0) {
+      return null;
+    }
+    int index = hash & mask;
+    String candidate;
+    while ((candidate = tags[index]) != null) {
+      if (candidate == tag || candidate.equals(tag)) {
+        return decorators[index];
+      }
+      index = (index + 1) & mask;
+    }
+    return null;
+  }
+
+  /** @return a table with the decorator added after the ones already matching its tag */
+  DecoratorTable with(final AbstractDecorator decorator) {
+    final Map<String, List<AbstractDecorator>> added = new LinkedHashMap<>();
+    for (final Map.Entry<String, List<AbstractDecorator>> entry : byTag.entrySet()) {
+      added.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+    }
+    final String tag = decorator.getMatchingTag().intern();
+    List<AbstractDecorator> list = added.get(tag);
+    if (list == null) {
+      list = new ArrayList<>();
+      added.put(tag, list);
+    }
+    list.add(decorator);
+    return new DecoratorTable(added);
+  }
+
+  /** @return the number of tags with decorators */
+  int size() {
+    return byTag.size();
+  }
+}
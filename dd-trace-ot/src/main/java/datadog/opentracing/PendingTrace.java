@@ -1,34 +1,46 @@
 package datadog.opentracing;
 
 import datadog.opentracing.scopemanager.ContinuableScope;
+import datadog.trace.common.flush.HeapUsagePolicy;
+import datadog.trace.common.flush.PartialFlushPolicy;
 import datadog.trace.common.util.Clock;
+import datadog.trace.common.util.Ids;
 import java.io.Closeable;
 import java.lang.ref.Reference;
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
-import java.util.ArrayList;
+import java.util.AbstractCollection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 import java.util.concurrent.atomic.AtomicReference;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
-public class PendingTrace extends ConcurrentLinkedDeque<DDSpan> {
+public class PendingTrace extends AbstractCollection<DDSpan> {
   private static final AtomicReference<SpanCleaner> SPAN_CLEANER = new AtomicReference<>();
+  private static final AtomicLongFieldUpdater<PendingTrace> OLDEST_FINISHED =
+      AtomicLongFieldUpdater.newUpdater(PendingTrace.class, "oldestFinishedNanoTicks");
 
   private final DDTracer tracer;
-  private final String traceId;
+  /** High 64 bits of a 128 bit trace id, 0 for 64 bit trace ids */
+  private final long traceIdHigh;
+
+  private final long traceIdLow;
+  /** Decimal trace id, only created when asked for */
+  private String traceId;
+
   private final Map<String, String> serviceNameMappings;
 
   // TODO: consider moving these time fields into DDTracer to ensure that traces have precise
@@ -38,14 +50,36 @@ public class PendingTrace extends ConcurrentLinkedDeque<DDSpan> {
   /** Nano second ticks value at trace start */
   private final long startNanoTicks;
 
-  private final ReferenceQueue referenceQueue = new ReferenceQueue();
+  // Mark the spans and continuations registered in a trace that tracks them with counters
+  private static final WeakReference<DDSpan> COUNTED_SPAN = new WeakReference<>(null);
+  private static final WeakReference<ContinuableScope.Continuation> COUNTED_CONTINUATION =
+      new WeakReference<>(null);
+
+  /**
+   * Whether pending spans and continuations are only counted, rather than each tracked with a
+   * weak reference. Leaks are then only detected once the trace is older than the tracer's span
+   * counting leak detection age, with a single weak reference to the trace.
+   */
+  private final boolean spanCounting;
+
   private final Set<WeakReference<?>> weakReferences =
       Collections.newSetFromMap(new ConcurrentHashMap<WeakReference<?>, Boolean>());
 
   private final AtomicInteger pendingReferenceCount = new AtomicInteger(0);
 
-  // We must maintain a separate count because ConcurrentLinkedDeque.size() is a linear operation.
-  private final AtomicInteger completedSpanCount = new AtomicInteger(0);
+  /** The finished spans not written yet */
+  private final SpanBuffer spans = new SpanBuffer();
+
+  private final PartialFlushPolicy partialFlushPolicy;
+  /** Checked for all traces at once by the span cleaner, null if the policy doesn't have one */
+  private final HeapUsagePolicy heapUsagePolicy;
+  /** Estimated serialized size of the finished spans a partial flush can write */
+  private final AtomicLong finishedBytes = new AtomicLong(0);
+  /** When the oldest finished span not written yet finished, 0 if there is none */
+  private volatile long oldestFinishedNanoTicks = 0;
+  /** Whether the span cleaner is due to check the partial flush policy of the trace */
+  private final AtomicBoolean flushCheckScheduled = new AtomicBoolean(false);
+
   /**
    * During a trace there are cases where the root span must be accessed (e.g. priority sampling and
    * trace-search tags).
@@ -61,16 +95,64 @@ public class PendingTrace extends ConcurrentLinkedDeque<DDSpan> {
   /** Ensure a trace is never written multiple times */
   private final AtomicBoolean isWritten = new AtomicBoolean(false);
 
+  /** Deadline of the trace in the span cleaner, null when there is no cleaner */
+  private volatile TimingWheel.Timeout<PendingTrace> timeout;
+
+  /** Set once a trace tracked with counters is old enough for leak detection */
+  private volatile TraceLeakReference leakReference;
+
+  /**
+   * False for the trace shared by the spans of the traces dropped by head sampling, which keeps
+   * track of nothing and is never written.
+   */
+  private final boolean recording;
+
   PendingTrace(
       final DDTracer tracer, final String traceId, final Map<String, String> serviceNameMappings) {
+    this(tracer, Ids.parseHigh(traceId), Ids.parseLow(traceId), serviceNameMappings);
+  }
+
+  PendingTrace(
+      final DDTracer tracer,
+      final long traceIdHigh,
+      final long traceIdLow,
+      final Map<String, String> serviceNameMappings) {
+    this(tracer, traceIdHigh, traceIdLow, serviceNameMappings, true);
+  }
+
+  private PendingTrace(
+      final DDTracer tracer,
+      final long traceIdHigh,
+      final long traceIdLow,
+      final Map<String, String> serviceNameMappings,
+      final boolean recording) {
     this.tracer = tracer;
-    this.traceId = traceId;
+    this.traceIdHigh = traceIdHigh;
+    this.traceIdLow = traceIdLow;
     this.serviceNameMappings = serviceNameMappings;
+    this.recording = recording;
+    spanCounting = tracer.isSpanCountingEnabled();
+    partialFlushPolicy = tracer.getPartialFlushPolicy();
+    heapUsagePolicy = partialFlushPolicy.getHeapUsagePolicy();
 
     startTimeNano = Clock.currentNanoTime();
     startNanoTicks = Clock.currentNanoTicks();
 
-    addPendingTrace();
+    if (recording) {
+      addPendingTrace();
+    }
+  }
+
+  /**
+   * @return a trace ignoring the spans and continuations registered in it, to be shared by all the
+   *     spans not recorded by the tracer
+   */
+  static PendingTrace nonRecording(final DDTracer tracer) {
+    return new PendingTrace(tracer, 0, 0, Collections.<String, String>emptyMap(), false);
+  }
+
+  public boolean isRecording() {
+    return recording;
   }
 
   /**
@@ -87,46 +169,66 @@ public class PendingTrace extends ConcurrentLinkedDeque<DDSpan> {
     return startTimeNano + Math.max(0, Clock.currentNanoTicks() - startNanoTicks);
   }
 
+  /** @return the trace id as an unsigned decimal string */
+  public String getTraceId() {
+    String traceId = this.traceId;
+    if (traceId == null) {
+      traceId = Ids.toDecimal(traceIdHigh, traceIdLow);
+      this.traceId = traceId;
+    }
+    return traceId;
+  }
+
+  private boolean isSameTrace(final DDSpanContext context) {
+    return traceIdLow == context.getTraceIdLow() && traceIdHigh == context.getTraceIdHigh();
+  }
+
   public void registerSpan(final DDSpan span) {
-    if (traceId == null || span.context() == null) {
-      log.error(
-          "Failed to register span ({}) due to null PendingTrace traceId or null span context",
-          span);
+    if (!recording) {
       return;
     }
-    if (!traceId.equals(span.context().getTraceId())) {
-      log.debug("{} - span registered for wrong trace ({})", span, traceId);
+    if (span.context() == null) {
+      log.error("Failed to register span ({}) due to null span context", span);
+      return;
+    }
+    if (!isSameTrace(span.context())) {
+      log.debug("{} - span registered for wrong trace ({})", span, getTraceId());
       return;
     }
     rootSpan.compareAndSet(null, new WeakReference<>(span));
     synchronized (span) {
       if (null == span.ref) {
-        span.ref = new WeakReference<DDSpan>(span, referenceQueue);
-        weakReferences.add(span.ref);
+        if (spanCounting) {
+          span.ref = COUNTED_SPAN;
+        } else {
+          span.ref = newReference(span);
+          weakReferences.add(span.ref);
+        }
         final int count = pendingReferenceCount.incrementAndGet();
-        log.debug("traceId: {} -- registered span {}. count = {}", traceId, span, count);
+        log.debug("traceId: {} -- registered span {}. count = {}", getTraceId(), span, count);
       } else {
-        log.debug("span {} already registered in trace {}", span, traceId);
+        log.debug("span {} already registered in trace {}", span, getTraceId());
       }
     }
   }
 
   private void expireSpan(final DDSpan span) {
-    if (traceId == null || span.context() == null) {
-      log.error(
-          "Failed to expire span ({}) due to null PendingTrace traceId or null span context", span);
+    if (span.context() == null) {
+      log.error("Failed to expire span ({}) due to null span context", span);
       return;
     }
-    if (!traceId.equals(span.context().getTraceId())) {
-      log.debug("{} - span expired for wrong trace ({})", span, traceId);
+    if (!isSameTrace(span.context())) {
+      log.debug("{} - span expired for wrong trace ({})", span, getTraceId());
       return;
     }
     synchronized (span) {
       if (null == span.ref) {
-        log.debug("span {} not registered in trace {}", span, traceId);
+        log.debug("span {} not registered in trace {}", span, getTraceId());
       } else {
-        weakReferences.remove(span.ref);
-        span.ref.clear();
+        if (span.ref != COUNTED_SPAN) {
+          weakReferences.remove(span.ref);
+          span.ref.clear();
+        }
         span.ref = null;
         expireReference();
       }
@@ -134,16 +236,18 @@ public class PendingTrace extends ConcurrentLinkedDeque<DDSpan> {
   }
 
   public void addSpan(final DDSpan span) {
+    if (!recording) {
+      return;
+    }
     if (span.getDurationNano() == 0) {
       log.debug("{} - added to trace, but not complete.", span);
       return;
     }
-    if (traceId == null || span.context() == null) {
-      log.error(
-          "Failed to add span ({}) due to null PendingTrace traceId or null span context", span);
+    if (span.context() == null) {
+      log.error("Failed to add span ({}) due to null span context", span);
       return;
     }
-    if (!traceId.equals(span.getTraceId())) {
+    if (!isSameTrace(span.context())) {
       log.debug("{} - added to a mismatched trace.", span);
       return;
     }
@@ -153,7 +257,13 @@ public class PendingTrace extends ConcurrentLinkedDeque<DDSpan> {
         span.setServiceName(serviceNameMappings.get(span.getServiceName()));
       }
 
-      addFirst(span);
+      spans.add(span);
+      finishedBytes.addAndGet(estimateSize(span));
+      if (oldestFinishedNanoTicks == 0
+          && OLDEST_FINISHED.compareAndSet(this, 0, Clock.currentNanoTicks())) {
+        scheduleFlushCheck();
+        watchHeapUsage();
+      }
     } else {
       log.debug("{} - finished after trace reported.", span);
     }
@@ -170,27 +280,41 @@ public class PendingTrace extends ConcurrentLinkedDeque<DDSpan> {
    * completed, so we need to wait till continuations are de-referenced before reporting.
    */
   public void registerContinuation(final ContinuableScope.Continuation continuation) {
+    if (!recording) {
+      return;
+    }
     synchronized (continuation) {
       if (continuation.ref == null) {
-        continuation.ref =
-            new WeakReference<ContinuableScope.Continuation>(continuation, referenceQueue);
-        weakReferences.add(continuation.ref);
+        if (spanCounting) {
+          continuation.ref = COUNTED_CONTINUATION;
+        } else {
+          continuation.ref = newReference(continuation);
+          weakReferences.add(continuation.ref);
+        }
         final int count = pendingReferenceCount.incrementAndGet();
         log.debug(
-            "traceId: {} -- registered continuation {}. count = {}", traceId, continuation, count);
+            "traceId: {} -- registered continuation {}. count = {}",
+            getTraceId(),
+            continuation,
+            count);
       } else {
-        log.debug("continuation {} already registered in trace {}", continuation, traceId);
+        log.debug("continuation {} already registered in trace {}", continuation, getTraceId());
       }
     }
   }
 
   public void cancelContinuation(final ContinuableScope.Continuation continuation) {
+    if (!recording) {
+      return;
+    }
     synchronized (continuation) {
       if (continuation.ref == null) {
-        log.debug("continuation {} not registered in trace {}", continuation, traceId);
+        log.debug("continuation {} not registered in trace {}", continuation, getTraceId());
       } else {
-        weakReferences.remove(continuation.ref);
-        continuation.ref.clear();
+        if (continuation.ref != COUNTED_CONTINUATION) {
+          weakReferences.remove(continuation.ref);
+          continuation.ref.clear();
+        }
         continuation.ref = null;
         expireReference();
       }
@@ -201,28 +325,36 @@ public class PendingTrace extends ConcurrentLinkedDeque<DDSpan> {
     final int count = pendingReferenceCount.decrementAndGet();
     if (count == 0) {
       write();
-    } else {
-      if (tracer.getPartialFlushMinSpans() > 0 && size() > tracer.getPartialFlushMinSpans()) {
-        synchronized (this) {
-          if (size() > tracer.getPartialFlushMinSpans()) {
-            final DDSpan rootSpan = getRootSpan();
-            final List<DDSpan> partialTrace = new ArrayList(size());
-            final Iterator<DDSpan> it = iterator();
-            while (it.hasNext()) {
-              final DDSpan span = it.next();
-              if (span != rootSpan) {
-                partialTrace.add(span);
-                completedSpanCount.decrementAndGet();
-                it.remove();
-              }
-            }
-            log.debug("Writing partial trace {} of size {}", traceId, partialTrace.size());
-            tracer.write(partialTrace);
-          }
-        }
-      }
+    } else if (partialFlushPolicy.shouldFlush(this)) {
+      partialFlush();
     }
-    log.debug("traceId: {} -- Expired reference. count = {}", traceId, count);
+    log.debug("traceId: {} -- Expired reference. count = {}", getTraceId(), count);
+  }
+
+  /** Writes the finished spans, except the root span which is written with the whole trace. */
+  private synchronized void partialFlush() {
+    if (isWritten.get() || !partialFlushPolicy.shouldFlush(this)) {
+      return;
+    }
+    oldestFinishedNanoTicks = 0;
+    final DDSpan root = getRootSpan();
+    final boolean rootRetained = spans.isRetained(root);
+    final List<DDSpan> partialTrace = spans.flush(root);
+    long flushedBytes = 0;
+    for (final DDSpan span : partialTrace) {
+      flushedBytes += estimateSize(span);
+    }
+    if (!rootRetained && spans.isRetained(root)) {
+      // Kept back until the trace is written, no partial flush can write it
+      flushedBytes += estimateSize(root);
+    }
+    finishedBytes.addAndGet(-flushedBytes);
+    if (partialTrace.isEmpty()) {
+      return;
+    }
+    log.debug("Writing partial trace {} of size {}", getTraceId(), partialTrace.size());
+    tracer.onPartialFlush(partialTrace.size());
+    tracer.write(partialTrace);
   }
 
   private synchronized void write() {
@@ -230,57 +362,206 @@ public class PendingTrace extends ConcurrentLinkedDeque<DDSpan> {
       removePendingTrace();
       if (!isEmpty()) {
         log.debug("Writing {} spans to {}.", size(), tracer.writer);
-        tracer.write(this);
+        tracer.write(spans.drain());
       }
     }
   }
 
-  public synchronized boolean clean() {
-    Reference ref;
-    int count = 0;
-    while ((ref = referenceQueue.poll()) != null) {
-      weakReferences.remove(ref);
-      if (isWritten.compareAndSet(false, true)) {
-        removePendingTrace();
-        // preserve throughput count.
-        // Don't report the trace because the data comes from buggy uses of the api and is suspect.
-        tracer.incrementTraceCount();
-      }
-      count++;
-      expireReference();
+  /**
+   * Processes the span and continuation references that were garbage collected, for all traces.
+   *
+   * @return true if any reference was collected
+   */
+  public boolean clean() {
+    final SpanCleaner cleaner = SPAN_CLEANER.get();
+    return cleaner != null && cleaner.clean();
+  }
+
+  private synchronized void onCollected(final Reference<?> ref) {
+    if (!weakReferences.remove(ref)) {
+      return; // Expired since it was enqueued
     }
-    if (count > 0) {
+    if (isWritten.compareAndSet(false, true)) {
+      removePendingTrace();
+      // preserve throughput count.
+      // Don't report the trace because the data comes from buggy uses of the api and is suspect.
+      tracer.incrementTraceCount();
+    }
+    expireReference();
+    log.debug(
+        "trace {} : unfinished span garbage collected. Trace will not report.", getTraceId());
+  }
+
+  private void onDeadline() {
+    if (spanCounting) {
+      watchForLeaks();
+    } else if (!isWritten.get()) {
       log.debug(
-          "trace {} : {} unfinished spans garbage collected. Trace will not report.",
-          traceId,
-          count);
+          "trace {} : {} spans still pending after {} seconds.",
+          getTraceId(),
+          pendingReferenceCount.get(),
+          SpanCleaner.MAX_PENDING_SECONDS);
+      // The wheel keeps the trace, and so its references, reachable until it is written
+      addPendingTrace();
+      if (isWritten.get()) {
+        removePendingTrace();
+      }
     }
-    return count > 0;
   }
 
-  @Override
-  public void addFirst(final DDSpan span) {
-    super.addFirst(span);
-    completedSpanCount.incrementAndGet();
+  /**
+   * @return the estimated serialized size of the finished spans not written yet, in bytes, not
+   *     counting the root span kept back by a partial flush
+   */
+  public long getFinishedBytes() {
+    return Math.max(finishedBytes.get(), 0);
   }
 
+  /** @return how long ago the oldest finished span not written yet finished, 0 if there is none */
+  public long getFinishedAgeNanos() {
+    final long oldest = oldestFinishedNanoTicks;
+    return oldest == 0 ? 0 : Math.max(Clock.currentNanoTicks() - oldest, 1);
+  }
+
+  /** Rough serialized size of a span: its fixed fields, names and tags. */
+  private static long estimateSize(final DDSpan span) {
+    final DDSpanContext context = span.context();
+    return 128
+        + length(context.getServiceName())
+        + length(context.getOperationName())
+        + length(context.getResourceName())
+        + 64L * context.getTagCount();
+  }
+
+  private static int length(final String value) {
+    return value == null ? 0 : value.length();
+  }
+
+  /** @return the number of finished spans not written yet */
   @Override
   public int size() {
-    return completedSpanCount.get();
+    return spans.size();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return spans.isEmpty();
+  }
+
+  /** Iterates over a copy of the finished spans not written yet, most recently finished first. */
+  @Override
+  public Iterator<DDSpan> iterator() {
+    return spans.snapshot().iterator();
+  }
+
+  /**
+   * Swaps the strong reference the span cleaner keeps to a trace tracked with counters for a weak
+   * one, so that the trace gets dropped if it is garbage collected before being written.
+   */
+  private void watchForLeaks() {
+    final SpanCleaner cleaner = SPAN_CLEANER.get();
+    if (cleaner == null || isWritten.get()) {
+      return;
+    }
+    log.debug(
+        "trace {} : {} spans still pending after {} seconds, watching for leaks.",
+        getTraceId(),
+        pendingReferenceCount.get(),
+        tracer.getSpanCountingLeakDetectionAge());
+    // Nothing may keep the trace reachable any more
+    unwatchHeapUsage();
+    final TraceLeakReference reference = new TraceLeakReference(this, cleaner);
+    cleaner.watchedTraces.add(reference);
+    leakReference = reference;
+    if (isWritten.get()) {
+      reference.unwatch();
+    }
+  }
+
+  /**
+   * Lets the span cleaner check the partial flush policy once the oldest finished span is due,
+   * when the policy depends on time and no check is scheduled yet.
+   */
+  private void scheduleFlushCheck() {
+    final long delayMillis = partialFlushPolicy.getCheckDelayMillis();
+    final SpanCleaner cleaner = SPAN_CLEANER.get();
+    if (delayMillis > 0 && cleaner != null && flushCheckScheduled.compareAndSet(false, true)) {
+      // The next multiple of the delay since the oldest finished span
+      final long waitedMillis = TimeUnit.NANOSECONDS.toMillis(getFinishedAgeNanos());
+      cleaner.flushChecks.schedule(
+          this, System.currentTimeMillis() + delayMillis - waitedMillis % delayMillis);
+    }
+  }
+
+  private void onFlushCheck() {
+    flushCheckScheduled.set(false);
+    if (isWritten.get() || oldestFinishedNanoTicks == 0) {
+      return;
+    }
+    if (partialFlushPolicy.shouldFlush(this)) {
+      partialFlush();
+    }
+    if (oldestFinishedNanoTicks != 0) {
+      // Spans finished since, or not due yet
+      scheduleFlushCheck();
+    }
+  }
+
+  /**
+   * Lets the span cleaner flush the trace while the heap is too full, until it is written or
+   * watched for leaks.
+   */
+  private void watchHeapUsage() {
+    final SpanCleaner cleaner = SPAN_CLEANER.get();
+    if (heapUsagePolicy != null && cleaner != null && leakReference == null) {
+      cleaner.watchHeapUsage(heapUsagePolicy, this);
+    }
+  }
+
+  private void unwatchHeapUsage() {
+    final SpanCleaner cleaner = SPAN_CLEANER.get();
+    if (heapUsagePolicy != null && cleaner != null) {
+      cleaner.unwatchHeapUsage(heapUsagePolicy, this);
+    }
+  }
+
+  private void onHeapUsageExceeded() {
+    if (oldestFinishedNanoTicks != 0) {
+      partialFlush();
+    }
+  }
+
+  private <T> WeakReference<T> newReference(final T referent) {
+    final SpanCleaner cleaner = SPAN_CLEANER.get();
+    if (cleaner == null) {
+      return new WeakReference<>(referent);
+    }
+    return new TraceReference<>(referent, this, cleaner.referenceQueue);
   }
 
   private void addPendingTrace() {
     final SpanCleaner cleaner = SPAN_CLEANER.get();
     if (cleaner != null) {
-      cleaner.pendingTraces.add(this);
+      final long delaySeconds =
+          spanCounting
+              ? tracer.getSpanCountingLeakDetectionAge()
+              : SpanCleaner.MAX_PENDING_SECONDS;
+      timeout =
+          cleaner.deadlines.schedule(
+              this, System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(delaySeconds));
     }
   }
 
   private void removePendingTrace() {
-    final SpanCleaner cleaner = SPAN_CLEANER.get();
-    if (cleaner != null) {
-      cleaner.pendingTraces.remove(this);
+    final TimingWheel.Timeout<PendingTrace> timeout = this.timeout;
+    if (timeout != null) {
+      timeout.cancel();
     }
+    final TraceLeakReference leakReference = this.leakReference;
+    if (leakReference != null) {
+      leakReference.unwatch();
+    }
+    unwatchHeapUsage();
   }
 
   static void initialize() {
@@ -297,8 +578,59 @@ public class PendingTrace extends ConcurrentLinkedDeque<DDSpan> {
     }
   }
 
+  /** Weak reference to a span or continuation that knows which trace to expire once collected. */
+  private static final class TraceReference<T> extends WeakReference<T> {
+    private final PendingTrace trace;
+
+    TraceReference(
+        final T referent, final PendingTrace trace, final ReferenceQueue<? super T> queue) {
+      super(referent, queue);
+      this.trace = trace;
+    }
+  }
+
+  /** Weak reference to a trace tracked with counters, dropping the trace once it is collected. */
+  private static final class TraceLeakReference extends WeakReference<PendingTrace> {
+    private final DDTracer tracer;
+    private final String traceId;
+    private final SpanCleaner cleaner;
+
+    TraceLeakReference(final PendingTrace trace, final SpanCleaner cleaner) {
+      super(trace, cleaner.referenceQueue);
+      tracer = trace.tracer;
+      traceId = trace.getTraceId();
+      this.cleaner = cleaner;
+    }
+
+    void unwatch() {
+      cleaner.watchedTraces.remove(this);
+      clear();
+    }
+
+    void onCollected() {
+      if (cleaner.watchedTraces.remove(this)) {
+        // preserve throughput count, like for traces with collected spans.
+        tracer.incrementTraceCount();
+        log.debug(
+            "trace {} : garbage collected before being written. Trace will not report.", traceId);
+      }
+    }
+  }
+
+  /**
+   * Expires the spans and continuations that were garbage collected without being finished, and
+   * reports traces still pending after {@link #MAX_PENDING_SECONDS}. Traces tracked with counters
+   * are instead watched for leaks once they are older than the leak detection age. Traces with
+   * finished spans are also checked against partial flush policies depending on time, and all
+   * flushed at once while the heap is fuller than their heap usage policy allows.
+   *
+   * <p>All traces share one reference queue and a timing wheel of trace deadlines, so a run only
+   * costs as much as the references collected and the deadlines reached, however many traces are
+   * pending. Heap usage is sampled once per run, and the traces only walked when it is exceeded.
+   */
   private static class SpanCleaner implements Runnable, Closeable {
     private static final long CLEAN_FREQUENCY = 1;
+    private static final long MAX_PENDING_SECONDS = 600;
     private static final ThreadFactory FACTORY =
         new ThreadFactory() {
           @Override
@@ -308,12 +640,40 @@ public class PendingTrace extends ConcurrentLinkedDeque<DDSpan> {
             return thread;
           }
         };
+    private static final TimingWheel.Handler<PendingTrace> ON_FLUSH_CHECK =
+        new TimingWheel.Handler<PendingTrace>() {
+          @Override
+          public void onExpired(final PendingTrace trace) {
+            trace.onFlushCheck();
+          }
+        };
+    private static final TimingWheel.Handler<PendingTrace> ON_DEADLINE =
+        new TimingWheel.Handler<PendingTrace>() {
+          @Override
+          public void onExpired(final PendingTrace trace) {
+            trace.onDeadline();
+          }
+        };
 
     private final ScheduledExecutorService executorService =
         Executors.newScheduledThreadPool(1, FACTORY);
 
-    private final Set<PendingTrace> pendingTraces =
-        Collections.newSetFromMap(new ConcurrentHashMap<PendingTrace, Boolean>());
+    private final ReferenceQueue<Object> referenceQueue = new ReferenceQueue<>();
+
+    /** Keeps the weak references to the traces watched for leaks reachable */
+    private final Set<TraceLeakReference> watchedTraces =
+        Collections.newSetFromMap(new ConcurrentHashMap<TraceLeakReference, Boolean>());
+
+    private final TimingWheel<PendingTrace> deadlines =
+        new TimingWheel<>(TimeUnit.SECONDS.toMillis(CLEAN_FREQUENCY), System.currentTimeMillis());
+
+    /** Traces to check against a partial flush policy depending on time */
+    private final TimingWheel<PendingTrace> flushChecks =
+        new TimingWheel<>(TimeUnit.SECONDS.toMillis(CLEAN_FREQUENCY), System.currentTimeMillis());
+
+    /** Traces with finished spans, by the heap usage policy flushing them */
+    private final ConcurrentHashMap<HeapUsagePolicy, Set<PendingTrace>> heapWatchedTraces =
+        new ConcurrentHashMap<>();
 
     public SpanCleaner() {
       executorService.scheduleAtFixedRate(this, 0, CLEAN_FREQUENCY, TimeUnit.SECONDS);
@@ -321,8 +681,63 @@ public class PendingTrace extends ConcurrentLinkedDeque<DDSpan> {
 
     @Override
     public void run() {
-      for (final PendingTrace trace : pendingTraces) {
-        trace.clean();
+      clean();
+    }
+
+    synchronized boolean clean() {
+      boolean collected = false;
+      Reference<?> ref;
+      while ((ref = referenceQueue.poll()) != null) {
+        if (ref instanceof TraceReference) {
+          ((TraceReference<?>) ref).trace.onCollected(ref);
+          collected = true;
+        } else if (ref instanceof TraceLeakReference) {
+          ((TraceLeakReference) ref).onCollected();
+          collected = true;
+        }
+      }
+      final long now = System.currentTimeMillis();
+      deadlines.advance(now, ON_DEADLINE);
+      flushChecks.advance(now, ON_FLUSH_CHECK);
+      checkHeapUsage();
+      return collected;
+    }
+
+    private void checkHeapUsage() {
+      for (final Map.Entry<HeapUsagePolicy, Set<PendingTrace>> entry :
+          heapWatchedTraces.entrySet()) {
+        if (entry.getValue().isEmpty() || !entry.getKey().isExceeded()) {
+          continue;
+        }
+        for (final Iterator<PendingTrace> it = entry.getValue().iterator(); it.hasNext(); ) {
+          final PendingTrace trace = it.next();
+          if (trace.isWritten.get()) {
+            // Finished a span while being written
+            it.remove();
+          } else {
+            trace.onHeapUsageExceeded();
+          }
+        }
+      }
+    }
+
+    void watchHeapUsage(final HeapUsagePolicy policy, final PendingTrace trace) {
+      Set<PendingTrace> traces = heapWatchedTraces.get(policy);
+      if (traces == null) {
+        final Set<PendingTrace> newTraces =
+            Collections.newSetFromMap(new ConcurrentHashMap<PendingTrace, Boolean>());
+        traces = heapWatchedTraces.putIfAbsent(policy, newTraces);
+        if (traces == null) {
+          traces = newTraces;
+        }
+      }
+      traces.add(trace);
+    }
+
+    void unwatchHeapUsage(final HeapUsagePolicy policy, final PendingTrace trace) {
+      final Set<PendingTrace> traces = heapWatchedTraces.get(policy);
+      if (traces != null) {
+        traces.remove(trace);
       }
     }
 
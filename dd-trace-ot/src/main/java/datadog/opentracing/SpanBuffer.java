@@ -0,0 +1,239 @@
+package datadog.opentracing;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Append only buffer of the finished spans of a trace.
+ *
+ * <p>Finishing a span reserves the next slot with a single atomic increment and stores the span in
+ * it, without locking unless the buffer has to grow. Flushing hands a range of the buffer to the
+ * writer as a read only list backed by the buffer itself, and starts a new segment for the spans
+ * that follow, so nothing is copied and the flushed spans aren't kept reachable by the trace.
+ *
+ * <p>Spans are listed most recently finished first. Slots are numbered from the start of the trace
+ * and each segment holds the slots from its base on.
+ */
+final class SpanBuffer {
+  private static final int INITIAL_CAPACITY = 8;
+
+  private final AtomicInteger reserved = new AtomicInteger(0);
+  private volatile Segment segment = new Segment(0, INITIAL_CAPACITY);
+  /** First slot not flushed yet. Only changed while holding the buffer lock. */
+  private volatile int flushed = 0;
+  /** The root span, when it was finished but kept back by a partial flush */
+  private volatile DDSpan retained;
+
+  void add(final DDSpan span) {
+    final int slot = reserved.getAndIncrement();
+    Segment current = segment;
+    while (true) {
+      if (slot - current.base >= current.spans.length()) {
+        current = grow(slot);
+        continue;
+      }
+      current.spans.compareAndSet(slot - current.base, null, span);
+      // The segment may have been replaced before the span got stored in it
+      final Segment latest = segment;
+      if (latest == current) {
+        return;
+      }
+      current = latest;
+      if (slot < current.base) {
+        // Flushed: flushes stop at the first empty slot, so the span was found
+        return;
+      }
+    }
+  }
+
+  /** @return the number of spans finished and not flushed */
+  int size() {
+    return reserved.get() - flushed + (retained == null ? 0 : 1);
+  }
+
+  boolean isEmpty() {
+    return size() == 0;
+  }
+
+  /** @return true if {@code span} was kept back by a flush */
+  boolean isRetained(final DDSpan span) {
+    return span != null && retained == span;
+  }
+
+  /**
+   * Removes the spans finished so far, except {@code keep}, which stays in the buffer to be
+   * flushed with the spans finished after it.
+   *
+   * @return the removed spans, most recently finished first
+   */
+  synchronized List<DDSpan> flush(final DDSpan keep) {
+    final Segment current = segment;
+    final int from = flushed;
+    final int to = storedUpTo(current, from);
+    if (to == from) {
+      return Collections.emptyList();
+    }
+    restart(current, to);
+
+    final int keepSlot = indexOf(current, from, to, keep);
+    if (keepSlot < 0) {
+      return slice(current, from, to);
+    }
+    retained = keep;
+    if (keepSlot == from) {
+      return slice(current, from + 1, to);
+    }
+    if (keepSlot == to - 1) {
+      return slice(current, from, to - 1);
+    }
+    final List<DDSpan> spans = new ArrayList<>(to - from - 1);
+    for (final DDSpan span : slice(current, from, to)) {
+      if (span != keep) {
+        spans.add(span);
+      }
+    }
+    return spans;
+  }
+
+  /**
+   * Removes all the spans. Only called once every span was added.
+   *
+   * @return the removed spans, most recently finished first
+   */
+  synchronized List<DDSpan> drain() {
+    final DDSpan root = retained;
+    retained = null;
+    final List<DDSpan> spans = flush(null);
+    if (root == null) {
+      return spans;
+    }
+    final List<DDSpan> withRoot = new ArrayList<>(spans.size() + 1);
+    withRoot.addAll(spans);
+    withRoot.add(root);
+    return withRoot;
+  }
+
+  /** @return a copy of the spans not flushed yet, most recently finished first */
+  synchronized List<DDSpan> snapshot() {
+    final Segment current = segment;
+    final List<DDSpan> spans =
+        new ArrayList<>(slice(current, flushed, storedUpTo(current, flushed)));
+    if (retained != null) {
+      spans.add(retained);
+    }
+    return spans;
+  }
+
+  /** @return the first slot from {@code from} on whose span isn't stored yet */
+  private int storedUpTo(final Segment current, final int from) {
+    final int end = Math.min(reserved.get(), current.base + current.spans.length());
+    int slot = from;
+    while (slot < end && current.spans.get(slot - current.base) != null) {
+      slot++;
+    }
+    return slot;
+  }
+
+  private static int indexOf(
+      final Segment current, final int from, final int to, final DDSpan span) {
+    if (span != null) {
+      for (int slot = from; slot < to; slot++) {
+        if (current.spans.get(slot - current.base) == span) {
+          return slot;
+        }
+      }
+    }
+    return -1;
+  }
+
+  private static List<DDSpan> slice(final Segment current, final int from, final int to) {
+    if (from >= to) {
+      return Collections.emptyList();
+    }
+    return new Slice(current.spans, from - current.base, to - current.base);
+  }
+
+  /** Moves the spans from {@code slot} on to a new segment starting there. */
+  private void restart(final Segment current, final int slot) {
+    final int pending = Math.max(reserved.get() - slot, 0);
+    int capacity = INITIAL_CAPACITY;
+    while (capacity < pending) {
+      capacity <<= 1;
+    }
+    final Segment next = new Segment(slot, capacity);
+    flushed = slot;
+    publish(current, next);
+  }
+
+  private synchronized Segment grow(final int slot) {
+    final Segment current = segment;
+    if (slot - current.base < current.spans.length()) {
+      return current;
+    }
+    // Drop the flushed slots while at it
+    final int base = flushed;
+    int capacity = current.spans.length();
+    while (slot - base >= capacity) {
+      capacity <<= 1;
+    }
+    final Segment next = new Segment(base, capacity);
+    publish(current, next);
+    return next;
+  }
+
+  /**
+   * Replaces the segment, then copies the spans over. Spans stored in the old segment once the new
+   * one is published get stored again in the new one by {@link #add(DDSpan)}.
+   */
+  private void publish(final Segment from, final Segment to) {
+    segment = to;
+    final int end = Math.min(from.base + from.spans.length(), to.base + to.spans.length());
+    for (int slot = Math.max(from.base, to.base); slot < end; slot++) {
+      final DDSpan span = from.spans.get(slot - from.base);
+      if (span != null) {
+        to.spans.compareAndSet(slot - to.base, null, span);
+      }
+    }
+  }
+
+  private static final class Segment {
+    final int base;
+    final AtomicReferenceArray<DDSpan> spans;
+
+    Segment(final int base, final int capacity) {
+      this.base = base;
+      spans = new AtomicReferenceArray<>(capacity);
+    }
+  }
+
+  /** Read only view of a range of slots, last one first. */
+  private static final class Slice extends AbstractList<DDSpan> implements RandomAccess {
+    private final AtomicReferenceArray<DDSpan> spans;
+    private final int from;
+    private final int to;
+
+    Slice(final AtomicReferenceArray<DDSpan> spans, final int from, final int to) {
+      this.spans = spans;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    public DDSpan get(final int index) {
+      if (index < 0 || index >= to - from) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + (to - from));
+      }
+      return spans.get(to - 1 - index);
+    }
+
+    @Override
+    public int size() {
+      return to - from;
+    }
+  }
+}
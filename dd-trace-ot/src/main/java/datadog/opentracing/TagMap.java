@@ -0,0 +1,226 @@
+package datadog.opentracing;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Tag storage of a single span: a small open addressed table with linear probing, sized for the
+ * dozen or so tags a span usually carries.
+ *
+ * <p>Reads without locking, writes synchronized on the map. Writes update the table in place, and
+ * it is only copied when it grows. {@link #view()} is a read-only view of the map, created once,
+ * so handing it out neither copies nor allocates.
+ *
+ * <p>Null keys are not supported and putting a null value removes the key.
+ */
+final class TagMap extends AbstractMap<String, Object> {
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final Map<String, Object> view = Collections.unmodifiableMap(this);
+
+  private volatile Table table = new Table(INITIAL_CAPACITY);
+
+  @Override
+  public Object get(final Object key) {
+    return table.get(key);
+  }
+
+  @Override
+  public boolean containsKey(final Object key) {
+    return table.get(key) != null;
+  }
+
+  @Override
+  public int size() {
+    return table.size;
+  }
+
+  /** A weakly consistent view of the current tags, like the one of a ConcurrentHashMap. */
+  @Override
+  public Set<Entry<String, Object>> entrySet() {
+    return table.entrySet();
+  }
+
+  /** @return a read-only view of the tags, which sees the later writes */
+  Map<String, Object> view() {
+    return view;
+  }
+
+  @Override
+  public synchronized Object put(final String key, final Object value) {
+    if (value == null) {
+      return remove(key);
+    }
+    return writableFor(table.size + 1).store(key, value);
+  }
+
+  @Override
+  public synchronized Object remove(final Object key) {
+    if (table.get(key) == null) {
+      return null;
+    }
+    return writableFor(table.size).store((String) key, null);
+  }
+
+  /** @return the current table if it has room for the write, a larger copy published otherwise */
+  private Table writableFor(final int size) {
+    final Table current = table;
+    if (current.hasRoomFor(size)) {
+      return current;
+    }
+    int capacity = INITIAL_CAPACITY;
+    while (!Table.fits(capacity, size)) {
+      capacity <<= 1;
+    }
+    final Table copy = new Table(capacity);
+    current.copyTo(copy);
+    table = copy;
+    return copy;
+  }
+
+  private static final class Table extends AbstractMap<String, Object> {
+    // Keys at even indexes, values right after them. A key whose value is null has been removed.
+    private final AtomicReferenceArray<Object> slots;
+    private final int mask;
+    private volatile int size = 0;
+    // Keys in the table, including removed ones. Only accessed by writers.
+    private int used = 0;
+
+    Table(final int capacity) {
+      slots = new AtomicReferenceArray<>(capacity * 2);
+      mask = capacity - 1;
+    }
+
+    static boolean fits(final int capacity, final int keys) {
+      return keys <= capacity - (capacity >> 2);
+    }
+
+    boolean hasRoomFor(final int size) {
+      return fits(mask + 1, Math.max(size, used + 1));
+    }
+
+    @Override
+    public Object get(final Object key) {
+      if (key == null) {
+        return null;
+      }
+      int index = indexFor(key);
+      Object candidate;
+      while ((candidate = slots.get(index << 1)) != null) {
+        if (candidate.equals(key)) {
+          return slots.get((index << 1) + 1);
+        }
+        index = (index + 1) & mask;
+      }
+      return null;
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+      return get(key) != null;
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    /** Only called by the writer, with room left in the table. A null value removes the key. */
+    Object store(final String key, final Object value) {
+      int index = indexFor(key);
+      Object candidate;
+      while ((candidate = slots.get(index << 1)) != null) {
+        if (candidate.equals(key)) {
+          final Object previous = slots.get((index << 1) + 1);
+          slots.lazySet((index << 1) + 1, value);
+          if (previous == null && value != null) {
+            size++;
+          } else if (previous != null && value == null) {
+            size--;
+          }
+          return previous;
+        }
+        index = (index + 1) & mask;
+      }
+      if (value != null) {
+        // Value first so that readers finding the key also find its value
+        slots.lazySet((index << 1) + 1, value);
+        slots.set(index << 1, key);
+        used++;
+        size++;
+      }
+      return null;
+    }
+
+    void copyTo(final Table target) {
+      for (int i = 0; i < slots.length(); i += 2) {
+        final Object value = slots.get(i + 1);
+        if (value != null) {
+          target.store((String) slots.get(i), value);
+        }
+      }
+    }
+
+    private int indexFor(final Object key) {
+      final int hash = key.hashCode();
+      return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+      return new AbstractSet<Entry<String, Object>>() {
+        @Override
+        public Iterator<Entry<String, Object>> iterator() {
+          return new EntryIterator();
+        }
+
+        @Override
+        public int size() {
+          return size;
+        }
+      };
+    }
+
+    private final class EntryIterator implements Iterator<Entry<String, Object>> {
+      private int index = -2;
+      private Entry<String, Object> next = advance();
+
+      private Entry<String, Object> advance() {
+        for (index += 2; index < slots.length(); index += 2) {
+          final Object key = slots.get(index);
+          final Object value = key == null ? null : slots.get(index + 1);
+          if (value != null) {
+            return new SimpleImmutableEntry<>((String) key, value);
+          }
+        }
+        return null;
+      }
+
+      @Override
+      public boolean hasNext() {
+        return next != null;
+      }
+
+      @Override
+      public Entry<String, Object> next() {
+        final Entry<String, Object> current = next;
+        if (current == null) {
+          throw new NoSuchElementException();
+        }
+        next = advance();
+        return current;
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    }
+  }
+}
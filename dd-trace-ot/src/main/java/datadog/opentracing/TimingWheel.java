@@ -0,0 +1,163 @@
+package datadog.opentracing;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Hierarchical timing wheel: four levels of 64 buckets, each bucket of a level spanning a whole
+ * turn of the level below. Scheduling and cancelling are O(1) and advancing the wheel only touches
+ * the timeouts that expire or move down a level, however many are scheduled.
+ *
+ * <p>Any thread may {@link #schedule(Object, long) schedule} and {@link Timeout#cancel() cancel}:
+ * both only enqueue the change. The wheel itself belongs to the thread calling {@link
+ * #advance(long, Handler)}, which applies the pending changes before expiring timeouts.
+ */
+final class TimingWheel<T> {
+  interface Handler<T> {
+    void onExpired(T item);
+  }
+
+  private static final int LEVELS = 4;
+  private static final int BITS = 6;
+  private static final int BUCKETS = 1 << BITS;
+  private static final int MASK = BUCKETS - 1;
+  private static final long MAX_DELTA = (1L << (LEVELS * BITS)) - 1;
+
+  private final long tickMillis;
+  private final Timeout<T>[][] buckets;
+  private final Queue<Timeout<T>> additions = new ConcurrentLinkedQueue<>();
+  private final Queue<Timeout<T>> cancellations = new ConcurrentLinkedQueue<>();
+  private long currentTick;
+  private int size = 0;
+
+  @SuppressWarnings("unchecked")
+  TimingWheel(final long tickMillis, final long nowMillis) {
+    this.tickMillis = tickMillis;
+    buckets = new Timeout[LEVELS][BUCKETS];
+    currentTick = nowMillis / tickMillis;
+  }
+
+  Timeout<T> schedule(final T item, final long deadlineMillis) {
+    final Timeout<T> timeout = new Timeout<>(this, item, deadlineMillis / tickMillis);
+    additions.offer(timeout);
+    return timeout;
+  }
+
+  /** @return the number of timeouts in the wheel, not counting the pending changes */
+  int size() {
+    return size;
+  }
+
+  /** Expires every timeout due by {@code nowMillis}, in deadline order. */
+  void advance(final long nowMillis, final Handler<T> handler) {
+    Timeout<T> timeout;
+    while ((timeout = additions.poll()) != null) {
+      if (!timeout.cancelled) {
+        add(timeout);
+      }
+    }
+    while ((timeout = cancellations.poll()) != null) {
+      if (timeout.level >= 0) {
+        unlink(timeout);
+      }
+    }
+
+    final long targetTick = nowMillis / tickMillis;
+    while (currentTick < targetTick) {
+      currentTick++;
+      // Move the next turn of each level down, starting from the lowest one that wrapped around.
+      for (int level = 1; level < LEVELS; level++) {
+        if (((currentTick >>> ((level - 1) * BITS)) & MASK) != 0) {
+          break;
+        }
+        cascade(level, (int) ((currentTick >>> (level * BITS)) & MASK));
+      }
+      final int index = (int) (currentTick & MASK);
+      while ((timeout = buckets[0][index]) != null) {
+        unlink(timeout);
+        if (timeout.deadlineTick > currentTick) {
+          add(timeout);
+        } else if (!timeout.cancelled) {
+          handler.onExpired(timeout.item);
+        }
+      }
+    }
+  }
+
+  private void cascade(final int level, final int index) {
+    Timeout<T> timeout;
+    while ((timeout = buckets[level][index]) != null) {
+      unlink(timeout);
+      add(timeout);
+    }
+  }
+
+  private void add(final Timeout<T> timeout) {
+    // Overdue timeouts go in the next bucket to be expired
+    final long deadlineTick = Math.max(timeout.deadlineTick, currentTick + 1);
+    final long delta = Math.min(deadlineTick - currentTick, MAX_DELTA);
+    final long tick = currentTick + delta;
+    int level = 0;
+    while (level < LEVELS - 1 && delta >= 1L << ((level + 1) * BITS)) {
+      level++;
+    }
+    final int index = (int) ((tick >>> (level * BITS)) & MASK);
+
+    final Timeout<T> head = buckets[level][index];
+    timeout.next = head;
+    timeout.previous = null;
+    if (head != null) {
+      head.previous = timeout;
+    }
+    buckets[level][index] = timeout;
+    timeout.level = level;
+    timeout.index = index;
+    size++;
+  }
+
+  private void unlink(final Timeout<T> timeout) {
+    if (timeout.previous == null) {
+      buckets[timeout.level][timeout.index] = timeout.next;
+    } else {
+      timeout.previous.next = timeout.next;
+    }
+    if (timeout.next != null) {
+      timeout.next.previous = timeout.previous;
+    }
+    timeout.next = null;
+    timeout.previous = null;
+    timeout.level = -1;
+    size--;
+  }
+
+  static final class Timeout<T> {
+    private final TimingWheel<T> wheel;
+    private final T item;
+    private final long deadlineTick;
+    private volatile boolean cancelled = false;
+
+    // Owned by the thread advancing the wheel
+    private Timeout<T> next;
+    private Timeout<T> previous;
+    private int level = -1;
+    private int index;
+
+    private Timeout(final TimingWheel<T> wheel, final T item, final long deadlineTick) {
+      this.wheel = wheel;
+      this.item = item;
+      this.deadlineTick = deadlineTick;
+    }
+
+    /** Makes sure the timeout won't expire and lets the wheel drop it on its next advance. */
+    void cancel() {
+      if (!cancelled) {
+        cancelled = true;
+        wheel.cancellations.offer(this);
+      }
+    }
+
+    boolean isCancelled() {
+      return cancelled;
+    }
+  }
+}
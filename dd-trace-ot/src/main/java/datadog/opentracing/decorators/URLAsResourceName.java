@@ -3,46 +3,66 @@ package datadog.opentracing.decorators;
 
 import datadog.opentracing.DDSpanContext;
 import datadog.trace.api.DDTags;
+import datadog.trace.common.util.LruCache;
 import io.opentracing.tag.Tags;
-import java.util.Map;
 import java.util.regex.Pattern;
 
 public class URLAsResourceName extends AbstractDecorator {
 
   // Matches any path segments with numbers in them. (exception for versioning: "/v1/")
+  // normalizePath replaces the same segments without running the regex.
   public static final Pattern PATH_MIXED_ALPHANUMERICS =
       Pattern.compile("(?<=/)(?![vV]\\d{1,2}/)(?:[^\\/\\d\\?]*[\\d]+[^\\/\\?]*)");
 
+  private static final int CACHE_SIZE = 1024;
+
+  /** Normalized paths by raw path */
+  private final LruCache<String, String> cache = new LruCache<>(CACHE_SIZE);
+
   public URLAsResourceName() {
     super();
     setMatchingTag(Tags.HTTP_URL.getKey());
     setReplacementTag(DDTags.RESOURCE_NAME);
   }
 
+  /** @return the cache of normalized paths, to report its hit rate */
+  public LruCache<String, String> getCache() {
+    return cache;
+  }
+
   @Override
   public boolean shouldSetTag(final DDSpanContext context, final String tag, final Object value) {
-    Map<String, Object> tags = context.getTags();
-    final String component = String.valueOf(tags.get(Tags.COMPONENT.getKey()));
+    final Object component = context.getTag(Tags.COMPONENT.getKey());
 
-    if (component != null && (component.equals("khttp") || component.equals("vertx"))) {
+    if ("khttp".equals(component) || "vertx".equals(component)) {
       return true;
     }
 
-    final String statusCode = String.valueOf(tags.get(Tags.HTTP_STATUS.getKey()));
     // do nothing if the status code is already set and equals to 404.
     // TODO: it assumes that Status404Decorator is active. If it's not, it will lead to unexpected
     // behaviors
-    if (value == null || statusCode != null && statusCode.equals("404")) {
+    if (value == null || isNotFound(context.getTag(Tags.HTTP_STATUS.getKey()))) {
       return true;
     }
 
     final String rawPath = rawPathFromUrlString(String.valueOf(value).trim());
-    final String normalizedPath = normalizePath(rawPath);
+    String normalizedPath = cache.get(rawPath);
+    if (normalizedPath == null) {
+      normalizedPath = normalizePath(rawPath);
+      cache.put(rawPath, normalizedPath);
+    }
 
     context.setResourceName(normalizedPath);
     return true;
   }
 
+  private static boolean isNotFound(final Object statusCode) {
+    if (statusCode instanceof Number) {
+      return ((Number) statusCode).intValue() == 404;
+    }
+    return statusCode != null && "404".equals(String.valueOf(statusCode));
+  }
+
   private String rawPathFromUrlString(final String url) {
     // Get the path without host:port
     // url may already be just the path.
@@ -86,17 +106,67 @@ public class URLAsResourceName extends AbstractDecorator {
   }
 
   // Method to normalise the url string
+  // Replaces each segment with a digit in it by "?", except version segments like "/v1/". A
+  // segment starts after a "/" and ends before the next "/" or "?".
   private String normalizePath(final String path) {
     if (path.isEmpty() || path.equals("/")) {
       return "/";
     }
 
-    return PATH_MIXED_ALPHANUMERICS.matcher(path).replaceAll("?");
+    final int length = path.length();
+    StringBuilder normalized = null;
+    int copied = 0;
+    int index = path.indexOf('/');
+    while (index >= 0) {
+      final int start = index + 1;
+      int end = start;
+      boolean hasDigit = false;
+      while (end < length) {
+        final char c = path.charAt(end);
+        if (c == '/' || c == '?') {
+          break;
+        }
+        hasDigit |= isDigit(c);
+        end++;
+      }
+      if (hasDigit && !isVersion(path, start)) {
+        if (normalized == null) {
+          normalized = new StringBuilder(length);
+        }
+        normalized.append(path, copied, start).append('?');
+        copied = end;
+      }
+      index = path.indexOf('/', end);
+    }
+
+    if (normalized == null) {
+      return path;
+    }
+    return normalized.append(path, copied, length).toString();
+  }
+
+  /** @return true for a "v" followed by one or two digits and a "/" */
+  private static boolean isVersion(final String path, final int start) {
+    final int length = path.length();
+    if (start + 2 >= length || (path.charAt(start) != 'v' && path.charAt(start) != 'V')) {
+      return false;
+    }
+    if (!isDigit(path.charAt(start + 1))) {
+      return false;
+    }
+    if (path.charAt(start + 2) == '/') {
+      return true;
+    }
+    return isDigit(path.charAt(start + 2)) && start + 3 < length && path.charAt(start + 3) == '/';
+  }
+
+  private static boolean isDigit(final char c) {
+    return c >= '0' && c <= '9';
   }
 
   private String addMethodIfAvailable(final DDSpanContext context, String path) {
     // if the verb (GET, POST ...) is present, add it
-    final String verb = (String) context.getTags().get(Tags.HTTP_METHOD.getKey());
+    final String verb = (String) context.getTag(Tags.HTTP_METHOD.getKey());
     if (verb != null && !verb.isEmpty()) {
       path = verb + " " + path;
     }
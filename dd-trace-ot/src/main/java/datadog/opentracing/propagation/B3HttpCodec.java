@@ -1,15 +1,12 @@
 // Modified by SignalFx
 package datadog.opentracing.propagation;
 
-import static datadog.opentracing.propagation.HttpCodec.ZERO;
-
-import com.google.common.base.Strings;
 import datadog.opentracing.DDSpanContext;
 import datadog.trace.api.sampling.PrioritySampling;
+import datadog.trace.common.util.Ids;
 import io.opentracing.SpanContext;
 import io.opentracing.propagation.TextMapExtract;
 import io.opentracing.propagation.TextMapInject;
-import java.math.BigInteger;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -25,91 +22,91 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 class B3HttpCodec {
 
-  static final BigInteger UINT128_MAX = new BigInteger("2").pow(128).subtract(BigInteger.ONE);
-
   private static final String OT_BAGGAGE_PREFIX = "ot-baggage-";
   private static final String TRACE_ID_KEY = "x-b3-traceid";
   private static final String SPAN_ID_KEY = "x-b3-spanid";
   private static final String PARENT_SPAN_ID_KEY = "x-b3-parentspanid";
   private static final String SAMPLING_PRIORITY_KEY = "x-b3-sampled";
   private static final String FLAGS_KEY = "x-b3-flags";
-  private static final int HEX_RADIX = 16;
 
   private B3HttpCodec() {
     // This class should not be created. This also makes code coverage checks happy.
   }
 
+  /** Adds the headers the extractor reads. */
+  static HeaderNames.Builder extractedHeaders(final HeaderNames.Builder headers) {
+    return headers.name(TRACE_ID_KEY).name(SPAN_ID_KEY).name(SAMPLING_PRIORITY_KEY);
+  }
+
   public static class Injector implements HttpCodec.Injector {
 
     @Override
     public void inject(final DDSpanContext context, final TextMapInject carrier) {
-      try {
-        // TODO: should we better store ids as BigInteger in context to avoid parsing it
-        // twice.
-        final BigInteger traceId = new BigInteger(context.getTraceId());
-        final BigInteger spanId = new BigInteger(context.getSpanId());
-
-        carrier.put(TRACE_ID_KEY, traceId.toString(HEX_RADIX).toLowerCase());
-        carrier.put(SPAN_ID_KEY, spanId.toString(HEX_RADIX).toLowerCase());
-
-        if (!Strings.isNullOrEmpty(context.getParentId())) {
-          final BigInteger parentId = new BigInteger(context.getParentId());
-          carrier.put(PARENT_SPAN_ID_KEY, parentId.toString(HEX_RADIX).toLowerCase());
-        }
-
-        if (context.lockSamplingPriority()) {
-          int ps = context.getSamplingPriority();
-          switch (ps) {
-            case PrioritySampling.USER_KEEP:
-              // Set the debug flag if the user has manually marked the span to keep
-              carrier.put(FLAGS_KEY, "1");
-              // We don't need to set sampled in this case since it is implied
-              break;
-            case PrioritySampling.SAMPLER_KEEP:
-              carrier.put(SAMPLING_PRIORITY_KEY, "1");
-              break;
-            case PrioritySampling.SAMPLER_DROP:
-            case PrioritySampling.USER_DROP:
-              carrier.put(SAMPLING_PRIORITY_KEY, "0");
-          }
-        }
-
-        for (final Map.Entry<String, String> entry : context.baggageItems()) {
-          carrier.put(OT_BAGGAGE_PREFIX + entry.getKey(), HttpCodec.encode(entry.getValue()));
+      final long traceIdHigh = context.getTraceIdHigh();
+      final String traceId =
+          traceIdHigh == 0
+              ? Long.toHexString(context.getTraceIdLow())
+              : Long.toHexString(traceIdHigh) + Ids.toHex(context.getTraceIdLow());
+      carrier.put(TRACE_ID_KEY, traceId);
+      carrier.put(SPAN_ID_KEY, Long.toHexString(context.getSpanIdAsLong()));
+      carrier.put(PARENT_SPAN_ID_KEY, Long.toHexString(context.getParentIdAsLong()));
+
+      if (context.lockSamplingPriority()) {
+        int ps = context.getSamplingPriority();
+        switch (ps) {
+          case PrioritySampling.USER_KEEP:
+            // Set the debug flag if the user has manually marked the span to keep
+            carrier.put(FLAGS_KEY, "1");
+            // We don't need to set sampled in this case since it is implied
+            break;
+          case PrioritySampling.SAMPLER_KEEP:
+            carrier.put(SAMPLING_PRIORITY_KEY, "1");
+            break;
+          case PrioritySampling.SAMPLER_DROP:
+          case PrioritySampling.USER_DROP:
+            carrier.put(SAMPLING_PRIORITY_KEY, "0");
         }
+      }
 
-        log.debug("{} - B3 parent context injected", context.getTraceId());
-      } catch (final NumberFormatException e) {
-        log.debug(
-            "Cannot parse context id(s): {} {}", context.getTraceId(), context.getSpanId(), e);
+      for (final Map.Entry<String, String> entry : context.baggageItems()) {
+        carrier.put(OT_BAGGAGE_PREFIX + entry.getKey(), HttpCodec.encode(entry.getValue()));
       }
+
+      log.debug("{} - B3 parent context injected", traceId);
     }
   }
 
   public static class Extractor implements HttpCodec.Extractor {
 
     private final Map<String, String> taggedHeaders;
+    /** The headers to read, the others being skipped without lowercasing them */
+    private final HeaderNames headers;
 
     public Extractor(final Map<String, String> taggedHeaders) {
       this.taggedHeaders = new HashMap<>();
       for (final Map.Entry<String, String> mapping : taggedHeaders.entrySet()) {
         this.taggedHeaders.put(mapping.getKey().trim().toLowerCase(), mapping.getValue());
       }
+      headers = extractedHeaders(HeaderNames.builder().names(this.taggedHeaders.keySet())).build();
     }
 
     public Extractor() {
-      this.taggedHeaders = new HashMap<>();
+      this(Collections.<String, String>emptyMap());
     }
 
     @Override
     public SpanContext extract(final TextMapExtract carrier) {
       try {
         Map<String, String> tags = Collections.emptyMap();
-        String traceId = ZERO;
-        String spanId = ZERO;
+        long traceIdHigh = 0;
+        long traceIdLow = 0;
+        long spanId = 0;
         int samplingPriority = PrioritySampling.UNSET;
 
         for (final Map.Entry<String, String> entry : carrier) {
+          if (!headers.matches(entry.getKey())) {
+            continue;
+          }
           final String key = entry.getKey().toLowerCase();
           final String value = entry.getValue();
 
@@ -123,9 +120,10 @@ class B3HttpCodec {
               log.debug("Header {} exceeded max length of 32: {}", TRACE_ID_KEY, value);
               continue;
             }
-            traceId = validateUInt128BitsID(value, HEX_RADIX);
+            traceIdHigh = Ids.parseHexHigh(value);
+            traceIdLow = Ids.parseHexLow(value);
           } else if (SPAN_ID_KEY.equalsIgnoreCase(key)) {
-            spanId = validateUInt128BitsID(value, HEX_RADIX);
+            spanId = Ids.parseUnsignedHex(value);
           } else if (SAMPLING_PRIORITY_KEY.equalsIgnoreCase(key)) {
             samplingPriority = convertSamplingPriority(value);
           }
@@ -138,10 +136,11 @@ class B3HttpCodec {
           }
         }
 
-        if (!ZERO.equals(traceId)) {
+        if (traceIdHigh != 0 || traceIdLow != 0) {
           final ExtractedContext context =
               new ExtractedContext(
-                  traceId,
+                  traceIdHigh,
+                  traceIdLow,
                   spanId,
                   samplingPriority,
                   null,
@@ -149,7 +148,9 @@ class B3HttpCodec {
                   tags);
           context.lockSamplingPriority();
 
-          log.debug("{} - Parent context extracted", context.getTraceId());
+          if (log.isDebugEnabled()) {
+            log.debug("{} - Parent context extracted", context.getTraceId());
+          }
           return context;
         } else if (!tags.isEmpty()) {
           log.debug("Tags context extracted");
@@ -162,17 +163,6 @@ class B3HttpCodec {
       return null;
     }
 
-    static String validateUInt128BitsID(final String value, final int radix)
-        throws IllegalArgumentException {
-      final BigInteger parsedValue = new BigInteger(value, radix);
-      if (parsedValue.compareTo(BigInteger.ZERO) == -1 || parsedValue.compareTo(UINT128_MAX) == 1) {
-        throw new IllegalArgumentException(
-            "ID out of range, must be between 0 and 2^128-1, got: " + value);
-      }
-      // We use decimals
-      return parsedValue.toString();
-    }
-
     private int convertSamplingPriority(final String samplingPriority) {
       return Integer.parseInt(samplingPriority) == 1
           ? PrioritySampling.SAMPLER_KEEP
@@ -1,8 +1,7 @@
 // Modified by SignalFx
 package datadog.opentracing.propagation;
 
-import static datadog.opentracing.propagation.HttpCodec.ZERO;
-import static datadog.opentracing.propagation.HttpCodec.validateUInt64BitsID;
+import static datadog.opentracing.propagation.HttpCodec.parseUInt64BitsID;
 
 import datadog.opentracing.DDSpanContext;
 import datadog.trace.api.sampling.PrioritySampling;
@@ -28,6 +27,16 @@ class DatadogHttpCodec {
     // This class should not be created. This also makes code coverage checks happy.
   }
 
+  /** Adds the headers the extractor reads. */
+  static HeaderNames.Builder extractedHeaders(final HeaderNames.Builder headers) {
+    return headers
+        .name(TRACE_ID_KEY)
+        .name(SPAN_ID_KEY)
+        .name(SAMPLING_PRIORITY_KEY)
+        .name(ORIGIN_KEY)
+        .prefix(OT_BAGGAGE_PREFIX);
+  }
+
   public static class Injector implements HttpCodec.Injector {
 
     @Override
@@ -51,12 +60,15 @@ class DatadogHttpCodec {
 
   public static class Extractor implements HttpCodec.Extractor {
     private final Map<String, String> taggedHeaders;
+    /** The headers to read, the others being skipped without lowercasing them */
+    private final HeaderNames headers;
 
     public Extractor(final Map<String, String> taggedHeaders) {
       this.taggedHeaders = new HashMap<>();
       for (final Map.Entry<String, String> mapping : taggedHeaders.entrySet()) {
         this.taggedHeaders.put(mapping.getKey().trim().toLowerCase(), mapping.getValue());
       }
+      headers = extractedHeaders(HeaderNames.builder().names(this.taggedHeaders.keySet())).build();
     }
 
     @Override
@@ -64,12 +76,15 @@ class DatadogHttpCodec {
       try {
         Map<String, String> baggage = Collections.emptyMap();
         Map<String, String> tags = Collections.emptyMap();
-        String traceId = ZERO;
-        String spanId = ZERO;
+        long traceId = 0;
+        long spanId = 0;
         int samplingPriority = PrioritySampling.UNSET;
         String origin = null;
 
         for (final Map.Entry<String, String> entry : carrier) {
+          if (!headers.matches(entry.getKey())) {
+            continue;
+          }
           final String key = entry.getKey().toLowerCase();
           final String value = entry.getValue();
 
@@ -78,9 +93,9 @@ class DatadogHttpCodec {
           }
 
           if (TRACE_ID_KEY.equalsIgnoreCase(key)) {
-            traceId = validateUInt64BitsID(value, 10);
+            traceId = parseUInt64BitsID(value);
           } else if (SPAN_ID_KEY.equalsIgnoreCase(key)) {
-            spanId = validateUInt64BitsID(value, 10);
+            spanId = parseUInt64BitsID(value);
           } else if (SAMPLING_PRIORITY_KEY.equalsIgnoreCase(key)) {
             samplingPriority = Integer.parseInt(value);
           } else if (ORIGIN_KEY.equalsIgnoreCase(key)) {
@@ -100,12 +115,14 @@ class DatadogHttpCodec {
           }
         }
 
-        if (!ZERO.equals(traceId)) {
+        if (traceId != 0) {
           final ExtractedContext context =
-              new ExtractedContext(traceId, spanId, samplingPriority, origin, baggage, tags);
+              new ExtractedContext(0, traceId, spanId, samplingPriority, origin, baggage, tags);
           context.lockSamplingPriority();
 
-          log.debug("{} - Parent context extracted", context.getTraceId());
+          if (log.isDebugEnabled()) {
+            log.debug("{} - Parent context extracted", context.getTraceId());
+          }
           return context;
         } else if (origin != null || !tags.isEmpty()) {
           log.debug("Tags context extracted");
@@ -1,5 +1,6 @@
 package datadog.opentracing.propagation;
 
+import datadog.trace.common.util.Ids;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -7,12 +8,18 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * Propagated data resulting from calling tracer.extract with header data from an incoming request.
  */
 public class ExtractedContext extends TagContext {
-  private final String traceId;
-  private final String spanId;
+  private final long traceIdHigh;
+  private final long traceIdLow;
+  private final long spanId;
   private final int samplingPriority;
   private final Map<String, String> baggage;
   private final AtomicBoolean samplingPriorityLocked = new AtomicBoolean(false);
 
+  // Decimal encodings, only built when asked for.
+  private String traceIdString;
+  private String spanIdString;
+
+  /** @throws NumberFormatException if the span id does not fit in 64 bits, or the trace id 128 */
   public ExtractedContext(
       final String traceId,
       final String spanId,
@@ -20,8 +27,27 @@ public class ExtractedContext extends TagContext {
       final String origin,
       final Map<String, String> baggage,
       final Map<String, String> tags) {
+    this(
+        Ids.parseHigh(traceId),
+        Ids.parseLow(traceId),
+        Ids.parseUnsignedLong(spanId),
+        samplingPriority,
+        origin,
+        baggage,
+        tags);
+  }
+
+  public ExtractedContext(
+      final long traceIdHigh,
+      final long traceIdLow,
+      final long spanId,
+      final int samplingPriority,
+      final String origin,
+      final Map<String, String> baggage,
+      final Map<String, String> tags) {
     super(origin, tags);
-    this.traceId = traceId;
+    this.traceIdHigh = traceIdHigh;
+    this.traceIdLow = traceIdLow;
     this.spanId = spanId;
     this.samplingPriority = samplingPriority;
     this.baggage = baggage;
@@ -37,10 +63,32 @@ public class ExtractedContext extends TagContext {
   }
 
   public String getTraceId() {
+    String traceId = traceIdString;
+    if (traceId == null) {
+      traceId = Ids.toDecimal(traceIdHigh, traceIdLow);
+      traceIdString = traceId;
+    }
     return traceId;
   }
 
   public String getSpanId() {
+    String spanId = spanIdString;
+    if (spanId == null) {
+      spanId = Ids.toDecimal(0, this.spanId);
+      spanIdString = spanId;
+    }
+    return spanId;
+  }
+
+  public long getTraceIdHigh() {
+    return traceIdHigh;
+  }
+
+  public long getTraceIdLow() {
+    return traceIdLow;
+  }
+
+  public long getSpanIdAsLong() {
     return spanId;
   }
 
@@ -1,7 +1,6 @@
 package datadog.opentracing.propagation;
 
-import static datadog.opentracing.propagation.HttpCodec.ZERO;
-import static datadog.opentracing.propagation.HttpCodec.validateUInt64BitsID;
+import static datadog.opentracing.propagation.HttpCodec.parseUInt64BitsID;
 
 import datadog.opentracing.DDSpanContext;
 import datadog.trace.api.sampling.PrioritySampling;
@@ -30,6 +29,11 @@ public class HaystackHttpCodec {
     // This class should not be created. This also makes code coverage checks happy.
   }
 
+  /** Adds the headers the extractor reads. */
+  static HeaderNames.Builder extractedHeaders(final HeaderNames.Builder headers) {
+    return headers.name(TRACE_ID_KEY).name(SPAN_ID_KEY).prefix(OT_BAGGAGE_PREFIX);
+  }
+
   public static class Injector implements HttpCodec.Injector {
 
     @Override
@@ -47,6 +51,8 @@ public class HaystackHttpCodec {
 
   public static class Extractor implements HttpCodec.Extractor {
     private final Map<String, String> taggedHeaders;
+    /** The headers to read, the others being skipped without lowercasing them */
+    private final HeaderNames headers;
 
     /** Creates Header Extractor using Haystack propagation. */
     public Extractor(final Map<String, String> taggedHeaders) {
@@ -54,6 +60,7 @@ public class HaystackHttpCodec {
       for (final Map.Entry<String, String> mapping : taggedHeaders.entrySet()) {
         this.taggedHeaders.put(mapping.getKey().trim().toLowerCase(), mapping.getValue());
       }
+      headers = extractedHeaders(HeaderNames.builder().names(this.taggedHeaders.keySet())).build();
     }
 
     @Override
@@ -61,12 +68,15 @@ public class HaystackHttpCodec {
       try {
         Map<String, String> baggage = Collections.emptyMap();
         Map<String, String> tags = Collections.emptyMap();
-        String traceId = ZERO;
-        String spanId = ZERO;
+        long traceId = 0;
+        long spanId = 0;
         final int samplingPriority = PrioritySampling.SAMPLER_KEEP;
         final String origin = null; // Always null
 
         for (final Map.Entry<String, String> entry : carrier) {
+          if (!headers.matches(entry.getKey())) {
+            continue;
+          }
           final String key = entry.getKey().toLowerCase();
           final String value = entry.getValue();
 
@@ -75,9 +85,9 @@ public class HaystackHttpCodec {
           }
 
           if (TRACE_ID_KEY.equalsIgnoreCase(key)) {
-            traceId = validateUInt64BitsID(value, 10);
+            traceId = parseUInt64BitsID(value);
           } else if (SPAN_ID_KEY.equalsIgnoreCase(key)) {
-            spanId = validateUInt64BitsID(value, 10);
+            spanId = parseUInt64BitsID(value);
           } else if (key.startsWith(OT_BAGGAGE_PREFIX.toLowerCase())) {
             if (baggage.isEmpty()) {
               baggage = new HashMap<>();
@@ -93,12 +103,14 @@ public class HaystackHttpCodec {
           }
         }
 
-        if (!ZERO.equals(traceId)) {
+        if (traceId != 0) {
           final ExtractedContext context =
-              new ExtractedContext(traceId, spanId, samplingPriority, origin, baggage, tags);
+              new ExtractedContext(0, traceId, spanId, samplingPriority, origin, baggage, tags);
           context.lockSamplingPriority();
 
-          log.debug("{} - Parent context extracted", context.getTraceId());
+          if (log.isDebugEnabled()) {
+            log.debug("{} - Parent context extracted", context.getTraceId());
+          }
           return context;
         } else if (origin != null || !tags.isEmpty()) {
           log.debug("Tags context extracted");
@@ -0,0 +1,154 @@
+package datadog.opentracing.propagation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The names of the headers extraction reads, and the prefixes of those it reads by prefix, ignoring
+ * case.
+ *
+ * <p>Every header of every request goes through {@link #matches(String)}, so the names are kept in
+ * a table without collisions: a lookup hashes the header without lowercasing it, and compares it
+ * to at most one name.
+ */
+public final class HeaderNames {
+  private static final HeaderNames EMPTY = new Builder().build();
+  private static final int GOLDEN_RATIO = 0x9E3779B9;
+
+  /** The names, as given first */
+  private final String[] names;
+
+  private final String[] prefixes;
+  /** The names by their hash, null for the empty slots */
+  private final String[] table;
+
+  /** Factor of the hash, chosen so that no two names end up in the same slot */
+  private final int factor;
+
+  private final int shift;
+
+  private HeaderNames(
+      final String[] names,
+      final String[] prefixes,
+      final String[] table,
+      final int factor,
+      final int shift) {
+    this.names = names;
+    this.prefixes = prefixes;
+    this.table = table;
+    this.factor = factor;
+    this.shift = shift;
+  }
+
+  public static HeaderNames empty() {
+    return EMPTY;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /** @return true if the header is one of the names, or starts with one of the prefixes */
+  public boolean matches(final String header) {
+    final String name = table[index(header, factor, shift)];
+    if (name != null && name.equalsIgnoreCase(header)) {
+      return true;
+    }
+    for (final String prefix : prefixes) {
+      if (header.regionMatches(true, 0, prefix, 0, prefix.length())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return the names, as first given: carriers looking headers up whatever the case of their name
+   *     can be read with those alone, when there are no prefixes
+   */
+  public List<String> names() {
+    return Arrays.asList(names);
+  }
+
+  public boolean hasPrefixes() {
+    return prefixes.length > 0;
+  }
+
+  /** @return the slot of the name, hashed as if it was lowercase */
+  private static int index(final String name, final int factor, final int shift) {
+    int hash = 0;
+    for (int i = 0; i < name.length(); i++) {
+      final char c = name.charAt(i);
+      hash = factor * hash + (c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : Character.toLowerCase(c));
+    }
+    return (hash * GOLDEN_RATIO) >>> shift;
+  }
+
+  public static final class Builder {
+    /** Names by their lowercase form, to keep the first of the names only differing by case */
+    private final Map<String, String> names = new LinkedHashMap<>();
+
+    private final List<String> prefixes = new ArrayList<>();
+
+    private Builder() {}
+
+    public Builder name(final String name) {
+      final String key = name.toLowerCase();
+      if (!names.containsKey(key)) {
+        names.put(key, name);
+      }
+      return this;
+    }
+
+    public Builder names(final Collection<String> names) {
+      for (final String name : names) {
+        name(name);
+      }
+      return this;
+    }
+
+    public Builder prefix(final String prefix) {
+      if (!prefixes.contains(prefix)) {
+        prefixes.add(prefix);
+      }
+      return this;
+    }
+
+    public HeaderNames build() {
+      final String[] values = names.values().toArray(new String[0]);
+      // Tables of at least twice the names find a factor without collisions in a few tries
+      int bits = 1;
+      while ((1 << bits) < values.length * 2) {
+        bits++;
+      }
+      while (true) {
+        final int shift = 32 - bits;
+        for (int factor = 31; factor < 31 + 2 * 64; factor += 2) {
+          final String[] table = fill(values, factor, shift);
+          if (table != null) {
+            return new HeaderNames(values, prefixes.toArray(new String[0]), table, factor, shift);
+          }
+        }
+        // Unlucky with these names, trying with a table twice the size
+        bits++;
+      }
+    }
+
+    /** @return the table of the names, null if two of them end up in the same slot */
+    private static String[] fill(final String[] values, final int factor, final int shift) {
+      final String[] table = new String[1 << (32 - shift)];
+      for (final String value : values) {
+        final int index = index(value, factor, shift);
+        if (table[index] != null) {
+          return null;
+        }
+        table[index] = value;
+      }
+      return table;
+    }
+  }
+}
@@ -2,11 +2,11 @@ package datadog.opentracing.propagation;
 
 import datadog.opentracing.DDSpanContext;
 import datadog.trace.api.Config;
+import datadog.trace.common.util.Ids;
 import io.opentracing.SpanContext;
 import io.opentracing.propagation.TextMapExtract;
 import io.opentracing.propagation.TextMapInject;
 import java.io.UnsupportedEncodingException;
-import java.math.BigInteger;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.util.ArrayList;
@@ -17,10 +17,6 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class HttpCodec {
 
-  // uint 64 bits max value, 2^64 - 1
-  static final BigInteger UINT64_MAX = new BigInteger("2").pow(64).subtract(BigInteger.ONE);
-  static final String ZERO = "0";
-
   public interface Injector {
 
     void inject(final DDSpanContext context, final TextMapInject carrier);
@@ -72,6 +68,25 @@ public class HttpCodec {
     return new CompoundExtractor(extractors);
   }
 
+  /** @return the headers the extractor of the configuration reads */
+  public static HeaderNames extractedHeaders(
+      final Config config, final Map<String, String> taggedHeaders) {
+    final HeaderNames.Builder headers = HeaderNames.builder();
+    for (final Config.PropagationStyle style : config.getPropagationStylesToExtract()) {
+      if (style == Config.PropagationStyle.DATADOG) {
+        DatadogHttpCodec.extractedHeaders(headers);
+      } else if (style == Config.PropagationStyle.B3) {
+        B3HttpCodec.extractedHeaders(headers);
+      } else if (style == Config.PropagationStyle.HAYSTACK) {
+        HaystackHttpCodec.extractedHeaders(headers);
+      }
+    }
+    for (final String taggedHeader : taggedHeaders.keySet()) {
+      headers.name(taggedHeader.trim().toLowerCase());
+    }
+    return headers.build();
+  }
+
   public static class CompoundInjector implements Injector {
 
     private final List<Injector> injectors;
@@ -111,24 +126,15 @@ public class HttpCodec {
   }
 
   /**
-   * Helper method to validate an ID String to verify that it is an unsigned 64 bits number and is
-   * within range.
+   * Helper method to parse an ID String, verifying that it is an unsigned 64 bits decimal number.
    *
    * @param value the String that contains the ID
-   * @param radix radix to use to parse the ID
-   * @return the ID in String format if it passes validations, "0" otherwise
+   * @return the bits of the ID, values above Long.MAX_VALUE are negative
    * @throws IllegalArgumentException if value cannot be converted to integer or doesn't conform to
    *     required boundaries
    */
-  static String validateUInt64BitsID(final String value, final int radix)
-      throws IllegalArgumentException {
-    final BigInteger parsedValue = new BigInteger(value, radix);
-    if (parsedValue.compareTo(BigInteger.ZERO) == -1 || parsedValue.compareTo(UINT64_MAX) == 1) {
-      throw new IllegalArgumentException(
-          "ID out of range, must be between 0 and 2^64-1, got: " + value);
-    }
-    // We use decimals
-    return parsedValue.toString();
+  static long parseUInt64BitsID(final String value) throws IllegalArgumentException {
+    return Ids.parseUnsignedLong(value);
   }
 
   /** URL encode value */
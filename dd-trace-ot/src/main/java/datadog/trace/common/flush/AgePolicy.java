@@ -0,0 +1,33 @@
+package datadog.trace.common.flush;
+
+import datadog.opentracing.PendingTrace;
+import java.util.concurrent.TimeUnit;
+
+/** Flushes traces whose oldest finished span has been waiting for more than some time. */
+public class AgePolicy implements PartialFlushPolicy {
+  private final long maxAgeMillis;
+
+  public AgePolicy(final long maxAgeMillis) {
+    this.maxAgeMillis = maxAgeMillis;
+  }
+
+  @Override
+  public boolean shouldFlush(final PendingTrace trace) {
+    return TimeUnit.NANOSECONDS.toMillis(trace.getFinishedAgeNanos()) >= maxAgeMillis;
+  }
+
+  @Override
+  public long getCheckDelayMillis() {
+    return maxAgeMillis;
+  }
+
+  @Override
+  public HeapUsagePolicy getHeapUsagePolicy() {
+    return null;
+  }
+
+  @Override
+  public String toString() {
+    return "AgePolicy { maxAgeMillis=" + maxAgeMillis + " }";
+  }
+}
@@ -0,0 +1,54 @@
+package datadog.trace.common.flush;
+
+import datadog.opentracing.PendingTrace;
+import java.util.Arrays;
+import java.util.List;
+
+/** Flushes traces as soon as any of its policies says so. */
+public class AnyPolicy implements PartialFlushPolicy {
+  private final PartialFlushPolicy[] policies;
+  private final long checkDelayMillis;
+  private final HeapUsagePolicy heapUsagePolicy;
+
+  public AnyPolicy(final List<PartialFlushPolicy> policies) {
+    this.policies = policies.toArray(new PartialFlushPolicy[0]);
+    long checkDelayMillis = 0;
+    HeapUsagePolicy heapUsagePolicy = null;
+    for (final PartialFlushPolicy policy : this.policies) {
+      final long delay = policy.getCheckDelayMillis();
+      if (delay > 0 && (checkDelayMillis == 0 || delay < checkDelayMillis)) {
+        checkDelayMillis = delay;
+      }
+      if (heapUsagePolicy == null) {
+        heapUsagePolicy = policy.getHeapUsagePolicy();
+      }
+    }
+    this.checkDelayMillis = checkDelayMillis;
+    this.heapUsagePolicy = heapUsagePolicy;
+  }
+
+  @Override
+  public boolean shouldFlush(final PendingTrace trace) {
+    for (final PartialFlushPolicy policy : policies) {
+      if (policy.shouldFlush(trace)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public long getCheckDelayMillis() {
+    return checkDelayMillis;
+  }
+
+  @Override
+  public HeapUsagePolicy getHeapUsagePolicy() {
+    return heapUsagePolicy;
+  }
+
+  @Override
+  public String toString() {
+    return "AnyPolicy { policies=" + Arrays.toString(policies) + " }";
+  }
+}
@@ -0,0 +1,54 @@
+package datadog.trace.common.flush;
+
+import datadog.opentracing.PendingTrace;
+
+/**
+ * Flushes every trace with finished spans while the heap is fuller than a percentage of its
+ * maximum size. Heap usage is sampled at most every {@link #SAMPLE_PERIOD_MILLIS}, by whichever
+ * thread checks the policy first. The span cleaner also samples it on each run, so that the traces
+ * whose spans stopped finishing get flushed too.
+ */
+public class HeapUsagePolicy implements PartialFlushPolicy {
+  static final long SAMPLE_PERIOD_MILLIS = 100;
+
+  private final int maxUsagePercent;
+  private final Runtime runtime = Runtime.getRuntime();
+
+  private volatile long nextSampleMillis = 0;
+  private volatile boolean exceeded = false;
+
+  public HeapUsagePolicy(final int maxUsagePercent) {
+    this.maxUsagePercent = maxUsagePercent;
+  }
+
+  @Override
+  public boolean shouldFlush(final PendingTrace trace) {
+    return isExceeded();
+  }
+
+  /** @return whether the heap is fuller than the limit, sampled at most every sample period */
+  public boolean isExceeded() {
+    final long now = System.currentTimeMillis();
+    if (now >= nextSampleMillis) {
+      nextSampleMillis = now + SAMPLE_PERIOD_MILLIS;
+      final long used = runtime.totalMemory() - runtime.freeMemory();
+      exceeded = used * 100 >= runtime.maxMemory() * maxUsagePercent;
+    }
+    return exceeded;
+  }
+
+  @Override
+  public long getCheckDelayMillis() {
+    return 0;
+  }
+
+  @Override
+  public HeapUsagePolicy getHeapUsagePolicy() {
+    return this;
+  }
+
+  @Override
+  public String toString() {
+    return "HeapUsagePolicy { maxUsagePercent=" + maxUsagePercent + " }";
+  }
+}
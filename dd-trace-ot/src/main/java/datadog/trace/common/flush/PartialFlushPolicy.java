@@ -0,0 +1,93 @@
+package datadog.trace.common.flush;
+
+import datadog.opentracing.PendingTrace;
+import datadog.trace.api.Config;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decides when the finished spans of a trace still in progress get written, instead of staying on
+ * the heap until the whole trace is finished.
+ *
+ * <p>Policies are checked every time a span of the trace finishes, so they must be cheap. Policies
+ * depending on time also get checked on a timer, see {@link #getCheckDelayMillis()}, and the
+ * policies depending on heap usage by the span cleaner, see {@link #getHeapUsagePolicy()}.
+ */
+public interface PartialFlushPolicy {
+
+  /**
+   * @param trace a trace with spans still in progress
+   * @return true when the finished spans of the trace have to be written now
+   */
+  boolean shouldFlush(PendingTrace trace);
+
+  /**
+   * @return how long after the oldest finished span of a trace the policy has to be checked again
+   *     even if no other span finishes, and then how often while it doesn't flush, in
+   *     milliseconds. 0 if it only has to be checked when spans finish.
+   */
+  long getCheckDelayMillis();
+
+  /**
+   * @return the policy flushing traces by heap usage, this one or one it combines, null if there
+   *     is none. Heap usage concerns all the traces at once, so the span cleaner samples it on each
+   *     run and only then checks the traces with finished spans.
+   */
+  HeapUsagePolicy getHeapUsagePolicy();
+
+  PartialFlushPolicy NEVER =
+      new PartialFlushPolicy() {
+        @Override
+        public boolean shouldFlush(final PendingTrace trace) {
+          return false;
+        }
+
+        @Override
+        public long getCheckDelayMillis() {
+          return 0;
+        }
+
+        @Override
+        public HeapUsagePolicy getHeapUsagePolicy() {
+          return null;
+        }
+
+        @Override
+        public String toString() {
+          return "PartialFlushPolicy.NEVER";
+        }
+      };
+
+  final class Builder {
+    public static PartialFlushPolicy forConfig(final Config config) {
+      return forConfig(config, config.getPartialFlushMinSpans());
+    }
+
+    /** Uses {@code minSpans} instead of the configured partial flush minimum span count. */
+    public static PartialFlushPolicy forConfig(final Config config, final int minSpans) {
+      final List<PartialFlushPolicy> policies = new ArrayList<>();
+      if (minSpans > 0) {
+        policies.add(new SpanCountPolicy(minSpans));
+      }
+      if (config.getPartialFlushMaxBytes() > 0) {
+        policies.add(new SizePolicy(config.getPartialFlushMaxBytes()));
+      }
+      if (config.getPartialFlushMaxAge() > 0) {
+        policies.add(new AgePolicy(config.getPartialFlushMaxAge() * 1000L));
+      }
+      if (config.getPartialFlushHeapUsage() > 0) {
+        policies.add(new HeapUsagePolicy(config.getPartialFlushHeapUsage()));
+      }
+
+      if (policies.isEmpty()) {
+        return NEVER;
+      } else if (policies.size() == 1) {
+        return policies.get(0);
+      } else {
+        return new AnyPolicy(policies);
+      }
+    }
+
+    private Builder() {}
+  }
+}
@@ -0,0 +1,35 @@
+package datadog.trace.common.flush;
+
+import datadog.opentracing.PendingTrace;
+
+/**
+ * Flushes traces whose finished spans take more than a number of bytes, as estimated by {@link
+ * PendingTrace#getFinishedBytes()}.
+ */
+public class SizePolicy implements PartialFlushPolicy {
+  private final long maxBytes;
+
+  public SizePolicy(final long maxBytes) {
+    this.maxBytes = maxBytes;
+  }
+
+  @Override
+  public boolean shouldFlush(final PendingTrace trace) {
+    return trace.getFinishedBytes() > maxBytes;
+  }
+
+  @Override
+  public long getCheckDelayMillis() {
+    return 0;
+  }
+
+  @Override
+  public HeapUsagePolicy getHeapUsagePolicy() {
+    return null;
+  }
+
+  @Override
+  public String toString() {
+    return "SizePolicy { maxBytes=" + maxBytes + " }";
+  }
+}
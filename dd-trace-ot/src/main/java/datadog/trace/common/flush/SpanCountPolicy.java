@@ -0,0 +1,32 @@
+package datadog.trace.common.flush;
+
+import datadog.opentracing.PendingTrace;
+
+/** Flushes traces holding more than a number of finished spans. */
+public class SpanCountPolicy implements PartialFlushPolicy {
+  private final int minSpans;
+
+  public SpanCountPolicy(final int minSpans) {
+    this.minSpans = minSpans;
+  }
+
+  @Override
+  public boolean shouldFlush(final PendingTrace trace) {
+    return trace.size() > minSpans;
+  }
+
+  @Override
+  public long getCheckDelayMillis() {
+    return 0;
+  }
+
+  @Override
+  public HeapUsagePolicy getHeapUsagePolicy() {
+    return null;
+  }
+
+  @Override
+  public String toString() {
+    return "SpanCountPolicy { minSpans=" + minSpans + " }";
+  }
+}
@@ -12,13 +12,20 @@ import datadog.trace.common.writer.Api.ResponseListener;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * A rate sampler which maintains different sample rates per service+env name.
  *
  * <p>The configuration of (serviceName,env)->rate is configured by the core agent.
+ *
+ * <p>With head sampling, the tracer asks for the decision before building the root span of a new
+ * trace, and doesn't record the traces dropped. Those never reach the core agent, so the sampler
+ * counts the traces started per service+env instead.
  */
 @Slf4j
 public class RateByServiceSampler implements Sampler, ResponseListener {
@@ -30,6 +37,24 @@ public class RateByServiceSampler implements Sampler, ResponseListener {
   private volatile Map<String, RateSampler> serviceRates =
       unmodifiableMap(singletonMap(DEFAULT_KEY, new RateSampler(DEFAULT_RATE)));
 
+  /** Decide on new traces before their root span is built */
+  private final boolean headSampling;
+
+  /** Number of traces started per service+env, when head sampling */
+  private final ConcurrentMap<String, AtomicLong> traceCounts = new ConcurrentHashMap<>();
+
+  public RateByServiceSampler() {
+    this(false);
+  }
+
+  public RateByServiceSampler(final boolean headSampling) {
+    this.headSampling = headSampling;
+  }
+
+  public boolean isHeadSampling() {
+    return headSampling;
+  }
+
   @Override
   public boolean sample(final DDSpan span) {
     // Priority sampling sends all traces to the core agent, including traces marked dropped.
@@ -39,6 +64,10 @@ public class RateByServiceSampler implements Sampler, ResponseListener {
 
   /** If span is a root span, set the span context samplingPriority to keep or drop */
   public void initializeSamplingPriority(final DDSpan span) {
+    if (headSampling && span.getSamplingPriority() != null) {
+      // Decided when the trace started
+      return;
+    }
     if (span.isRootSpan()) {
       // Run the priority sampler on the new span
       setSamplingPriorityOnSpanContext(span);
@@ -49,16 +78,33 @@ public class RateByServiceSampler implements Sampler, ResponseListener {
     }
   }
 
-  private void setSamplingPriorityOnSpanContext(final DDSpan span) {
-    final String serviceName = span.getServiceName();
-    final String env = getSpanEnv(span);
-    final String key = "service:" + serviceName + ",env:" + env;
-
-    final Map<String, RateSampler> rates = serviceRates;
-    RateSampler sampler = serviceRates.get(key);
-    if (sampler == null) {
-      sampler = rates.get(DEFAULT_KEY);
+  /**
+   * Head sampling decision, made before the root span of a new trace is built.
+   *
+   * @return true when the trace has to be recorded
+   */
+  public boolean sample(final String serviceName, final String env) {
+    final String key = key(serviceName, env == null ? "" : env);
+    AtomicLong count = traceCounts.get(key);
+    if (count == null) {
+      final AtomicLong added = new AtomicLong();
+      count = traceCounts.putIfAbsent(key, added);
+      if (count == null) {
+        count = added;
+      }
     }
+    count.incrementAndGet();
+    return samplerFor(key).sample();
+  }
+
+  /** @return the number of traces started for the service and env, when head sampling */
+  public long getTraceCount(final String serviceName, final String env) {
+    final AtomicLong count = traceCounts.get(key(serviceName, env));
+    return count == null ? 0 : count.get();
+  }
+
+  private void setSamplingPriorityOnSpanContext(final DDSpan span) {
+    final RateSampler sampler = samplerFor(key(span.getServiceName(), getSpanEnv(span)));
 
     if (sampler.sample(span)) {
       span.setSamplingPriority(PrioritySampling.SAMPLER_KEEP);
@@ -67,8 +113,19 @@ public class RateByServiceSampler implements Sampler, ResponseListener {
     }
   }
 
+  private RateSampler samplerFor(final String key) {
+    final Map<String, RateSampler> rates = serviceRates;
+    final RateSampler sampler = rates.get(key);
+    return sampler == null ? rates.get(DEFAULT_KEY) : sampler;
+  }
+
+  private static String key(final String serviceName, final String env) {
+    return "service:" + serviceName + ",env:" + env;
+  }
+
   private static String getSpanEnv(final DDSpan span) {
-    return null == span.getTags().get("env") ? "" : String.valueOf(span.getTags().get("env"));
+    final Object env = span.context().getTag("env");
+    return null == env ? "" : String.valueOf(env);
   }
 
   @Override
@@ -129,11 +186,15 @@ public class RateByServiceSampler implements Sampler, ResponseListener {
 
     @Override
     public boolean doSample(final DDSpan span) {
-      final boolean sample = ThreadLocalRandom.current().nextFloat() <= sampleRate;
+      final boolean sample = sample();
       log.debug("{} - Span is sampled: {}", span, sample);
       return sample;
     }
 
+    private boolean sample() {
+      return ThreadLocalRandom.current().nextFloat() <= sampleRate;
+    }
+
     public double getSampleRate() {
       return sampleRate;
     }
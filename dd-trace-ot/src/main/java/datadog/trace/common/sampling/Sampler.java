@@ -20,7 +20,7 @@ public interface Sampler {
       final Sampler sampler;
       if (config != null) {
         if (config.isPrioritySamplingEnabled()) {
-          sampler = new RateByServiceSampler();
+          sampler = new RateByServiceSampler(config.isPrioritySamplingHeadEnabled());
         } else {
           sampler = new AllSampler();
         }
@@ -11,8 +11,31 @@ public class Ids {
   private static final BigInteger BIGINT_UNSIGNED_LONG_MAX =
       BigInteger.valueOf(Long.MAX_VALUE).multiply(BigInteger.valueOf(2)).add(BigInteger.ONE);
 
-  public static String idToHex(String id) {
-    BigInteger asInt = new BigInteger(id, 10);
+  private static final BigInteger UINT64_MOD = BigInteger.ONE.shiftLeft(64);
+
+  // Longest decimal representation of an unsigned 64 bit value
+  private static final int UINT64_MAX_DECIMAL_LENGTH = 20;
+
+  private static final int UINT64_MAX_HEX_LENGTH = 16;
+  private static final int UINT128_MAX_HEX_LENGTH = 32;
+
+  // Largest unsigned value that can be multiplied by 10 without overflowing 64 bits
+  private static final long UINT64_MAX_DIV_10 = 0x1999999999999999L;
+
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  public static String idToHex(final String id) {
+    // BigInteger's are expensive, so parse anything that fits in 64 bits by hand.
+    final int length = id.length();
+    if (length > 0 && length <= UINT64_MAX_DECIMAL_LENGTH) {
+      try {
+        return toHex(parseUnsignedLong(id));
+      } catch (final NumberFormatException e) {
+        // fall through to BigInteger
+      }
+    }
+
+    final BigInteger asInt = new BigInteger(id, 10);
 
     String formatStr = ID_8_BYTES;
     if (asInt.compareTo(BIGINT_UNSIGNED_LONG_MAX) > 0) {
@@ -22,8 +45,183 @@ public class Ids {
     return String.format(formatStr, asInt);
   }
 
+  /**
+   * Parses an unsigned decimal id that fits in 64 bits.
+   *
+   * @return the bits of the id, values above Long.MAX_VALUE are negative
+   * @throws NumberFormatException if the id is not a decimal number or needs more than 64 bits
+   */
+  public static long parseUnsignedLong(final String id) throws NumberFormatException {
+    final int length = id.length();
+    final int start = skipLeadingZeros(id);
+    if (length == 0 || length - start > UINT64_MAX_DECIMAL_LENGTH) {
+      throw new NumberFormatException("Not an unsigned 64 bit id: " + id);
+    }
+    long value = 0;
+    for (int i = start; i < length; i++) {
+      final int digit = id.charAt(i) - '0';
+      if (digit < 0 || digit > 9 || compareUnsigned(value, UINT64_MAX_DIV_10) > 0) {
+        throw new NumberFormatException("Not an unsigned 64 bit id: " + id);
+      }
+      final long next = value * 10 + digit;
+      if (compareUnsigned(next, value) < 0) {
+        throw new NumberFormatException("Not an unsigned 64 bit id: " + id);
+      }
+      value = next;
+    }
+    return value;
+  }
+
+  /**
+   * Parses an unsigned hex id that fits in 64 bits, ignoring leading zeros.
+   *
+   * @throws NumberFormatException if the id is not a hex number or needs more than 64 bits
+   */
+  public static long parseUnsignedHex(final String id) throws NumberFormatException {
+    final int length = id.length();
+    final int start = skipLeadingZeros(id);
+    if (length == 0 || length - start > UINT64_MAX_HEX_LENGTH) {
+      throw new NumberFormatException("Not an unsigned 64 bit hex id: " + id);
+    }
+    return parseHex(id, start, length);
+  }
+
+  /** Low 64 bits of an unsigned hex id of up to 128 bits. */
+  public static long parseHexLow(final String id) throws NumberFormatException {
+    final int length = id.length();
+    final int start = skipLeadingZeros(id);
+    if (length == 0 || length - start > UINT128_MAX_HEX_LENGTH) {
+      throw new NumberFormatException("Not an unsigned 128 bit hex id: " + id);
+    }
+    final int lowStart = Math.max(start, length - UINT64_MAX_HEX_LENGTH);
+    parseHex(id, start, lowStart); // validate
+    return parseHex(id, lowStart, length);
+  }
+
+  /** High 64 bits of an unsigned hex id of up to 128 bits, 0 for 64 bit ids. */
+  public static long parseHexHigh(final String id) throws NumberFormatException {
+    final int length = id.length();
+    final int start = skipLeadingZeros(id);
+    if (length == 0 || length - start > UINT128_MAX_HEX_LENGTH) {
+      throw new NumberFormatException("Not an unsigned 128 bit hex id: " + id);
+    }
+    final int lowStart = Math.max(start, length - UINT64_MAX_HEX_LENGTH);
+    parseHex(id, lowStart, length); // validate
+    return parseHex(id, start, lowStart);
+  }
+
+  /** Low 64 bits of an unsigned decimal id of up to 128 bits. */
+  public static long parseLow(final String id) throws NumberFormatException {
+    if (id.length() - skipLeadingZeros(id) < UINT64_MAX_DECIMAL_LENGTH) {
+      return parseUnsignedLong(id);
+    }
+    return parseUInt128(id).longValue();
+  }
+
+  /** High 64 bits of an unsigned decimal id of up to 128 bits, 0 for 64 bit ids. */
+  public static long parseHigh(final String id) throws NumberFormatException {
+    if (id.length() - skipLeadingZeros(id) < UINT64_MAX_DECIMAL_LENGTH) {
+      parseUnsignedLong(id); // validate
+      return 0;
+    }
+    return parseUInt128(id).shiftRight(64).longValue();
+  }
+
+  /** Unsigned decimal encoding of an id, using 128 bits when the high bits are set. */
+  public static String toDecimal(final long high, final long low) {
+    if (high == 0) {
+      return toUnsignedString(low);
+    }
+    return toUnsignedBigInteger(high).shiftLeft(64).or(toUnsignedBigInteger(low)).toString();
+  }
+
+  /** Zero padded, lowercase hex encoding: 16 characters, or 32 when the high bits are set. */
+  public static String toHex(final long high, final long low) {
+    if (high == 0) {
+      return toHex(low);
+    }
+    final char[] chars = new char[32];
+    writeHex(chars, 0, high);
+    writeHex(chars, 16, low);
+    return new String(chars);
+  }
+
   /** The inverse of idToHex. Returns a string that is used as an id in DDSpan. */
   public static String hexToId(String hex) {
     return new BigInteger(hex, 16).toString();
   }
+
+  /** Zero padded, lowercase, 16 character hex encoding of an unsigned 64 bit value. */
+  public static String toHex(final long value) {
+    final char[] chars = new char[16];
+    writeHex(chars, 0, value);
+    return new String(chars);
+  }
+
+  private static int skipLeadingZeros(final String id) {
+    final int last = id.length() - 1;
+    int start = 0;
+    while (start < last && id.charAt(start) == '0') {
+      start++;
+    }
+    return start;
+  }
+
+  // At most 16 digits, callers check the length.
+  private static long parseHex(final String id, final int from, final int to)
+      throws NumberFormatException {
+    long value = 0;
+    for (int i = from; i < to; i++) {
+      final char c = id.charAt(i);
+      final int digit;
+      if (c >= '0' && c <= '9') {
+        digit = c - '0';
+      } else if (c >= 'a' && c <= 'f') {
+        digit = c - 'a' + 10;
+      } else if (c >= 'A' && c <= 'F') {
+        digit = c - 'A' + 10;
+      } else {
+        throw new NumberFormatException("Not a hex id: " + id);
+      }
+      value = (value << 4) | digit;
+    }
+    return value;
+  }
+
+  private static void writeHex(final char[] chars, final int offset, long value) {
+    for (int i = offset + 15; i >= offset; i--) {
+      chars[i] = HEX_DIGITS[(int) (value & 0xF)];
+      value >>>= 4;
+    }
+  }
+
+  // Long.toUnsignedString is not available in Java 7
+  private static String toUnsignedString(final long value) {
+    if (value >= 0) {
+      return Long.toString(value);
+    }
+    final long quotient = (value >>> 1) / 5;
+    final long remainder = value - quotient * 10;
+    return Long.toString(quotient) + remainder;
+  }
+
+  private static BigInteger toUnsignedBigInteger(final long value) {
+    final BigInteger asInt = BigInteger.valueOf(value);
+    return value >= 0 ? asInt : asInt.add(UINT64_MOD);
+  }
+
+  private static BigInteger parseUInt128(final String id) throws NumberFormatException {
+    final BigInteger asInt = new BigInteger(id, 10);
+    if (asInt.signum() < 0 || asInt.bitLength() > 128) {
+      throw new NumberFormatException("Not an unsigned 128 bit id: " + id);
+    }
+    return asInt;
+  }
+
+  // Long.compareUnsigned is not available in Java 7
+  private static int compareUnsigned(final long x, final long y) {
+    final long a = x + Long.MIN_VALUE;
+    final long b = y + Long.MIN_VALUE;
+    return a < b ? -1 : (a == b ? 0 : 1);
+  }
 }
@@ -0,0 +1,116 @@
+package datadog.trace.common.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache dropping the least recently used entries, for values that are cheap enough to
+ * compute again but computed over and over for the same few keys.
+ *
+ * <p>Keys are spread over segments, each an access ordered {@link LinkedHashMap} with its own lock,
+ * so threads looking up different keys rarely wait on each other. Eviction is per segment, which
+ * makes it only approximately least recently used overall. Hits and misses are counted for
+ * reporting.
+ */
+public final class LruCache<K, V> {
+  private static final int SEGMENTS = 16;
+
+  private final Segment<K, V>[] segments;
+
+  @SuppressWarnings("unchecked")
+  public LruCache(final int maxSize) {
+    final int segmentSize = Math.max(1, (maxSize + SEGMENTS - 1) / SEGMENTS);
+    segments = new Segment[SEGMENTS];
+    for (int i = 0; i < SEGMENTS; i++) {
+      segments[i] = new Segment<>(segmentSize);
+    }
+  }
+
+  /** @return the value cached for the key, null if there is none */
+  public V get(final K key) {
+    final Segment<K, V> segment = segmentFor(key);
+    synchronized (segment) {
+      final V value = segment.get(key);
+      if (value == null) {
+        segment.misses++;
+      } else {
+        segment.hits++;
+      }
+      return value;
+    }
+  }
+
+  public void put(final K key, final V value) {
+    final Segment<K, V> segment = segmentFor(key);
+    synchronized (segment) {
+      segment.put(key, value);
+    }
+  }
+
+  /** @return the number of entries cached */
+  public int size() {
+    int size = 0;
+    for (final Segment<K, V> segment : segments) {
+      synchronized (segment) {
+        size += segment.size();
+      }
+    }
+    return size;
+  }
+
+  /** @return the number of lookups that found a value */
+  public long getHitCount() {
+    long hits = 0;
+    for (final Segment<K, V> segment : segments) {
+      synchronized (segment) {
+        hits += segment.hits;
+      }
+    }
+    return hits;
+  }
+
+  /** @return the number of lookups that found no value */
+  public long getMissCount() {
+    long misses = 0;
+    for (final Segment<K, V> segment : segments) {
+      synchronized (segment) {
+        misses += segment.misses;
+      }
+    }
+    return misses;
+  }
+
+  /** @return the share of lookups that found a value, 0 before the first lookup */
+  public double getHitRate() {
+    final long hits = getHitCount();
+    final long lookups = hits + getMissCount();
+    return lookups == 0 ? 0 : (double) hits / lookups;
+  }
+
+  private Segment<K, V> segmentFor(final K key) {
+    final int hash = key.hashCode();
+    return segments[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+  }
+
+  @Override
+  public String toString() {
+    return "LruCache { size=" + size() + ", hitRate=" + getHitRate() + " }";
+  }
+
+  private static final class Segment<K, V> extends LinkedHashMap<K, V> {
+    private final int maxSize;
+    // Only accessed while holding the segment lock
+    private long hits = 0;
+    private long misses = 0;
+
+    Segment(final int maxSize) {
+      super(16, 0.75f, true);
+      this.maxSize = maxSize;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(final Map.Entry<K, V> eldest) {
+      return size() > maxSize;
+    }
+  }
+}
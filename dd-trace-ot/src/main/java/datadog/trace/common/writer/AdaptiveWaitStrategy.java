@@ -0,0 +1,130 @@
+package datadog.trace.common.writer;
+
+import com.lmax.disruptor.AlertException;
+import com.lmax.disruptor.Sequence;
+import com.lmax.disruptor.SequenceBarrier;
+import com.lmax.disruptor.WaitStrategy;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Disruptor wait strategy that switches between spinning and blocking based on the observed rate
+ * of published events.
+ *
+ * <p>Once per window, the progress of the ring buffer's cursor is compared to a threshold: busy
+ * writers keep their consumers spinning (then yielding) for low latency, quiet writers park their
+ * consumers on a lock so idle pods don't burn CPU. Reading the cursor keeps publishing free of any
+ * shared counter.
+ */
+class AdaptiveWaitStrategy implements WaitStrategy {
+  private static final int SPIN_TRIES = 100;
+
+  private final long windowNanos;
+  private final long spinningThreshold;
+
+  private final Lock lock = new ReentrantLock();
+  private final Condition processorNotifyCondition = lock.newCondition();
+  private final AtomicBoolean signalNeeded = new AtomicBoolean(false);
+
+  private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+  private volatile long windowStartSequence = -1; // Where the cursor starts
+  private volatile boolean spinning = false;
+
+  /**
+   * @param window length of the window over which the arrival rate is measured
+   * @param unit unit of the window
+   * @param spinningThreshold minimum number of events per window to keep consumers spinning
+   */
+  AdaptiveWaitStrategy(final long window, final TimeUnit unit, final long spinningThreshold) {
+    windowNanos = unit.toNanos(window);
+    this.spinningThreshold = spinningThreshold;
+  }
+
+  @Override
+  public long waitFor(
+      final long sequence,
+      final Sequence cursor,
+      final Sequence dependentSequence,
+      final SequenceBarrier barrier)
+      throws AlertException, InterruptedException {
+    long availableSequence;
+    int counter = SPIN_TRIES;
+
+    while ((availableSequence = dependentSequence.get()) < sequence) {
+      barrier.checkAlert();
+      updateMode(cursor);
+
+      if (spinning) {
+        if (counter > 0) {
+          --counter;
+        } else {
+          Thread.yield();
+        }
+      } else if (cursor.get() < sequence) {
+        awaitPublish(sequence, cursor, barrier);
+      }
+    }
+
+    return availableSequence;
+  }
+
+  @Override
+  public void signalAllWhenBlocking() {
+    if (signalNeeded.getAndSet(false)) {
+      lock.lock();
+      try {
+        processorNotifyCondition.signalAll();
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  boolean isSpinning() {
+    return spinning;
+  }
+
+  private void awaitPublish(final long sequence, final Sequence cursor, final SequenceBarrier barrier)
+      throws AlertException, InterruptedException {
+    lock.lock();
+    try {
+      while (cursor.get() < sequence) {
+        signalNeeded.set(true);
+        if (cursor.get() >= sequence) {
+          break;
+        }
+        barrier.checkAlert();
+        // Timed so the mode is re-evaluated even if no publish wakes us up.
+        processorNotifyCondition.await(windowNanos, TimeUnit.NANOSECONDS);
+        if (updateMode(cursor)) {
+          break;
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** @return true if the consumers should be spinning. */
+  boolean updateMode(final Sequence cursor) {
+    final long now = System.nanoTime();
+    final long start = windowStart.get();
+    if (now - start >= windowNanos && windowStart.compareAndSet(start, now)) {
+      final long published = cursor.get();
+      // Scale by the elapsed time, the window may have been stretched by a blocked consumer.
+      spinning =
+          (published - windowStartSequence) * windowNanos >= spinningThreshold * (now - start);
+      windowStartSequence = published;
+    }
+    return spinning;
+  }
+
+  @Override
+  public String toString() {
+    return "AdaptiveWaitStrategy { spinning=" + spinning + " }";
+  }
+}
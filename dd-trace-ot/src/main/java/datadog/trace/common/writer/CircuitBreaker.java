@@ -0,0 +1,98 @@
+package datadog.trace.common.writer;
+
+import java.util.concurrent.ThreadLocalRandom;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Stops sending to an endpoint that keeps failing.
+ *
+ * <p>After {@code failureThreshold} consecutive failures the breaker opens for a cooldown, during
+ * which {@link #allowRequest()} refuses every send. Once the cooldown has elapsed a single probe is
+ * let through: success closes the breaker, failure opens it again for twice as long, up to {@code
+ * maxCooldownMillis}. Cooldowns are jittered so that many tracers don't probe a recovering endpoint
+ * at the same time.
+ */
+@Slf4j
+class CircuitBreaker {
+  private static final int CLOSED = 0;
+  private static final int OPEN = 1;
+  private static final int HALF_OPEN = 2;
+
+  private final int failureThreshold;
+  private final long minCooldownMillis;
+  private final long maxCooldownMillis;
+
+  private volatile int state = CLOSED;
+  private volatile long openUntilMillis = 0;
+  private int consecutiveFailures = 0;
+  private long cooldownMillis;
+
+  /** @param failureThreshold consecutive failures opening the breaker, value < 1 disables it */
+  CircuitBreaker(
+      final int failureThreshold, final long minCooldownMillis, final long maxCooldownMillis) {
+    this.failureThreshold = failureThreshold;
+    this.minCooldownMillis = minCooldownMillis;
+    this.maxCooldownMillis = Math.max(minCooldownMillis, maxCooldownMillis);
+    cooldownMillis = minCooldownMillis;
+  }
+
+  boolean isEnabled() {
+    return failureThreshold > 0;
+  }
+
+  /**
+   * Cheap check for producers: true while the breaker is open and its cooldown hasn't elapsed, so
+   * there is no point in preparing payloads.
+   */
+  boolean isOpen() {
+    return state == OPEN && System.currentTimeMillis() < openUntilMillis;
+  }
+
+  /** @return whether a send may be attempted now. Moves an expired open breaker to half open. */
+  synchronized boolean allowRequest() {
+    switch (state) {
+      case CLOSED:
+        return true;
+      case OPEN:
+        if (System.currentTimeMillis() >= openUntilMillis) {
+          state = HALF_OPEN;
+          return true;
+        }
+        return false;
+      default:
+        return false; // A probe is already in flight.
+    }
+  }
+
+  synchronized void onSuccess() {
+    if (state != CLOSED) {
+      log.debug("Endpoint recovered, closing circuit breaker");
+    }
+    state = CLOSED;
+    consecutiveFailures = 0;
+    cooldownMillis = minCooldownMillis;
+  }
+
+  synchronized void onFailure() {
+    if (!isEnabled()) {
+      return;
+    }
+    consecutiveFailures++;
+    if (state == HALF_OPEN) {
+      cooldownMillis = Math.min(maxCooldownMillis, cooldownMillis * 2);
+      open();
+    } else if (state == CLOSED && consecutiveFailures >= failureThreshold) {
+      open();
+    }
+  }
+
+  private void open() {
+    // Jitter between half and all of the cooldown.
+    final long half = cooldownMillis / 2;
+    final long cooldown = half + ThreadLocalRandom.current().nextLong(cooldownMillis - half + 1);
+    log.debug(
+        "{} consecutive send failures, pausing sends for {} ms", consecutiveFailures, cooldown);
+    openUntilMillis = System.currentTimeMillis() + cooldown;
+    state = OPEN;
+  }
+}
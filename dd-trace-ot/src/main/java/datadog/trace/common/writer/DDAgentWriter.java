@@ -7,9 +7,12 @@ import static java.util.concurrent.TimeUnit.SECONDS;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.lmax.disruptor.EventFactory;
 import com.lmax.disruptor.EventHandler;
-import com.lmax.disruptor.EventTranslator;
 import com.lmax.disruptor.EventTranslatorOneArg;
+import com.lmax.disruptor.LiteBlockingWaitStrategy;
+import com.lmax.disruptor.PhasedBackoffWaitStrategy;
 import com.lmax.disruptor.SleepingWaitStrategy;
+import com.lmax.disruptor.WaitStrategy;
+import com.lmax.disruptor.YieldingWaitStrategy;
 import com.lmax.disruptor.dsl.Disruptor;
 import com.lmax.disruptor.dsl.ProducerType;
 import com.timgroup.statsd.NonBlockingStatsDClient;
@@ -17,15 +20,23 @@ import com.timgroup.statsd.StatsDClient;
 import datadog.opentracing.DDSpan;
 import datadog.opentracing.DDTraceOTInfo;
 import datadog.trace.common.util.DaemonThreadFactory;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Phaser;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import lombok.extern.slf4j.Slf4j;
 
@@ -42,85 +53,181 @@ public class DDAgentWriter implements Writer {
   private static final int FLUSH_PAYLOAD_BYTES = 5_000_000; // 5 MB
   private static final int FLUSH_PAYLOAD_DELAY = 1; // 1/second
 
+  // Disruptor wait strategies, selected by name
+  public static final String BLOCKING_WAIT_STRATEGY = "blocking";
+  public static final String SLEEPING_WAIT_STRATEGY = "sleeping";
+  public static final String YIELDING_WAIT_STRATEGY = "yielding";
+  public static final String PHASED_BACKOFF_WAIT_STRATEGY = "phased-backoff";
+  public static final String ADAPTIVE_WAIT_STRATEGY = "adaptive";
+  private static final long ADAPTIVE_WINDOW_MILLIS = 100;
+  private static final long ADAPTIVE_SPINNING_THRESHOLD = 100; // 1000 traces/second
+
+  // Replay of payloads spilled to disk, at most this many per attempt
+  private static final int SPILL_REPLAY_BATCHES = 16;
+  private static final long SPILL_REPLAY_MIN_DELAY_MILLIS = 1000;
+  private static final long SPILL_REPLAY_MAX_DELAY_MILLIS = 60_000;
+
+  // Retries of failed sends, held in memory until they succeed or run out of attempts
+  private static final int MAX_PENDING_RETRIES = 8;
+  private static final long RETRY_MIN_DELAY_MILLIS = 500;
+  private static final long RETRY_MAX_DELAY_MILLIS = 10_000;
+  private static final long CIRCUIT_BREAKER_MIN_COOLDOWN_MILLIS = 1000;
+  private static final long CIRCUIT_BREAKER_MAX_COOLDOWN_MILLIS = 60_000;
+
   private static final EventTranslatorOneArg<Event<List<DDSpan>>, List<DDSpan>> TRANSLATOR =
       new EventTranslatorOneArg<Event<List<DDSpan>>, List<DDSpan>>() {
         @Override
         public void translateTo(
             final Event<List<DDSpan>> event, final long sequence, final List<DDSpan> trace) {
           event.data = trace;
+          event.shouldFlush = false;
+          event.flushed = null;
         }
       };
-  private static final EventTranslator<Event<List<DDSpan>>> FLUSH_TRANSLATOR =
-      new EventTranslator<Event<List<DDSpan>>>() {
-        @Override
-        public void translateTo(final Event<List<DDSpan>> event, final long sequence) {
-          event.shouldFlush = true;
-        }
-      };
+  private static final EventTranslatorOneArg<Event<List<DDSpan>>, CountDownLatch>
+      FLUSH_TRANSLATOR =
+          new EventTranslatorOneArg<Event<List<DDSpan>>, CountDownLatch>() {
+            @Override
+            public void translateTo(
+                final Event<List<DDSpan>> event,
+                final long sequence,
+                final CountDownLatch flushed) {
+              event.data = null;
+              event.shouldFlush = true;
+              event.flushed = flushed;
+            }
+          };
 
   private static final ThreadFactory DISRUPTOR_THREAD_FACTORY =
       new DaemonThreadFactory("dd-trace-disruptor");
   private static final ThreadFactory SCHEDULED_FLUSH_THREAD_FACTORY =
       new DaemonThreadFactory("dd-trace-writer");
+  private static final ThreadFactory SENDER_THREAD_FACTORY =
+      new DaemonThreadFactory("dd-trace-sender");
 
   private final Runnable flushTask = new FlushTask();
   private final Api api;
   private final int flushFrequencySeconds;
+  private final int serializationWorkers;
+  private final String waitStrategy;
+  private final WaitStrategy disruptorWaitStrategy;
+  private final MemoryBudget memoryBudget;
+  private final SpillQueue spillQueue;
+  private final int sendRetries;
+  private final CircuitBreaker circuitBreaker;
+  private final AtomicInteger pendingRetries = new AtomicInteger(0);
+  private final Runnable spillReplayTask = new SpillReplayTask();
+  // Guarded by spillReplayLock
+  private final Object spillReplayLock = new Object();
+  private long spillReplayDelayMillis = SPILL_REPLAY_MIN_DELAY_MILLIS;
+  private long nextSpillReplayMillis = 0;
   private final Disruptor<Event<List<DDSpan>>> disruptor;
   private final ScheduledExecutorService scheduledWriterExecutor;
-  private final AtomicInteger traceCount = new AtomicInteger(0);
+  private final ThreadPoolExecutor senderExecutor;
+  // One count per shard, so that each payload represents the traces of its own shard
+  private final AtomicIntegerArray traceCounts;
+  private final AtomicLong consumerBusyNanos = new AtomicLong(0);
+  private volatile long startNanos = 0;
   private final AtomicReference<ScheduledFuture<?>> flushSchedule = new AtomicReference<>();
-  private final Phaser apiPhaser;
   private volatile boolean running = false;
 
   private final Monitor monitor;
 
   public DDAgentWriter() {
-    this(new DDApi("localhost", 8126, DEFAULT_AGENT_UNIX_DOMAIN_SOCKET), new NoopMonitor());
+    this(null, null);
   }
 
   public DDAgentWriter(final Api api, final Monitor monitor) {
-    this(api, monitor, DISRUPTOR_BUFFER_SIZE, FLUSH_PAYLOAD_DELAY);
-  }
-
-  /** Old signature (pre-Monitor) used in tests */
-  private DDAgentWriter(final Api api) {
-    this(api, new NoopMonitor());
+    this(api, monitor, 0, null, 0, null, 0, null, null, 0, 0, 0);
   }
 
   /**
-   * Used in the tests.
+   * Use {@link #builder()}, where anything not set takes its default.
    *
-   * @param api
-   * @param disruptorSize Rounded up to next power of 2
-   * @param flushFrequencySeconds value < 1 disables scheduled flushes
+   * @param api defaults to the agent on localhost
+   * @param monitor defaults to no monitoring
+   * @param disruptorSize rounded up to next power of 2
+   * @param flushFrequencySeconds value < 1 disables scheduled flushes, defaults to every second
+   * @param serializationWorkers number of disruptor consumers serializing traces in parallel. Each
+   *     worker accumulates its own payload, which is sent when flushed.
+   * @param waitStrategy how idle consumers wait for traces, one of the *_WAIT_STRATEGY names
+   * @param memoryBudgetBytes approximate bound on the bytes of queued and unsent traces, value < 1
+   *     disables it
+   * @param memoryBudgetPolicy what to drop when the budget is used up: "drop-newest", "drop-oldest"
+   *     or "priority"
+   * @param spillDirectory directory where payloads that failed to send are kept until the API
+   *     accepts them again, null disables spilling
+   * @param spillMaxBytes approximate bound on the disk space used in the spill directory
+   * @param sendRetries times a failed send is retried before it is spilled or dropped
+   * @param circuitBreakerThreshold consecutive failed sends after which sending pauses for a while,
+   *     and so does serializing unless payloads are spilled, value < 1 disables the circuit breaker
    */
-  private DDAgentWriter(final Api api, final int disruptorSize, final int flushFrequencySeconds) {
-    this(api, new NoopMonitor(), disruptorSize, flushFrequencySeconds);
-  }
-
+  @lombok.Builder
   private DDAgentWriter(
       final Api api,
       final Monitor monitor,
       final int disruptorSize,
-      final int flushFrequencySeconds) {
-    this.api = api;
-    this.monitor = monitor;
+      final Integer flushFrequencySeconds,
+      final int serializationWorkers,
+      final String waitStrategy,
+      final long memoryBudgetBytes,
+      final String memoryBudgetPolicy,
+      final String spillDirectory,
+      final long spillMaxBytes,
+      final int sendRetries,
+      final int circuitBreakerThreshold) {
+    this.api = api != null ? api : new DDApi("localhost", 8126, DEFAULT_AGENT_UNIX_DOMAIN_SOCKET);
+    this.monitor = monitor != null ? monitor : new NoopMonitor();
+    this.serializationWorkers = Math.max(1, serializationWorkers);
+    this.waitStrategy =
+        waitStrategy != null ? normalizeWaitStrategy(waitStrategy) : SLEEPING_WAIT_STRATEGY;
+    disruptorWaitStrategy = createWaitStrategy(this.waitStrategy);
+    memoryBudget =
+        new MemoryBudget(
+            memoryBudgetBytes,
+            memoryBudgetPolicy != null ? memoryBudgetPolicy : MemoryBudget.DROP_NEWEST_POLICY);
+    spillQueue = createSpillQueue(spillDirectory, spillMaxBytes);
+    this.sendRetries = Math.max(0, sendRetries);
+    circuitBreaker =
+        new CircuitBreaker(
+            circuitBreakerThreshold,
+            CIRCUIT_BREAKER_MIN_COOLDOWN_MILLIS,
+            CIRCUIT_BREAKER_MAX_COOLDOWN_MILLIS);
 
     disruptor =
         new Disruptor<>(
             new DisruptorEventFactory<List<DDSpan>>(),
-            Math.max(2, Integer.highestOneBit(disruptorSize - 1) << 1), // Next power of 2
+            // Next power of 2
+            disruptorSize > 0
+                ? Math.max(2, Integer.highestOneBit(disruptorSize - 1) << 1)
+                : DISRUPTOR_BUFFER_SIZE,
             DISRUPTOR_THREAD_FACTORY,
             ProducerType.MULTI,
-            new SleepingWaitStrategy(0, TimeUnit.MILLISECONDS.toNanos(5)));
-    disruptor.handleEventsWith(new TraceConsumer());
+            disruptorWaitStrategy);
+    // Every consumer sees every event, so flushes reach all of them, but each only serializes the
+    // traces of its own shard.
+    final TraceConsumer[] consumers = new TraceConsumer[this.serializationWorkers];
+    for (int i = 0; i < consumers.length; i++) {
+      consumers[i] = new TraceConsumer(i);
+    }
+    disruptor.handleEventsWith(consumers);
 
-    this.flushFrequencySeconds = flushFrequencySeconds;
-    scheduledWriterExecutor = Executors.newScheduledThreadPool(1, SCHEDULED_FLUSH_THREAD_FACTORY);
+    traceCounts = new AtomicIntegerArray(this.serializationWorkers);
 
-    apiPhaser = new Phaser(); // Ensure API calls are completed when flushing
-    apiPhaser.register(); // Register on behalf of the scheduled executor thread.
+    this.flushFrequencySeconds =
+        flushFrequencySeconds != null ? flushFrequencySeconds : FLUSH_PAYLOAD_DELAY;
+    scheduledWriterExecutor = Executors.newScheduledThreadPool(1, SCHEDULED_FLUSH_THREAD_FACTORY);
+    // A sender per consumer, and at most one payload waiting for each. A consumer finding the
+    // sender full sends its payload itself, holding up serialization rather than piling up
+    // payloads.
+    senderExecutor =
+        new ThreadPoolExecutor(
+            this.serializationWorkers,
+            this.serializationWorkers,
+            0,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<Runnable>(this.serializationWorkers),
+            SENDER_THREAD_FACTORY);
   }
 
   // Exposing some statistics for consumption by monitors
@@ -140,13 +247,32 @@ public class DDAgentWriter implements Writer {
   public void write(final List<DDSpan> trace) {
     // We can't add events after shutdown otherwise it will never complete shutting down.
     if (running) {
+      if (spillQueue == null && circuitBreaker.isOpen()) {
+        // Sending is paused and the trace couldn't be spilled, so don't spend CPU serializing it,
+        // but still count the trace. With spilling, it is serialized and spilled instead of sent.
+        countDroppedTrace();
+        log.debug("Circuit breaker open. Counted but dropping trace: {}", trace);
+
+        monitor.onCircuitBreakerDrop(this, 1);
+        return;
+      }
+      if (!memoryBudget.tryQueue(trace)) {
+        // We're discarding the trace, but we still want to count it.
+        countDroppedTrace();
+        log.debug("Trace exceeds the writer memory budget. Counted but dropping trace: {}", trace);
+
+        monitor.onBudgetDrop(this, memoryBudget.getPolicy(), 1);
+        return;
+      }
+
       final boolean published = disruptor.getRingBuffer().tryPublishEvent(TRANSLATOR, trace);
 
       if (published) {
         monitor.onPublish(DDAgentWriter.this, trace);
       } else {
+        memoryBudget.onDequeued(trace);
         // We're discarding the trace, but we still want to count it.
-        traceCount.incrementAndGet();
+        countDroppedTrace();
         log.debug("Trace written to overfilled buffer. Counted but dropping trace: {}", trace);
 
         monitor.onFailedPublish(this, trace);
@@ -160,15 +286,80 @@ public class DDAgentWriter implements Writer {
 
   @Override
   public void incrementTraceCount() {
-    traceCount.incrementAndGet();
+    countDroppedTrace();
+  }
+
+  /** Counts a trace that won't be serialized in the payload of one of the shards. */
+  private void countDroppedTrace() {
+    final int shard =
+        serializationWorkers == 1 ? 0 : ThreadLocalRandom.current().nextInt(serializationWorkers);
+    traceCounts.incrementAndGet(shard);
   }
 
   public Api getApi() {
     return api;
   }
 
+  public int getSerializationWorkers() {
+    return serializationWorkers;
+  }
+
+  public String getWaitStrategy() {
+    return waitStrategy;
+  }
+
+  /**
+   * @return whether idle consumers spin rather than park. The adaptive strategy switches with the
+   *     rate of traces.
+   */
+  public final boolean isConsumerSpinning() {
+    if (disruptorWaitStrategy instanceof AdaptiveWaitStrategy) {
+      return ((AdaptiveWaitStrategy) disruptorWaitStrategy).isSpinning();
+    }
+    return disruptorWaitStrategy instanceof YieldingWaitStrategy;
+  }
+
+  /** @return the memory budget in bytes, 0 if the writer has none. */
+  public final long getMemoryBudgetBytes() {
+    return Math.max(0, memoryBudget.getBudgetBytes());
+  }
+
+  /** Approximate bytes held by queued and serialized but unsent traces. */
+  public final long getMemoryBudgetUsedBytes() {
+    return memoryBudget.getUsedBytes();
+  }
+
+  public final String getMemoryBudgetPolicy() {
+    return memoryBudget.getPolicy();
+  }
+
+  /** @return disk space used by payloads spilled after failed sends, 0 if spilling is disabled. */
+  public final long getSpillUsedBytes() {
+    return spillQueue == null ? 0 : spillQueue.getUsedBytes();
+  }
+
+  /** Spilled payloads lost because they didn't fit or were evicted to make room. */
+  public final long getSpillDroppedPayloads() {
+    return spillQueue == null ? 0 : spillQueue.getDroppedPayloads();
+  }
+
+  /** Total time spent by all consumers handling events since the writer started. */
+  public final long getConsumerBusyNanos() {
+    return consumerBusyNanos.get();
+  }
+
+  /** Total time spent by all consumers waiting for events since the writer started. */
+  public final long getConsumerIdleNanos() {
+    if (startNanos == 0) {
+      return 0;
+    }
+    final long elapsed = (System.nanoTime() - startNanos) * serializationWorkers;
+    return Math.max(0, elapsed - consumerBusyNanos.get());
+  }
+
   @Override
   public void start() {
+    startNanos = System.nanoTime();
     disruptor.start();
     running = true;
     scheduleFlush();
@@ -195,6 +386,7 @@ public class DDAgentWriter implements Writer {
     }
     flushSuccess |= flush();
     disruptor.shutdown();
+    senderExecutor.shutdown();
 
     monitor.onShutdown(this, flushSuccess);
   }
@@ -203,12 +395,13 @@ public class DDAgentWriter implements Writer {
   public boolean flush() {
     if (running) {
       log.info("Flushing any remaining traces.");
-      // Register with the phaser so we can block until the flush completion.
-      apiPhaser.register();
-      disruptor.publishEvent(FLUSH_TRANSLATOR);
+      // Every consumer counts down once the payload it had when it saw the flush is sent, so
+      // sends triggered by size or by the timer don't release this flush early.
+      final CountDownLatch flushed = new CountDownLatch(serializationWorkers);
+      disruptor.publishEvent(FLUSH_TRANSLATOR, flushed);
       try {
         // Allow thread to be interrupted.
-        apiPhaser.awaitAdvanceInterruptibly(apiPhaser.arriveAndDeregister());
+        flushed.await();
 
         return true;
       } catch (final InterruptedException e) {
@@ -237,6 +430,117 @@ public class DDAgentWriter implements Writer {
     return str;
   }
 
+  private static String normalizeWaitStrategy(final String waitStrategy) {
+    if (waitStrategy != null) {
+      final String name = waitStrategy.trim().toLowerCase();
+      switch (name) {
+        case BLOCKING_WAIT_STRATEGY:
+        case SLEEPING_WAIT_STRATEGY:
+        case YIELDING_WAIT_STRATEGY:
+        case PHASED_BACKOFF_WAIT_STRATEGY:
+        case ADAPTIVE_WAIT_STRATEGY:
+          return name;
+      }
+    }
+    log.warn(
+        "Writer wait strategy {} not recognized. Defaulting to {}.",
+        waitStrategy,
+        SLEEPING_WAIT_STRATEGY);
+    return SLEEPING_WAIT_STRATEGY;
+  }
+
+  private static WaitStrategy createWaitStrategy(final String waitStrategy) {
+    switch (waitStrategy) {
+      case BLOCKING_WAIT_STRATEGY:
+        return new LiteBlockingWaitStrategy();
+      case YIELDING_WAIT_STRATEGY:
+        return new YieldingWaitStrategy();
+      case PHASED_BACKOFF_WAIT_STRATEGY:
+        return PhasedBackoffWaitStrategy.withLiteLock(100, 1000, TimeUnit.MICROSECONDS);
+      case ADAPTIVE_WAIT_STRATEGY:
+        return new AdaptiveWaitStrategy(
+            ADAPTIVE_WINDOW_MILLIS, TimeUnit.MILLISECONDS, ADAPTIVE_SPINNING_THRESHOLD);
+      default:
+        return new SleepingWaitStrategy(0, TimeUnit.MILLISECONDS.toNanos(5));
+    }
+  }
+
+  private static SpillQueue createSpillQueue(final String directory, final long maxBytes) {
+    if (directory == null || directory.trim().isEmpty() || maxBytes <= 0) {
+      return null;
+    }
+    try {
+      return new SpillQueue(new File(directory.trim()), maxBytes);
+    } catch (final IOException | RuntimeException e) {
+      log.warn("Unable to use writer spill directory {}. Spilling disabled.", directory, e);
+      return null;
+    }
+  }
+
+  /**
+   * Keeps a payload the API didn't accept so it can be replayed later.
+   *
+   * @return false if spilling is disabled or the payload didn't fit
+   */
+  private boolean spill(final int representativeCount, final List<byte[]> traces) {
+    if (spillQueue != null && spillQueue.append(representativeCount, traces)) {
+      log.debug("Spilled {} traces to disk", traces.size());
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Resends spilled payloads, oldest first. After a failed attempt, replay backs off exponentially
+   * until the API accepts traces again. One thread replays at a time.
+   */
+  private void replaySpilled() {
+    if (spillQueue == null || circuitBreaker.isOpen()) {
+      return;
+    }
+    synchronized (spillReplayLock) {
+      if (System.currentTimeMillis() >= nextSpillReplayMillis) {
+        replaySpilledBatches();
+      }
+    }
+  }
+
+  private void replaySpilledBatches() {
+    for (int i = 0; i < SPILL_REPLAY_BATCHES; i++) {
+      final SpillQueue.Batch batch = spillQueue.peek();
+      if (batch == null) {
+        return;
+      }
+      DDApi.Response response;
+      try {
+        response =
+            api.sendSerializedTraces(batch.representativeCount, batch.sizeInBytes, batch.traces);
+      } catch (final Throwable e) {
+        response = DDApi.Response.failed(e);
+      }
+
+      if (response.success()) {
+        log.debug("Successfully replayed {} spilled traces to the API", batch.traces.size());
+        spillQueue.commit(batch);
+        spillReplayDelayMillis = SPILL_REPLAY_MIN_DELAY_MILLIS;
+        circuitBreaker.onSuccess();
+
+        monitor.onSend(
+            DDAgentWriter.this, batch.representativeCount, batch.sizeInBytes, response);
+      } else {
+        log.debug("Failed to replay spilled traces, retrying in {} ms", spillReplayDelayMillis);
+        nextSpillReplayMillis = System.currentTimeMillis() + spillReplayDelayMillis;
+        spillReplayDelayMillis =
+            Math.min(SPILL_REPLAY_MAX_DELAY_MILLIS, spillReplayDelayMillis * 2);
+        circuitBreaker.onFailure();
+
+        monitor.onFailedSend(
+            DDAgentWriter.this, batch.representativeCount, batch.sizeInBytes, response);
+        return;
+      }
+    }
+  }
+
   private void scheduleFlush() {
     if (flushFrequencySeconds > 0 && !scheduledWriterExecutor.isShutdown()) {
       final ScheduledFuture<?> previous =
@@ -255,29 +559,193 @@ public class DDAgentWriter implements Writer {
   private class FlushTask implements Runnable {
     @Override
     public void run() {
-      // Don't call flush() because it would block the thread also used for sending the traces.
-      disruptor.publishEvent(FLUSH_TRANSLATOR);
+      // Don't call flush() because it would block the thread also used for retrying sends.
+      disruptor.publishEvent(FLUSH_TRANSLATOR, null);
+    }
+  }
+
+  private class SpillReplayTask implements Runnable {
+    @Override
+    public void run() {
+      replaySpilled();
+    }
+  }
+
+  /**
+   * Sends one payload. A failed send is retried with exponential backoff and jitter while retries
+   * remain and the retry queue has room, otherwise the payload is spilled or dropped.
+   *
+   * <p>Only the first attempt holds up {@link #flush()}, retries happen in the background.
+   */
+  private class SendTask implements Runnable {
+    private final int representativeCount;
+    private final int sizeInBytes;
+    private final List<byte[]> traces;
+    private final CountDownLatch flushed;
+    private int attempt = 0;
+
+    /**
+     * Hands a retry over to the senders, so that the scheduler thread, which also drives flushes
+     * and spill replays, never blocks on the API.
+     */
+    private final Runnable resend =
+        new Runnable() {
+          @Override
+          public void run() {
+            try {
+              senderExecutor.execute(SendTask.this);
+            } catch (final RejectedExecutionException e) {
+              // The sender is behind (or shut down), so send from here instead.
+              SendTask.this.run();
+            }
+          }
+        };
+
+    /** @param flushed the flush waiting for this payload, null if sent by size or by the timer */
+    private SendTask(
+        final int representativeCount,
+        final int sizeInBytes,
+        final List<byte[]> traces,
+        final CountDownLatch flushed) {
+      this.representativeCount = representativeCount;
+      this.sizeInBytes = sizeInBytes;
+      this.traces = traces;
+      this.flushed = flushed;
+    }
+
+    @Override
+    public void run() {
+      attempt++;
+      if (attempt > 1) {
+        pendingRetries.decrementAndGet();
+      }
+      boolean done = true;
+      try {
+        if (!circuitBreaker.allowRequest()) {
+          log.debug("Circuit breaker open, not sending {} traces to the API", traces.size());
+          if (!spill(representativeCount, traces)) {
+            monitor.onCircuitBreakerDrop(DDAgentWriter.this, representativeCount);
+          }
+          return;
+        }
+
+        try {
+          final DDApi.Response response =
+              api.sendSerializedTraces(representativeCount, sizeInBytes, traces);
+
+          if (response.success()) {
+            log.debug("Successfully sent {} traces to the API", traces.size());
+            circuitBreaker.onSuccess();
+
+            monitor.onSend(DDAgentWriter.this, representativeCount, sizeInBytes, response);
+
+            replaySpilled();
+            return;
+          }
+          log.debug(
+              "Failed to send {} traces (representing {}) of size {} bytes to the API",
+              traces.size(),
+              representativeCount,
+              sizeInBytes);
+
+          monitor.onFailedSend(DDAgentWriter.this, representativeCount, sizeInBytes, response);
+        } catch (final Throwable e) {
+          log.debug("Failed to send traces to the API: {}", e.getMessage());
+
+          // DQH - 10/2019 - DDApi should wrap most exceptions itself, so this really
+          // shouldn't occur.
+          // However, just to be safe to start, create a failed Response to handle any
+          // spurious Throwable-s.
+          monitor.onFailedSend(
+              DDAgentWriter.this, representativeCount, sizeInBytes, DDApi.Response.failed(e));
+        }
+
+        circuitBreaker.onFailure();
+        done = !scheduleRetry();
+        if (done) {
+          spill(representativeCount, traces);
+        }
+      } finally {
+        if (done) {
+          memoryBudget.onReleased(sizeInBytes);
+        }
+        if (attempt == 1 && flushed != null) {
+          flushed.countDown(); // Flush completed.
+        }
+      }
+    }
+
+    private boolean scheduleRetry() {
+      if (attempt > sendRetries || circuitBreaker.isOpen()) {
+        return false;
+      }
+      if (pendingRetries.incrementAndGet() > MAX_PENDING_RETRIES) {
+        pendingRetries.decrementAndGet();
+        log.debug("Retry queue full, not retrying {} traces", traces.size());
+        return false;
+      }
+      // Jitter between half and all of the exponential delay.
+      final long delay =
+          Math.min(RETRY_MAX_DELAY_MILLIS, RETRY_MIN_DELAY_MILLIS << Math.min(attempt - 1, 20));
+      final long jittered = delay / 2 + ThreadLocalRandom.current().nextLong(delay - delay / 2 + 1);
+      try {
+        scheduledWriterExecutor.schedule(resend, jittered, TimeUnit.MILLISECONDS);
+        log.debug("Retrying {} traces in {} ms", traces.size(), jittered);
+        return true;
+      } catch (final RejectedExecutionException e) {
+        // Shutting down
+        pendingRetries.decrementAndGet();
+        return false;
+      }
     }
   }
 
-  /** This class is intentionally not threadsafe. */
+  /**
+   * This class is intentionally not threadsafe.
+   *
+   * <p>With more than one serialization worker, traces are sharded between the consumers by their
+   * ring buffer sequence. Only the owning consumer touches {@link Event#data}.
+   */
   private class TraceConsumer implements EventHandler<Event<List<DDSpan>>> {
+    private final int shard;
     private List<byte[]> serializedTraces = new ArrayList<>();
     private int payloadSize = 0;
 
+    private TraceConsumer(final int shard) {
+      this.shard = shard;
+    }
+
     @Override
     public void onEvent(
         final Event<List<DDSpan>> event, final long sequence, final boolean endOfBatch) {
-      final List<DDSpan> trace = event.data;
-      event.data = null; // clear the event for reuse.
+      final long start = System.nanoTime();
+      try {
+        handleEvent(event, sequence);
+      } finally {
+        consumerBusyNanos.addAndGet(System.nanoTime() - start);
+      }
+    }
+
+    private void handleEvent(final Event<List<DDSpan>> event, final long sequence) {
+      List<DDSpan> trace = null;
+      if (sequence % serializationWorkers == shard) {
+        trace = event.data;
+        event.data = null; // clear the event for reuse.
+      }
       if (trace != null) {
-        traceCount.incrementAndGet();
+        traceCounts.incrementAndGet(shard);
+        memoryBudget.onDequeued(trace);
         try {
           final byte[] serializedTrace = api.serializeTrace(trace);
           payloadSize += serializedTrace.length;
           serializedTraces.add(serializedTrace);
+          memoryBudget.onSerialized(trace, serializedTrace);
 
           monitor.onSerialize(DDAgentWriter.this, trace, serializedTrace);
+
+          if (MemoryBudget.DROP_OLDEST_POLICY.equals(memoryBudget.getPolicy())) {
+            dropOldest();
+          }
         } catch (final JsonProcessingException e) {
           log.warn("Error serializing trace", e);
 
@@ -288,16 +756,39 @@ public class DDAgentWriter implements Writer {
           monitor.onFailedSerialize(DDAgentWriter.this, trace, e);
         }
       }
-      if (event.shouldFlush || payloadSize >= FLUSH_PAYLOAD_BYTES) {
-        reportTraces();
-        event.shouldFlush = false;
+      if (event.shouldFlush) {
+        reportTraces(event.flushed);
+      } else if (payloadSize >= FLUSH_PAYLOAD_BYTES) {
+        reportTraces(null);
       }
     }
 
-    private void reportTraces() {
+    /** Makes room for the newest trace by dropping the oldest ones not yet handed to the sender. */
+    private void dropOldest() {
+      int dropped = 0;
+      while (serializedTraces.size() > 1 && memoryBudget.isExceeded()) {
+        final byte[] oldest = serializedTraces.remove(0);
+        payloadSize -= oldest.length;
+        memoryBudget.onReleased(oldest.length);
+        dropped++;
+      }
+      if (dropped > 0) {
+        log.debug("Writer memory budget exceeded. Dropped {} serialized traces", dropped);
+
+        monitor.onBudgetDrop(DDAgentWriter.this, memoryBudget.getPolicy(), dropped);
+      }
+    }
+
+    private void reportTraces(final CountDownLatch flushed) {
       try {
         if (serializedTraces.isEmpty()) {
-          apiPhaser.arrive(); // Allow flush to return
+          if (flushed != null) {
+            flushed.countDown(); // Allow flush to return
+          }
+          if (shard == 0 && spillQueue != null && !spillQueue.isEmpty()) {
+            // Nothing new to send, so give spilled payloads a chance while the writer is idle.
+            replayWhenIdle();
+          }
           return;
           // scheduleFlush called in finally block.
         }
@@ -305,58 +796,39 @@ public class DDAgentWriter implements Writer {
         serializedTraces = new ArrayList<>(toSend.size());
         // ^ Initialize with similar size to reduce arraycopy churn.
 
-        final int representativeCount = traceCount.getAndSet(0);
+        final int representativeCount = traceCounts.getAndSet(shard, 0);
         final int sizeInBytes = payloadSize;
 
-        // Run the actual IO task on a different thread to avoid blocking the consumer.
-        scheduledWriterExecutor.execute(
-            new Runnable() {
-              @Override
-              public void run() {
-                try {
-                  final DDApi.Response response =
-                      api.sendSerializedTraces(representativeCount, sizeInBytes, toSend);
-
-                  if (response.success()) {
-                    log.debug("Successfully sent {} traces to the API", toSend.size());
-
-                    monitor.onSend(DDAgentWriter.this, representativeCount, sizeInBytes, response);
-                  } else {
-                    log.debug(
-                        "Failed to send {} traces (representing {}) of size {} bytes to the API",
-                        toSend.size(),
-                        representativeCount,
-                        sizeInBytes);
-
-                    monitor.onFailedSend(
-                        DDAgentWriter.this, representativeCount, sizeInBytes, response);
-                  }
-                } catch (final Throwable e) {
-                  log.debug("Failed to send traces to the API: {}", e.getMessage());
-
-                  // DQH - 10/2019 - DDApi should wrap most exceptions itself, so this really
-                  // shouldn't occur.
-                  // However, just to be safe to start, create a failed Response to handle any
-                  // spurious Throwable-s.
-                  monitor.onFailedSend(
-                      DDAgentWriter.this,
-                      representativeCount,
-                      sizeInBytes,
-                      DDApi.Response.failed(e));
-                } finally {
-                  apiPhaser.arrive(); // Flush completed.
-                }
-              }
-            });
+        final SendTask sendTask = new SendTask(representativeCount, sizeInBytes, toSend, flushed);
+        try {
+          // Run the actual IO task on a different thread to avoid blocking the consumer.
+          senderExecutor.execute(sendTask);
+        } catch (final RejectedExecutionException e) {
+          // The sender is behind (or shut down), so block the consumer instead.
+          sendTask.run();
+        }
       } finally {
         payloadSize = 0;
-        scheduleFlush();
+        if (shard == 0) {
+          scheduleFlush();
+        }
+      }
+    }
+
+    private void replayWhenIdle() {
+      try {
+        if (running) {
+          scheduledWriterExecutor.execute(spillReplayTask);
+        }
+      } catch (final RejectedExecutionException e) {
+        // Shutting down, spilled payloads are replayed on the next start.
       }
     }
   }
 
   private static class Event<T> {
     private volatile boolean shouldFlush = false;
+    private volatile CountDownLatch flushed = null;
     private volatile T data = null;
   }
 
@@ -388,6 +860,11 @@ public class DDAgentWriter implements Writer {
 
     void onFailedPublish(final DDAgentWriter agentWriter, final List<DDSpan> trace);
 
+    void onBudgetDrop(
+        final DDAgentWriter agentWriter, final String policy, final int droppedTraces);
+
+    void onCircuitBreakerDrop(final DDAgentWriter agentWriter, final int droppedTraces);
+
     void onScheduleFlush(final DDAgentWriter agentWriter, final boolean previousIncomplete);
 
     void onSerialize(
@@ -422,6 +899,13 @@ public class DDAgentWriter implements Writer {
     @Override
     public void onFailedPublish(final DDAgentWriter agentWriter, final List<DDSpan> trace) {}
 
+    @Override
+    public void onBudgetDrop(
+        final DDAgentWriter agentWriter, final String policy, final int droppedTraces) {}
+
+    @Override
+    public void onCircuitBreakerDrop(final DDAgentWriter agentWriter, final int droppedTraces) {}
+
     @Override
     public void onScheduleFlush(
         final DDAgentWriter agentWriter, final boolean previousIncomplete) {}
@@ -462,10 +946,16 @@ public class DDAgentWriter implements Writer {
     public static final String LANG_INTERPRETER_TAG = "lang_interpreter";
     public static final String LANG_INTERPRETER_VENDOR_TAG = "lang_interpreter_vendor";
     public static final String TRACER_VERSION_TAG = "tracer_version";
+    public static final String WAIT_STRATEGY_TAG = "wait_strategy";
+    public static final String BUDGET_POLICY_TAG = "policy";
 
     private final String hostInfo;
     private final StatsDClient statsd;
 
+    // Consumer time already reported, so only the increments are counted
+    private final AtomicLong reportedBusyNanos = new AtomicLong(0);
+    private final AtomicLong reportedIdleNanos = new AtomicLong(0);
+
     // DQH - Made a conscious choice to not take a Config object here.
     // Letting the creating of the Monitor take the Config,
     // so it can decide which Monitor variant to create.
@@ -497,6 +987,16 @@ public class DDAgentWriter implements Writer {
     @Override
     public void onStart(final DDAgentWriter agentWriter) {
       statsd.recordGaugeValue("queue.max_length", agentWriter.getDisruptorCapacity());
+      statsd.recordGaugeValue(
+          "queue.consumers",
+          agentWriter.getSerializationWorkers(),
+          tag(WAIT_STRATEGY_TAG, agentWriter.getWaitStrategy()));
+      if (agentWriter.getMemoryBudgetBytes() > 0) {
+        statsd.recordGaugeValue(
+            "queue.budget_max",
+            agentWriter.getMemoryBudgetBytes(),
+            tag(BUDGET_POLICY_TAG, agentWriter.getMemoryBudgetPolicy()));
+      }
     }
 
     @Override
@@ -513,9 +1013,21 @@ public class DDAgentWriter implements Writer {
       statsd.incrementCounter("queue.dropped");
     }
 
+    @Override
+    public void onBudgetDrop(
+        final DDAgentWriter agentWriter, final String policy, final int droppedTraces) {
+      statsd.count("queue.budget_dropped", droppedTraces, tag(BUDGET_POLICY_TAG, policy));
+    }
+
+    @Override
+    public void onCircuitBreakerDrop(final DDAgentWriter agentWriter, final int droppedTraces) {
+      statsd.count("queue.circuit_dropped", droppedTraces);
+    }
+
     @Override
     public void onScheduleFlush(final DDAgentWriter agentWriter, final boolean previousIncomplete) {
-      // not recorded
+      // Scheduled even when no traces are sent, so idle consumers are reported too
+      reportConsumers(agentWriter);
     }
 
     @Override
@@ -560,6 +1072,12 @@ public class DDAgentWriter implements Writer {
       statsd.recordGaugeValue("queue.length", representativeCount);
       // TODO: missing queue.spans (# of spans being sent)
       statsd.recordGaugeValue("queue.size", sizeInBytes);
+      if (agentWriter.getMemoryBudgetBytes() > 0) {
+        statsd.recordGaugeValue("queue.budget_used", agentWriter.getMemoryBudgetUsedBytes());
+      }
+      if (agentWriter.getSpillUsedBytes() > 0) {
+        statsd.recordGaugeValue("queue.spill_used", agentWriter.getSpillUsedBytes());
+      }
 
       if (response.exception() != null) {
         // covers communication errors -- both not receiving a response or
@@ -570,6 +1088,25 @@ public class DDAgentWriter implements Writer {
       if (response.status() != null) {
         statsd.incrementCounter("api.responses", "status: " + response.status());
       }
+
+      reportConsumers(agentWriter);
+    }
+
+    private void reportConsumers(final DDAgentWriter agentWriter) {
+      statsd.recordGaugeValue(
+          "queue.consumer.spinning",
+          agentWriter.isConsumerSpinning() ? 1 : 0,
+          tag(WAIT_STRATEGY_TAG, agentWriter.getWaitStrategy()));
+      final long busyNanos = agentWriter.getConsumerBusyNanos();
+      final long idleNanos = agentWriter.getConsumerIdleNanos();
+      statsd.count(
+          "queue.consumer.busy_time",
+          TimeUnit.NANOSECONDS.toMillis(
+              Math.max(0, busyNanos - reportedBusyNanos.getAndSet(busyNanos))));
+      statsd.count(
+          "queue.consumer.idle_time",
+          TimeUnit.NANOSECONDS.toMillis(
+              Math.max(0, idleNanos - reportedIdleNanos.getAndSet(idleNanos))));
     }
 
     public String toString() {
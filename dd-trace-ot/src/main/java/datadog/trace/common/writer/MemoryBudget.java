@@ -0,0 +1,149 @@
+package datadog.trace.common.writer;
+
+import datadog.opentracing.DDSpan;
+import datadog.trace.api.sampling.PrioritySampling;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Approximate accounting of the memory held by the traces of a {@link DDAgentWriter}, both queued
+ * in the disruptor and serialized but not yet sent.
+ *
+ * <p>Queued traces are counted in spans and converted to bytes with a running average of the
+ * serialized span size, serialized payloads are counted by their actual size. When the budget is
+ * exhausted the configured policy decides what is dropped.
+ */
+@Slf4j
+class MemoryBudget {
+  /** Reject new traces once the budget is used up. */
+  static final String DROP_NEWEST_POLICY = "drop-newest";
+  /**
+   * Accept new traces and drop the oldest serialized traces that haven't been sent yet. Queued
+   * traces can't be dropped, so new traces are rejected once those alone use up the budget.
+   */
+  static final String DROP_OLDEST_POLICY = "drop-oldest";
+  /**
+   * Only accept traces kept by the user once the budget is used up, and nothing at twice the
+   * budget.
+   */
+  static final String PRIORITY_POLICY = "priority";
+
+  private static final long INITIAL_BYTES_PER_SPAN = 256;
+
+  private final long budgetBytes;
+  private final String policy;
+
+  private final AtomicLong queuedSpans = new AtomicLong(0);
+  private final AtomicLong serializedBytes = new AtomicLong(0);
+  private volatile long bytesPerSpan = INITIAL_BYTES_PER_SPAN;
+
+  /**
+   * @param budgetBytes values < 1 disable the budget
+   * @param policy one of the *_POLICY names
+   */
+  MemoryBudget(final long budgetBytes, final String policy) {
+    this.budgetBytes = budgetBytes;
+    this.policy = normalizePolicy(policy);
+  }
+
+  boolean isEnabled() {
+    return budgetBytes > 0;
+  }
+
+  long getBudgetBytes() {
+    return budgetBytes;
+  }
+
+  String getPolicy() {
+    return policy;
+  }
+
+  long getUsedBytes() {
+    return queuedSpans.get() * bytesPerSpan + serializedBytes.get();
+  }
+
+  boolean isExceeded() {
+    return isEnabled() && getUsedBytes() > budgetBytes;
+  }
+
+  /**
+   * Decides whether a trace may be queued, and counts it if so. Only the newest trace can be
+   * rejected here. The check and the count are a single CAS, so concurrent writers can't overshoot
+   * the budget together.
+   */
+  boolean tryQueue(final List<DDSpan> trace) {
+    final int spans = trace.size();
+    if (!isEnabled()) {
+      queuedSpans.addAndGet(spans);
+      return true;
+    }
+    final long spanBytes = bytesPerSpan;
+    while (true) {
+      final long queued = queuedSpans.get();
+      final long queuedBytes = (queued + spans) * spanBytes;
+      if (!accepts(trace, queuedBytes, queuedBytes + serializedBytes.get())) {
+        return false;
+      }
+      if (queuedSpans.compareAndSet(queued, queued + spans)) {
+        return true;
+      }
+    }
+  }
+
+  private boolean accepts(final List<DDSpan> trace, final long queuedBytes, final long usedBytes) {
+    if (usedBytes <= budgetBytes) {
+      return true;
+    }
+    switch (policy) {
+      case DROP_OLDEST_POLICY:
+        // Serialized traces are dropped to make room
+        return queuedBytes <= budgetBytes;
+      case PRIORITY_POLICY:
+        return usedBytes <= 2 * budgetBytes
+            && !trace.isEmpty()
+            && trace.get(0).context().getSamplingPriority() >= PrioritySampling.USER_KEEP;
+      default:
+        return false;
+    }
+  }
+
+  void onDequeued(final List<DDSpan> trace) {
+    queuedSpans.addAndGet(-trace.size());
+  }
+
+  void onSerialized(final List<DDSpan> trace, final byte[] serializedTrace) {
+    serializedBytes.addAndGet(serializedTrace.length);
+    if (!trace.isEmpty()) {
+      // Exponentially weighted so the estimate follows the shape of recent traces.
+      final long estimate = bytesPerSpan;
+      bytesPerSpan = Math.max(1, estimate + (serializedTrace.length / trace.size() - estimate) / 8);
+    }
+  }
+
+  void onReleased(final long bytes) {
+    serializedBytes.addAndGet(-bytes);
+  }
+
+  private static String normalizePolicy(final String policy) {
+    if (policy != null) {
+      final String name = policy.trim().toLowerCase();
+      switch (name) {
+        case DROP_NEWEST_POLICY:
+        case DROP_OLDEST_POLICY:
+        case PRIORITY_POLICY:
+          return name;
+      }
+    }
+    log.warn(
+        "Writer memory budget policy {} not recognized. Defaulting to {}.",
+        policy,
+        DROP_NEWEST_POLICY);
+    return DROP_NEWEST_POLICY;
+  }
+
+  @Override
+  public String toString() {
+    return "MemoryBudget { budgetBytes=" + budgetBytes + ", policy=" + policy + " }";
+  }
+}
@@ -0,0 +1,430 @@
+package datadog.trace.common.writer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Size-capped, disk-backed queue of serialized trace payloads that could not be sent.
+ *
+ * <p>Payloads are appended to memory-mapped segment files in a directory. Each record is
+ *
+ * <pre>
+ *   magic | payload length | crc32 of payload | consumed flag | payload
+ * </pre>
+ *
+ * where the payload holds the representative trace count and the already serialized traces. The
+ * magic is written last, and records that are torn or fail their checksum end the scan of their
+ * segment, so a crash never replays a partial payload. Replayed records are flagged as consumed in
+ * place and a segment file is unmapped and deleted once all its records are consumed, the segment
+ * being written to included. When the queue is full the oldest segment is dropped.
+ *
+ * <p>Recovered segments are only read from. New payloads always go to a fresh, zero filled segment
+ * so stale bytes after a torn record can never be mistaken for data.
+ */
+@Slf4j
+class SpillQueue {
+  private static final int MAGIC = 0x53504C4C; // "SPLL"
+  private static final int HEADER_SIZE = 16;
+  private static final int MAGIC_OFFSET = 0;
+  private static final int LENGTH_OFFSET = 4;
+  private static final int CRC_OFFSET = 8;
+  private static final int CONSUMED_OFFSET = 12;
+
+  private static final int MAX_SEGMENTS = 8;
+  private static final int MIN_SEGMENT_BYTES = 1 << 20; // 1 MB
+
+  private static final String SEGMENT_PREFIX = "spill-";
+  private static final String SEGMENT_SUFFIX = ".seg";
+  private static final Pattern SEGMENT_NAME = Pattern.compile("spill-(\\d+)\\.seg");
+
+  private final File directory;
+  private final int segmentBytes;
+  private final int maxSegments;
+  private final Deque<Segment> segments = new ArrayDeque<>();
+
+  private Segment writeSegment = null;
+  private long nextSequence = 0;
+  private long droppedPayloads = 0;
+
+  /**
+   * @param directory created if missing, existing segments in it are recovered
+   * @param maxBytes approximate bound on the disk space used by the segments
+   */
+  SpillQueue(final File directory, final long maxBytes) throws IOException {
+    this.directory = directory;
+    segmentBytes =
+        (int) Math.min(Integer.MAX_VALUE, Math.max(MIN_SEGMENT_BYTES, maxBytes / MAX_SEGMENTS));
+    maxSegments = (int) Math.max(1, Math.min(MAX_SEGMENTS, maxBytes / segmentBytes));
+
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Unable to create spill directory " + directory);
+    }
+    recover();
+  }
+
+  /**
+   * Appends a payload, dropping the oldest segment if the queue is full.
+   *
+   * @return false if the payload can't fit in a segment
+   */
+  synchronized boolean append(final int representativeCount, final List<byte[]> traces) {
+    int payloadLength = 8;
+    for (final byte[] trace : traces) {
+      payloadLength += 4 + trace.length;
+    }
+    final int recordLength = HEADER_SIZE + payloadLength;
+    if (recordLength > segmentBytes) {
+      log.debug("Payload of {} bytes is too large to spill", payloadLength);
+      droppedPayloads++;
+      return false;
+    }
+
+    try {
+      if (writeSegment == null || writeSegment.writePosition + recordLength > segmentBytes) {
+        rollSegment();
+      }
+    } catch (final IOException e) {
+      log.debug("Unable to create spill segment in {}", directory, e);
+      droppedPayloads++;
+      return false;
+    }
+
+    final MappedByteBuffer buffer = writeSegment.buffer;
+    final int offset = writeSegment.writePosition;
+    final CRC32 crc = new CRC32();
+
+    buffer.position(offset + HEADER_SIZE);
+    putInt(buffer, crc, representativeCount);
+    putInt(buffer, crc, traces.size());
+    for (final byte[] trace : traces) {
+      putInt(buffer, crc, trace.length);
+      buffer.put(trace);
+      crc.update(trace, 0, trace.length);
+    }
+
+    buffer.putInt(offset + LENGTH_OFFSET, payloadLength);
+    buffer.putInt(offset + CRC_OFFSET, (int) crc.getValue());
+    buffer.putInt(offset + CONSUMED_OFFSET, 0);
+    // Written last: the record only exists once the magic is in place.
+    buffer.putInt(offset + MAGIC_OFFSET, MAGIC);
+
+    writeSegment.writePosition = offset + recordLength;
+    return true;
+  }
+
+  /** @return the oldest payload that hasn't been consumed yet, or null if there is none. */
+  synchronized Batch peek() {
+    for (final Segment segment : segments) {
+      if (segment.readPosition < segment.writePosition) {
+        return readBatch(segment, segment.readPosition);
+      }
+    }
+    return null;
+  }
+
+  /** Marks a payload returned by {@link #peek()} as sent. */
+  synchronized void commit(final Batch batch) {
+    final Segment segment = batch.segment;
+    if (!segments.contains(segment) || segment.readPosition != batch.offset) {
+      return; // Dropped while it was being sent.
+    }
+    segment.buffer.putInt(batch.offset + CONSUMED_OFFSET, 1);
+    segment.readPosition = batch.offset + HEADER_SIZE + batch.payloadLength;
+
+    if (segment.readPosition >= segment.writePosition) {
+      segments.remove(segment);
+      delete(segment);
+      if (segment == writeSegment) {
+        // The next payload rolls over to a fresh segment.
+        writeSegment = null;
+      }
+    }
+  }
+
+  synchronized boolean isEmpty() {
+    for (final Segment segment : segments) {
+      if (segment.readPosition < segment.writePosition) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  synchronized long getUsedBytes() {
+    return (long) segments.size() * segmentBytes;
+  }
+
+  /** Payloads dropped because they didn't fit, or because their segment was evicted. */
+  synchronized long getDroppedPayloads() {
+    return droppedPayloads;
+  }
+
+  private void rollSegment() throws IOException {
+    while (segments.size() >= maxSegments) {
+      final Segment oldest = segments.removeFirst();
+      droppedPayloads += countUnconsumed(oldest);
+      delete(oldest);
+      log.debug("Spill queue full, dropped segment {}", oldest.file);
+    }
+    final File file = new File(directory, SEGMENT_PREFIX + nextSequence++ + SEGMENT_SUFFIX);
+    writeSegment = new Segment(file, map(file, segmentBytes), 0);
+    segments.addLast(writeSegment);
+  }
+
+  private void recover() throws IOException {
+    final File[] files = directory.listFiles();
+    if (files == null) {
+      return;
+    }
+    final List<Long> sequences = new ArrayList<>();
+    for (final File file : files) {
+      final Matcher matcher = SEGMENT_NAME.matcher(file.getName());
+      if (matcher.matches()) {
+        sequences.add(Long.parseLong(matcher.group(1)));
+      }
+    }
+    Collections.sort(sequences);
+
+    for (final Long sequence : sequences) {
+      nextSequence = sequence + 1;
+      final File file = new File(directory, SEGMENT_PREFIX + sequence + SEGMENT_SUFFIX);
+      final Segment segment = new Segment(file, map(file, (int) file.length()), 0);
+      scan(segment);
+      if (segment.readPosition < segment.writePosition) {
+        segments.addLast(segment);
+      } else {
+        delete(segment);
+      }
+    }
+    while (segments.size() > maxSegments) {
+      final Segment oldest = segments.removeFirst();
+      droppedPayloads += countUnconsumed(oldest);
+      delete(oldest);
+    }
+    if (!segments.isEmpty()) {
+      log.debug("Recovered {} spilled segments from {}", segments.size(), directory);
+    }
+  }
+
+  /** Finds the valid records of a recovered segment, stopping at the first bad one. */
+  private static void scan(final Segment segment) {
+    final MappedByteBuffer buffer = segment.buffer;
+    final int capacity = buffer.capacity();
+    int position = 0;
+    int firstUnconsumed = -1;
+    while (position + HEADER_SIZE <= capacity) {
+      if (buffer.getInt(position + MAGIC_OFFSET) != MAGIC) {
+        break;
+      }
+      final int length = buffer.getInt(position + LENGTH_OFFSET);
+      if (length < 8 || length > capacity - position - HEADER_SIZE) {
+        break;
+      }
+      final int crc = buffer.getInt(position + CRC_OFFSET);
+      if (!checksumMatches(buffer, position + HEADER_SIZE, length, crc)) {
+        log.debug("Skipping partial record at {} in {}", position, segment.file);
+        break;
+      }
+      if (firstUnconsumed < 0 && buffer.getInt(position + CONSUMED_OFFSET) == 0) {
+        firstUnconsumed = position;
+      }
+      position += HEADER_SIZE + length;
+    }
+    segment.writePosition = position;
+    segment.readPosition = firstUnconsumed < 0 ? position : firstUnconsumed;
+  }
+
+  private int countUnconsumed(final Segment segment) {
+    int count = 0;
+    int position = segment.readPosition;
+    while (position < segment.writePosition) {
+      if (segment.buffer.getInt(position + CONSUMED_OFFSET) == 0) {
+        count++;
+      }
+      position += HEADER_SIZE + segment.buffer.getInt(position + LENGTH_OFFSET);
+    }
+    return count;
+  }
+
+  private Batch readBatch(final Segment segment, final int offset) {
+    final MappedByteBuffer buffer = segment.buffer;
+    final int payloadLength = buffer.getInt(offset + LENGTH_OFFSET);
+    int position = offset + HEADER_SIZE;
+    final int representativeCount = buffer.getInt(position);
+    final int traceCount = buffer.getInt(position + 4);
+    position += 8;
+
+    final List<byte[]> traces = new ArrayList<>(traceCount);
+    int sizeInBytes = 0;
+    for (int i = 0; i < traceCount; i++) {
+      final byte[] trace = new byte[buffer.getInt(position)];
+      position += 4;
+      buffer.position(position);
+      buffer.get(trace);
+      position += trace.length;
+      sizeInBytes += trace.length;
+      traces.add(trace);
+    }
+    return new Batch(segment, offset, payloadLength, representativeCount, sizeInBytes, traces);
+  }
+
+  private static boolean checksumMatches(
+      final MappedByteBuffer buffer, final int offset, final int length, final int expected) {
+    final CRC32 crc = new CRC32();
+    final byte[] chunk = new byte[Math.min(length, 8192)];
+    buffer.position(offset);
+    int remaining = length;
+    while (remaining > 0) {
+      final int read = Math.min(remaining, chunk.length);
+      buffer.get(chunk, 0, read);
+      crc.update(chunk, 0, read);
+      remaining -= read;
+    }
+    return (int) crc.getValue() == expected;
+  }
+
+  private static void putInt(final MappedByteBuffer buffer, final CRC32 crc, final int value) {
+    buffer.putInt(value);
+    crc.update(value >>> 24);
+    crc.update(value >>> 16);
+    crc.update(value >>> 8);
+    crc.update(value);
+  }
+
+  private static MappedByteBuffer map(final File file, final int size) throws IOException {
+    try (final RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+  }
+
+  private static void delete(final Segment segment) {
+    Unmapper.unmap(segment.buffer);
+    if (!segment.file.delete()) {
+      log.debug("Unable to delete spill segment {}", segment.file);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "SpillQueue { directory="
+        + directory
+        + ", segments="
+        + Arrays.toString(segments.toArray())
+        + " }";
+  }
+
+  /**
+   * Releases the memory and the file of a mapped buffer right away, rather than whenever the buffer
+   * is collected: with Unsafe.invokeCleaner on Java 9+, with the buffer's Cleaner on Java 8. The
+   * buffer must not be used afterwards.
+   */
+  private static final class Unmapper {
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+    private static final Method CLEANER;
+    private static final Method CLEAN;
+
+    static {
+      Object unsafe = null;
+      Method invokeCleaner = null;
+      Method cleaner = null;
+      Method clean = null;
+      try {
+        final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+        invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        final Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+        theUnsafe.setAccessible(true);
+        unsafe = theUnsafe.get(null);
+      } catch (final Exception java8) {
+        invokeCleaner = null;
+        try {
+          cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+          clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+        } catch (final Exception e) {
+          log.debug("Unable to unmap spill segments, they are released when collected", e);
+          cleaner = null;
+          clean = null;
+        }
+      }
+      UNSAFE = unsafe;
+      INVOKE_CLEANER = invokeCleaner;
+      CLEANER = cleaner;
+      CLEAN = clean;
+    }
+
+    static void unmap(final MappedByteBuffer buffer) {
+      try {
+        if (INVOKE_CLEANER != null) {
+          INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } else if (CLEANER != null) {
+          final Object cleaner = CLEANER.invoke(buffer);
+          if (cleaner != null) {
+            CLEAN.invoke(cleaner);
+          }
+        }
+      } catch (final Exception e) {
+        log.debug("Unable to unmap spill segment", e);
+      }
+    }
+  }
+
+  private static final class Segment {
+    private final File file;
+    private final MappedByteBuffer buffer;
+    private int writePosition;
+    private int readPosition;
+
+    private Segment(final File file, final MappedByteBuffer buffer, final int position) {
+      this.file = file;
+      this.buffer = buffer;
+      writePosition = position;
+      readPosition = position;
+    }
+
+    @Override
+    public String toString() {
+      return file.getName();
+    }
+  }
+
+  /** A spilled payload, in the shape expected by {@link Api#sendSerializedTraces}. */
+  static final class Batch {
+    private final Segment segment;
+    private final int offset;
+    private final int payloadLength;
+    final int representativeCount;
+    final int sizeInBytes;
+    final List<byte[]> traces;
+
+    private Batch(
+        final Segment segment,
+        final int offset,
+        final int payloadLength,
+        final int representativeCount,
+        final int sizeInBytes,
+        final List<byte[]> traces) {
+      this.segment = segment;
+      this.offset = offset;
+      this.payloadLength = payloadLength;
+      this.representativeCount = representativeCount;
+      this.sizeInBytes = sizeInBytes;
+      this.traces = traces;
+    }
+  }
+}
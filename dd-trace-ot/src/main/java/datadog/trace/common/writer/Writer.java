@@ -55,7 +55,7 @@ public interface Writer extends Closeable {
       } else {
         log.warn(
             "Writer type not configured correctly: No config provided! Defaulting to DDAgentWriter.");
-        writer = new DDAgentWriter();
+        writer = DDAgentWriter.builder().build();
       }
 
       return writer;
@@ -66,19 +66,32 @@ public interface Writer extends Closeable {
     }
 
     private static Writer createAgentWriter(final Config config) {
+      final Api api;
       if (DD_AGENT_API_TYPE.equals(config.getApiType())) {
-        return new DDAgentWriter(createApi(config), createMonitor(config));
+        api = createApi(config);
       } else if (ZIPKIN_V2_API_TYPE.equals(config.getApiType())) {
-        return new DDAgentWriter(
+        api =
             new ZipkinV2Api(
                 config.getAgentHost(),
                 config.getAgentPort(),
                 config.getAgentPath(),
-                config.getAgentUseHTTPS()),
-            createMonitor(config));
+                config.getAgentUseHTTPS(),
+                config.isAgentUseGzip());
       } else {
         throw new IllegalArgumentException("Unknown api type: " + config.getApiType());
       }
+      return DDAgentWriter.builder()
+          .api(api)
+          .monitor(createMonitor(config))
+          .serializationWorkers(config.getWriterSerializationWorkers())
+          .waitStrategy(config.getWriterWaitStrategy())
+          .memoryBudgetBytes(config.getWriterMemoryBudget())
+          .memoryBudgetPolicy(config.getWriterMemoryBudgetPolicy())
+          .spillDirectory(config.getWriterSpillDirectory())
+          .spillMaxBytes(config.getWriterSpillMaxBytes())
+          .sendRetries(config.getWriterSendRetries())
+          .circuitBreakerThreshold(config.getWriterCircuitBreakerThreshold())
+          .build();
     }
 
     private static final DDApi createApi(final Config config) {
@@ -1,46 +1,103 @@
 // Modified by SignalFx
 package datadog.trace.common.writer;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerationException;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.base.Strings;
 import datadog.opentracing.DDSpan;
 import datadog.trace.api.DDSpanTypes;
 import datadog.trace.api.DDTags;
-import datadog.trace.common.util.Ids;
-import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
 import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import lombok.extern.slf4j.Slf4j;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.GzipSink;
+import okio.Okio;
 
 /** Zipkin V2 JSON HTTP encoder/sender. Follows a similar pattern to DDApi. */
 @Slf4j
 public class ZipkinV2Api implements Api {
   private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+  private static final JsonFactory JSON_FACTORY = OBJECT_MAPPER.getFactory();
+
+  // Pre-encoded field names of the Zipkin V2 span model
+  private static final SerializableString ID_FIELD = new SerializedString("id");
+  private static final SerializableString NAME_FIELD = new SerializedString("name");
+  private static final SerializableString TRACE_ID_FIELD = new SerializedString("traceId");
+  private static final SerializableString PARENT_ID_FIELD = new SerializedString("parentId");
+  private static final SerializableString KIND_FIELD = new SerializedString("kind");
+  private static final SerializableString LOCAL_ENDPOINT_FIELD =
+      new SerializedString("localEndpoint");
+  private static final SerializableString SERVICE_NAME_FIELD = new SerializedString("serviceName");
+  private static final SerializableString TIMESTAMP_FIELD = new SerializedString("timestamp");
+  private static final SerializableString DURATION_FIELD = new SerializedString("duration");
+  private static final SerializableString TAGS_FIELD = new SerializedString("tags");
+  private static final SerializableString ANNOTATIONS_FIELD = new SerializedString("annotations");
+  private static final SerializableString VALUE_FIELD = new SerializedString("value");
+
+  // Traces are serialized on the writer thread, so the buffers are reused across traces.
+  private static final ThreadLocal<ReusableByteArrayOutputStream> SERIALIZATION_BUFFER =
+      new ThreadLocal<ReusableByteArrayOutputStream>() {
+        @Override
+        protected ReusableByteArrayOutputStream initialValue() {
+          return new ReusableByteArrayOutputStream(8192);
+        }
+      };
+  private static final ThreadLocal<ReusableByteArrayOutputStream> ANNOTATION_BUFFER =
+      new ThreadLocal<ReusableByteArrayOutputStream>() {
+        @Override
+        protected ReusableByteArrayOutputStream initialValue() {
+          return new ReusableByteArrayOutputStream(256);
+        }
+      };
+
+  private static final int HTTP_TIMEOUT = 10; // seconds for connect/read/write operations
+  private static final MediaType JSON = MediaType.get("application/json");
+
   private final String traceEndpoint;
+  private final HttpUrl tracesUrl;
+  private final boolean gzip;
+  // Keeps connections to the collector alive between flushes.
+  private final OkHttpClient httpClient;
 
   // Used to throttle logging when spans can't be sent
   private volatile long nextAllowedLogTime = 0;
   private static final long MILLISECONDS_BETWEEN_ERROR_LOG = TimeUnit.MINUTES.toMillis(3);
 
   ZipkinV2Api(final String host, final int port, final String path, final boolean useHTTPS) {
+    this(host, port, path, useHTTPS, false);
+  }
+
+  ZipkinV2Api(
+      final String host,
+      final int port,
+      final String path,
+      final boolean useHTTPS,
+      final boolean gzip) {
     String portStr = ":" + String.valueOf(port);
     if ((useHTTPS && port == 443) || (!useHTTPS && port == 80)) {
       portStr = "";
     }
     traceEndpoint = (useHTTPS ? "https" : "http") + "://" + host + portStr + path;
+    tracesUrl = HttpUrl.get(traceEndpoint);
+    this.gzip = gzip;
+    httpClient = buildHttpClient();
   }
 
   @Override
@@ -62,80 +119,69 @@ public class ZipkinV2Api implements Api {
 
   @Override
   public byte[] serializeTrace(final List<DDSpan> trace) throws JsonProcessingException {
-    ArrayNode spanArr = OBJECT_MAPPER.createArrayNode();
-    for (DDSpan span : trace) {
-      spanArr.add(encodeSpan(span));
+    final ReusableByteArrayOutputStream out = SERIALIZATION_BUFFER.get();
+    out.reset();
+    try (final JsonGenerator generator = JSON_FACTORY.createGenerator(out)) {
+      generator.writeStartArray();
+      for (final DDSpan span : trace) {
+        encodeSpan(generator, span);
+      }
+      generator.writeEndArray();
+    } catch (final JsonProcessingException e) {
+      throw e;
+    } catch (final IOException e) {
+      // Can't happen when writing to memory, but JsonGenerator declares it.
+      throw new JsonGenerationException(e, null);
     }
-    return OBJECT_MAPPER.writeValueAsBytes(spanArr);
+    return out.toByteArray();
   }
 
   @Override
   public Response sendSerializedTraces(
       final int representativeCount, final Integer sizeInBytes, final List<byte[]> traces) {
     try {
-      final HttpURLConnection httpCon = getHttpURLConnection(traceEndpoint);
-
-      try (OutputStream out = httpCon.getOutputStream()) {
-
-        int traceCount = 0;
-
-        out.write('[');
-        for (final byte[] trace : traces) {
-          traceCount++;
-          if (trace.length == 2) {
-            // empty trace
-            continue;
-          }
-          // don't write nested array brackets
-          out.write(trace, 1, trace.length - 2);
+      final Request.Builder request =
+          new Request.Builder().url(tracesUrl).post(new TracesRequestBody(traces, gzip));
+      if (gzip) {
+        request.header("Content-Encoding", "gzip");
+      }
 
-          // don't write comma for final span
-          if (traceCount != traces.size()) {
-            out.write(',');
+      try (final okhttp3.Response response = httpClient.newCall(request.build()).execute()) {
+        final int responseCode = response.code();
+        if (responseCode != 200) {
+          final String responseContent = response.body().string();
+          if (log.isDebugEnabled()) {
+            log.debug(
+                "Error while sending {} of {} traces to {}. Status: {}, Response: {}",
+                traces.size(),
+                representativeCount,
+                traceEndpoint,
+                responseCode,
+                responseContent);
+          } else if (nextAllowedLogTime < System.currentTimeMillis()) {
+            nextAllowedLogTime = System.currentTimeMillis() + MILLISECONDS_BETWEEN_ERROR_LOG;
+            log.warn(
+                "Error while sending {} of {} traces. Status: {}, Response: {} (going silent for {} minutes)",
+                traces.size(),
+                representativeCount,
+                responseCode,
+                responseContent,
+                TimeUnit.MILLISECONDS.toMinutes(MILLISECONDS_BETWEEN_ERROR_LOG));
           }
+          return Response.failed(responseCode);
         }
-        out.write(']');
-      }
-
-      final int responseCode = httpCon.getResponseCode();
 
-      final StringBuilder sb = new StringBuilder();
-      try (BufferedReader responseReader =
-          new BufferedReader(
-              new InputStreamReader(httpCon.getInputStream(), StandardCharsets.UTF_8))) {
-
-        String line;
-        while ((line = responseReader.readLine()) != null) {
-          sb.append(line);
-        }
-      }
-      String responseContent = sb.toString();
-
-      if (responseCode != 200) {
-        if (log.isDebugEnabled()) {
-          log.debug(
-              "Error while sending {} of {} traces to {}. Status: {}, Response: {}",
-              traces.size(),
-              representativeCount,
-              traceEndpoint,
-              responseCode,
-              responseContent);
-        } else if (nextAllowedLogTime < System.currentTimeMillis()) {
-          nextAllowedLogTime = System.currentTimeMillis() + MILLISECONDS_BETWEEN_ERROR_LOG;
-          log.warn(
-              "Error while sending {} of {} traces. Status: {}, Response: {} (going silent for {} minutes)",
-              traces.size(),
-              representativeCount,
-              responseCode,
-              responseContent,
-              TimeUnit.MILLISECONDS.toMinutes(MILLISECONDS_BETWEEN_ERROR_LOG));
+        // The collector response carries nothing we need, but it has to be fully consumed for the
+        // connection to go back to the pool.
+        final BufferedSource source = response.body().source();
+        while (!source.exhausted()) {
+          source.buffer().clear();
         }
-        return Response.failed(responseCode);
-      }
 
-      log.debug("Successfully sent {} of {} traces.", traces.size(), representativeCount);
+        log.debug("Successfully sent {} of {} traces.", traces.size(), representativeCount);
 
-      return Response.success(responseCode, responseContent);
+        return Response.success(responseCode);
+      }
     } catch (final IOException e) {
       if (log.isDebugEnabled()) {
         log.debug(
@@ -158,70 +204,104 @@ public class ZipkinV2Api implements Api {
   /**
    * We want to avoid having to import Zipkin code here so construct its V2 JSON format manually.
    *
-   * <p>Just flatten out the lists of spans to a single output list.
+   * <p>Fields are streamed straight from the span into the generator instead of building a tree
+   * model first.
    */
-  private ArrayNode encodeTraces(final List<List<DDSpan>> traces) {
-    ArrayNode spanArr = OBJECT_MAPPER.createArrayNode();
-    for (List<DDSpan> trace : traces) {
-      for (DDSpan span : trace) {
-        spanArr.add(encodeSpan(span));
+  private void encodeSpan(final JsonGenerator generator, final DDSpan span) throws IOException {
+    final Map<String, Object> tags = span.getTags();
+    final String kind = deriveKind(span, tags);
+
+    /*
+     * In order to have more informative operation names for web frameworks, we take advantage of
+     * the URLAsResourceName-normalized resource name tag value, and update the operation name.
+     *
+     * If the (updated) name doesn't match the resource name, set the resource.name tag, as it
+     * likely contains worthwhile information.
+     */
+    String name = span.getOperationName();
+    String resourceNameTag = null;
+    final String resourceName = span.getResourceName();
+    if (!Strings.isNullOrEmpty(resourceName)) {
+      if (DDTags.SPAN_KIND_SERVER.equalsIgnoreCase(kind)) {
+        name = resourceName;
+      }
+      if (!name.equals(resourceName)) {
+        resourceNameTag = resourceName;
       }
     }
-    return spanArr;
-  }
-
-  private ObjectNode encodeSpan(final DDSpan span) {
-    ObjectNode spanNode = OBJECT_MAPPER.createObjectNode();
-    spanNode.put("id", Ids.idToHex(span.getSpanId()));
-    spanNode.put("name", span.getOperationName());
-    spanNode.put("traceId", Ids.idToHex(span.getTraceId()));
-    spanNode.put("parentId", Ids.idToHex(span.getParentId()));
-    spanNode.put("kind", deriveKind(span));
 
-    ObjectNode localEndpointNode = spanNode.putObject("localEndpoint");
-    localEndpointNode.put("serviceName", span.getServiceName());
+    generator.writeStartObject();
+    generator.writeFieldName(ID_FIELD);
+    generator.writeString(span.context().getSpanIdHex());
+    generator.writeFieldName(NAME_FIELD);
+    generator.writeString(name);
+    generator.writeFieldName(TRACE_ID_FIELD);
+    generator.writeString(span.context().getTraceIdHex());
+    generator.writeFieldName(PARENT_ID_FIELD);
+    generator.writeString(span.context().getParentIdHex());
+    generator.writeFieldName(KIND_FIELD);
+    generator.writeString(kind);
+
+    generator.writeFieldName(LOCAL_ENDPOINT_FIELD);
+    generator.writeStartObject();
+    generator.writeFieldName(SERVICE_NAME_FIELD);
+    generator.writeString(span.getServiceName());
+    generator.writeEndObject();
 
     // DDSpan outputs time in nanoseconds and Zipkin is microseconds.
-    spanNode.put("timestamp", span.getStartTime() / 1000);
+    generator.writeFieldName(TIMESTAMP_FIELD);
+    generator.writeNumber(span.getStartTime() / 1000);
     // Same units as timestamp
-    spanNode.put("duration", span.getDurationNano() / 1000);
-
-    ObjectNode tagNode = spanNode.putObject("tags");
-    for (Map.Entry<String, Object> tag : span.getTags().entrySet()) {
-      if (DDTags.SPAN_KIND.equals(tag.getKey())) {
+    generator.writeFieldName(DURATION_FIELD);
+    generator.writeNumber(span.getDurationNano() / 1000);
+
+    generator.writeFieldName(TAGS_FIELD);
+    generator.writeStartObject();
+    for (final Map.Entry<String, Object> tag : tags.entrySet()) {
+      final String key = tag.getKey();
+      if (DDTags.SPAN_KIND.equals(key)
+          || (resourceNameTag != null && DDTags.RESOURCE_NAME.equals(key))) {
         continue;
       }
       // Zipkin tags are always string values
-      tagNode.put(tag.getKey(), tag.getValue().toString());
+      generator.writeStringField(key, tag.getValue().toString());
     }
-
-    updateFromResourceName(spanNode, tagNode, span);
-
-    ArrayNode annotations = spanNode.putArray("annotations");
-    for (AbstractMap.SimpleEntry<Long, Map<String, ?>> item : span.getLogs()) {
-      final ObjectNode annotation = OBJECT_MAPPER.createObjectNode();
-      annotation.put("timestamp", item.getKey());
-      JsonNode value = OBJECT_MAPPER.valueToTree(item.getValue());
-      try {
-        String encodedValue = OBJECT_MAPPER.writeValueAsString(value);
-        annotation.put("value", encodedValue);
-      } catch (JsonProcessingException e) {
-        log.warn("Failed creating annotation");
-        continue;
+    if (resourceNameTag != null) {
+      generator.writeStringField(DDTags.RESOURCE_NAME, resourceNameTag);
+    }
+    generator.writeEndObject();
+
+    generator.writeFieldName(ANNOTATIONS_FIELD);
+    generator.writeStartArray();
+    final List<AbstractMap.SimpleEntry<Long, Map<String, ?>>> logs = span.getLogs();
+    if (!logs.isEmpty()) {
+      final ReusableByteArrayOutputStream valueBuffer = ANNOTATION_BUFFER.get();
+      for (final AbstractMap.SimpleEntry<Long, Map<String, ?>> item : logs) {
+        // Annotation values are the JSON encoded log fields, written as an escaped string.
+        valueBuffer.reset();
+        try {
+          OBJECT_MAPPER.writeValue(valueBuffer, item.getValue());
+        } catch (final JsonProcessingException e) {
+          log.warn("Failed creating annotation");
+          continue;
+        }
+        generator.writeStartObject();
+        generator.writeFieldName(TIMESTAMP_FIELD);
+        generator.writeNumber(item.getKey());
+        generator.writeFieldName(VALUE_FIELD);
+        generator.writeUTF8String(valueBuffer.buffer(), 0, valueBuffer.size());
+        generator.writeEndObject();
       }
-      annotations.add(annotation);
     }
+    generator.writeEndArray();
 
-    return spanNode;
+    generator.writeEndObject();
   }
 
-  private String deriveKind(DDSpan span) {
-    Map<String, Object> tags = span.getTags();
-    if (tags.containsKey(DDTags.SPAN_KIND)) {
-      Object kindObj = tags.get(DDTags.SPAN_KIND);
-      if (kindObj instanceof String) {
-        return (String) kindObj;
-      }
+  private String deriveKind(final DDSpan span, final Map<String, Object> tags) {
+    final Object kindObj = tags.get(DDTags.SPAN_KIND);
+    if (kindObj instanceof String) {
+      return (String) kindObj;
     }
 
     // Maybe look at span.getType() if kind tag isn't there
@@ -236,41 +316,88 @@ public class ZipkinV2Api implements Api {
     return null;
   }
 
+  private static OkHttpClient buildHttpClient() {
+    return new OkHttpClient.Builder()
+        .connectTimeout(HTTP_TIMEOUT, TimeUnit.SECONDS)
+        .writeTimeout(HTTP_TIMEOUT, TimeUnit.SECONDS)
+        .readTimeout(HTTP_TIMEOUT, TimeUnit.SECONDS)
+        .build();
+  }
+
   /**
-   * In order to have more informative operation names for web frameworks, we take advantage of the
-   * URLAsResourceName-normalized resource name tag value, and update the operation name.
+   * Writes the already serialized traces as a single JSON array of spans, optionally gzipped.
    *
-   * <p>If the (updated) spanNode's name doesn't match the resource name, set the resource.name tag,
-   * as it likely contains worthwhile information.
+   * <p>Each serialized trace is itself an array of spans, so the nested brackets are dropped and
+   * the span lists are joined.
    */
-  private void updateFromResourceName(ObjectNode spanNode, ObjectNode tagNode, DDSpan span) {
-    String resourceName = span.getResourceName();
-    if (Strings.isNullOrEmpty(resourceName)) {
-      return;
+  private static final class TracesRequestBody extends RequestBody {
+    private final List<byte[]> traces;
+    private final boolean gzip;
+
+    private TracesRequestBody(final List<byte[]> traces, final boolean gzip) {
+      this.traces = traces;
+      this.gzip = gzip;
+    }
+
+    @Override
+    public MediaType contentType() {
+      return JSON;
     }
 
-    final String spanKind = spanNode.get("kind").textValue();
-    if (!Strings.isNullOrEmpty(spanKind)
-        && spanKind.toLowerCase().equals(DDTags.SPAN_KIND_SERVER.toLowerCase())) {
-      spanNode.put("name", resourceName);
+    @Override
+    public long contentLength() {
+      if (gzip) {
+        return -1; // Unknown until compressed, so the request is chunked.
+      }
+      long length = 2; // enclosing brackets
+      int written = 0;
+      for (final byte[] trace : traces) {
+        if (trace.length > 2) {
+          length += trace.length - 2;
+          written++;
+        }
+      }
+      if (written > 1) {
+        length += written - 1; // separating commas
+      }
+      return length;
     }
 
-    String spanName = spanNode.get("name").textValue();
-    if (!spanName.equals(resourceName)) {
-      tagNode.put(DDTags.RESOURCE_NAME, span.getResourceName());
+    @Override
+    public void writeTo(final BufferedSink sink) throws IOException {
+      final BufferedSink out = gzip ? Okio.buffer(new GzipSink(sink)) : sink;
+      boolean first = true;
+
+      out.writeByte('[');
+      for (final byte[] trace : traces) {
+        if (trace.length <= 2) {
+          // empty trace
+          continue;
+        }
+        if (!first) {
+          out.writeByte(',');
+        }
+        first = false;
+        // don't write nested array brackets
+        out.write(trace, 1, trace.length - 2);
+      }
+      out.writeByte(']');
+
+      if (gzip) {
+        out.close();
+      }
     }
   }
 
-  private static HttpURLConnection getHttpURLConnection(final String endpoint) throws IOException {
-    final HttpURLConnection httpCon;
-    final URL url = new URL(endpoint);
-    httpCon = (HttpURLConnection) url.openConnection();
-    httpCon.setDoOutput(true);
-    httpCon.setDoInput(true);
-    httpCon.setRequestMethod("POST");
-    httpCon.setRequestProperty("Content-Type", "application/json");
+  /** Exposes the backing array so its contents can be written without another copy. */
+  static final class ReusableByteArrayOutputStream extends ByteArrayOutputStream {
+    ReusableByteArrayOutputStream(final int size) {
+      super(size);
+    }
 
-    return httpCon;
+    byte[] buffer() {
+      return buf;
+    }
   }
 
   @Override
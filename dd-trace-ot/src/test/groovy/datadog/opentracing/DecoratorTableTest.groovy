@@ -0,0 +1,42 @@
+package datadog.opentracing
+
+import datadog.opentracing.decorators.AbstractDecorator
+import datadog.trace.util.test.DDSpecification
+
+class DecoratorTableTest extends DDSpecification {
+
+  static AbstractDecorator decorator(String tag) {
+    def decorator = new AbstractDecorator() {}
+    decorator.setMatchingTag(tag)
+    return decorator
+  }
+
+  def "decorators are listed by tag in the order added"() {
+    setup:
+    def first = decorator("some.tag")
+    def second = decorator("some.tag")
+    def other = decorator("other.tag")
+
+    when:
+    def table = DecoratorTable.EMPTY.with(first).with(other).with(second)
+
+    then:
+    table.size() == 2
+    table.get("some.tag") == [first, second] as AbstractDecorator[]
+    table.get(new String("some.tag")) == [first, second] as AbstractDecorator[]
+    table.get("other.tag") == [other] as AbstractDecorator[]
+    table.get("missing.tag") == null
+    DecoratorTable.EMPTY.size() == 0
+    DecoratorTable.EMPTY.get("some.tag") == null
+  }
+
+  def "every tag is found among many"() {
+    setup:
+    def table = DecoratorTable.EMPTY
+    (0..<100).each { table = table.with(decorator("tag.$it")) }
+
+    expect:
+    (0..<100).every { table.get("tag.$it".toString())*.matchingTag == ["tag.$it".toString()] }
+    (100..<1000).every { table.get("tag.$it".toString()) == null }
+  }
+}
@@ -2,6 +2,7 @@ package datadog.opentracing
 
 
 import datadog.trace.api.Config
+import datadog.trace.common.flush.HeapUsagePolicy
 import datadog.trace.common.writer.ListWriter
 import datadog.trace.util.gc.GCUtils
 import datadog.trace.util.test.DDSpecification
@@ -12,7 +13,12 @@ import java.lang.ref.WeakReference
 import java.util.concurrent.TimeUnit
 import java.util.concurrent.atomic.AtomicInteger
 
+import static datadog.trace.api.Config.PARTIAL_FLUSH_HEAP_USAGE
+import static datadog.trace.api.Config.PARTIAL_FLUSH_MAX_AGE
+import static datadog.trace.api.Config.PARTIAL_FLUSH_MAX_BYTES
 import static datadog.trace.api.Config.PARTIAL_FLUSH_MIN_SPANS
+import static datadog.trace.api.Config.SPAN_COUNTING_ENABLED
+import static datadog.trace.api.Config.SPAN_COUNTING_LEAK_DETECTION_AGE
 
 class PendingTraceTest extends DDSpecification {
 
@@ -132,7 +138,7 @@ class PendingTraceTest extends DDSpecification {
     trace.asList() == [rootSpan]
     writer == []
     traceCount.get() == 1
-    !PendingTrace.SPAN_CLEANER.get().pendingTraces.contains(trace)
+    trace.timeout.cancelled
   }
 
   def "add unfinished span to trace fails"() {
@@ -282,4 +288,163 @@ class PendingTraceTest extends DDSpecification {
     writer == [[child2, child1], [rootSpan]]
     traceCount.get() == 2
   }
+
+  def "partial flush by size"() {
+    setup:
+    def properties = new Properties()
+    properties.setProperty(PARTIAL_FLUSH_MIN_SPANS, "0")
+    properties.setProperty(PARTIAL_FLUSH_MAX_BYTES, "1")
+    def tracer = new DDTracer(Config.get(properties), writer)
+    def trace = new PendingTrace(tracer, traceIdStr, [:])
+    def rootSpan = SpanFactory.newSpanOf(trace)
+    def child1 = tracer.buildSpan("child1").asChildOf(rootSpan).start()
+    def child2 = tracer.buildSpan("child2").asChildOf(rootSpan).start()
+
+    when:
+    child1.finish()
+
+    then:
+    writer == [[child1]]
+    trace.finishedBytes == 0
+    tracer.partialFlushCount == 1
+    tracer.partialFlushSpanCount == 1
+
+    when:
+    rootSpan.finish()
+
+    then:
+    // Kept back for the whole trace, so it doesn't count towards the next flush
+    trace.finishedBytes == 0
+    trace.asList() == [rootSpan]
+    writer == [[child1]]
+    tracer.partialFlushCount == 1
+
+    when:
+    child2.finish()
+
+    then:
+    writer == [[child1], [child2, rootSpan]]
+    tracer.partialFlushCount == 1
+  }
+
+  @Timeout(value = 60, unit = TimeUnit.SECONDS)
+  def "partial flush by age on a timer"() {
+    setup:
+    def properties = new Properties()
+    properties.setProperty(PARTIAL_FLUSH_MIN_SPANS, "0")
+    properties.setProperty(PARTIAL_FLUSH_MAX_AGE, "1")
+    def tracer = new DDTracer(Config.get(properties), writer)
+    def trace = new PendingTrace(tracer, traceIdStr, [:])
+    def rootSpan = SpanFactory.newSpanOf(trace)
+    def child = tracer.buildSpan("child").asChildOf(rootSpan).start()
+
+    when:
+    child.finish()
+
+    then:
+    trace.finishedAgeNanos > 0
+    writer == []
+
+    when:
+    while (writer.isEmpty()) {
+      trace.clean()
+      Thread.sleep(10)
+    }
+
+    then:
+    writer == [[child]]
+    trace.finishedAgeNanos == 0
+    tracer.partialFlushCount == 1
+
+    when:
+    rootSpan.finish()
+
+    then:
+    writer == [[child], [rootSpan]]
+  }
+
+  def "partial flush by heap usage when the span cleaner runs"() {
+    setup:
+    def properties = new Properties()
+    properties.setProperty(PARTIAL_FLUSH_MIN_SPANS, "0")
+    properties.setProperty(PARTIAL_FLUSH_HEAP_USAGE, "1000")
+    def tracer = new DDTracer(Config.get(properties), writer)
+    def policy = tracer.partialFlushPolicy
+    def trace = new PendingTrace(tracer, traceIdStr, [:])
+    def rootSpan = SpanFactory.newSpanOf(trace)
+    def child = tracer.buildSpan("child").asChildOf(rootSpan).start()
+
+    when:
+    child.finish()
+
+    then:
+    policy instanceof HeapUsagePolicy
+    policy.checkDelayMillis == 0
+    writer == []
+
+    when:
+    // The heap fills up while no span finishes
+    policy.nextSampleMillis = Long.MAX_VALUE
+    policy.exceeded = true
+    trace.clean()
+
+    then:
+    writer == [[child]]
+    tracer.partialFlushCount == 1
+
+    when:
+    rootSpan.finish()
+
+    then:
+    writer == [[child], [rootSpan]]
+    // Written, so no longer walked by the span cleaner
+    PendingTrace.SPAN_CLEANER.get().heapWatchedTraces.get(policy).isEmpty()
+  }
+
+  def "span counting tracks spans without weak references"() {
+    setup:
+    def properties = new Properties()
+    properties.setProperty(SPAN_COUNTING_ENABLED, "true")
+    def tracer = new DDTracer(Config.get(properties), writer)
+    def trace = new PendingTrace(tracer, traceIdStr, [:])
+    def rootSpan = SpanFactory.newSpanOf(trace)
+    def child = tracer.buildSpan("child").asChildOf(rootSpan).start()
+
+    expect:
+    trace.pendingReferenceCount.get() == 2
+    trace.weakReferences.size() == 0
+
+    when:
+    child.finish()
+    rootSpan.finish()
+
+    then:
+    trace.pendingReferenceCount.get() == 0
+    writer == [[rootSpan, child]]
+    trace.timeout.cancelled
+  }
+
+  @Timeout(value = 60, unit = TimeUnit.SECONDS)
+  def "span counting drops traces collected once past the leak detection age"() {
+    setup:
+    def properties = new Properties()
+    properties.setProperty(SPAN_COUNTING_ENABLED, "true")
+    properties.setProperty(SPAN_COUNTING_LEAK_DETECTION_AGE, "0")
+    def tracer = new DDTracer(Config.get(properties), writer)
+    def span = tracer.buildSpan("leaked").start()
+    def traceRef = new WeakReference<>(span.context().trace)
+
+    when:
+    span = null
+    while (traceCount.get() == 0) {
+      System.gc()
+      trace.clean()
+      Thread.sleep(10)
+    }
+
+    then:
+    traceRef.get() == null
+    writer == []
+    traceCount.get() == 1
+  }
 }
@@ -0,0 +1,96 @@
+package datadog.opentracing
+
+import datadog.trace.common.writer.ListWriter
+import datadog.trace.util.test.DDSpecification
+
+import java.util.concurrent.CountDownLatch
+
+class SpanBufferTest extends DDSpecification {
+
+  def tracer = new DDTracer(new ListWriter())
+  def trace = new PendingTrace(tracer, "1", [:])
+  def buffer = new SpanBuffer()
+
+  def newSpans(int count) {
+    (0..<count).collect { SpanFactory.newSpanOf(trace) }
+  }
+
+  def "spans are listed most recently finished first"() {
+    setup:
+    def spans = newSpans(20)
+    spans.each { buffer.add(it) }
+
+    expect:
+    buffer.size() == 20
+    buffer.snapshot() == spans.reverse()
+    buffer.drain() == spans.reverse()
+    buffer.empty
+    buffer.snapshot() == []
+  }
+
+  def "flush keeps the given span for the next flush"() {
+    setup:
+    def spans = newSpans(5)
+    spans[0..2].each { buffer.add(it) }
+
+    when:
+    def flushed = buffer.flush(spans[keep])
+
+    then:
+    flushed == (spans[0..2] - spans[keep]).reverse()
+    buffer.size() == 1
+    buffer.snapshot() == [spans[keep]]
+
+    when:
+    spans[3..4].each { buffer.add(it) }
+
+    then:
+    buffer.drain() == [spans[4], spans[3], spans[keep]]
+    buffer.empty
+
+    where:
+    keep << [0, 1, 2]
+  }
+
+  def "flushed spans are not listed again"() {
+    setup:
+    def spans = newSpans(30)
+
+    when:
+    spans[0..<10].each { buffer.add(it) }
+    def first = buffer.flush(null)
+    spans[10..<30].each { buffer.add(it) }
+
+    then:
+    first == spans[0..<10].reverse()
+    buffer.size() == 20
+    buffer.flush(null) == spans[10..<30].reverse()
+    buffer.flush(null) == []
+    first == spans[0..<10].reverse()
+  }
+
+  def "spans added concurrently with flushes are flushed once"() {
+    setup:
+    def threads = 4
+    def perThread = 500
+    def spans = newSpans(threads * perThread)
+    def done = new CountDownLatch(threads)
+    def flushed = []
+
+    when:
+    threads.times { thread ->
+      Thread.start {
+        spans[(thread * perThread)..<((thread + 1) * perThread)].each { buffer.add(it) }
+        done.countDown()
+      }
+    }
+    while (done.count > 0) {
+      flushed.addAll(buffer.flush(null))
+    }
+    flushed.addAll(buffer.drain())
+
+    then:
+    flushed.size() == spans.size()
+    flushed.toSet() == spans.toSet()
+  }
+}
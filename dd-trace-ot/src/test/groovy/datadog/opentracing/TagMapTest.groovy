@@ -0,0 +1,78 @@
+package datadog.opentracing
+
+import datadog.trace.util.test.DDSpecification
+
+import java.util.concurrent.CountDownLatch
+
+class TagMapTest extends DDSpecification {
+
+  def tags = new TagMap()
+
+  def "behaves like a map"() {
+    when:
+    20.times { tags.put("key-$it".toString(), it) }
+    tags.put("key-3", "three")
+    tags.remove("key-4")
+    tags.put("key-5", null)
+
+    then:
+    tags.size() == 18
+    tags["key-3"] == "three"
+    !tags.containsKey("key-4")
+    !tags.containsKey("key-5")
+    tags["missing"] == null
+    tags == (0..19).findAll { it != 4 && it != 5 }.collectEntries {
+      ["key-$it".toString(), it == 3 ? "three" : it]
+    }
+  }
+
+  def "the view sees later writes without copying the table"() {
+    setup:
+    tags.put("a", 1)
+    tags.put("b", 2)
+
+    when:
+    def view = tags.view()
+    def table = tags.table
+    tags.put("a", 10)
+    tags.put("c", 3)
+    tags.remove("b")
+
+    then:
+    view.is(tags.view())
+    tags.table.is(table)
+    view == [a: 10, c: 3]
+    tags == [a: 10, c: 3]
+  }
+
+  def "the view is read-only"() {
+    when:
+    tags.view().put("a", 1)
+
+    then:
+    thrown(UnsupportedOperationException)
+  }
+
+  def "concurrent writers don't lose tags"() {
+    setup:
+    def threads = 4
+    def start = new CountDownLatch(1)
+    def workers = (0..<threads).collect { thread ->
+      Thread.start {
+        start.await()
+        100.times {
+          tags.put("tag-$thread-$it".toString(), it)
+          tags.view().size()
+        }
+      }
+    }
+
+    when:
+    start.countDown()
+    workers*.join()
+
+    then:
+    tags.size() == threads * 100
+    (0..<threads).every { thread -> (0..<100).every { tags["tag-$thread-$it".toString()] == it } }
+  }
+}
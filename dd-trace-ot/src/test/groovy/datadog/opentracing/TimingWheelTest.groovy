@@ -0,0 +1,90 @@
+package datadog.opentracing
+
+import datadog.trace.util.test.DDSpecification
+
+class TimingWheelTest extends DDSpecification {
+
+  def expired = []
+  def handler = new TimingWheel.Handler<String>() {
+    @Override
+    void onExpired(String item) {
+      expired.add(item)
+    }
+  }
+  def wheel = new TimingWheel<String>(1000, 0)
+
+  def "timeouts expire once their deadline is reached"() {
+    setup:
+    wheel.schedule("late", 70_000)
+    wheel.schedule("early", 2_000)
+    wheel.schedule("far", 5_000_000)
+
+    when:
+    wheel.advance(1_000, handler)
+
+    then:
+    expired == []
+    wheel.size() == 3
+
+    when:
+    wheel.advance(69_000, handler)
+
+    then:
+    expired == ["early"]
+
+    when:
+    wheel.advance(70_000, handler)
+
+    then:
+    expired == ["early", "late"]
+
+    when:
+    wheel.advance(4_999_000, handler)
+
+    then:
+    expired == ["early", "late"]
+
+    when:
+    wheel.advance(5_000_000, handler)
+
+    then:
+    expired == ["early", "late", "far"]
+    wheel.size() == 0
+  }
+
+  def "cancelled timeouts don't expire"() {
+    setup:
+    def cancelledEarly = wheel.schedule("cancelled before being added", 3_000)
+    def cancelledLate = wheel.schedule("cancelled once added", 3_000)
+    wheel.schedule("kept", 3_000)
+    cancelledEarly.cancel()
+
+    when:
+    wheel.advance(1_000, handler)
+    cancelledLate.cancel()
+    wheel.advance(10_000, handler)
+
+    then:
+    expired == ["kept"]
+    cancelledLate.cancelled
+    wheel.size() == 0
+  }
+
+  def "overdue timeouts expire on the next tick"() {
+    setup:
+    wheel.advance(10_000, handler)
+    wheel.schedule("overdue", 5_000)
+
+    when:
+    wheel.advance(10_000, handler)
+
+    then:
+    expired == []
+
+    when:
+    wheel.advance(11_000, handler)
+
+    then:
+    expired == ["overdue"]
+  }
+}
@@ -136,4 +136,39 @@ class URLAsResourceNameTest extends DDSpecification {
     "/not-found"                | "fakeResource"      | [(Tags.HTTP_STATUS.key): 404]
     "/with-method"              | "/with-method"      | [(Tags.HTTP_METHOD.key): "Post"]
   }
+
+  def "normalizes like the path regex"() {
+    expect:
+    decorator.normalizePath(input) == URLAsResourceName.PATH_MIXED_ALPHANUMERICS.matcher(input).replaceAll("?")
+
+    where:
+    input << [
+      "/v1",
+      "/v1/",
+      "/v12/x",
+      "/v123/x",
+      "/V1?2/x",
+      "/a1?b2/c3",
+      "/a?/1",
+      "//1//",
+      "no/leading/1",
+      "/api/v2/users/42/orders/9f8e7d6c?expand=true",
+    ]
+  }
+
+  def "caches normalized paths"() {
+    setup:
+    def context = tracer.buildSpan("test").start().context()
+
+    when:
+    decorator.shouldSetTag(context, Tags.HTTP_URL.key, "http://localhost/user/1")
+    decorator.shouldSetTag(context, Tags.HTTP_URL.key, "/user/1?query")
+    decorator.shouldSetTag(context, Tags.HTTP_URL.key, "/user/2")
+
+    then:
+    context.resourceName == "/user/?"
+    decorator.cache.size() == 2
+    decorator.cache.hitCount == 1
+    decorator.cache.missCount == 2
+  }
 }
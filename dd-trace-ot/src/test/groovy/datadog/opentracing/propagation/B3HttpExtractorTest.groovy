@@ -9,11 +9,12 @@ import io.opentracing.propagation.TextMapExtractAdapter
 import static datadog.opentracing.propagation.B3HttpCodec.SAMPLING_PRIORITY_KEY
 import static datadog.opentracing.propagation.B3HttpCodec.SPAN_ID_KEY
 import static datadog.opentracing.propagation.B3HttpCodec.TRACE_ID_KEY
-import static datadog.opentracing.propagation.B3HttpCodec.UINT128_MAX
-import static datadog.opentracing.propagation.HttpCodec.UINT64_MAX
 
 class B3HttpExtractorTest extends DDSpecification {
 
+  static final UINT64_MAX = new BigInteger("2").pow(64).subtract(BigInteger.ONE)
+  static final UINT128_MAX = new BigInteger("2").pow(128).subtract(BigInteger.ONE)
+
   HttpCodec.Extractor extractor = new B3HttpCodec.Extractor(["SOME_HEADER": "some-tag"])
 
   def "extract http headers"() {
@@ -46,8 +47,8 @@ class B3HttpExtractorTest extends DDSpecification {
     3G                   | 4G                   | 0                | PrioritySampling.SAMPLER_DROP
     UINT64_MAX           | UINT64_MAX.minus(1)  | 0                | PrioritySampling.SAMPLER_DROP
     UINT64_MAX.minus(1)  | UINT64_MAX           | 1                | PrioritySampling.SAMPLER_KEEP
-    UINT128_MAX          | UINT128_MAX.minus(1) | 0                | PrioritySampling.SAMPLER_DROP
-    UINT128_MAX.minus(1) | UINT128_MAX          | 1                | PrioritySampling.SAMPLER_KEEP
+    UINT128_MAX          | UINT64_MAX.minus(1)  | 0                | PrioritySampling.SAMPLER_DROP
+    UINT128_MAX.minus(1) | UINT64_MAX           | 1                | PrioritySampling.SAMPLER_KEEP
   }
 
   def "extract 128 bit id supported"() {
@@ -76,16 +77,18 @@ class B3HttpExtractorTest extends DDSpecification {
     "00001"                             | "00001"                  | "1"                   | "1"
     "463ac35c9f6413ad"                  | "463ac35c9f6413ad"       | "5060571933882717101" | "5060571933882717101"
     "463ac35c9f6413ad48485a3953bb6124"  | "1" | "93351075330931896558786731617803788580"   | "1"
-    "463ac35c9f6413ad48485a3953bb6124"  | "463ac35c9f6413ad48485a3953bb6124" | "93351075330931896558786731617803788580" | "93351075330931896558786731617803788580"
+    "463ac35c9f6413ad48485a3953bb6124"  | "463ac35c9f6413ad48485a3953bb6124" | null | "0"
     "f".multiply(16)                    | "1"                      | "$UINT64_MAX"         | "1"
     "a".multiply(16) + "f".multiply(16) | "1" | "226854911280625642315065319645748658175"  | "1"
     "1" + "f".multiply(32)              | "1"                      | null                  | "1"
     "0" + "f".multiply(32)              | "1"                      | null                  | "1"
     "f".multiply(32)                    | "1"                      | "$UINT128_MAX"        | "1"
-    "1"                                 | "f".multiply(32)         | "1"                   | "$UINT128_MAX"
+    "1"                                 | "f".multiply(32)         | null                  | "0"
     "1"                                 | "f".multiply(16)         | "1"                   | "$UINT64_MAX"
     "1"                                 | "1" + "f".multiply(32)   | null                  | "0"
     "1"                                 | "000" + "f".multiply(16) | "1"                   | "$UINT64_MAX"
+    "ABCDEF"                            | "1"                      | "11259375"            | "1"
+    "1"                                 | "xyz"                    | null                  | "0"
   }
 
   def "extract header tags with no propagation"() {
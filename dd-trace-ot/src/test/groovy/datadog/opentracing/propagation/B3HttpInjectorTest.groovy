@@ -15,11 +15,12 @@ import static datadog.opentracing.propagation.B3HttpCodec.OT_BAGGAGE_PREFIX
 import static datadog.opentracing.propagation.B3HttpCodec.TRACE_ID_KEY
 import static datadog.opentracing.propagation.B3HttpCodec.SPAN_ID_KEY
 import static datadog.opentracing.propagation.B3HttpCodec.FLAGS_KEY
-import static datadog.opentracing.propagation.B3HttpCodec.UINT128_MAX
-import static datadog.opentracing.propagation.HttpCodec.UINT64_MAX
 
 class B3HttpInjectorTest extends DDSpecification {
 
+  static final UINT64_MAX = new BigInteger("2").pow(64).subtract(BigInteger.ONE)
+  static final UINT128_MAX = new BigInteger("2").pow(128).subtract(BigInteger.ONE)
+
   HttpCodec.Injector injector = new B3HttpCodec.Injector()
 
   def "inject http headers #samplingPriority : #expectedSamplingPriority"() {
@@ -75,8 +76,8 @@ class B3HttpInjectorTest extends DDSpecification {
     "6"                             | "7"                             | PrioritySampling.USER_DROP    | 0
     UINT64_MAX.toString()           | UINT64_MAX.minus(1).toString()  | PrioritySampling.UNSET        | null
     UINT64_MAX.minus(1).toString()  | UINT64_MAX.toString()           | PrioritySampling.SAMPLER_KEEP | 1
-    UINT128_MAX.toString()          | UINT128_MAX.minus(1).toString() | PrioritySampling.UNSET        | null
-    UINT128_MAX.minus(1).toString() | UINT128_MAX.toString()          | PrioritySampling.SAMPLER_KEEP | 1
+    UINT128_MAX.toString()          | UINT64_MAX.minus(1).toString()  | PrioritySampling.UNSET        | null
+    UINT128_MAX.minus(1).toString() | UINT64_MAX.toString()           | PrioritySampling.SAMPLER_KEEP | 1
   }
 
   def "unparseable ids"() {
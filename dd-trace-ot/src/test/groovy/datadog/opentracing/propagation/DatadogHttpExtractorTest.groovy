@@ -10,10 +10,11 @@ import static datadog.opentracing.propagation.DatadogHttpCodec.OT_BAGGAGE_PREFIX
 import static datadog.opentracing.propagation.DatadogHttpCodec.SAMPLING_PRIORITY_KEY
 import static datadog.opentracing.propagation.DatadogHttpCodec.SPAN_ID_KEY
 import static datadog.opentracing.propagation.DatadogHttpCodec.TRACE_ID_KEY
-import static datadog.opentracing.propagation.HttpCodec.UINT64_MAX
 
 class DatadogHttpExtractorTest extends DDSpecification {
 
+  static final UINT64_MAX = new BigInteger("2").pow(64).subtract(BigInteger.ONE)
+
   HttpCodec.Extractor extractor = new DatadogHttpCodec.Extractor(["SOME_HEADER": "some-tag"])
 
   def "extract http headers"() {
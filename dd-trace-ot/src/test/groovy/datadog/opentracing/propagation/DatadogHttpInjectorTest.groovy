@@ -13,10 +13,11 @@ import static datadog.opentracing.propagation.DatadogHttpCodec.OT_BAGGAGE_PREFIX
 import static datadog.opentracing.propagation.DatadogHttpCodec.SAMPLING_PRIORITY_KEY
 import static datadog.opentracing.propagation.DatadogHttpCodec.SPAN_ID_KEY
 import static datadog.opentracing.propagation.DatadogHttpCodec.TRACE_ID_KEY
-import static datadog.opentracing.propagation.HttpCodec.UINT64_MAX
 
 class DatadogHttpInjectorTest extends DDSpecification {
 
+  static final UINT64_MAX = new BigInteger("2").pow(64).subtract(BigInteger.ONE)
+
   HttpCodec.Injector injector = new DatadogHttpCodec.Injector()
 
   def "inject http headers"() {
@@ -8,10 +8,11 @@ import io.opentracing.propagation.TextMapExtractAdapter
 import static datadog.opentracing.propagation.HaystackHttpCodec.OT_BAGGAGE_PREFIX
 import static datadog.opentracing.propagation.HaystackHttpCodec.SPAN_ID_KEY
 import static datadog.opentracing.propagation.HaystackHttpCodec.TRACE_ID_KEY
-import static datadog.opentracing.propagation.HttpCodec.UINT64_MAX
 
 class HaystackHttpExtractorTest extends DDSpecification {
 
+  static final UINT64_MAX = new BigInteger("2").pow(64).subtract(BigInteger.ONE)
+
   HttpCodec.Extractor extractor = new HaystackHttpCodec.Extractor(["SOME_HEADER": "some-tag"])
 
   def "extract http headers"() {
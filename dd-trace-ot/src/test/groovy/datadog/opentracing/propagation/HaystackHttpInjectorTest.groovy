@@ -11,10 +11,11 @@ import io.opentracing.propagation.TextMapInjectAdapter
 import static datadog.opentracing.propagation.HaystackHttpCodec.OT_BAGGAGE_PREFIX
 import static datadog.opentracing.propagation.HaystackHttpCodec.SPAN_ID_KEY
 import static datadog.opentracing.propagation.HaystackHttpCodec.TRACE_ID_KEY
-import static datadog.opentracing.propagation.HttpCodec.UINT64_MAX
 
 class HaystackHttpInjectorTest extends DDSpecification {
 
+  static final UINT64_MAX = new BigInteger("2").pow(64).subtract(BigInteger.ONE)
+
   HttpCodec.Injector injector = new HaystackHttpCodec.Injector()
 
   def "inject http headers"() {
@@ -0,0 +1,99 @@
+package datadog.opentracing.propagation
+
+import datadog.trace.api.Config
+import datadog.trace.util.test.DDSpecification
+
+import static datadog.trace.api.Config.PropagationStyle.B3
+import static datadog.trace.api.Config.PropagationStyle.DATADOG
+import static datadog.trace.api.Config.PropagationStyle.HAYSTACK
+
+class HeaderNamesTest extends DDSpecification {
+
+  def "names and prefixes match ignoring case"() {
+    setup:
+    def headers = HeaderNames.builder()
+      .name("x-b3-traceid")
+      .name("Trace-ID")
+      .prefix("ot-baggage-")
+      .build()
+
+    expect:
+    headers.matches(header) == matches
+
+    where:
+    header           | matches
+    "x-b3-traceid"   | true
+    "X-B3-TraceId"   | true
+    "trace-id"       | true
+    "TRACE-ID"       | true
+    "ot-baggage-foo" | true
+    "OT-Baggage-Foo" | true
+    "ot-baggage-"    | true
+    "x-b3-traceid2"  | false
+    "x-b3-trace"     | false
+    "ot-baggage"     | false
+    "host"           | false
+    ""               | false
+  }
+
+  def "names keep the case they were first given"() {
+    setup:
+    def headers = HeaderNames.builder()
+      .name("Trace-ID")
+      .name("trace-id")
+      .name("Span-ID")
+      .build()
+
+    expect:
+    headers.names() == ["Trace-ID", "Span-ID"]
+    !headers.hasPrefixes()
+  }
+
+  def "names with the same hash are told apart"() {
+    setup:
+    // "Aa" and "BB" have the same String hash code
+    def headers = HeaderNames.builder().name("Aa").name("BB").build()
+
+    expect:
+    headers.matches("aa")
+    headers.matches("bb")
+    !headers.matches("ab")
+  }
+
+  def "many names"() {
+    setup:
+    def builder = HeaderNames.builder()
+    (0..<200).each { builder.name("header-$it") }
+    def headers = builder.build()
+
+    expect:
+    (0..<200).every { headers.matches("Header-$it") }
+    !headers.matches("header-200")
+  }
+
+  def "empty matches nothing"() {
+    expect:
+    !HeaderNames.empty().matches("x-b3-traceid")
+    !HeaderNames.empty().matches("")
+  }
+
+  def "extracted headers of the propagation styles"() {
+    setup:
+    Config config = Mock(Config) {
+      getPropagationStylesToExtract() >> styles
+    }
+    def headers = HttpCodec.extractedHeaders(config, [" SOME_HEADER ": "some-tag"])
+
+    expect:
+    headers.names() == names
+    headers.hasPrefixes() == hasPrefixes
+    headers.matches("Some_Header")
+
+    where:
+    styles         | names                                                                                                           | hasPrefixes
+    [B3]           | ["x-b3-traceid", "x-b3-spanid", "x-b3-sampled", "some_header"]                                                  | false
+    [DATADOG]      | ["x-datadog-trace-id", "x-datadog-parent-id", "x-datadog-sampling-priority", "x-datadog-origin", "some_header"] | true
+    [HAYSTACK]     | ["Trace-ID", "Span-ID", "some_header"]                                                                          | true
+    [B3, HAYSTACK] | ["x-b3-traceid", "x-b3-spanid", "x-b3-sampled", "Trace-ID", "Span-ID", "some_header"]                           | true
+  }
+}
@@ -7,12 +7,13 @@ import io.opentracing.SpanContext
 import io.opentracing.propagation.TextMapExtractAdapter
 import spock.lang.Shared
 
-import static datadog.opentracing.propagation.HttpCodec.UINT64_MAX
 import static datadog.trace.api.Config.PropagationStyle.B3
 import static datadog.trace.api.Config.PropagationStyle.DATADOG
 
 class HttpExtractorTest extends DDSpecification {
 
+  static final UINT64_MAX = new BigInteger("2").pow(64).subtract(BigInteger.ONE)
+
   @Shared
   String outOfRangeTraceId = UINT64_MAX.add(BigInteger.ONE)
 
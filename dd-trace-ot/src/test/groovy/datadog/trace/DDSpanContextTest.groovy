@@ -1,12 +1,102 @@
 // Modified by SignalFx
 package datadog.trace
 
+import datadog.opentracing.DDSpanContext
+import datadog.opentracing.DDTracer
+import datadog.opentracing.PendingTrace
 import datadog.opentracing.SpanFactory
+import datadog.opentracing.propagation.ExtractedContext
 import datadog.trace.api.DDTags
+import datadog.trace.api.sampling.PrioritySampling
+import datadog.trace.common.writer.ListWriter
 import datadog.trace.util.test.DDSpecification
 
 class DDSpanContextTest extends DDSpecification {
 
+  def "ids are kept as primitives and encoded on demand: #traceId"() {
+    setup:
+    def writer = new ListWriter()
+    def tracer = new DDTracer(writer)
+    def context = new DDSpanContext(
+      traceId,
+      spanId,
+      "0",
+      "fakeService",
+      "fakeOperation",
+      "fakeResource",
+      PrioritySampling.UNSET,
+      null,
+      Collections.emptyMap(),
+      false,
+      "fakeType",
+      Collections.emptyMap(),
+      new PendingTrace(tracer, traceId, [:]),
+      tracer)
+
+    expect:
+    context.traceId == traceId
+    context.spanId == spanId
+    context.parentId == "0"
+    context.traceIdHigh == new BigInteger(traceId).shiftRight(64).longValue()
+    context.traceIdLow == new BigInteger(traceId).longValue()
+    context.spanIdAsLong == new BigInteger(spanId).longValue()
+    context.parentIdAsLong == 0
+    context.traceIdHex == traceIdHex
+    context.spanIdHex == spanIdHex
+    context.parentIdHex == "0000000000000000"
+    context.traceIdHex.is(context.traceIdHex)
+
+    where:
+    traceId                                   | spanId                 | traceIdHex                         | spanIdHex
+    "1"                                       | "2"                    | "0000000000000001"                 | "0000000000000002"
+    "9223372036854775807"                     | "9223372036854775808"  | "7fffffffffffffff"                 | "8000000000000000"
+    "18446744073709551615"                    | "18446744073709551615" | "ffffffffffffffff"                 | "ffffffffffffffff"
+    "18446744073709551616"                    | "1"                    | "00000000000000010000000000000000" | "0000000000000001"
+    "340282366920938463463374607431768211455" | "1"                    | "ffffffffffffffffffffffffffffffff" | "0000000000000001"
+  }
+
+  def "span ids wider than 64 bits are rejected: #spanId/#parentId"() {
+    setup:
+    def tracer = new DDTracer(new ListWriter())
+
+    when:
+    new DDSpanContext(
+      "1",
+      spanId,
+      parentId,
+      "fakeService",
+      "fakeOperation",
+      "fakeResource",
+      PrioritySampling.UNSET,
+      null,
+      Collections.emptyMap(),
+      false,
+      "fakeType",
+      Collections.emptyMap(),
+      new PendingTrace(tracer, "1", [:]),
+      tracer)
+
+    then:
+    thrown(NumberFormatException)
+
+    where:
+    spanId                                    | parentId
+    "18446744073709551616"                    | "0"
+    "1"                                       | "18446744073709551616"
+    "340282366920938463463374607431768211455" | "0"
+  }
+
+  def "extracted span ids wider than 64 bits are rejected"() {
+    when:
+    new ExtractedContext("1", spanId, PrioritySampling.UNSET, null, [:], [:])
+
+    then:
+    thrown(NumberFormatException)
+
+    where:
+    spanId << ["18446744073709551616", "340282366920938463463374607431768211455"]
+  }
+
   def "null values for tags delete existing tags"() {
     setup:
     def context = SpanFactory.newSpanOf(0).context
@@ -0,0 +1,113 @@
+package datadog.trace.api.flush
+
+import datadog.opentracing.PendingTrace
+import datadog.trace.api.Config
+import datadog.trace.common.flush.AgePolicy
+import datadog.trace.common.flush.AnyPolicy
+import datadog.trace.common.flush.HeapUsagePolicy
+import datadog.trace.common.flush.PartialFlushPolicy
+import datadog.trace.common.flush.SizePolicy
+import datadog.trace.common.flush.SpanCountPolicy
+import datadog.trace.util.test.DDSpecification
+
+import java.util.concurrent.TimeUnit
+
+import static datadog.trace.api.Config.PARTIAL_FLUSH_HEAP_USAGE
+import static datadog.trace.api.Config.PARTIAL_FLUSH_MAX_AGE
+import static datadog.trace.api.Config.PARTIAL_FLUSH_MAX_BYTES
+import static datadog.trace.api.Config.PARTIAL_FLUSH_MIN_SPANS
+
+class PartialFlushPolicyTest extends DDSpecification {
+
+  PendingTrace trace = Mock()
+
+  def "builder combines the configured policies"() {
+    setup:
+    def properties = new Properties()
+    properties.setProperty(PARTIAL_FLUSH_MIN_SPANS, minSpans)
+    properties.setProperty(PARTIAL_FLUSH_MAX_BYTES, maxBytes)
+    properties.setProperty(PARTIAL_FLUSH_MAX_AGE, maxAge)
+    properties.setProperty(PARTIAL_FLUSH_HEAP_USAGE, heapUsage)
+
+    when:
+    def policy = PartialFlushPolicy.Builder.forConfig(Config.get(properties))
+
+    then:
+    policy.class == type
+    policy.checkDelayMillis == checkDelay
+    (policy.heapUsagePolicy != null) == byHeapUsage
+
+    where:
+    minSpans | maxBytes | maxAge | heapUsage | type                           | checkDelay | byHeapUsage
+    "0"      | "0"      | "0"    | "0"       | PartialFlushPolicy.NEVER.class | 0          | false
+    "10"     | "0"      | "0"    | "0"       | SpanCountPolicy                | 0          | false
+    "0"      | "1024"   | "0"    | "0"       | SizePolicy                     | 0          | false
+    "0"      | "0"      | "30"   | "0"       | AgePolicy                      | 30_000     | false
+    "0"      | "0"      | "0"    | "90"      | HeapUsagePolicy                | 0          | true
+    "10"     | "1024"   | "30"   | "90"      | AnyPolicy                      | 30_000     | true
+    "10"     | "1024"   | "30"   | "0"       | AnyPolicy                      | 30_000     | false
+  }
+
+  def "span count policy flushes past the minimum span count"() {
+    setup:
+    trace.size() >> size
+
+    expect:
+    new SpanCountPolicy(10).shouldFlush(trace) == flush
+
+    where:
+    size | flush
+    0    | false
+    10   | false
+    11   | true
+  }
+
+  def "size policy flushes past the maximum size"() {
+    setup:
+    trace.getFinishedBytes() >> bytes
+
+    expect:
+    new SizePolicy(1024).shouldFlush(trace) == flush
+
+    where:
+    bytes | flush
+    0     | false
+    1024  | false
+    1025  | true
+  }
+
+  def "age policy flushes once the oldest finished span is old enough"() {
+    setup:
+    trace.getFinishedAgeNanos() >> TimeUnit.MILLISECONDS.toNanos(ageMillis)
+
+    expect:
+    new AgePolicy(1000).shouldFlush(trace) == flush
+
+    where:
+    ageMillis | flush
+    0         | false
+    999       | false
+    1000      | true
+  }
+
+  def "heap usage policy flushes when the heap is fuller than the limit"() {
+    expect:
+    new HeapUsagePolicy(percent).shouldFlush(trace) == flush
+
+    where:
+    percent | flush
+    0       | true
+    1000    | false
+  }
+
+  def "any policy flushes when one of its policies does"() {
+    setup:
+    trace.size() >> 20
+    trace.getFinishedBytes() >> 100
+
+    expect:
+    new AnyPolicy([new SizePolicy(1024), new SpanCountPolicy(10)]).shouldFlush(trace)
+    !new AnyPolicy([new SizePolicy(1024), new SpanCountPolicy(100)]).shouldFlush(trace)
+    new AnyPolicy([new AgePolicy(5000), new SizePolicy(1024), new AgePolicy(2000)]).checkDelayMillis == 2000
+  }
+}
@@ -2,9 +2,14 @@ package datadog.trace.api.sampling
 
 import com.fasterxml.jackson.databind.ObjectMapper
 import datadog.opentracing.DDSpan
+import datadog.opentracing.DDTracer
 import datadog.opentracing.SpanFactory
+import datadog.opentracing.propagation.ExtractedContext
+import datadog.trace.api.DDTags
 import datadog.trace.common.sampling.RateByServiceSampler
+import datadog.trace.common.writer.ListWriter
 import datadog.trace.util.test.DDSpecification
+import io.opentracing.tag.Tags
 
 import static datadog.trace.common.sampling.RateByServiceSampler.DEFAULT_KEY
 
@@ -68,4 +73,156 @@ class RateByServiceSamplerTest extends DDSpecification {
     // RateByServiceSamler must not set the sample rate
     span.getMetrics().get("_sample_rate") == null
   }
+
+  def "head sampling drops traces before recording them"() {
+    setup:
+    def sampler = new RateByServiceSampler(true)
+    String response = '{"rate_by_service": {"service:,env:":0.0}}'
+    sampler.onResponse("traces", new ObjectMapper().readTree(response))
+    def writer = new ListWriter()
+    def tracer = new DDTracer("spock", writer, sampler)
+
+    when:
+    DDSpan root = tracer.buildSpan("root").withTag("some", "tag").start()
+    root.setBaggageItem("baggage", "item")
+    DDSpan child = tracer.buildSpan("child").asChildOf(root).start()
+    child.setTag("other", "tag")
+    child.setOperationName("renamed")
+    child.finish()
+    root.finish()
+
+    then:
+    !root.context().recording
+    !child.context().recording
+    child.traceId == root.traceId
+    child.parentId == root.spanId
+    child.spanId != root.spanId
+    root.operationName == "root"
+    root.samplingPriority == PrioritySampling.SAMPLER_DROP
+    child.samplingPriority == PrioritySampling.SAMPLER_DROP
+    root.tags.isEmpty()
+    child.tags.isEmpty()
+    child.getBaggageItem("baggage") == "item"
+    root.localRootSpan.is(root)
+    sampler.getTraceCount("spock", "") == 1
+    writer.isEmpty()
+
+    cleanup:
+    tracer.close()
+  }
+
+  def "head sampling doesn't keep a trace it dropped"() {
+    setup:
+    def sampler = new RateByServiceSampler(true)
+    String response = '{"rate_by_service": {"service:,env:":0.0}}'
+    sampler.onResponse("traces", new ObjectMapper().readTree(response))
+    def writer = new ListWriter()
+    def tracer = new DDTracer("spock", writer, sampler)
+
+    when:
+    DDSpan root = tracer.buildSpan("root").start()
+    root.setTag(DDTags.MANUAL_KEEP, true)
+    root.setSamplingPriority(PrioritySampling.USER_KEEP)
+    DDSpan child = tracer.buildSpan("child").asChildOf(root).start()
+    child.setSamplingPriority(PrioritySampling.USER_KEEP)
+    child.finish()
+    root.finish()
+
+    then:
+    // The spans before the change are lost, so the trace isn't propagated as kept either
+    root.samplingPriority == PrioritySampling.SAMPLER_DROP
+    child.samplingPriority == PrioritySampling.SAMPLER_DROP
+    writer.isEmpty()
+
+    cleanup:
+    tracer.close()
+  }
+
+  def "head sampling records the traces kept"() {
+    setup:
+    def sampler = new RateByServiceSampler(true)
+    def writer = new ListWriter()
+    def tracer = new DDTracer("spock", writer, sampler)
+
+    when:
+    DDSpan root = tracer.buildSpan("root").start()
+    DDSpan child = tracer.buildSpan("child").asChildOf(root).start()
+    child.finish()
+    root.finish()
+
+    then:
+    root.context().recording
+    child.context().recording
+    root.samplingPriority == PrioritySampling.SAMPLER_KEEP
+    sampler.getTraceCount("spock", "") == 1
+    writer.size() == 1
+    writer.firstTrace().toSet() == [root, child].toSet()
+
+    cleanup:
+    tracer.close()
+  }
+
+  def "head sampling goes by the service of the span once decorated and mapped"() {
+    setup:
+    def sampler = new RateByServiceSampler(true)
+    String response = '{"rate_by_service": {"service:,env:":1.0, "service:new-service,env:":0.0}}'
+    sampler.onResponse("traces", new ObjectMapper().readTree(response))
+    def tracer = new DDTracer(
+      "spock",
+      new ListWriter(),
+      sampler,
+      "some-runtime-id",
+      [:],
+      [:],
+      ["some-service": "new-service"],
+      [:]
+    )
+
+    when:
+    DDSpan span = tracer.buildSpan("root")
+      .withServiceName(serviceName)
+      .withTag(tag, tagValue)
+      .start()
+
+    then:
+    span.context().recording == recording
+    sampler.getTraceCount("new-service", "") == (recording ? 0 : 1)
+
+    cleanup:
+    tracer.close()
+
+    where:
+    serviceName     | tag                   | tagValue        | recording
+    "some-service"  | DDTags.SERVICE_NAME   | "other-service" | false
+    "other-service" | DDTags.SERVICE_NAME   | "some-service"  | true
+    "other-service" | Tags.PEER_SERVICE.key | "some-service"  | false
+    "some-service"  | Tags.PEER_SERVICE.key | "other-service" | true
+  }
+
+  def "head sampling follows the propagated decision"() {
+    setup:
+    def sampler = new RateByServiceSampler(true)
+    def tracer = new DDTracer("spock", new ListWriter(), sampler)
+
+    when:
+    DDSpan span = tracer.buildSpan("server")
+      .asChildOf(new ExtractedContext("123", "456", priority, null, [:], [:]))
+      .start()
+
+    then:
+    span.context().recording == recording
+    span.samplingPriority == priority
+    span.traceId == "123"
+    sampler.getTraceCount("spock", "") == 0
+
+    cleanup:
+    tracer.close()
+
+    where:
+    priority                      | recording
+    PrioritySampling.USER_DROP    | false
+    PrioritySampling.SAMPLER_DROP | false
+    PrioritySampling.SAMPLER_KEEP | true
+    PrioritySampling.USER_KEEP    | true
+  }
 }
@@ -0,0 +1,46 @@
+package datadog.trace.api.writer
+
+import com.lmax.disruptor.Sequence
+import datadog.trace.common.writer.AdaptiveWaitStrategy
+import datadog.trace.util.test.DDSpecification
+
+import java.util.concurrent.TimeUnit
+
+class AdaptiveWaitStrategyTest extends DDSpecification {
+
+  def "switches between parking and spinning with the rate of publishes"() {
+    setup:
+    def strategy = new AdaptiveWaitStrategy(10, TimeUnit.MILLISECONDS, 100)
+    def cursor = new Sequence()
+
+    expect:
+    !strategy.spinning
+
+    when: "publishes above the threshold within a window"
+    cursor.set(999)
+    Thread.sleep(20)
+
+    then:
+    strategy.updateMode(cursor)
+    strategy.spinning
+
+    when: "a window without publishes"
+    Thread.sleep(20)
+
+    then:
+    !strategy.updateMode(cursor)
+    !strategy.spinning
+  }
+
+  def "mode is kept within a window"() {
+    setup:
+    def strategy = new AdaptiveWaitStrategy(1, TimeUnit.MINUTES, 1)
+    def cursor = new Sequence()
+
+    when:
+    cursor.set(1000)
+
+    then:
+    !strategy.updateMode(cursor)
+  }
+}
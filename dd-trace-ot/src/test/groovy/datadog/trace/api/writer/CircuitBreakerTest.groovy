@@ -0,0 +1,74 @@
+package datadog.trace.api.writer
+
+import datadog.trace.common.writer.CircuitBreaker
+import datadog.trace.util.test.DDSpecification
+
+class CircuitBreakerTest extends DDSpecification {
+
+  def "disabled breaker never opens"() {
+    setup:
+    def breaker = new CircuitBreaker(0, 1000, 60000)
+
+    when:
+    100.times { breaker.onFailure() }
+
+    then:
+    !breaker.open
+    breaker.allowRequest()
+  }
+
+  def "opens after consecutive failures"() {
+    setup:
+    def breaker = new CircuitBreaker(3, 60000, 60000)
+
+    when:
+    2.times { breaker.onFailure() }
+    breaker.onSuccess()
+    2.times { breaker.onFailure() }
+
+    then:
+    !breaker.open
+    breaker.allowRequest()
+
+    when:
+    breaker.onFailure()
+
+    then:
+    breaker.open
+    !breaker.allowRequest()
+  }
+
+  def "lets a single probe through after the cooldown"() {
+    setup:
+    def breaker = new CircuitBreaker(1, 0, 0)
+
+    when:
+    breaker.onFailure()
+
+    then:
+    !breaker.open
+    breaker.allowRequest()
+    !breaker.allowRequest()
+
+    when:
+    breaker.onSuccess()
+
+    then:
+    breaker.allowRequest()
+    breaker.allowRequest()
+  }
+
+  def "a failed probe opens the breaker again"() {
+    setup:
+    def breaker = new CircuitBreaker(1, 0, 0)
+    breaker.onFailure()
+
+    when:
+    breaker.allowRequest()
+    breaker.onFailure()
+
+    then:
+    breaker.allowRequest()
+    !breaker.allowRequest()
+  }
+}
@@ -13,12 +13,12 @@ import datadog.trace.common.writer.Api
 import datadog.trace.util.test.DDSpecification
 import spock.lang.Timeout
 
+import java.util.concurrent.CountDownLatch
 import java.util.concurrent.TimeUnit
 import java.util.concurrent.atomic.AtomicInteger
 
 import static datadog.opentracing.SpanFactory.newSpanOf
 import static datadog.trace.agent.test.server.http.TestHttpServer.httpServer
-import static datadog.trace.common.writer.DDAgentWriter.DISRUPTOR_BUFFER_SIZE
 
 @Timeout(20)
 class DDAgentWriterTest extends DDSpecification {
@@ -27,7 +27,7 @@ class DDAgentWriterTest extends DDSpecification {
 
   def "test happy path"() {
     setup:
-    def writer = new DDAgentWriter(api, 2, -1)
+    def writer = DDAgentWriter.builder().api(api).disruptorSize(2).flushFrequencySeconds(-1).build()
     writer.start()
 
     when:
@@ -49,7 +49,11 @@ class DDAgentWriterTest extends DDSpecification {
 
   def "test flood of traces"() {
     setup:
-    def writer = new DDAgentWriter(api, disruptorSize, -1)
+    def writer = DDAgentWriter.builder()
+      .api(api)
+      .disruptorSize(disruptorSize)
+      .flushFrequencySeconds(-1)
+      .build()
     writer.start()
 
     when:
@@ -72,24 +76,97 @@ class DDAgentWriterTest extends DDSpecification {
     traceCount = 100 // Shouldn't trigger payload, but bigger than the disruptor size.
   }
 
+  def "test flush with #workers serialization workers"() {
+    setup:
+    def writer = DDAgentWriter.builder()
+      .api(api)
+      .flushFrequencySeconds(-1)
+      .serializationWorkers(workers)
+      .build()
+    def sent = new AtomicInteger()
+    def miscounted = new AtomicInteger()
+    writer.start()
+
+    when:
+    (1..traceCount).each {
+      writer.write(trace)
+    }
+    writer.flush()
+
+    then:
+    traceCount * api.serializeTrace(_) >> { trace -> callRealMethod() }
+    (1..workers) * api.sendSerializedTraces(_, _, _) >> { count, size, traces ->
+      sent.addAndGet(traces.size())
+      if (count != traces.size()) {
+        miscounted.incrementAndGet()
+      }
+      return DDApi.Response.success(200)
+    }
+    0 * _
+    sent.get() == traceCount
+    // Each payload represents the traces of its own shard
+    miscounted.get() == 0
+
+    cleanup:
+    writer.close()
+
+    where:
+    workers << [1, 2, 4]
+    trace = [newSpanOf(0, "fixed-thread-name")]
+    traceCount = 20
+  }
+
+  def "test flush with #waitStrategy wait strategy"() {
+    setup:
+    def writer = DDAgentWriter.builder().api(api).waitStrategy(waitStrategy).build()
+    writer.start()
+
+    when:
+    writer.write(trace)
+    writer.write(trace)
+    writer.flush()
+
+    then:
+    writer.waitStrategy == expectedStrategy
+    2 * api.serializeTrace(_) >> { trace -> callRealMethod() }
+    1 * api.sendSerializedTraces(2, _, { it.size() == 2 })
+    writer.consumerBusyNanos > 0
+
+    cleanup:
+    writer.close()
+
+    where:
+    waitStrategy     | expectedStrategy
+    "blocking"       | "blocking"
+    "sleeping"       | "sleeping"
+    "Yielding"       | "yielding"
+    "phased-backoff" | "phased-backoff"
+    "adaptive"       | "adaptive"
+    "unknown"        | "sleeping"
+    null             | "sleeping"
+
+    trace = [newSpanOf(0, "fixed-thread-name")]
+  }
+
   def "test flush by size"() {
     setup:
-    def writer = new DDAgentWriter(api, DISRUPTOR_BUFFER_SIZE, -1)
-    def phaser = writer.apiPhaser
+    def writer = DDAgentWriter.builder().api(api).flushFrequencySeconds(-1).build()
+    def sent = new CountDownLatch(2)
     writer.start()
-    phaser.register()
 
     when:
     (1..6).each {
       writer.write(trace)
     }
     // Wait for 2 flushes of 3 by size
-    phaser.awaitAdvanceInterruptibly(phaser.arrive())
-    phaser.awaitAdvanceInterruptibly(phaser.arriveAndDeregister())
+    sent.await(5, TimeUnit.SECONDS)
 
     then:
     6 * api.serializeTrace(_) >> { trace -> callRealMethod() }
-    2 * api.sendSerializedTraces(3, _, { it.size() == 3 })
+    2 * api.sendSerializedTraces(3, _, { it.size() == 3 }) >> {
+      sent.countDown()
+      return DDApi.Response.success(200)
+    }
 
     when:
     (1..2).each {
@@ -113,9 +190,8 @@ class DDAgentWriterTest extends DDSpecification {
 
   def "test flush by time"() {
     setup:
-    def writer = new DDAgentWriter(api)
-    def phaser = writer.apiPhaser
-    phaser.register()
+    def writer = DDAgentWriter.builder().api(api).build()
+    def sent = new CountDownLatch(1)
     writer.start()
     writer.flush()
 
@@ -123,11 +199,14 @@ class DDAgentWriterTest extends DDSpecification {
     (1..5).each {
       writer.write(trace)
     }
-    phaser.awaitAdvanceInterruptibly(phaser.arriveAndDeregister())
+    sent.await(5, TimeUnit.SECONDS)
 
     then:
     5 * api.serializeTrace(_) >> { trace -> callRealMethod() }
-    1 * api.sendSerializedTraces(5, _, { it.size() == 5 })
+    1 * api.sendSerializedTraces(5, _, { it.size() == 5 }) >> {
+      sent.countDown()
+      return DDApi.Response.success(200)
+    }
     0 * _
 
     cleanup:
@@ -140,7 +219,7 @@ class DDAgentWriterTest extends DDSpecification {
 
   def "test default buffer size"() {
     setup:
-    def writer = new DDAgentWriter(api, DISRUPTOR_BUFFER_SIZE, -1)
+    def writer = DDAgentWriter.builder().api(api).flushFrequencySeconds(-1).build()
     writer.start()
 
     when:
@@ -186,7 +265,7 @@ class DDAgentWriterTest extends DDSpecification {
   def "check that are no interactions after close"() {
 
     setup:
-    def writer = new DDAgentWriter(api)
+    def writer = DDAgentWriter.builder().api(api).build()
     writer.start()
 
     when:
@@ -196,7 +275,7 @@ class DDAgentWriterTest extends DDSpecification {
 
     then:
     0 * _
-    writer.traceCount.get() == 0
+    writer.traceCounts.get(0) == 0
   }
 
   def createMinimalTrace() {
@@ -263,6 +342,174 @@ class DDAgentWriterTest extends DDSpecification {
     agent.close()
   }
 
+  def "monitor memory budget drops"() {
+    setup:
+    def minimalTrace = createMinimalTrace()
+    def monitor = Mock(DDAgentWriter.Monitor)
+    def writer = DDAgentWriter.builder()
+      .api(api)
+      .monitor(monitor)
+      .memoryBudgetBytes(1)
+      .memoryBudgetPolicy("drop-newest")
+      .build()
+    writer.start()
+
+    when:
+    writer.write(minimalTrace)
+
+    then:
+    1 * monitor.onBudgetDrop(writer, "drop-newest", 1)
+    0 * monitor.onPublish(_, _)
+    0 * api.serializeTrace(_)
+
+    cleanup:
+    writer.close()
+  }
+
+  def "failed payloads are spilled and replayed"() {
+    setup:
+    def spillDir = File.createTempDir()
+    def writer = DDAgentWriter.builder()
+      .api(api)
+      .spillDirectory(spillDir.path)
+      .spillMaxBytes(8 << 20)
+      .build()
+    writer.start()
+
+    when:
+    writer.write(trace)
+    writer.flush()
+
+    then:
+    1 * api.serializeTrace(_) >> { trace -> callRealMethod() }
+    1 * api.sendSerializedTraces(1, _, { it.size() == 1 }) >> Api.Response.failed(500)
+    writer.spillUsedBytes > 0
+
+    when:
+    writer.write(trace)
+    writer.write(trace)
+    writer.flush()
+
+    then:
+    2 * api.serializeTrace(_) >> { trace -> callRealMethod() }
+    1 * api.sendSerializedTraces(2, _, { it.size() == 2 }) >> Api.Response.success(200)
+    1 * api.sendSerializedTraces(1, _, { it.size() == 1 }) >> Api.Response.success(200)
+    writer.spillDroppedPayloads == 0
+
+    cleanup:
+    writer.close()
+    spillDir.deleteDir()
+
+    where:
+    trace = [newSpanOf(0, "fixed-thread-name")]
+  }
+
+  def "failed sends are retried"() {
+    setup:
+    def minimalTrace = createMinimalTrace()
+    def attempts = new AtomicInteger()
+    def senderThreads = Collections.synchronizedList([])
+    def sent = new CountDownLatch(1)
+    def api = new DDApi("localhost", 8192, null) {
+      Api.Response sendSerializedTraces(
+        int representativeCount,
+        Integer sizeInBytes,
+        List<byte[]> traces)
+      {
+        senderThreads.add(Thread.currentThread().getName())
+        if (attempts.incrementAndGet() < 3) {
+          return Api.Response.failed(500)
+        }
+        sent.countDown()
+        return Api.Response.success(200)
+      }
+    }
+    def writer = DDAgentWriter.builder().api(api).sendRetries(2).build()
+    writer.start()
+
+    when:
+    writer.write(minimalTrace)
+    writer.flush()
+
+    then:
+    sent.await(5, TimeUnit.SECONDS)
+    attempts.get() == 3
+    // Retries are sent by the senders, not by the thread scheduling flushes
+    senderThreads.every { it.startsWith("dd-trace-sender") }
+
+    cleanup:
+    writer.close()
+  }
+
+  def "open circuit breaker pauses serialization"() {
+    setup:
+    def minimalTrace = createMinimalTrace()
+    def monitor = Mock(DDAgentWriter.Monitor)
+    def writer = DDAgentWriter.builder()
+      .api(api)
+      .monitor(monitor)
+      .circuitBreakerThreshold(1)
+      .build()
+    writer.start()
+
+    when:
+    writer.write(minimalTrace)
+    writer.flush()
+
+    then:
+    1 * api.serializeTrace(_) >> { trace -> callRealMethod() }
+    1 * api.sendSerializedTraces(1, _, _) >> Api.Response.failed(500)
+
+    when:
+    writer.write(minimalTrace)
+
+    then:
+    1 * monitor.onCircuitBreakerDrop(writer, 1)
+    0 * monitor.onPublish(_, _)
+    0 * api.serializeTrace(_)
+
+    cleanup:
+    writer.close()
+  }
+
+  def "open circuit breaker spills instead of dropping"() {
+    setup:
+    def minimalTrace = createMinimalTrace()
+    def monitor = Mock(DDAgentWriter.Monitor)
+    def spillDir = File.createTempDir()
+    def writer = DDAgentWriter.builder()
+      .api(api)
+      .monitor(monitor)
+      .spillDirectory(spillDir.path)
+      .spillMaxBytes(8 << 20)
+      .circuitBreakerThreshold(1)
+      .build()
+    writer.start()
+
+    when:
+    writer.write(minimalTrace)
+    writer.flush()
+
+    then:
+    1 * api.serializeTrace(_) >> { trace -> callRealMethod() }
+    1 * api.sendSerializedTraces(1, _, _) >> Api.Response.failed(500)
+
+    when:
+    writer.write(minimalTrace)
+    writer.flush()
+
+    then:
+    1 * monitor.onPublish(writer, minimalTrace)
+    1 * api.serializeTrace(_) >> { trace -> callRealMethod() }
+    0 * api.sendSerializedTraces(_, _, _)
+    0 * monitor.onCircuitBreakerDrop(_, _)
+    writer.spillUsedBytes > 0
+
+    cleanup:
+    writer.close()
+    spillDir.deleteDir()
+  }
+
   def "monitor agent returns error"() {
     setup:
     def minimalTrace = createMinimalTrace()
@@ -388,7 +635,7 @@ class DDAgentWriterTest extends DDSpecification {
     }
 
     def bufferSize = 32
-    def writer = new DDAgentWriter(api, monitor, bufferSize, DDAgentWriter.FLUSH_PAYLOAD_DELAY)
+    def writer = DDAgentWriter.builder().api(api).monitor(monitor).disruptorSize(bufferSize).build()
     writer.start()
 
     when:
@@ -408,7 +655,7 @@ class DDAgentWriterTest extends DDSpecification {
     }
 
     then:
-    // might spill back into the Disruptor slightly, but sender queue is currently unbounded
+    // might spill back into the Disruptor slightly, but the consumer isn't held up yet
     numPublished == 1 + 20
     numFailedPublish == 0
 
@@ -419,7 +666,7 @@ class DDAgentWriterTest extends DDSpecification {
     }
 
     then:
-    // Disruptor still doesn't reject because the sender queue is unbounded
+    // Disruptor may reject once the bounded sender queue holds up the consumer
     (numPublished + numFailedPublish) == (1 + 20 + bufferSize * 2)
     numFailedPublish >= 0
 
@@ -536,6 +783,30 @@ class DDAgentWriterTest extends DDSpecification {
     writer.close()
   }
 
+  def "statsd reports the consumer wait mode"() {
+    setup:
+    def statsd = Mock(StatsDClient)
+    def monitor = new DDAgentWriter.StatsDMonitor(statsd)
+    // Not started, so only the test changes the mode
+    def writer = DDAgentWriter.builder().api(api).monitor(monitor).waitStrategy("adaptive").build()
+
+    when:
+    writer.disruptorWaitStrategy.spinning = true
+    monitor.onScheduleFlush(writer, false)
+
+    then:
+    writer.consumerSpinning
+    1 * statsd.recordGaugeValue("queue.consumer.spinning", 1L, "wait_strategy:adaptive")
+
+    when:
+    writer.disruptorWaitStrategy.spinning = false
+    monitor.onScheduleFlush(writer, false)
+
+    then:
+    !writer.consumerSpinning
+    1 * statsd.recordGaugeValue("queue.consumer.spinning", 0L, "wait_strategy:adaptive")
+  }
+
   def "statsd comm failure"() {
     def numRequests = 0
     def numResponses = 0
@@ -0,0 +1,124 @@
+package datadog.trace.api.writer
+
+import datadog.trace.api.sampling.PrioritySampling
+import datadog.trace.common.writer.MemoryBudget
+import datadog.trace.util.test.DDSpecification
+
+import java.util.concurrent.atomic.AtomicInteger
+
+import static datadog.opentracing.SpanFactory.newSpanOf
+
+class MemoryBudgetTest extends DDSpecification {
+
+  def "disabled budget accepts everything"() {
+    setup:
+    def budget = new MemoryBudget(0, "drop-newest")
+
+    expect:
+    !budget.enabled
+    budget.tryQueue((1..10000).collect { newSpanOf(0) })
+  }
+
+  def "unknown policy defaults to drop-newest"() {
+    expect:
+    new MemoryBudget(100, policy).policy == "drop-newest"
+
+    where:
+    policy << [null, "", "whatever"]
+  }
+
+  def "#policy policy when the budget is used up"() {
+    setup:
+    def budget = new MemoryBudget(900, policy)
+    def trace = [newSpanOf(0)]
+    budget.tryQueue((1..3).collect { newSpanOf(0) }) // 768 bytes at the initial estimate
+
+    expect:
+    budget.usedBytes == 768
+    !budget.exceeded
+    !budget.tryQueue(trace)
+    budget.usedBytes == 768
+
+    when:
+    trace[0].setSamplingPriority(PrioritySampling.USER_KEEP)
+
+    then:
+    budget.tryQueue(trace) == acceptsUserKeep
+    budget.exceeded == acceptsUserKeep
+
+    where:
+    policy        | acceptsUserKeep
+    "drop-newest" | false
+    "drop-oldest" | false
+    "priority"    | true
+  }
+
+  def "drop-oldest accepts traces while serialized ones can make room"() {
+    setup:
+    def budget = new MemoryBudget(1000, "drop-oldest")
+    def trace = [newSpanOf(0)]
+    budget.onSerialized([], new byte[900])
+
+    expect:
+    budget.tryQueue(trace)
+    budget.exceeded
+    budget.tryQueue(trace)
+    budget.tryQueue(trace)
+    // Queued traces alone use up the budget
+    !budget.tryQueue(trace)
+    budget.usedBytes == 900 + 768
+  }
+
+  def "concurrent writers don't overshoot the budget"() {
+    setup:
+    def budget = new MemoryBudget(256 * 100, "drop-newest")
+    def trace = [newSpanOf(0)]
+    def accepted = new AtomicInteger()
+
+    when:
+    def threads = (1..8).collect {
+      Thread.start {
+        1000.times {
+          if (budget.tryQueue(trace)) {
+            accepted.incrementAndGet()
+          }
+        }
+      }
+    }
+    threads*.join()
+
+    then:
+    accepted.get() == 100
+    budget.usedBytes == 256 * 100
+  }
+
+  def "serialized bytes are counted until released"() {
+    setup:
+    def budget = new MemoryBudget(1000, "drop-newest")
+    def trace = [newSpanOf(0)]
+
+    when:
+    budget.tryQueue(trace)
+    budget.onDequeued(trace)
+    budget.onSerialized(trace, new byte[600])
+
+    then:
+    budget.usedBytes == 600
+    budget.tryQueue(trace)
+
+    when:
+    budget.onDequeued(trace)
+    budget.onSerialized(trace, new byte[600])
+
+    then:
+    budget.exceeded
+    !budget.tryQueue(trace)
+
+    when:
+    budget.onReleased(1200)
+
+    then:
+    budget.usedBytes == 0
+    !budget.exceeded
+  }
+}
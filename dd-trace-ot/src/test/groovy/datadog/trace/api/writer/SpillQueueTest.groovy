@@ -0,0 +1,132 @@
+package datadog.trace.api.writer
+
+import datadog.trace.common.writer.SpillQueue
+import datadog.trace.util.test.DDSpecification
+
+class SpillQueueTest extends DDSpecification {
+
+  File dir
+
+  def setup() {
+    dir = File.createTempDir()
+  }
+
+  def cleanup() {
+    dir.deleteDir()
+  }
+
+  def "spilled payloads are replayed in order"() {
+    setup:
+    def queue = new SpillQueue(dir, 8 << 20)
+
+    when:
+    queue.append(3, ["a".bytes, "bb".bytes])
+    queue.append(5, ["ccc".bytes])
+
+    then:
+    !queue.empty
+
+    when:
+    def first = queue.peek()
+    queue.commit(first)
+    def second = queue.peek()
+    queue.commit(second)
+
+    then:
+    first.representativeCount == 3
+    first.sizeInBytes == 3
+    first.traces.collect { new String(it) } == ["a", "bb"]
+    second.representativeCount == 5
+    second.traces.collect { new String(it) } == ["ccc"]
+    queue.peek() == null
+    queue.empty
+  }
+
+  def "a drained write segment is released"() {
+    setup:
+    def queue = new SpillQueue(dir, 8 << 20)
+    queue.append(1, ["one".bytes])
+
+    expect:
+    queue.usedBytes == 1 << 20
+
+    when:
+    queue.commit(queue.peek())
+
+    then:
+    queue.empty
+    queue.usedBytes == 0
+    dir.listFiles().length == 0
+
+    when:
+    queue.append(2, ["two".bytes])
+
+    then:
+    queue.usedBytes == 1 << 20
+    queue.peek().representativeCount == 2
+  }
+
+  def "unconsumed payloads are recovered after a restart"() {
+    setup:
+    def queue = new SpillQueue(dir, 8 << 20)
+    queue.append(1, ["one".bytes])
+    queue.append(2, ["two".bytes])
+    queue.commit(queue.peek())
+
+    when:
+    def recovered = new SpillQueue(dir, 8 << 20)
+    def batch = recovered.peek()
+    recovered.commit(batch)
+
+    then:
+    batch.representativeCount == 2
+    new String(batch.traces[0]) == "two"
+    recovered.peek() == null
+  }
+
+  def "a torn record is skipped on recovery"() {
+    setup:
+    def queue = new SpillQueue(dir, 8 << 20)
+    queue.append(1, ["good".bytes])
+    queue.append(2, ["torn".bytes])
+    def segment = dir.listFiles()[0]
+    def file = new RandomAccessFile(segment, "rw")
+    // header, payload of the first record, then header and counts of the second one
+    file.seek(16 + 16 + 16 + 8 + 4)
+    file.write('X' as char)
+    file.close()
+
+    when:
+    def recovered = new SpillQueue(dir, 8 << 20)
+    def batch = recovered.peek()
+    recovered.commit(batch)
+
+    then:
+    new String(batch.traces[0]) == "good"
+    recovered.peek() == null
+  }
+
+  def "oldest segments are dropped when full"() {
+    setup:
+    def queue = new SpillQueue(dir, 8 << 20) // eight 1 MB segments
+    def trace = new byte[600_000]
+
+    when:
+    20.times { queue.append(it, [trace]) }
+
+    then:
+    queue.usedBytes == 8 << 20
+    queue.droppedPayloads == 12
+    queue.peek().representativeCount == 12
+  }
+
+  def "payloads larger than a segment are rejected"() {
+    setup:
+    def queue = new SpillQueue(dir, 8 << 20)
+
+    expect:
+    !queue.append(1, [new byte[2 << 20]])
+    queue.droppedPayloads == 1
+    queue.empty
+  }
+}
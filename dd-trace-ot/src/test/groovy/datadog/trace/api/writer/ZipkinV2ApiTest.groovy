@@ -6,6 +6,8 @@ import datadog.opentracing.SpanFactory
 import datadog.trace.common.writer.ZipkinV2Api
 import datadog.trace.util.test.DDSpecification
 
+import java.util.zip.GZIPInputStream
+
 import static datadog.trace.agent.test.server.http.TestHttpServer.httpServer
 
 class ZipkinV2ApiTest extends DDSpecification {
@@ -137,6 +139,28 @@ class ZipkinV2ApiTest extends DDSpecification {
     ])]
   }
 
+  def "content is gzipped when enabled"() {
+    setup:
+    def agent = httpServer {
+      handlers {
+        post("v1/trace") {
+          response.send()
+        }
+      }
+    }
+    def client = new ZipkinV2Api("localhost", agent.address.port, "/v1/trace", false, true)
+
+    expect:
+    client.sendTraces([[SpanFactory.newSpanOf(1L)], [], [SpanFactory.newSpanOf(2L)]]).success()
+    agent.lastRequest.headers.get("Content-Encoding") == "gzip"
+    def spans = convertList(new GZIPInputStream(new ByteArrayInputStream(agent.lastRequest.body)).bytes)
+    spans.size() == 2
+    spans*.timestamp == [1, 2]
+
+    cleanup:
+    agent.close()
+  }
+
   static List<TreeMap<String, Object>> convertList(byte[] bytes) {
     return mapper.readValue(bytes, new TypeReference<List<TreeMap<String, Object>>>() {})
   }
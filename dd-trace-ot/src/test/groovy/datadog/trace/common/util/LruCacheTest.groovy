@@ -0,0 +1,38 @@
+package datadog.trace.common.util
+
+import datadog.trace.util.test.DDSpecification
+
+class LruCacheTest extends DDSpecification {
+
+  def "counts hits and misses"() {
+    setup:
+    def cache = new LruCache<String, String>(100)
+
+    when:
+    def missed = cache.get("key")
+    cache.put("key", "value")
+    def hit = cache.get("key")
+
+    then:
+    missed == null
+    hit == "value"
+    cache.size() == 1
+    cache.hitCount == 1
+    cache.missCount == 1
+    cache.hitRate == 0.5
+  }
+
+  def "stays bounded dropping the least recently used entries"() {
+    setup:
+    // A single entry per segment
+    def cache = new LruCache<Integer, Integer>(16)
+
+    when:
+    (0..<1000).each { cache.put(it, it) }
+
+    then:
+    cache.size() <= 16
+    cache.get(999) == 999
+    cache.get(0) == null
+  }
+}